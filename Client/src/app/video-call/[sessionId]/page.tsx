@@ -498,7 +498,8 @@ export default function VideoCallPage() {
             const serverUrl =
                 process.env.NEXT_PUBLIC_API_URL?.replace("http", "ws") ||
                 "ws://localhost:8080"
-            const wsUrl = `${serverUrl}/ws/webrtc?userId=${user?.id}&sessionId=${sessionId}`
+            // ice-batch: the server may bundle candidate bursts into one ice-candidates frame
+            const wsUrl = `${serverUrl}/ws/webrtc?userId=${user?.id}&sessionId=${sessionId}&capabilities=ice-batch`
 
             socketRef.current = new WebSocket(wsUrl)
 
@@ -792,6 +793,11 @@ export default function VideoCallPage() {
                 case "ice-candidate":
                     await handleIceCandidate(message)
                     break
+                case "ice-candidates":
+                    for (const candidate of message.candidates || []) {
+                        await handleIceCandidate({ ...message, data: candidate })
+                    }
+                    break
                 case "user-disconnect":
                     handleOtherUserEndCall()
                     break
@@ -41,6 +41,8 @@ const CanvasComponent = ({
     const lastPointRef = useRef<{ x: number; y: number } | null>(null)
     const isReceivingUpdateRef = useRef(false)
     const canvasSocketRef = useRef<WebSocket | null>(null)
+    // Last room seq seen, so a reconnect only asks for what was missed
+    const lastSeqRef = useRef<{ sessionId: string; seq: number } | null>(null)
 
     // Initialize canvas
     useEffect(() => {
@@ -163,6 +165,9 @@ const CanvasComponent = ({
                         type: "subscribe",
                         sessionId: sessionId,
                         userId: user.id,
+                        ...(lastSeqRef.current?.sessionId === sessionId
+                            ? { resumeFrom: lastSeqRef.current.seq }
+                            : {}),
                     })
                 )
             }
@@ -172,12 +177,25 @@ const CanvasComponent = ({
             try {
                 const message = JSON.parse(event.data)
 
+                if (typeof message.seq === "number" && message.sessionId === sessionId) {
+                    lastSeqRef.current = { sessionId, seq: message.seq }
+                }
+
                 if (
                     message.type === "drawing_event" &&
                     message.sessionId === sessionId &&
                     message.userId !== user?.id
                 ) {
                     handleRemoteDrawingEvent(message.data)
+                } else if (
+                    message.type === "whiteboard_snapshot" &&
+                    message.sessionId === sessionId
+                ) {
+                    // Late join: replay the strokes drawn before we subscribed
+                    const events: DrawingEvent[] = message.data?.drawingEvents || []
+                    events.forEach((drawingEvent) =>
+                        handleRemoteDrawingEvent(drawingEvent)
+                    )
                 }
             } catch (error) {
                 console.error("Error parsing drawing message:", error)
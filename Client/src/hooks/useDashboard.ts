@@ -1,6 +1,7 @@
 import { useState, useEffect } from "react"
 import { api } from "@/lib/api"
 import { useAuth } from "@/context/AuthContext"
+import { useDashboardUpdates } from "@/hooks/useDashboardUpdates"
 
 export interface DashboardStats {
     sessionsAttended: number
@@ -99,6 +100,13 @@ export function useDashboard() {
         console.log("📊 Dashboard hook loaded, auto-fetch disabled")
     }, [user])
 
+    // Keep loaded stats current with changes pushed by the server
+    useDashboardUpdates("STUDENT", (fields) => {
+        setDashboardData((prev) =>
+            prev ? ({ ...prev, ...fields } as DashboardStats) : prev
+        )
+    })
+
     return {
         dashboardData,
         loading,
@@ -0,0 +1,69 @@
+import { useEffect, useRef } from "react"
+import { useAuth } from "@/context/AuthContext"
+
+// Fields pushed by /ws/dashboard; only the ones that changed since the last frame are present
+export type DashboardFields = Record<string, unknown>
+
+const RECONNECT_DELAY_MS = 5000
+
+export function useDashboardUpdates(
+    role: "STUDENT" | "TUTOR",
+    onFields: (fields: DashboardFields) => void
+) {
+    const { user } = useAuth()
+    const onFieldsRef = useRef(onFields)
+    onFieldsRef.current = onFields
+
+    useEffect(() => {
+        if (!user || user.role !== role) {
+            return
+        }
+        const token = localStorage.getItem("token")
+        if (!token) {
+            return
+        }
+
+        const serverUrl =
+            process.env.NEXT_PUBLIC_API_URL?.replace("http", "ws") ||
+            "ws://localhost:8080"
+        const wsUrl = `${serverUrl}/ws/dashboard?userId=${
+            user.id
+        }&token=${encodeURIComponent(token)}`
+
+        let socket: WebSocket | null = null
+        let reconnectTimer: ReturnType<typeof setTimeout> | null = null
+        let closed = false
+
+        const connect = () => {
+            socket = new WebSocket(wsUrl)
+
+            socket.onmessage = (event) => {
+                try {
+                    const data = JSON.parse(event.data)
+                    if (data.type === "dashboard_delta" && data.fields) {
+                        onFieldsRef.current(data.fields)
+                    }
+                } catch (error) {
+                    console.error("Error parsing dashboard update:", error)
+                }
+            }
+
+            // The server sends every field again on connect, so a reconnect needs no refetch
+            socket.onclose = () => {
+                if (!closed) {
+                    reconnectTimer = setTimeout(connect, RECONNECT_DELAY_MS)
+                }
+            }
+        }
+
+        connect()
+
+        return () => {
+            closed = true
+            if (reconnectTimer) {
+                clearTimeout(reconnectTimer)
+            }
+            socket?.close()
+        }
+    }, [user, role])
+}
@@ -1,6 +1,7 @@
 import { useState, useEffect } from "react"
 import { api } from "@/lib/api"
 import { useAuth } from "@/context/AuthContext"
+import { useDashboardUpdates } from "@/hooks/useDashboardUpdates"
 import { TutorDashboardStats } from "@/types"
 import { getUserFriendlyErrorMessage } from "@/utils/errorMessages"
 
@@ -86,6 +87,13 @@ export function useTutorDashboard() {
         console.log("📊 Tutor dashboard hook loaded, auto-fetch disabled")
     }, [user])
 
+    // Keep loaded stats current with changes pushed by the server
+    useDashboardUpdates("TUTOR", (fields) => {
+        setDashboardData((prev) =>
+            prev ? ({ ...prev, ...fields } as TutorDashboardStats) : prev
+        )
+    })
+
     return {
         dashboardData,
         loading,
@@ -7,6 +7,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import com.nerdsoncall.service.ActivityFeedService;
 import com.nerdsoncall.service.SessionService;
 import org.springframework.stereotype.Component;
 
@@ -26,9 +27,19 @@ class DatabaseSchemaUpdater {
     @Autowired
     private SessionService sessionService;
 
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
     @EventListener(ApplicationReadyEvent.class)
     public void updateDatabaseSchema() {
         // Update database schema on startup
         sessionService.updateDatabaseSchema();
+
+        // Seed the activity feed from existing history the first time it is deployed
+        try {
+            activityFeedService.backfillIfEmpty();
+        } catch (Exception e) {
+            System.err.println("❌ Error backfilling activity feed: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
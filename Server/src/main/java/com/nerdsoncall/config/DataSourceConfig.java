@@ -20,13 +20,16 @@ public class DataSourceConfig {
     @Value("${DB_PASSWORD:}")
     private String password;
 
+    @Value("${DB_DRIVER:org.postgresql.Driver}")
+    private String driverClassName;
+
     @Bean
     public DataSource dataSource() {
         return DataSourceBuilder.create()
                 .url(url)
                 .username(username)
                 .password(password)
-                .driverClassName("org.postgresql.Driver")
+                .driverClassName(driverClassName)
                 .build();
     }
 }
\ No newline at end of file
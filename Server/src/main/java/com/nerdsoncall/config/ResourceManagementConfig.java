@@ -34,6 +34,12 @@ public class ResourceManagementConfig {
     @Value("${app.thread-pool.keep-alive:60}")
     private int keepAliveSeconds;
 
+    @Value("${app.dashboard.threads:4}")
+    private int dashboardThreads;
+
+    @Value("${app.dashboard.queue-capacity:200}")
+    private int dashboardQueueCapacity;
+
     /**
      * Configure thread pool executor with proper resource management
      */
@@ -60,6 +66,30 @@ public class ResourceManagementConfig {
         return executor;
     }
 
+    /**
+     * Runs the independent reads behind a dashboard response in parallel. Kept small: every
+     * running read holds a database connection, and the connection pool is shared with
+     * request threads.
+     */
+    @Bean(name = "dashboardExecutor")
+    public Executor dashboardExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(dashboardThreads);
+        executor.setMaxPoolSize(dashboardThreads);
+        executor.setQueueCapacity(dashboardQueueCapacity);
+        executor.setThreadNamePrefix("Dashboard-");
+
+        // When saturated, the request thread runs the read itself rather than failing it
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.initialize();
+
+        log.info("Dashboard executor configured: threads={}, queue={}", dashboardThreads, dashboardQueueCapacity);
+
+        return executor;
+    }
+
     /**
      * Custom rejection handler for thread pool
      */
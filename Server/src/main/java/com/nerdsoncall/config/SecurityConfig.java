@@ -61,6 +61,9 @@ public class SecurityConfig {
                         .requestMatchers("/health").permitAll()
                         .requestMatchers("/welcome").permitAll()
                         .requestMatchers("/info").permitAll()
+                        // Full-table rebuilds; the rest of /test/** stays open
+                        .requestMatchers("/test/reconcile-user-stats", "/test/rebuild-tutor-rollups",
+                                "/test/backfill-activity-feed").hasRole("ADMIN")
                         .requestMatchers("/test/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .requestMatchers("/plans/**").permitAll()
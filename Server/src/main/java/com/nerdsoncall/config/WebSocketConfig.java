@@ -1,8 +1,11 @@
 package com.nerdsoncall.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -10,43 +13,362 @@ import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import com.nerdsoncall.security.JwtUtil;
+import com.nerdsoncall.service.ChatHistoryService;
+import com.nerdsoncall.service.WhiteboardPersistenceService;
+import com.nerdsoncall.websocket.CallSetupTracker;
+import com.nerdsoncall.websocket.ChatHistoryWriter;
+import com.nerdsoncall.websocket.ChunkAssembler;
+import com.nerdsoncall.websocket.ConnectionRegistry;
+import com.nerdsoncall.websocket.DashboardPublisher;
+import com.nerdsoncall.websocket.DashboardUpdatesHandler;
+import com.nerdsoncall.websocket.FloodControl;
+import com.nerdsoncall.websocket.FrameCoalescer;
+import com.nerdsoncall.websocket.HandshakeAdmission;
+import com.nerdsoncall.websocket.HeartbeatMonitor;
+import com.nerdsoncall.websocket.IceCandidateBatcher;
+import com.nerdsoncall.websocket.LocalSignalingBus;
+import com.nerdsoncall.websocket.MessageSizeLimitHandler;
+import com.nerdsoncall.websocket.MeteredWebSocketHandler;
+import com.nerdsoncall.websocket.MultiplexHandler;
+import com.nerdsoncall.websocket.RoomLanes;
+import com.nerdsoncall.websocket.RoomReplayBuffer;
+import com.nerdsoncall.websocket.SessionOutbox;
+import com.nerdsoncall.websocket.SessionOutboxRegistry;
+import com.nerdsoncall.websocket.SignalingBus;
 import com.nerdsoncall.websocket.SignalingHandler;
 import com.nerdsoncall.websocket.TutoringSessionHandler;
 import com.nerdsoncall.websocket.WebRTCSignalingHandler;
+import com.nerdsoncall.websocket.WebSocketTelemetry;
+import com.nerdsoncall.websocket.WhiteboardSnapshotStore;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Configuration
 @EnableWebSocket
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketConfigurer, WebSocketMessageBrokerConfigurer {
     
+    @Value("${app.websocket.outbound.threads:4}")
+    private int outboundThreads;
+    
+    @Value("${app.websocket.outbound.buffer-size-limit:524288}")
+    private int outboundBufferSizeLimit;
+    
+    @Value("${app.websocket.outbound.send-time-limit-ms:5000}")
+    private long outboundSendTimeLimitMs;
+    
+    @Value("${app.websocket.outbound.overflow-policy:DROP_OLDEST}")
+    private SessionOutbox.OverflowPolicy outboundOverflowPolicy;
+    
+    @Value("${app.websocket.outbound.droppable-types:drawing_event,excalidraw_update}")
+    private Set<String> outboundDroppableTypes;
+    
+    @Value("${app.websocket.coalescing.window-ms:25}")
+    private long coalescingWindowMs;
+    
+    @Value("${app.websocket.coalescing.types:drawing_event,excalidraw_update}")
+    private Set<String> coalescedTypes;
+    
+    @Value("${app.websocket.coalescing.scene-mode:LATEST}")
+    private FrameCoalescer.SceneMode coalescingSceneMode;
+    
+    @Value("${app.websocket.whiteboard.flush-interval-ms:2000}")
+    private long whiteboardFlushIntervalMs;
+    
+    @Value("${app.websocket.whiteboard.compact-every-deltas:20}")
+    private int whiteboardCompactEveryDeltas;
+    
+    @Value("${app.websocket.whiteboard.max-strokes:5000}")
+    private int whiteboardMaxStrokes;
+    
+    @Value("${app.websocket.whiteboard.max-resident-bytes:67108864}")
+    private long whiteboardMaxResidentBytes;
+    
+    @Value("${app.websocket.whiteboard.idle-timeout-ms:600000}")
+    private long whiteboardIdleTimeoutMs;
+    
+    @Value("${app.websocket.heartbeat.interval-ms:25000}")
+    private long heartbeatIntervalMs;
+    
+    @Value("${app.websocket.heartbeat.timeout-ms:60000}")
+    private long heartbeatTimeoutMs;
+    
+    @Value("${app.websocket.heartbeat.tick-ms:1000}")
+    private long heartbeatTickMs;
+    
+    @Value("${app.websocket.replay.capacity-per-room:512}")
+    private int replayCapacityPerRoom;
+    
+    @Value("${app.websocket.replay.max-bytes-per-room:1048576}")
+    private long replayMaxBytesPerRoom;
+    
+    @Value("${app.websocket.flood-control.limits:drawing_event=120/240/400/800,excalidraw_update=30/60/90/180,canvas_update=30/60/90/180,screen_share=15/30/30/60,chat_message=5/10/20/40,user_typing=5/10/20/40,ice-candidate=50/100/200/400,chunk=100/200/300/600}")
+    private List<String> floodControlLimits;
+    
+    @Value("${app.websocket.chat-history.queue-capacity:10000}")
+    private int chatHistoryQueueCapacity;
+    
+    @Value("${app.websocket.chat-history.batch-size:100}")
+    private int chatHistoryBatchSize;
+    
+    @Value("${app.websocket.chat-history.flush-interval-ms:500}")
+    private long chatHistoryFlushIntervalMs;
+    
+    @Value("${app.websocket.chunking.max-transfer-bytes:524288}")
+    private long chunkingMaxTransferBytes;
+    
+    @Value("${app.websocket.chunking.max-transfers-per-connection:4}")
+    private int chunkingMaxTransfersPerConnection;
+    
+    @Value("${app.websocket.chunking.max-buffered-bytes:134217728}")
+    private long chunkingMaxBufferedBytes;
+    
+    @Value("${app.websocket.chunking.transfer-timeout-ms:30000}")
+    private long chunkingTransferTimeoutMs;
+    
+    @Value("${app.websocket.admission.max-connections:10000}")
+    private int admissionMaxConnections;
+    
+    @Value("${app.websocket.admission.max-connections-per-user:8}")
+    private int admissionMaxConnectionsPerUser;
+    
+    @Value("${app.websocket.admission.retry-after-seconds:5}")
+    private int admissionRetryAfterSeconds;
+    
+    @Value("${app.websocket.call-setup.max-tracked-calls:10000}")
+    private int callSetupMaxTrackedCalls;
+    
+    @Value("${app.websocket.call-setup.ttl-ms:1800000}")
+    private long callSetupTtlMs;
+    
+    @Value("${app.websocket.ice-batching.window-ms:20}")
+    private long iceBatchingWindowMs;
+    
+    @Value("${app.websocket.ice-batching.max-candidates:16}")
+    private int iceBatchingMaxCandidates;
+    
+    @Value("${app.websocket.dashboard.window-ms:250}")
+    private long dashboardWindowMs;
+    
+    @Value("${app.websocket.room-lanes.threads:4}")
+    private int roomLaneThreads;
+    
+    @Value("${app.websocket.room-lanes.lock-stripes:64}")
+    private int roomLaneLockStripes;
+    
+    @Value("${app.websocket.room-lanes.queue-capacity:10000}")
+    private int roomLaneQueueCapacity;
+    
+    @Value("${app.websocket.buffer-limits.signaling.text:65536}")
+    private int signalingTextLimit;
+    
+    @Value("${app.websocket.buffer-limits.signaling.binary:65536}")
+    private int signalingBinaryLimit;
+    
+    @Value("${app.websocket.buffer-limits.webrtc.text:65536}")
+    private int webRTCTextLimit;
+    
+    @Value("${app.websocket.buffer-limits.webrtc.binary:65536}")
+    private int webRTCBinaryLimit;
+    
+    @Value("${app.websocket.buffer-limits.session.text:262144}")
+    private int sessionTextLimit;
+    
+    @Value("${app.websocket.buffer-limits.session.binary:262144}")
+    private int sessionBinaryLimit;
+    
+    @Value("${app.websocket.buffer-limits.multiplex.text:262144}")
+    private int multiplexTextLimit;
+    
+    @Value("${app.websocket.buffer-limits.multiplex.binary:262144}")
+    private int multiplexBinaryLimit;
+    
+    @Value("${app.websocket.buffer-limits.dashboard.text:8192}")
+    private int dashboardTextLimit;
+    
+    @Value("${app.websocket.buffer-limits.dashboard.binary:8192}")
+    private int dashboardBinaryLimit;
+    
+    @Value("${app.websocket.signaling.node-id:}")
+    private String signalingNodeId;
+    
+    @Autowired
+    private WhiteboardPersistenceService whiteboardPersistenceService;
+    
+    @Autowired
+    private ChatHistoryService chatHistoryService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Bean(destroyMethod = "shutdown")
+    public SessionOutboxRegistry sessionOutboxRegistry() {
+        return new SessionOutboxRegistry(outboundThreads, outboundBufferSizeLimit, outboundSendTimeLimitMs,
+                outboundOverflowPolicy, outboundDroppableTypes);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public FrameCoalescer frameCoalescer() {
+        return new FrameCoalescer(coalescingWindowMs, coalescedTypes, coalescingSceneMode);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public WhiteboardSnapshotStore whiteboardSnapshotStore() {
+        return new WhiteboardSnapshotStore(coalescingSceneMode, whiteboardPersistenceService,
+                whiteboardFlushIntervalMs, whiteboardCompactEveryDeltas, whiteboardMaxStrokes,
+                whiteboardMaxResidentBytes, whiteboardIdleTimeoutMs);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public HeartbeatMonitor heartbeatMonitor() {
+        return new HeartbeatMonitor(heartbeatIntervalMs, heartbeatTimeoutMs, heartbeatTickMs);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public ChatHistoryWriter chatHistoryWriter() {
+        return new ChatHistoryWriter(chatHistoryService, chatHistoryQueueCapacity, chatHistoryBatchSize,
+                chatHistoryFlushIntervalMs);
+    }
+    
+    @Bean
+    public ChunkAssembler chunkAssembler() {
+        // A reassembled message is relayed whole into each subscriber's outbox, so it may be no
+        // larger than one outbox holds; bigger transfers are refused on their first chunk
+        return new ChunkAssembler(Math.min(chunkingMaxTransferBytes, outboundBufferSizeLimit),
+                chunkingMaxTransfersPerConnection, chunkingMaxBufferedBytes, chunkingTransferTimeoutMs);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public RoomLanes roomLanes() {
+        return new RoomLanes(roomLaneThreads, roomLaneLockStripes, roomLaneQueueCapacity);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public IceCandidateBatcher iceCandidateBatcher() {
+        return new IceCandidateBatcher(iceBatchingWindowMs, iceBatchingMaxCandidates);
+    }
+    
+    @Bean(destroyMethod = "shutdown")
+    public DashboardPublisher dashboardPublisher() {
+        return new DashboardPublisher(dashboardWindowMs);
+    }
+    
+    @Bean
+    public CallSetupTracker callSetupTracker() {
+        return new CallSetupTracker(callSetupMaxTrackedCalls, callSetupTtlMs);
+    }
+    
+    @Bean
+    public HandshakeAdmission handshakeAdmission() {
+        return new HandshakeAdmission(admissionMaxConnections, admissionMaxConnectionsPerUser,
+                admissionRetryAfterSeconds);
+    }
+    
+    @Bean
+    public WebSocketTelemetry webSocketTelemetry() {
+        return new WebSocketTelemetry();
+    }
+    
+    @Bean
+    public FloodControl floodControl() {
+        return new FloodControl(floodControlLimits);
+    }
+    
     @Bean
     public SignalingHandler signalingHandler() {
-        return new SignalingHandler();
+        return new SignalingHandler(heartbeatMonitor());
+    }
+    
+    @Bean
+    public SignalingBus signalingBus() {
+        return new LocalSignalingBus();
     }
     
     @Bean
     public WebRTCSignalingHandler webRTCSignalingHandler() {
-        return new WebRTCSignalingHandler();
+        String nodeId = signalingNodeId.isBlank() ? UUID.randomUUID().toString() : signalingNodeId;
+        return new WebRTCSignalingHandler(signalingBus(), nodeId, heartbeatMonitor(),
+                new RoomReplayBuffer(replayCapacityPerRoom, replayMaxBytesPerRoom), floodControl(),
+                chatHistoryWriter(), callSetupTracker(), iceCandidateBatcher());
     }
     
     @Bean
     public TutoringSessionHandler tutoringSessionHandler() {
-        return new TutoringSessionHandler();
+        return new TutoringSessionHandler(sessionOutboxRegistry(), frameCoalescer(), whiteboardSnapshotStore(),
+                heartbeatMonitor(), new RoomReplayBuffer(replayCapacityPerRoom, replayMaxBytesPerRoom),
+                floodControl(), chunkAssembler(), roomLanes());
+    }
+    
+    @Bean
+    public DashboardUpdatesHandler dashboardUpdatesHandler() {
+        return new DashboardUpdatesHandler(dashboardPublisher(), heartbeatMonitor(), jwtUtil);
+    }
+    
+    @Bean
+    public ConnectionRegistry connectionRegistry() {
+        return new ConnectionRegistry();
+    }
+    
+    @Bean
+    public MultiplexHandler multiplexHandler() {
+        // Order matters: a channel's position is its id on binary frames
+        Map<String, WebSocketHandler> channels = new LinkedHashMap<>();
+        channels.put("signaling", signalingHandler());
+        channels.put("webrtc", webRTCSignalingHandler());
+        channels.put("session", tutoringSessionHandler());
+        return new MultiplexHandler(connectionRegistry(), heartbeatMonitor(), channels);
     }
     
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Each endpoint admits upgrades against the node and per-user connection caps, caps its
+        // message size (larger messages are rejected before being buffered), and records its
+        // traffic under the same name its heartbeat stats use
+        
         // Basic signaling endpoint
-        registry.addHandler(signalingHandler(), "/ws/signaling")
+        registry.addHandler(new MessageSizeLimitHandler(decorate(signalingHandler(), "signaling"),
+                               signalingTextLimit, signalingBinaryLimit),
+                       "/ws/signaling")
+               .addInterceptors(handshakeAdmission())
                .setAllowedOrigins("*"); // In production, restrict to your frontend domain
         
         // WebRTC specific signaling endpoint
-        registry.addHandler(webRTCSignalingHandler(), "/ws/webrtc")
+        registry.addHandler(new MessageSizeLimitHandler(decorate(webRTCSignalingHandler(), "webrtc"),
+                               webRTCTextLimit, webRTCBinaryLimit),
+                       "/ws/webrtc")
+               .addInterceptors(handshakeAdmission())
                .setAllowedOrigins("*");
         
         // Tutoring session endpoint for canvas and screen sharing
-        registry.addHandler(tutoringSessionHandler(), "/ws/session")
+        registry.addHandler(new MessageSizeLimitHandler(decorate(tutoringSessionHandler(), "session"),
+                               sessionTextLimit, sessionBinaryLimit),
+                       "/ws/session")
+               .addInterceptors(handshakeAdmission())
                .setAllowedOrigins("*");
+        
+        // Single endpoint multiplexing all of the above as channels over one connection
+        registry.addHandler(new MessageSizeLimitHandler(decorate(multiplexHandler(), "multiplex"),
+                               multiplexTextLimit, multiplexBinaryLimit),
+                       "/ws")
+               .addInterceptors(handshakeAdmission())
+               .setAllowedOrigins("*");
+        
+        // Push-only dashboard updates for the signed-in user
+        registry.addHandler(new MessageSizeLimitHandler(decorate(dashboardUpdatesHandler(), "dashboard"),
+                               dashboardTextLimit, dashboardBinaryLimit),
+                       "/ws/dashboard")
+               .addInterceptors(handshakeAdmission())
+               .setAllowedOrigins("*");
+    }
+    
+    private WebSocketHandler decorate(WebSocketHandler handler, String endpoint) {
+        return handshakeAdmission().releasing(
+                new MeteredWebSocketHandler(handler, webSocketTelemetry().endpoint(endpoint)));
     }
     
     @Override
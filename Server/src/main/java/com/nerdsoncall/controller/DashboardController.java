@@ -1,13 +1,17 @@
 package com.nerdsoncall.controller;
 
 import com.nerdsoncall.entity.User;
+import com.nerdsoncall.service.ActivityFeedService;
 import com.nerdsoncall.service.DashboardService;
+import com.nerdsoncall.service.TutorRollupService;
 import com.nerdsoncall.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -21,6 +25,12 @@ public class DashboardController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TutorRollupService tutorRollupService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
     // Get student dashboard statistics
     @GetMapping("/student")
     public ResponseEntity<?> getStudentDashboard(Authentication authentication) {
@@ -75,6 +85,55 @@ public class DashboardController {
         }
     }
 
+    // Get the tutor's completed sessions, minutes and earnings per day over a date range
+    // (defaults to the last 30 days, both ends inclusive)
+    @GetMapping("/tutor/daily")
+    public ResponseEntity<?> getTutorDailyStats(Authentication authentication,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            User user = userService.findByEmail(authentication.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            if (user.getRole() != User.Role.TUTOR) {
+                return ResponseEntity.badRequest().body("Only tutors can access tutor dashboard");
+            }
+
+            LocalDate rangeTo = to != null ? to : LocalDate.now();
+            LocalDate rangeFrom = from != null ? from : rangeTo.minusDays(29);
+
+            return ResponseEntity.ok(tutorRollupService.getDailyRange(user.getId(), rangeFrom, rangeTo));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching tutor daily stats: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.badRequest().body("Failed to fetch tutor daily stats: " + e.getMessage());
+        }
+    }
+
+    // Get the signed-in user's activity feed, newest first; pass the previous page's nextCursor
+    // as "before" to get the next page
+    @GetMapping("/activity")
+    public ResponseEntity<?> getActivityFeed(Authentication authentication,
+                                             @RequestParam(required = false) String before,
+                                             @RequestParam(required = false) Integer limit) {
+        try {
+            User user = userService.findByEmail(authentication.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            return ResponseEntity.ok(activityFeedService.getFeed(user.getId(), before, limit));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching activity feed: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.badRequest().body("Failed to fetch activity feed: " + e.getMessage());
+        }
+    }
+
     // Get dashboard statistics for any user (for testing)
     @GetMapping("/stats/{userId}")
     public ResponseEntity<?> getDashboardStats(@PathVariable Long userId) {
@@ -1,5 +1,8 @@
 package com.nerdsoncall.controller;
 
+import com.nerdsoncall.scheduler.UserStatsScheduler;
+import com.nerdsoncall.service.ActivityFeedService;
+import com.nerdsoncall.service.TutorRollupService;
 import com.nerdsoncall.service.SubscriptionSchedulerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +20,15 @@ public class SchedulerTestController {
     @Autowired
     private SubscriptionSchedulerService subscriptionSchedulerService;
 
+    @Autowired
+    private UserStatsScheduler userStatsScheduler;
+
+    @Autowired
+    private TutorRollupService tutorRollupService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
     /**
      * Manual trigger for session reset - for testing purposes
      */
@@ -42,6 +54,84 @@ public class SchedulerTestController {
         }
     }
 
+    /**
+     * Manual trigger for rebuilding dashboard stats from source. Admin only.
+     */
+    @PostMapping("/reconcile-user-stats")
+    public ResponseEntity<?> manualReconcileUserStats() {
+        try {
+            System.out.println("Manual trigger for user stats reconciliation at: " + LocalDateTime.now());
+            int rebuilt = userStatsScheduler.rebuildAll();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "User stats reconciliation triggered manually");
+            response.put("usersRebuilt", rebuilt);
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Error during user stats reconciliation: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Manual trigger for rebuilding the tutor daily rollups from source. Admin only.
+     */
+    @PostMapping("/rebuild-tutor-rollups")
+    public ResponseEntity<?> manualRebuildTutorRollups() {
+        try {
+            System.out.println("Manual trigger for tutor rollup rebuild at: " + LocalDateTime.now());
+            int rows = tutorRollupService.rebuildAll();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Tutor rollup rebuild triggered manually");
+            response.put("rowsWritten", rows);
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Error during tutor rollup rebuild: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Manual trigger for seeding the activity feed from existing history (only while it is empty). Admin only.
+     */
+    @PostMapping("/backfill-activity-feed")
+    public ResponseEntity<?> manualBackfillActivityFeed() {
+        try {
+            System.out.println("Manual trigger for activity feed backfill at: " + LocalDateTime.now());
+            int lines = activityFeedService.backfillIfEmpty();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", lines > 0 ? "Activity feed backfilled" : "Activity feed already populated");
+            response.put("linesWritten", lines);
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Error during activity feed backfill: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * Check scheduler status
      */
@@ -1,9 +1,12 @@
 package com.nerdsoncall.controller;
 
+import com.nerdsoncall.entity.ChatMessage;
 import com.nerdsoncall.entity.Session;
 import com.nerdsoncall.entity.User;
+import com.nerdsoncall.service.ChatHistoryService;
 import com.nerdsoncall.service.SessionService;
 import com.nerdsoncall.service.UserService;
+import com.nerdsoncall.websocket.CallSetupTracker;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +14,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +29,12 @@ public class SessionController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ChatHistoryService chatHistoryService;
+
+    @Autowired
+    private CallSetupTracker callSetupTracker;
+
     @PostMapping
     public ResponseEntity<?> createSession(@RequestParam Long tutorId, @RequestParam Long doubtId,
             Authentication authentication) {
@@ -74,6 +84,7 @@ public class SessionController {
             }
 
             Session session = sessionService.createCallSession(studentId, actualTutorId, sessionId);
+            callSetupTracker.record(sessionId, CallSetupTracker.Milestone.CREATED);
             System.out.println("✅ Call session created successfully with ID: " + session.getId());
             return ResponseEntity.ok(session);
         } catch (Exception e) {
@@ -89,6 +100,7 @@ public class SessionController {
         try {
             System.out.println("🚀 Starting call session: " + sessionId);
             Session session = sessionService.startCallSession(sessionId);
+            callSetupTracker.record(sessionId, CallSetupTracker.Milestone.STARTED);
             System.out.println("✅ Call session started successfully: " + sessionId);
             return ResponseEntity.ok(session);
         } catch (Exception e) {
@@ -103,6 +115,7 @@ public class SessionController {
     public ResponseEntity<?> endCallSession(@PathVariable String sessionId) {
         try {
             Session session = sessionService.endCallSession(sessionId);
+            callSetupTracker.finish(sessionId);
             return ResponseEntity.ok(session);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to end call session: " + e.getMessage());
@@ -115,6 +128,7 @@ public class SessionController {
         try {
             System.out.println("🚫 Cancelling call session: " + sessionId + " - Reason: " + reason);
             Session session = sessionService.cancelCallSession(sessionId, reason != null ? reason : "Call declined");
+            callSetupTracker.finish(sessionId);
             System.out.println("✅ Call session cancelled successfully: " + sessionId);
             return ResponseEntity.ok(session);
         } catch (Exception e) {
@@ -124,6 +138,28 @@ public class SessionController {
         }
     }
 
+    // Chat history of a call session, newest first. Pass the returned nextBefore as "before"
+    // to get the page of older messages.
+    @GetMapping("/call/{sessionId}/chat")
+    public ResponseEntity<?> getCallChatHistory(@PathVariable String sessionId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        try {
+            User user = userService.findByEmail(authentication.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+            List<ChatMessage> messages = chatHistoryService.getHistory(sessionId, before, limit, user);
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("messages", messages);
+            page.put("nextBefore", messages.isEmpty() ? null : messages.get(messages.size() - 1).getId());
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to get chat history: " + e.getMessage());
+        }
+    }
+
     @PutMapping("/{id}/start")
     public ResponseEntity<?> startSession(@PathVariable Long id) {
         try {
@@ -0,0 +1,55 @@
+package com.nerdsoncall.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One line of a user's activity feed, appended when one of their sessions, doubts or feedback
+ * changes and never updated. The display text is rendered at write time, so a feed page is a
+ * single range read over (user_id, occurred_at, id) with no joins.
+ */
+@Entity
+@Table(name = "activity_event", indexes = {
+    @Index(name = "idx_activity_event_user_feed", columnList = "user_id, occurred_at, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Whose feed this line belongs to
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    // Id of the session, doubt or feedback the line is about
+    private Long sourceId;
+
+    @Column(nullable = false)
+    private String title;
+
+    private String subtitle;
+
+    private String icon;
+
+    private String color;
+
+    private String bg;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    public enum Kind {
+        SESSION, DOUBT, FEEDBACK
+    }
+}
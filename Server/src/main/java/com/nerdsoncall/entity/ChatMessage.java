@@ -0,0 +1,44 @@
+package com.nerdsoncall.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One in-call chat message, written behind by ChatHistoryWriter. Read back newest first,
+ * paging on the id.
+ */
+@Entity
+@Table(name = "chat_messages", indexes = {
+    @Index(name = "idx_chat_messages_session_id", columnList = "session_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id", nullable = false)
+    private Session session;
+
+    private String messageId; // Client-side id of the message, as relayed
+
+    @Column(nullable = false)
+    private String senderId;
+
+    private String senderName;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String message;
+
+    @Column(nullable = false)
+    private LocalDateTime sentAt;
+}
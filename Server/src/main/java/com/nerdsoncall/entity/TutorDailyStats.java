@@ -0,0 +1,45 @@
+package com.nerdsoncall.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One tutor's completed sessions for one day, bucketed by session end time. Appended to as
+ * sessions complete and rebuilt from source by TutorRollupService; growth and trend queries
+ * scan a range of these instead of the tutor's sessions.
+ */
+@Entity
+@Table(name = "tutor_daily_stats", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_tutor_daily_stats_tutor_day", columnNames = {"tutor_id", "bucket_day"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TutorDailyStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tutor_id", nullable = false)
+    private Long tutorId;
+
+    @Column(name = "bucket_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private Long sessionsCompleted = 0L;
+
+    @Column(nullable = false)
+    private Long minutesTotal = 0L;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal earnings = BigDecimal.ZERO;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,57 @@
+package com.nerdsoncall.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Per-user dashboard aggregate, kept up to date as sessions, doubts and feedback change
+// and rebuilt from source by UserStatsService.rebuild
+@Entity
+@Table(name = "user_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStats {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long sessionsCompleted = 0L;
+
+    @Column(nullable = false)
+    private Long minutesTotal = 0L;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalCost = BigDecimal.ZERO; // Spent as a student
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalEarnings = BigDecimal.ZERO; // Earned as a tutor
+
+    @Column(nullable = false)
+    private Long openSessions = 0L; // PENDING or ACTIVE
+
+    @Column(nullable = false)
+    private Long openDoubts = 0L; // Any status but RESOLVED
+
+    @Column(nullable = false)
+    private Long distinctCounterparts = 0L; // Tutors taught by / students taught, over completed sessions
+
+    @Column(nullable = false)
+    private Long ratingTotal = 0L; // Sum of ratings received
+
+    @Column(nullable = false)
+    private Long ratingCount = 0L;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime reconciledAt;
+
+    public Double getAverageRating() {
+        return ratingCount != null && ratingCount > 0 ? (double) ratingTotal / ratingCount : null;
+    }
+}
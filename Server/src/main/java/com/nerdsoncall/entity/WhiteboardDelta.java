@@ -0,0 +1,40 @@
+package com.nerdsoncall.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One append-only batch of whiteboard changes for a session. Rows are folded into
+ * Session.canvasData and deleted when the board is compacted.
+ */
+@Entity
+@Table(name = "whiteboard_deltas", indexes = {
+    @Index(name = "idx_whiteboard_deltas_session_seq", columnList = "session_id, seq")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WhiteboardDelta {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id", nullable = false)
+    private Session session;
+
+    @Column(nullable = false)
+    private Long seq;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload; // JSON delta, see WhiteboardSnapshotStore
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
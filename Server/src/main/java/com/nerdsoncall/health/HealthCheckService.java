@@ -1,5 +1,11 @@
 package com.nerdsoncall.health;
 
+import com.nerdsoncall.websocket.FloodControl;
+import com.nerdsoncall.websocket.HeartbeatMonitor;
+import com.nerdsoncall.websocket.SessionOutboxRegistry;
+import com.nerdsoncall.websocket.TutoringSessionHandler;
+import com.nerdsoncall.websocket.WebRTCSignalingHandler;
+import com.nerdsoncall.websocket.WebSocketTelemetry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -27,6 +33,24 @@ public class HealthCheckService {
     @Autowired(required = false)
     private JavaMailSender mailSender;
 
+    @Autowired(required = false)
+    private WebSocketTelemetry webSocketTelemetry;
+
+    @Autowired(required = false)
+    private HeartbeatMonitor heartbeatMonitor;
+
+    @Autowired(required = false)
+    private SessionOutboxRegistry sessionOutboxRegistry;
+
+    @Autowired(required = false)
+    private FloodControl floodControl;
+
+    @Autowired(required = false)
+    private TutoringSessionHandler tutoringSessionHandler;
+
+    @Autowired(required = false)
+    private WebRTCSignalingHandler webRTCSignalingHandler;
+
     /**
      * Check external services health
      */
@@ -88,6 +112,14 @@ public class HealthCheckService {
                 websocketHealth.put("warning", "Some WebSocket handlers are not registered");
             }
             
+            // Live traffic per endpoint
+            if (webSocketTelemetry != null) {
+                websocketHealth.put("endpoints", collectEndpointTelemetry());
+            }
+            if (floodControl != null) {
+                websocketHealth.put("flood_control_dropped", floodControl.getDropped());
+            }
+            
         } catch (Exception e) {
             log.error("Error checking WebSocket health", e);
             websocketHealth.put("status", "DOWN");
@@ -97,6 +129,36 @@ public class HealthCheckService {
         return websocketHealth;
     }
 
+    /**
+     * Traffic counters of each endpoint, together with its rooms, the frames its outbound
+     * queues dropped and the connections the heartbeat reaped
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> collectEndpointTelemetry() {
+        Map<String, Object> endpoints = webSocketTelemetry.getStatsSnapshot();
+        
+        if (heartbeatMonitor != null) {
+            Map<String, Object> heartbeats = (Map<String, Object>) heartbeatMonitor.getStatsSnapshot().get("endpoints");
+            heartbeats.forEach((endpoint, stats) -> endpointStats(endpoints, endpoint)
+                    .put("reaped", ((Map<String, Object>) stats).get("reaped")));
+        }
+        if (tutoringSessionHandler != null) {
+            endpointStats(endpoints, "session").put("rooms", tutoringSessionHandler.getRoomStats());
+        }
+        if (sessionOutboxRegistry != null) {
+            endpointStats(endpoints, "session").put("droppedFrames", sessionOutboxRegistry.getTotals().getDropped());
+        }
+        if (webRTCSignalingHandler != null) {
+            endpointStats(endpoints, "webrtc").put("rooms", webRTCSignalingHandler.getRoomStats());
+        }
+        return endpoints;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> endpointStats(Map<String, Object> endpoints, String endpoint) {
+        return (Map<String, Object>) endpoints.computeIfAbsent(endpoint, k -> new HashMap<String, Object>());
+    }
+
     /**
      * Check email service health
      */
@@ -0,0 +1,26 @@
+package com.nerdsoncall.repository;
+
+import com.nerdsoncall.entity.ActivityEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ActivityEventRepository extends JpaRepository<ActivityEvent, Long> {
+
+    // Newest page of a user's feed
+    @Query("SELECT e FROM ActivityEvent e WHERE e.userId = :userId ORDER BY e.occurredAt DESC, e.id DESC")
+    List<ActivityEvent> findLatest(@Param("userId") Long userId, Pageable page);
+
+    // The page after (older than) the last line of the previous page; an index range scan however deep
+    @Query("SELECT e FROM ActivityEvent e WHERE e.userId = :userId " +
+           "AND (e.occurredAt < :occurredAt OR (e.occurredAt = :occurredAt AND e.id < :id)) " +
+           "ORDER BY e.occurredAt DESC, e.id DESC")
+    List<ActivityEvent> findBefore(@Param("userId") Long userId, @Param("occurredAt") LocalDateTime occurredAt,
+                                   @Param("id") Long id, Pageable page);
+}
@@ -0,0 +1,23 @@
+package com.nerdsoncall.repository;
+
+import com.nerdsoncall.entity.ChatMessage;
+import com.nerdsoncall.entity.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.session = :session ORDER BY m.id DESC")
+    List<ChatMessage> findLatest(@Param("session") Session session, Pageable pageable);
+
+    // Keyset page: the messages just before the oldest one the client already has
+    @Query("SELECT m FROM ChatMessage m WHERE m.session = :session AND m.id < :beforeId ORDER BY m.id DESC")
+    List<ChatMessage> findBefore(@Param("session") Session session, @Param("beforeId") Long beforeId,
+                                 Pageable pageable);
+}
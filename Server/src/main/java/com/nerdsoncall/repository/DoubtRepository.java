@@ -42,4 +42,8 @@ public interface DoubtRepository extends JpaRepository<Doubt, Long> {
     // Method for tutor dashboard - get all doubts by preferred tutor ID ordered by creation date
     @Query("SELECT d FROM Doubt d WHERE d.preferredTutorId = :tutorId ORDER BY d.createdAt DESC")
     List<Doubt> findByPreferredTutorIdOrderByCreatedAtDesc(@Param("tutorId") Long tutorId);
+
+    // Open questions on the student dashboard, i.e. anything not yet resolved
+    @Query("SELECT COUNT(d) FROM Doubt d WHERE d.student.id = :studentId AND d.status <> 'RESOLVED'")
+    long countOpenByStudentId(@Param("studentId") Long studentId);
 }
\ No newline at end of file
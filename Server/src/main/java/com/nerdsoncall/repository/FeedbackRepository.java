@@ -27,4 +27,9 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
     
     @Query("SELECT f FROM Feedback f WHERE f.reviewee = :tutor AND f.type = 'STUDENT_TO_TUTOR' ORDER BY f.createdAt DESC")
     List<Feedback> findTutorFeedbackOrderByCreatedAtDesc(@Param("tutor") User tutor);
-} 
\ No newline at end of file
+
+    // Number and sum of ratings a tutor has received from students
+    @Query("SELECT COUNT(f), COALESCE(SUM(f.rating), 0) FROM Feedback f " +
+           "WHERE f.reviewee.id = :userId AND f.type = 'STUDENT_TO_TUTOR'")
+    List<Object[]> aggregateRatingsForReviewee(@Param("userId") Long userId);
+}
\ No newline at end of file
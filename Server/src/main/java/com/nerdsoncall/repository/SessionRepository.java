@@ -11,6 +11,7 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SessionRepository extends JpaRepository<Session, Long> {
@@ -66,8 +67,43 @@ public interface SessionRepository extends JpaRepository<Session, Long> {
     @Query("SELECT SUM(s.tutorEarnings) FROM Session s WHERE s.tutor = :tutor AND s.status = 'COMPLETED' AND s.paymentStatus = 'PENDING' AND s.endTime BETWEEN :start AND :end")
     Double sumTutorEarningsOfUnpaidSessionsInPeriod(@Param("tutor") User tutor, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
+    // Dashboard aggregate sources (see UserStatsService.rebuild): count, minutes, cost, distinct tutors
+    @Query("SELECT COUNT(s), COALESCE(SUM(s.durationMinutes), 0), COALESCE(SUM(s.cost), 0), COUNT(DISTINCT s.tutor.id) " +
+           "FROM Session s WHERE s.student.id = :studentId AND s.status = 'COMPLETED'")
+    List<Object[]> aggregateCompletedByStudent(@Param("studentId") Long studentId);
+
+    // Count, minutes, earnings, distinct students
+    @Query("SELECT COUNT(s), COALESCE(SUM(s.durationMinutes), 0), COALESCE(SUM(s.tutorEarnings), 0), COUNT(DISTINCT s.student.id) " +
+           "FROM Session s WHERE s.tutor.id = :tutorId AND s.status = 'COMPLETED'")
+    List<Object[]> aggregateCompletedByTutor(@Param("tutorId") Long tutorId);
+
+    @Query("SELECT COUNT(s) FROM Session s WHERE (s.student.id = :userId OR s.tutor.id = :userId) AND s.status IN ('PENDING', 'ACTIVE')")
+    long countOpenSessionsForUser(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(s) FROM Session s WHERE s.student.id = :studentId AND s.tutor.id = :tutorId AND s.status = 'COMPLETED'")
+    long countCompletedBetween(@Param("studentId") Long studentId, @Param("tutorId") Long tutorId);
+
+    // Tutor daily rollup sources (see TutorRollupService): tutor, day, count, minutes, earnings per day of end time
+    @Query("SELECT s.tutor.id, CAST(s.endTime AS LocalDate), COUNT(s), COALESCE(SUM(s.durationMinutes), 0), COALESCE(SUM(s.tutorEarnings), 0) " +
+           "FROM Session s WHERE s.status = 'COMPLETED' AND s.tutor IS NOT NULL AND s.endTime >= :start AND s.endTime < :end " +
+           "GROUP BY s.tutor.id, CAST(s.endTime AS LocalDate)")
+    Stream<Object[]> streamDailyTutorTotals(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT COUNT(s), COALESCE(SUM(s.durationMinutes), 0), COALESCE(SUM(s.tutorEarnings), 0) " +
+           "FROM Session s WHERE s.tutor.id = :tutorId AND s.status = 'COMPLETED' AND s.endTime >= :start AND s.endTime < :end")
+    List<Object[]> aggregateCompletedByTutorBetween(@Param("tutorId") Long tutorId,
+                                                    @Param("start") LocalDateTime start,
+                                                    @Param("end") LocalDateTime end);
+
+    @Query("SELECT MIN(s.endTime) FROM Session s WHERE s.status = 'COMPLETED'")
+    LocalDateTime findEarliestCompletedEndTime();
+
     @Modifying
     @Query("UPDATE Session s SET s.paymentStatus = :paymentStatus WHERE s.id IN :sessionIds")
     void updatePaymentStatusForSessions(@Param("sessionIds") List<Long> sessionIds,
                                         @Param("paymentStatus") Session.PaymentStatus paymentStatus);
-} 
\ No newline at end of file
+
+    @Modifying
+    @Query("UPDATE Session s SET s.canvasData = :canvasData WHERE s.id = :id")
+    int updateCanvasData(@Param("id") Long id, @Param("canvasData") String canvasData);
+}
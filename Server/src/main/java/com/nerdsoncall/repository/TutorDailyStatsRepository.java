@@ -0,0 +1,44 @@
+package com.nerdsoncall.repository;
+
+import com.nerdsoncall.entity.TutorDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TutorDailyStatsRepository extends JpaRepository<TutorDailyStats, Long> {
+
+    Optional<TutorDailyStats> findByTutorIdAndDay(Long tutorId, LocalDate day);
+
+    // Range scan backing growth, trend charts and the daily API; both ends inclusive
+    @Query("SELECT d FROM TutorDailyStats d WHERE d.tutorId = :tutorId AND d.day BETWEEN :from AND :to ORDER BY d.day ASC")
+    List<TutorDailyStats> findRange(@Param("tutorId") Long tutorId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Sessions, minutes and earnings over a range, in one row
+    @Query("SELECT COALESCE(SUM(d.sessionsCompleted), 0), COALESCE(SUM(d.minutesTotal), 0), COALESCE(SUM(d.earnings), 0) " +
+           "FROM TutorDailyStats d WHERE d.tutorId = :tutorId AND d.day BETWEEN :from AND :to")
+    List<Object[]> sumRange(@Param("tutorId") Long tutorId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Appends one completed session to its day in place; 0 means the day has no row yet
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE TutorDailyStats d SET d.sessionsCompleted = d.sessionsCompleted + 1, " +
+           "d.minutesTotal = d.minutesTotal + :minutes, d.earnings = d.earnings + :earnings, d.updatedAt = :now " +
+           "WHERE d.tutorId = :tutorId AND d.day = :day")
+    int addSession(@Param("tutorId") Long tutorId, @Param("day") LocalDate day, @Param("minutes") long minutes,
+                   @Param("earnings") BigDecimal earnings, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM TutorDailyStats d WHERE d.day BETWEEN :from AND :to")
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT MIN(d.day) FROM TutorDailyStats d")
+    LocalDate findEarliestDay();
+}
@@ -37,4 +37,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findTopRatedTutorsBySubject(@Param("subject") User.Subject subject);
     
     Optional<User> findByResetToken(String resetToken);
+
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<Long> findAllIds();
 } 
\ No newline at end of file
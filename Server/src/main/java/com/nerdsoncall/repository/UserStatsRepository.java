@@ -0,0 +1,44 @@
+package com.nerdsoncall.repository;
+
+import com.nerdsoncall.entity.UserStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Deltas are applied in place so concurrent updates to the same user never overwrite each other.
+// Each returns the number of rows touched; 0 means the user has no stats row yet.
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserStats u SET u.sessionsCompleted = u.sessionsCompleted + 1, " +
+           "u.minutesTotal = u.minutesTotal + :minutes, u.totalCost = u.totalCost + :cost, " +
+           "u.totalEarnings = u.totalEarnings + :earnings, u.openSessions = u.openSessions - :closedOpen, " +
+           "u.distinctCounterparts = u.distinctCounterparts + :newCounterpart, u.updatedAt = :now " +
+           "WHERE u.userId = :userId")
+    int applySessionCompleted(@Param("userId") Long userId,
+                              @Param("minutes") long minutes,
+                              @Param("cost") BigDecimal cost,
+                              @Param("earnings") BigDecimal earnings,
+                              @Param("closedOpen") long closedOpen,
+                              @Param("newCounterpart") long newCounterpart,
+                              @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserStats u SET u.openSessions = u.openSessions + :delta, u.updatedAt = :now WHERE u.userId = :userId")
+    int addOpenSessions(@Param("userId") Long userId, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserStats u SET u.openDoubts = u.openDoubts + :delta, u.updatedAt = :now WHERE u.userId = :userId")
+    int addOpenDoubts(@Param("userId") Long userId, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserStats u SET u.ratingTotal = u.ratingTotal + :rating, u.ratingCount = u.ratingCount + 1, " +
+           "u.updatedAt = :now WHERE u.userId = :userId")
+    int addRating(@Param("userId") Long userId, @Param("rating") long rating, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,22 @@
+package com.nerdsoncall.repository;
+
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.WhiteboardDelta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WhiteboardDeltaRepository extends JpaRepository<WhiteboardDelta, Long> {
+
+    @Query("SELECT d.payload FROM WhiteboardDelta d WHERE d.session = :session ORDER BY d.seq ASC")
+    List<String> findPayloadsBySession(@Param("session") Session session);
+
+    @Modifying
+    @Query("DELETE FROM WhiteboardDelta d WHERE d.session = :session AND d.seq <= :seq")
+    int deleteUpToSeq(@Param("session") Session session, @Param("seq") Long seq);
+}
@@ -0,0 +1,34 @@
+package com.nerdsoncall.scheduler;
+
+import com.nerdsoncall.service.TutorRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Component
+public class TutorRollupScheduler {
+
+    // Days rebuilt each night, ending today; sessions completing around midnight land in either
+    private static final int NIGHTLY_REBUILD_DAYS = 2;
+
+    @Autowired
+    private TutorRollupService tutorRollupService;
+
+    // Runs at 3:45 AM every day: recomputes the most recent days from source, or backfills
+    // the whole history the first time the rollup table is empty
+    @Scheduled(cron = "0 45 3 * * ?")
+    public void rebuildTutorRollups() {
+        System.out.println("---------------------------------------");
+        System.out.println("Rebuilding tutor daily rollups at " + LocalDateTime.now());
+
+        if (tutorRollupService.isEmpty()) {
+            tutorRollupService.rebuildAll();
+        } else {
+            LocalDate today = LocalDate.now();
+            tutorRollupService.rebuildRange(today.minusDays(NIGHTLY_REBUILD_DAYS - 1), today);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.nerdsoncall.scheduler;
+
+import com.nerdsoncall.repository.UserRepository;
+import com.nerdsoncall.service.UserStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Component
+public class UserStatsScheduler {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    // Runs at 3:30 AM every day: rebuilds every user_stats row from sessions, doubts and feedback,
+    // repairing any drift in the incrementally maintained dashboard totals
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void reconcileUserStats() {
+        rebuildAll();
+    }
+
+    public int rebuildAll() {
+        System.out.println("---------------------------------------");
+        System.out.println("Reconciling user stats at " + LocalDateTime.now());
+
+        List<Long> userIds = userRepository.findAllIds();
+        int rebuilt = 0;
+        for (Long userId : userIds) {
+            try {
+                // One transaction per user, so a bad row doesn't hold back the rest
+                userStatsService.rebuild(userId);
+                rebuilt++;
+            } catch (Exception e) {
+                System.err.println("⚠️ Failed to rebuild stats for user " + userId + ": " + e.getMessage());
+            }
+        }
+
+        System.out.println("✅ Rebuilt stats for " + rebuilt + " of " + userIds.size() + " users");
+        return rebuilt;
+    }
+}
@@ -0,0 +1,347 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.ActivityEvent;
+import com.nerdsoncall.entity.Doubt;
+import com.nerdsoncall.entity.Feedback;
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.repository.ActivityEventRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only activity feed behind "recent activity" on both dashboards.
+ *
+ * Callers record a line from inside their own transaction, right after saving the session,
+ * doubt or feedback, so the feed commits or rolls back with the change. Reads are keyset pages:
+ * the cursor is the (occurredAt, id) of the last line returned, so every page is one index range
+ * scan no matter how long the user's history is.
+ */
+@Service
+public class ActivityFeedService {
+
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private static final int FLUSH_EVERY = 500;
+
+    @Autowired
+    private ActivityEventRepository activityEventRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // A session was created or changed status: one line for the student, one for the tutor
+    @Transactional
+    public void sessionChanged(Session session) {
+        LocalDateTime now = now();
+        if (session.getStudent() != null) {
+            activityEventRepository.save(studentSessionEvent(session, now));
+        }
+        if (session.getTutor() != null) {
+            activityEventRepository.save(tutorSessionEvent(session, now));
+        }
+    }
+
+    // A doubt was posted or changed status
+    @Transactional
+    public void doubtChanged(Doubt doubt) {
+        if (doubt.getStudent() != null) {
+            activityEventRepository.save(doubtEvent(doubt, now()));
+        }
+    }
+
+    @Transactional
+    public void feedbackReceived(Feedback feedback) {
+        if (feedback.getReviewee() != null) {
+            activityEventRepository.save(feedbackEvent(feedback, now()));
+        }
+    }
+
+    // The newest lines of a user's feed, as shown on the dashboard
+    public List<Map<String, Object>> getRecent(Long userId, int limit) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ActivityEvent event : activityEventRepository.findLatest(userId, PageRequest.of(0, limit))) {
+            items.add(toItem(event));
+        }
+        return items;
+    }
+
+    // One page of a user's feed, older than the cursor (or the newest page without one)
+    public Map<String, Object> getFeed(Long userId, String cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // One extra row tells us whether there is another page
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<ActivityEvent> events;
+        if (cursor == null || cursor.isBlank()) {
+            events = activityEventRepository.findLatest(userId, page);
+        } else {
+            Object[] position = parseCursor(cursor);
+            events = activityEventRepository.findBefore(userId, (LocalDateTime) position[0], (Long) position[1], page);
+        }
+
+        boolean hasMore = events.size() > size;
+        if (hasMore) {
+            events = events.subList(0, size);
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ActivityEvent event : events) {
+            items.add(toItem(event));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", items);
+        result.put("nextCursor", hasMore ? cursorOf(events.get(events.size() - 1)) : null);
+        return result;
+    }
+
+    // Seed the feed from existing sessions, doubts and feedback, once, while it is still empty.
+    // Each item contributes a single line for its current state, dated when it last changed.
+    @Transactional
+    public int backfillIfEmpty() {
+        if (activityEventRepository.count() > 0) {
+            return 0;
+        }
+        System.out.println("🔄 Backfilling activity feed from existing history");
+
+        int written = 0;
+        try (Stream<Session> sessions = entityManager.createQuery(
+                "SELECT s FROM Session s LEFT JOIN FETCH s.student LEFT JOIN FETCH s.tutor", Session.class)
+                .getResultStream()) {
+            for (Session session : (Iterable<Session>) sessions::iterator) {
+                LocalDateTime at = lastChanged(session.getUpdatedAt(), session.getCreatedAt());
+                if (session.getStudent() != null) {
+                    written = persist(studentSessionEvent(session, at), written);
+                }
+                if (session.getTutor() != null) {
+                    written = persist(tutorSessionEvent(session, at), written);
+                }
+            }
+        }
+        try (Stream<Doubt> doubts = entityManager.createQuery(
+                "SELECT d FROM Doubt d JOIN FETCH d.student LEFT JOIN FETCH d.acceptedTutor", Doubt.class)
+                .getResultStream()) {
+            for (Doubt doubt : (Iterable<Doubt>) doubts::iterator) {
+                written = persist(doubtEvent(doubt, lastChanged(doubt.getUpdatedAt(), doubt.getCreatedAt())), written);
+            }
+        }
+        try (Stream<Feedback> feedbacks = entityManager.createQuery(
+                "SELECT f FROM Feedback f JOIN FETCH f.reviewee LEFT JOIN FETCH f.reviewer", Feedback.class)
+                .getResultStream()) {
+            for (Feedback feedback : (Iterable<Feedback>) feedbacks::iterator) {
+                written = persist(feedbackEvent(feedback, lastChanged(null, feedback.getCreatedAt())), written);
+            }
+        }
+
+        System.out.println("✅ Wrote " + written + " activity feed lines");
+        return written;
+    }
+
+    private int persist(ActivityEvent event, int written) {
+        entityManager.persist(event);
+        // Keep the persistence context small on long backfills
+        if (++written % FLUSH_EVERY == 0) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return written;
+    }
+
+    private ActivityEvent studentSessionEvent(Session session, LocalDateTime at) {
+        String title = "Session";
+        String subtitle = "Learning session";
+        String color = "text-slate-600";
+        String bg = "bg-slate-100";
+
+        if (session.getStatus() == Session.Status.COMPLETED) {
+            title = "Session Completed";
+            color = "text-emerald-600";
+            bg = "bg-emerald-100";
+            if (session.getTutor() != null) {
+                subtitle = "With " + session.getTutor().getFirstName() + " " + session.getTutor().getLastName();
+            }
+            if (session.getDurationMinutes() != null && session.getDurationMinutes() > 0) {
+                subtitle += " (" + session.getDurationMinutes() + " min)";
+            }
+        } else if (session.getStatus() == Session.Status.ACTIVE) {
+            title = "Session In Progress";
+            color = "text-blue-600";
+            bg = "bg-blue-100";
+        } else if (session.getStatus() == Session.Status.PENDING) {
+            title = "Session Scheduled";
+            color = "text-amber-600";
+            bg = "bg-amber-100";
+        } else if (session.getStatus() == Session.Status.CANCELLED) {
+            title = "Session Cancelled";
+        }
+
+        return event(session.getStudent().getId(), ActivityEvent.Kind.SESSION, session.getId(),
+                title, subtitle, "Video", color, bg, at);
+    }
+
+    private ActivityEvent tutorSessionEvent(Session session, LocalDateTime at) {
+        String title = "Session Taught";
+        String subtitle = "Session with student";
+        String color = "text-slate-600";
+        String bg = "bg-slate-100";
+
+        if (session.getStudent() != null) {
+            subtitle = "Session with " + session.getStudent().getFirstName() + " " + session.getStudent().getLastName();
+        }
+
+        if (session.getStatus() == Session.Status.COMPLETED) {
+            title = "Session Completed";
+            color = "text-emerald-600";
+            bg = "bg-emerald-100";
+            if (session.getDurationMinutes() != null && session.getDurationMinutes() > 0) {
+                subtitle += " (" + session.getDurationMinutes() + " min)";
+            }
+        } else if (session.getStatus() == Session.Status.ACTIVE) {
+            title = "Session In Progress";
+            color = "text-blue-600";
+            bg = "bg-blue-100";
+        } else if (session.getStatus() == Session.Status.PENDING) {
+            title = "Session Scheduled";
+            color = "text-amber-600";
+            bg = "bg-amber-100";
+        } else if (session.getStatus() == Session.Status.CANCELLED) {
+            title = "Session Cancelled";
+        }
+
+        return event(session.getTutor().getId(), ActivityEvent.Kind.SESSION, session.getId(),
+                title, subtitle, "Video", color, bg, at);
+    }
+
+    private ActivityEvent doubtEvent(Doubt doubt, LocalDateTime at) {
+        String title = "Question Posted";
+        String subtitle = doubt.getTitle() != null ? doubt.getTitle() : "";
+        String color = "text-slate-600";
+        String bg = "bg-slate-100";
+
+        if (doubt.getStatus() == Doubt.Status.RESOLVED) {
+            title = "Question Resolved";
+            color = "text-emerald-600";
+            bg = "bg-emerald-100";
+        } else if (doubt.getStatus() == Doubt.Status.IN_PROGRESS) {
+            title = "Question In Progress";
+            color = "text-blue-600";
+            bg = "bg-blue-100";
+        }
+
+        return event(doubt.getStudent().getId(), ActivityEvent.Kind.DOUBT, doubt.getId(), title,
+                subtitle.length() > 50 ? subtitle.substring(0, 50) + "..." : subtitle,
+                "BookOpen", color, bg, at);
+    }
+
+    private ActivityEvent feedbackEvent(Feedback feedback, LocalDateTime at) {
+        String subtitle = "Rating: " + feedback.getRating() + "/5";
+
+        if (feedback.getReviewer() != null) {
+            subtitle = "From " + feedback.getReviewer().getFirstName() + " - " + feedback.getRating() + "/5";
+        }
+
+        if (feedback.getComment() != null && !feedback.getComment().trim().isEmpty()) {
+            subtitle += " - " + (feedback.getComment().length() > 30 ?
+                feedback.getComment().substring(0, 30) + "..." : feedback.getComment());
+        }
+
+        return event(feedback.getReviewee().getId(), ActivityEvent.Kind.FEEDBACK, feedback.getId(),
+                "Feedback Received", subtitle, "Star", "text-amber-600", "bg-amber-100", at);
+    }
+
+    private static ActivityEvent event(Long userId, ActivityEvent.Kind kind, Long sourceId, String title,
+                                       String subtitle, String icon, String color, String bg, LocalDateTime at) {
+        ActivityEvent event = new ActivityEvent();
+        event.setUserId(userId);
+        event.setKind(kind);
+        event.setSourceId(sourceId);
+        event.setTitle(title);
+        event.setSubtitle(subtitle);
+        event.setIcon(icon);
+        event.setColor(color);
+        event.setBg(bg);
+        event.setOccurredAt(at);
+        return event;
+    }
+
+    private Map<String, Object> toItem(ActivityEvent event) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", event.getId());
+        item.put("kind", event.getKind().name());
+        item.put("title", event.getTitle());
+        item.put("subtitle", event.getSubtitle());
+        item.put("time", getTimeAgo(event.getOccurredAt()));
+        item.put("icon", event.getIcon());
+        item.put("color", event.getColor());
+        item.put("bg", event.getBg());
+        item.put("timestamp", event.getOccurredAt());
+        return item;
+    }
+
+    // Cursor is "<occurredAt>_<id>" of the last line on the previous page
+    private static String cursorOf(ActivityEvent event) {
+        return event.getOccurredAt() + "_" + event.getId();
+    }
+
+    private static Object[] parseCursor(String cursor) {
+        int separator = cursor.lastIndexOf('_');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new Object[] {
+                LocalDateTime.parse(cursor.substring(0, separator)),
+                Long.parseLong(cursor.substring(separator + 1))
+            };
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // Millisecond precision, so the value read back (and put in cursors) matches what was written
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static LocalDateTime lastChanged(LocalDateTime updatedAt, LocalDateTime createdAt) {
+        LocalDateTime at = updatedAt != null ? updatedAt : createdAt;
+        return at != null ? at.truncatedTo(ChronoUnit.MILLIS) : now();
+    }
+
+    // Helper method to get "time ago" string
+    private String getTimeAgo(LocalDateTime dateTime) {
+        if (dateTime == null) return "Unknown";
+
+        LocalDateTime now = LocalDateTime.now();
+        long minutes = java.time.Duration.between(dateTime, now).toMinutes();
+
+        if (minutes < 1) return "Just now";
+        if (minutes < 60) return minutes + " minutes ago";
+
+        long hours = minutes / 60;
+        if (hours < 24) return hours + " hours ago";
+
+        long days = hours / 24;
+        if (days < 7) return days + " days ago";
+
+        long weeks = days / 7;
+        if (weeks < 4) return weeks + " weeks ago";
+
+        return dateTime.format(DateTimeFormatter.ofPattern("MMM dd, yyyy"));
+    }
+}
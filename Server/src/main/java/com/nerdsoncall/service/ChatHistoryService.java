@@ -0,0 +1,89 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.ChatMessage;
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.User;
+import com.nerdsoncall.repository.ChatMessageRepository;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.websocket.ChatHistoryWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Stores in-call chat in batches and serves it back one keyset page at a time
+ */
+@Service
+public class ChatHistoryService implements ChatHistoryWriter.Persistence {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String INSERT_SQL = "INSERT INTO chat_messages "
+            + "(session_id, message_id, sender_id, sender_name, message, sent_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    /**
+     * One JDBC batch in one transaction. Room ids are resolved to sessions once per batch.
+     */
+    @Override
+    @Transactional
+    public void insertBatch(List<ChatHistoryWriter.ChatRecord> messages) {
+        Map<String, Long> sessionIds = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>(messages.size());
+        for (ChatHistoryWriter.ChatRecord message : messages) {
+            Long sessionId = sessionIds.computeIfAbsent(message.roomId(),
+                    roomId -> sessionRepository.findBySessionId(roomId).map(Session::getId).orElse(null));
+            if (sessionId == null) {
+                continue;
+            }
+            rows.add(new Object[] {
+                    sessionId, message.messageId(), message.senderId(), message.senderName(),
+                    message.message(), Timestamp.valueOf(message.sentAt())
+            });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * A page of a session's chat, newest first. beforeId is the id of the oldest message the
+     * caller already has, or null for the latest page.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getHistory(String roomId, Long beforeId, int limit, User user) {
+        Session session = sessionRepository.findBySessionId(roomId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+
+        boolean participant = isUser(session.getStudent(), user) || isUser(session.getTutor(), user);
+        if (!participant) {
+            throw new RuntimeException("Only participants can read the chat of a session");
+        }
+
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        return beforeId != null
+                ? chatMessageRepository.findBefore(session, beforeId, page)
+                : chatMessageRepository.findLatest(session, page);
+    }
+
+    private static boolean isUser(User candidate, User user) {
+        return candidate != null && Objects.equals(candidate.getId(), user.getId());
+    }
+}
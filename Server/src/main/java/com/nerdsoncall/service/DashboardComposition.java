@@ -0,0 +1,104 @@
+package com.nerdsoncall.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * The reads behind one dashboard response, started together and collected against one deadline.
+ *
+ * Each stage runs on the dashboard executor and records how long it took. Collecting an optional
+ * stage that failed, or is still running when the deadline passes, yields its fallback and marks
+ * it degraded; a required stage rethrows instead. {@link #meta()} reports both for the response.
+ */
+class DashboardComposition {
+
+    private final Executor executor;
+    private final long deadlineMillis;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageMillis = new ConcurrentHashMap<>();
+    private final List<String> degraded = new ArrayList<>();
+
+    DashboardComposition(Executor executor, long deadlineMillis) {
+        this.executor = executor;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    <T> CompletableFuture<T> start(String stage, Supplier<T> read) {
+        return CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            try {
+                return read.get();
+            } finally {
+                stageMillis.put(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+        }, executor);
+    }
+
+    // The value of a stage the response cannot do without
+    <T> T require(String stage, CompletableFuture<T> future) {
+        try {
+            return future.get(remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future);
+            throw new RuntimeException("Timed out loading " + stage);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted loading " + stage);
+        }
+    }
+
+    // The value of a stage, or the fallback if it failed or missed the deadline
+    <T> T optional(String stage, CompletableFuture<T> future, T fallback) {
+        try {
+            return future.get(remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future);
+            System.err.println("⚠️ Dashboard stage " + stage + " missed the " + deadlineMillis + "ms deadline");
+        } catch (ExecutionException e) {
+            System.err.println("⚠️ Dashboard stage " + stage + " failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (degraded) {
+            degraded.add(stage);
+        }
+        return fallback;
+    }
+
+    // Per-stage latency, degraded stages and total time, for the response's "meta" entry
+    Map<String, Object> meta() {
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("stageMs", new HashMap<>(stageMillis));
+        synchronized (degraded) {
+            meta.put("degraded", new ArrayList<>(degraded));
+        }
+        meta.put("partial", !degraded.isEmpty());
+        meta.put("totalMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        meta.put("deadlineMs", deadlineMillis);
+        return meta;
+    }
+
+    // Cancelling a CompletableFuture never interrupts its thread: a stage still queued on the
+    // executor is skipped, but one already running finishes its query and the result is dropped.
+    // The stages are single indexed reads, so that only costs the executor thread until it ends.
+    private static void abandon(CompletableFuture<?> future) {
+        future.cancel(false);
+    }
+
+    private long remainingMillis() {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return Math.max(0, deadlineMillis - elapsed);
+    }
+}
@@ -8,6 +8,7 @@ import com.nerdsoncall.service.SubscriptionService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.multipart.MultipartFile;
@@ -36,11 +37,20 @@ public class DoubtService {
     @Autowired
     private SessionService sessionService;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
+    @Transactional
     public Doubt createDoubt(Doubt doubt) {
         // Check session limit before creating doubt
         validateSessionLimit(doubt.getStudent());
 
         Doubt savedDoubt = doubtRepository.save(doubt);
+        userStatsService.doubtStatusChanged(savedDoubt, null);
+        activityFeedService.doubtChanged(savedDoubt);
 
         // Increment session usage when doubt is created
         // This ensures doubts count towards session limit just like video calls
@@ -103,11 +113,13 @@ public class DoubtService {
         return doubtRepository.findAllOpenOrPreferredForTutor(tutorId);
     }
 
+    @Transactional
     public Doubt updateDoubtStatus(Long doubtId, Doubt.Status status, User tutor) {
         Doubt doubt = doubtRepository.findById(doubtId)
                 .orElseThrow(() -> new RuntimeException("Doubt not found"));
 
         // Update status and assign tutor
+        Doubt.Status previousStatus = doubt.getStatus();
         doubt.setStatus(status);
         if (status == Doubt.Status.ASSIGNED && tutor != null) {
             doubt.setAcceptedTutor(tutor);
@@ -117,9 +129,15 @@ public class DoubtService {
                 System.err.println("Error creating session for doubt: " + e.getMessage());
             }
         }
-        return doubtRepository.save(doubt);
+        Doubt savedDoubt = doubtRepository.save(doubt);
+        userStatsService.doubtStatusChanged(savedDoubt, previousStatus);
+        if (previousStatus != savedDoubt.getStatus()) {
+            activityFeedService.doubtChanged(savedDoubt);
+        }
+        return savedDoubt;
     }
 
+    @Transactional
     public Doubt submitSolution(Long doubtId, String solutionDescription, MultipartFile videoFile, User tutor) {
         Doubt doubt = doubtRepository.findById(doubtId)
                 .orElseThrow(() -> new RuntimeException("Doubt not found"));
@@ -145,13 +163,19 @@ public class DoubtService {
         }
 
         // Update doubt with solution
+        Doubt.Status previousStatus = doubt.getStatus();
         doubt.setSolutionDescription(solutionDescription);
         doubt.setVideoUrl(videoUrl);
         doubt.setAcceptedTutor(tutor);
         doubt.setStatus(Doubt.Status.RESOLVED);
         doubt.setResolvedAt(LocalDateTime.now());
 
-        return doubtRepository.save(doubt);
+        Doubt savedDoubt = doubtRepository.save(doubt);
+        userStatsService.doubtStatusChanged(savedDoubt, previousStatus);
+        if (previousStatus != savedDoubt.getStatus()) {
+            activityFeedService.doubtChanged(savedDoubt);
+        }
+        return savedDoubt;
     }
 
     @SuppressWarnings("unchecked")
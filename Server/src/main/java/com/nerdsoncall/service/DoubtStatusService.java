@@ -2,6 +2,7 @@ package com.nerdsoncall.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.nerdsoncall.entity.Doubt;
 import com.nerdsoncall.repository.DoubtRepository;
@@ -14,11 +15,24 @@ public class DoubtStatusService {
     @Autowired
     private DoubtRepository doubtRepository;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
+    @Transactional
     public Doubt updateDoubtStatus(Long doubtId, Doubt.Status status) {
         Doubt doubt = doubtRepository.findById(doubtId)
                 .orElseThrow(() -> new RuntimeException("Doubt not found"));
+        Doubt.Status previousStatus = doubt.getStatus();
         doubt.setStatus(status);
-        return doubtRepository.save(doubt);
+        Doubt savedDoubt = doubtRepository.save(doubt);
+        userStatsService.doubtStatusChanged(savedDoubt, previousStatus);
+        if (previousStatus != savedDoubt.getStatus()) {
+            activityFeedService.doubtChanged(savedDoubt);
+        }
+        return savedDoubt;
     }
 
     public Optional<Doubt> findById(Long id) {
@@ -6,6 +6,7 @@ import com.nerdsoncall.entity.User;
 import com.nerdsoncall.repository.FeedbackRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,6 +20,13 @@ public class FeedbackService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
+    @Transactional
     public Feedback createFeedback(Session session, User reviewer, User reviewee, Integer rating, String comment, Feedback.Type type) {
         // Check if feedback already exists
         Optional<Feedback> existingFeedback = feedbackRepository.findBySessionAndType(session, type);
@@ -35,6 +43,8 @@ public class FeedbackService {
         feedback.setType(type);
 
         Feedback savedFeedback = feedbackRepository.save(feedback);
+        userStatsService.feedbackReceived(savedFeedback);
+        activityFeedService.feedbackReceived(savedFeedback);
 
         // Update tutor rating if this is student-to-tutor feedback
         if (type == Feedback.Type.STUDENT_TO_TUTOR) {
@@ -35,9 +35,20 @@ public class SessionService {
     @Autowired
     private DoubtRepository doubtRepository;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private TutorRollupService tutorRollupService;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // Own transaction: accepting a doubt opens its session but survives the session failing to open
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
     public Session createSession(Long studentId, Long tutorId, Long doubtId) {
         User student = userRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
@@ -57,23 +68,33 @@ public class SessionService {
         session.setSessionId("session_" + studentId + "_" + tutorId + "_" + System.currentTimeMillis());
         session.setRoomId("room_" + doubtId);
 
-        return sessionRepository.save(session);
+        Session savedSession = sessionRepository.save(session);
+        userStatsService.sessionOpened(savedSession);
+        activityFeedService.sessionChanged(savedSession);
+        return savedSession;
     }
 
     public Session startSession(Long sessionId) {
         Session session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
+        Session.Status previousStatus = session.getStatus();
         session.setStatus(Session.Status.ACTIVE);
         session.setStartTime(LocalDateTime.now());
         
-        return sessionRepository.save(session);
+        Session savedSession = sessionRepository.save(session);
+        if (previousStatus != Session.Status.ACTIVE) {
+            activityFeedService.sessionChanged(savedSession);
+        }
+        return savedSession;
     }
 
+    @Transactional
     public Session endSession(Long sessionId) {
         Session session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
+        Session.Status previousStatus = session.getStatus();
         session.setStatus(Session.Status.COMPLETED);
         session.setEndTime(LocalDateTime.now());
         
@@ -83,7 +104,13 @@ public class SessionService {
             session.setDurationMinutes(duration);
         }
         
-        return sessionRepository.save(session);
+        Session savedSession = sessionRepository.save(session);
+        if (previousStatus != Session.Status.COMPLETED) {
+            userStatsService.sessionCompleted(savedSession, previousStatus);
+            tutorRollupService.sessionCompleted(savedSession);
+            activityFeedService.sessionChanged(savedSession);
+        }
+        return savedSession;
     }
 
     public List<Session> getSessionsByStudent(Long studentId) {
@@ -107,6 +134,7 @@ public class SessionService {
     }
 
     // Create session for direct video call (new approach)
+    @Transactional
     public Session createCallSession(Long studentId, Long tutorId, String callSessionId) {
         try {
             System.out.println("Creating call session - StudentId: " + studentId + ", TutorId: " + tutorId + ", SessionId: " + callSessionId);
@@ -148,6 +176,8 @@ public class SessionService {
             System.out.println("Session details: Student=" + student.getId() + ", Tutor=" + tutor.getId() + ", Doubt=null, SessionId=" + callSessionId);
 
             Session savedSession = sessionRepository.save(session);
+            userStatsService.sessionOpened(savedSession);
+            activityFeedService.sessionChanged(savedSession);
 
             // NOTE: Session usage is now only incremented when the call actually starts (in startCallSession)
             // This prevents billing for sessions that are never accepted
@@ -194,6 +224,7 @@ public class SessionService {
             }
 
             Session savedSession = sessionRepository.save(session);
+            activityFeedService.sessionChanged(savedSession);
             System.out.println("✅ Call session started successfully: " + sessionId + " at " + savedSession.getActualStartTime());
             return savedSession;
 
@@ -205,6 +236,7 @@ public class SessionService {
     }
 
     // End call session by sessionId with earnings calculation
+    @Transactional
     public Session endCallSession(String sessionId) {
         try {
             System.out.println("Ending call session with ID: " + sessionId);
@@ -217,6 +249,7 @@ public class SessionService {
                 return session;
             }
             
+            Session.Status previousStatus = session.getStatus();
             session.setStatus(Session.Status.COMPLETED);
             session.setEndTime(LocalDateTime.now());
             
@@ -252,6 +285,9 @@ public class SessionService {
             }
             
             Session savedSession = sessionRepository.save(session);
+            userStatsService.sessionCompleted(savedSession, previousStatus);
+            tutorRollupService.sessionCompleted(savedSession);
+            activityFeedService.sessionChanged(savedSession);
             System.out.println("Call session ended successfully: " + sessionId + " at " + savedSession.getEndTime());
             return savedSession;
 
@@ -263,6 +299,7 @@ public class SessionService {
     }
 
     // Cancel call session when declined - no billing should occur
+    @Transactional
     public Session cancelCallSession(String sessionId, String reason) {
         try {
             System.out.println("❌ Cancelling call session with ID: " + sessionId + " - Reason: " + reason);
@@ -281,7 +318,8 @@ public class SessionService {
             }
 
             // If session was active, we need to rollback session usage
-            boolean wasActive = session.getStatus() == Session.Status.ACTIVE;
+            Session.Status previousStatus = session.getStatus();
+            boolean wasActive = previousStatus == Session.Status.ACTIVE;
 
             session.setStatus(Session.Status.CANCELLED);
             session.setEndTime(LocalDateTime.now());
@@ -306,6 +344,8 @@ public class SessionService {
             }
 
             Session savedSession = sessionRepository.save(session);
+            userStatsService.sessionClosed(savedSession, previousStatus);
+            activityFeedService.sessionChanged(savedSession);
             System.out.println("✅ Call session cancelled successfully: " + sessionId);
             return savedSession;
 
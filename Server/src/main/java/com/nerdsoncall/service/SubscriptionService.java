@@ -6,6 +6,8 @@ import com.nerdsoncall.repository.SubscriptionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -51,6 +53,8 @@ public class SubscriptionService {
         return true;
     }
 
+    // Own transaction: callers treat a failed increment as non-fatal, so it must not doom theirs
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void incrementSessionUsage(User user) {
         Optional<Subscription> activeSubscription = getActiveSubscription(user);
         if (activeSubscription.isPresent()) {
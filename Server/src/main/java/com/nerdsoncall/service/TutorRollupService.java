@@ -0,0 +1,208 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.TutorDailyStats;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.repository.TutorDailyStatsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Daily per-tutor rollup of completed sessions (count, minutes, earnings), bucketed by the day
+ * the session ended.
+ *
+ * A completing session is appended to its day inside the caller's transaction. The rebuild job
+ * streams grouped totals out of the sessions table and replaces a range of days wholesale, so a
+ * day that missed an append (or never had a row) is corrected on the next run.
+ */
+@Service
+public class TutorRollupService {
+
+    // Longest range the daily API will return in one response
+    public static final int MAX_RANGE_DAYS = 366;
+
+    private static final int FLUSH_EVERY = 500;
+
+    @Autowired
+    private TutorDailyStatsRepository tutorDailyStatsRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // A session just moved to COMPLETED: add it to its tutor's day
+    @Transactional
+    public void sessionCompleted(Session session) {
+        if (session.getTutor() == null || session.getEndTime() == null) {
+            return;
+        }
+        Long tutorId = session.getTutor().getId();
+        LocalDate day = session.getEndTime().toLocalDate();
+        long minutes = session.getDurationMinutes() != null ? session.getDurationMinutes() : 0;
+        BigDecimal earnings = session.getTutorEarnings() != null ? session.getTutorEarnings() : BigDecimal.ZERO;
+
+        if (tutorDailyStatsRepository.addSession(tutorId, day, minutes, earnings, LocalDateTime.now()) == 0) {
+            // First session of the day: build the row from source, which already includes this one
+            rebuildDay(tutorId, day);
+        }
+    }
+
+    // Recompute one tutor's day from the sessions table
+    @Transactional
+    public TutorDailyStats rebuildDay(Long tutorId, LocalDate day) {
+        List<Object[]> rows = sessionRepository.aggregateCompletedByTutorBetween(tutorId,
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        Object[] totals = rows.isEmpty() ? new Object[] {0L, 0L, BigDecimal.ZERO} : rows.get(0);
+
+        TutorDailyStats stats = tutorDailyStatsRepository.findByTutorIdAndDay(tutorId, day)
+                .orElseGet(TutorDailyStats::new);
+        stats.setTutorId(tutorId);
+        stats.setDay(day);
+        stats.setSessionsCompleted(toLong(totals[0]));
+        stats.setMinutesTotal(toLong(totals[1]));
+        stats.setEarnings(toBigDecimal(totals[2]));
+        stats.setUpdatedAt(LocalDateTime.now());
+        return tutorDailyStatsRepository.save(stats);
+    }
+
+    // Replace every tutor's rows for [from, to] with totals streamed from the sessions table
+    @Transactional
+    public int rebuildRange(LocalDate from, LocalDate to) {
+        System.out.println("🔄 Rebuilding tutor daily rollups from " + from + " to " + to);
+        tutorDailyStatsRepository.deleteRange(from, to);
+
+        int written = 0;
+        LocalDateTime now = LocalDateTime.now();
+        try (Stream<Object[]> rows = sessionRepository.streamDailyTutorTotals(from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                TutorDailyStats stats = new TutorDailyStats();
+                stats.setTutorId(toLong(row[0]));
+                stats.setDay(toLocalDate(row[1]));
+                stats.setSessionsCompleted(toLong(row[2]));
+                stats.setMinutesTotal(toLong(row[3]));
+                stats.setEarnings(toBigDecimal(row[4]));
+                stats.setUpdatedAt(now);
+                entityManager.persist(stats);
+
+                // Keep the persistence context small on long backfills
+                if (++written % FLUSH_EVERY == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+
+        System.out.println("✅ Wrote " + written + " tutor daily rollup rows");
+        return written;
+    }
+
+    // Rebuild from the first completed session to today
+    @Transactional
+    public int rebuildAll() {
+        LocalDateTime earliest = sessionRepository.findEarliestCompletedEndTime();
+        LocalDate today = LocalDate.now();
+        return rebuildRange(earliest != null ? earliest.toLocalDate() : today, today);
+    }
+
+    public boolean isEmpty() {
+        return tutorDailyStatsRepository.findEarliestDay() == null;
+    }
+
+    // Sessions, minutes and earnings for a tutor over [from, to]
+    public Map<String, Object> getTotals(Long tutorId, LocalDate from, LocalDate to) {
+        List<Object[]> rows = tutorDailyStatsRepository.sumRange(tutorId, from, to);
+        Object[] totals = rows.isEmpty() ? new Object[] {0L, 0L, BigDecimal.ZERO} : rows.get(0);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("sessions", toLong(totals[0]));
+        result.put("minutes", toLong(totals[1]));
+        result.put("earnings", toBigDecimal(totals[2]).doubleValue());
+        return result;
+    }
+
+    // One entry per day in [from, to], days without sessions included as zeros, plus range totals
+    public Map<String, Object> getDailyRange(Long tutorId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+
+        Map<LocalDate, TutorDailyStats> byDay = new HashMap<>();
+        for (TutorDailyStats stats : tutorDailyStatsRepository.findRange(tutorId, from, to)) {
+            byDay.put(stats.getDay(), stats);
+        }
+
+        List<Map<String, Object>> days = new ArrayList<>();
+        long totalSessions = 0;
+        long totalMinutes = 0;
+        BigDecimal totalEarnings = BigDecimal.ZERO;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            TutorDailyStats stats = byDay.get(day);
+            long sessions = stats != null ? stats.getSessionsCompleted() : 0;
+            long minutes = stats != null ? stats.getMinutesTotal() : 0;
+            BigDecimal earnings = stats != null ? stats.getEarnings() : BigDecimal.ZERO;
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("day", day.toString());
+            entry.put("sessions", sessions);
+            entry.put("minutes", minutes);
+            entry.put("earnings", earnings.doubleValue());
+            days.add(entry);
+
+            totalSessions += sessions;
+            totalMinutes += minutes;
+            totalEarnings = totalEarnings.add(earnings);
+        }
+
+        Map<String, Object> totals = new HashMap<>();
+        totals.put("sessions", totalSessions);
+        totals.put("minutes", totalMinutes);
+        totals.put("earnings", totalEarnings.doubleValue());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("tutorId", tutorId);
+        result.put("from", from.toString());
+        result.put("to", to.toString());
+        result.put("days", days);
+        result.put("totals", totals);
+        return result;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return value instanceof Number number ? BigDecimal.valueOf(number.doubleValue()) : BigDecimal.ZERO;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        return LocalDate.parse(String.valueOf(value));
+    }
+}
@@ -0,0 +1,15 @@
+package com.nerdsoncall.service;
+
+// Published by UserStatsService whenever a user's stats row changes
+public class UserStatsChangedEvent {
+
+    private final Long userId;
+
+    public UserStatsChangedEvent(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
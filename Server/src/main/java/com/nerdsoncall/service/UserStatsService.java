@@ -0,0 +1,259 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.Doubt;
+import com.nerdsoncall.entity.Feedback;
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.UserStats;
+import com.nerdsoncall.repository.DoubtRepository;
+import com.nerdsoncall.repository.FeedbackRepository;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.repository.UserStatsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps the user_stats row behind each dashboard in step with sessions, doubts and feedback.
+ *
+ * Callers invoke these from inside their own transaction, right after saving the change, so
+ * the aggregate commits or rolls back together with it. A user without a row yet gets one on
+ * first touch, built from committed source in a transaction of its own, and the change being
+ * recorded is then applied to it like to any other row. Two first touches racing to create the
+ * same row cost the loser a duplicate key in that inner transaction, not its own.
+ */
+@Service
+public class UserStatsService {
+
+    private static final int CREATE_ATTEMPTS = 5;
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private DoubtRepository doubtRepository;
+
+    @Autowired
+    private FeedbackRepository feedbackRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // A session was created as PENDING
+    @Transactional
+    public void sessionOpened(Session session) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long userId : participants(session)) {
+            apply(userId, () -> userStatsRepository.addOpenSessions(userId, 1, now));
+            changed(userId);
+        }
+    }
+
+    // A session moved to COMPLETED from the given status
+    @Transactional
+    public void sessionCompleted(Session session, Session.Status previousStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        long minutes = session.getDurationMinutes() != null ? session.getDurationMinutes() : 0;
+        long closedOpen = isOpen(previousStatus) ? 1 : 0;
+
+        Long studentId = session.getStudent() != null ? session.getStudent().getId() : null;
+        Long tutorId = session.getTutor() != null ? session.getTutor().getId() : null;
+
+        // First completed session between the two: each gains a counterpart
+        long newCounterpart = 0;
+        if (studentId != null && tutorId != null
+                && sessionRepository.countCompletedBetween(studentId, tutorId) == 1) {
+            newCounterpart = 1;
+        }
+
+        if (studentId != null) {
+            BigDecimal cost = session.getCost() != null ? session.getCost() : BigDecimal.ZERO;
+            long counterpart = newCounterpart;
+            apply(studentId, () -> userStatsRepository.applySessionCompleted(studentId, minutes, cost,
+                    BigDecimal.ZERO, closedOpen, counterpart, now));
+            changed(studentId);
+        }
+        if (tutorId != null && !tutorId.equals(studentId)) {
+            BigDecimal earnings = session.getTutorEarnings() != null ? session.getTutorEarnings() : BigDecimal.ZERO;
+            long counterpart = newCounterpart;
+            apply(tutorId, () -> userStatsRepository.applySessionCompleted(tutorId, minutes, BigDecimal.ZERO,
+                    earnings, closedOpen, counterpart, now));
+            changed(tutorId);
+        }
+    }
+
+    // A session was cancelled (or otherwise closed without completing) from the given status
+    @Transactional
+    public void sessionClosed(Session session, Session.Status previousStatus) {
+        if (!isOpen(previousStatus)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Long userId : participants(session)) {
+            apply(userId, () -> userStatsRepository.addOpenSessions(userId, -1, now));
+            changed(userId);
+        }
+    }
+
+    // A doubt was created, or its status changed; previousStatus is null for a new doubt
+    @Transactional
+    public void doubtStatusChanged(Doubt doubt, Doubt.Status previousStatus) {
+        if (doubt.getStudent() == null) {
+            return;
+        }
+        boolean wasOpen = previousStatus != null && previousStatus != Doubt.Status.RESOLVED;
+        boolean isOpen = doubt.getStatus() != Doubt.Status.RESOLVED;
+        if (wasOpen == isOpen) {
+            return;
+        }
+        Long studentId = doubt.getStudent().getId();
+        long delta = isOpen ? 1 : -1;
+        LocalDateTime now = LocalDateTime.now();
+        apply(studentId, () -> userStatsRepository.addOpenDoubts(studentId, delta, now));
+        changed(studentId);
+    }
+
+    @Transactional
+    public void feedbackReceived(Feedback feedback) {
+        // Only students' ratings of tutors count, as in the rating query this row replaces
+        if (feedback.getReviewee() == null || feedback.getRating() == null
+                || feedback.getType() != Feedback.Type.STUDENT_TO_TUTOR) {
+            return;
+        }
+        Long revieweeId = feedback.getReviewee().getId();
+        long rating = feedback.getRating();
+        LocalDateTime now = LocalDateTime.now();
+        apply(revieweeId, () -> userStatsRepository.addRating(revieweeId, rating, now));
+        changed(revieweeId);
+    }
+
+    // Stats row if the user has one yet; read-only, for callers that check the user exists first
+    public Optional<UserStats> find(Long userId) {
+        return userStatsRepository.findById(userId);
+    }
+
+    // Stats row for a dashboard; users who never had one are built from source on first view
+    @Transactional
+    public UserStats getOrRebuild(Long userId) {
+        return userStatsRepository.findById(userId).orElseGet(() -> {
+            createRow(userId);
+            return userStatsRepository.findById(userId).orElseThrow();
+        });
+    }
+
+    // Recompute a user's row from sessions, doubts and feedback, replacing whatever was there
+    @Transactional
+    public UserStats rebuild(Long userId) {
+        UserStats stats = userStatsRepository.findById(userId).orElseGet(UserStats::new);
+        return userStatsRepository.save(fromSource(stats, userId));
+    }
+
+    // Apply a delta to a user's row, creating the row first if the user has none yet
+    private void apply(Long userId, IntSupplier update) {
+        // A database may report the duplicate key before the winning insert commits, in which
+        // case the update misses the row once more
+        for (int attempt = 0; update.getAsInt() == 0; attempt++) {
+            if (attempt == CREATE_ATTEMPTS) {
+                throw new IllegalStateException("Could not create the stats row of user " + userId);
+            }
+            createRow(userId);
+        }
+    }
+
+    // Build and insert a user's row in its own transaction, from what is committed so far. An
+    // existing row is left alone: its owner may already have applied a delta this build predates.
+    private void createRow(Long userId) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                if (!userStatsRepository.existsById(userId)) {
+                    // persist, not save: a merge would overwrite a row committed since the check
+                    entityManager.persist(fromSource(new UserStats(), userId));
+                    entityManager.flush();
+                }
+            });
+        } catch (PersistenceException | DataIntegrityViolationException e) {
+            // Another transaction created it first and has committed it, so the caller's update finds it
+        }
+    }
+
+    // Every aggregate recomputed from sessions, doubts and feedback, stamped as reconciled now
+    private UserStats fromSource(UserStats stats, Long userId) {
+        stats.setUserId(userId);
+
+        Object[] asStudent = firstRow(sessionRepository.aggregateCompletedByStudent(userId));
+        Object[] asTutor = firstRow(sessionRepository.aggregateCompletedByTutor(userId));
+        Object[] ratings = firstRow(feedbackRepository.aggregateRatingsForReviewee(userId));
+
+        stats.setSessionsCompleted(toLong(asStudent[0]) + toLong(asTutor[0]));
+        stats.setMinutesTotal(toLong(asStudent[1]) + toLong(asTutor[1]));
+        stats.setTotalCost(toBigDecimal(asStudent[2]));
+        stats.setTotalEarnings(toBigDecimal(asTutor[2]));
+        stats.setDistinctCounterparts(toLong(asStudent[3]) + toLong(asTutor[3]));
+        stats.setOpenSessions(sessionRepository.countOpenSessionsForUser(userId));
+        stats.setOpenDoubts(doubtRepository.countOpenByStudentId(userId));
+        stats.setRatingCount(toLong(ratings[0]));
+        stats.setRatingTotal(toLong(ratings[1]));
+
+        LocalDateTime now = LocalDateTime.now();
+        stats.setUpdatedAt(now);
+        stats.setReconciledAt(now);
+        return stats;
+    }
+
+    // Listeners (the dashboard push) hear about it once the transaction commits
+    private void changed(Long userId) {
+        eventPublisher.publishEvent(new UserStatsChangedEvent(userId));
+    }
+
+    private static boolean isOpen(Session.Status status) {
+        return status == Session.Status.PENDING || status == Session.Status.ACTIVE;
+    }
+
+    private static List<Long> participants(Session session) {
+        Long studentId = session.getStudent() != null ? session.getStudent().getId() : null;
+        Long tutorId = session.getTutor() != null ? session.getTutor().getId() : null;
+        if (studentId == null) {
+            return tutorId != null ? List.of(tutorId) : List.of();
+        }
+        return tutorId != null && !tutorId.equals(studentId) ? List.of(studentId, tutorId) : List.of(studentId);
+    }
+
+    private static Object[] firstRow(List<Object[]> rows) {
+        return rows.isEmpty() ? new Object[] {0L, 0L, BigDecimal.ZERO, 0L} : rows.get(0);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return value instanceof Number number ? BigDecimal.valueOf(number.doubleValue()) : BigDecimal.ZERO;
+    }
+}
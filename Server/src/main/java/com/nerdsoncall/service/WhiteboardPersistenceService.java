@@ -0,0 +1,59 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.WhiteboardDelta;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.repository.WhiteboardDeltaRepository;
+import com.nerdsoncall.websocket.WhiteboardSnapshotStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Stores whiteboard boards as Session.canvasData plus the append-only deltas written since
+ */
+@Service
+public class WhiteboardPersistenceService implements WhiteboardSnapshotStore.Persistence {
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private WhiteboardDeltaRepository whiteboardDeltaRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public WhiteboardSnapshotStore.StoredBoard load(String roomId) {
+        Optional<Session> session = sessionRepository.findBySessionId(roomId);
+        if (session.isEmpty()) {
+            return null;
+        }
+        return new WhiteboardSnapshotStore.StoredBoard(session.get().getCanvasData(),
+                whiteboardDeltaRepository.findPayloadsBySession(session.get()));
+    }
+
+    @Override
+    @Transactional
+    public void appendDelta(String roomId, long seq, String delta) {
+        sessionRepository.findBySessionId(roomId).ifPresent(session -> {
+            WhiteboardDelta whiteboardDelta = new WhiteboardDelta();
+            whiteboardDelta.setSession(session);
+            whiteboardDelta.setSeq(seq);
+            whiteboardDelta.setPayload(delta);
+            whiteboardDeltaRepository.save(whiteboardDelta);
+        });
+    }
+
+    @Override
+    @Transactional
+    public void compact(String roomId, long seq, String snapshot) {
+        sessionRepository.findBySessionId(roomId).ifPresent(session -> {
+            // Bulk update, so a concurrent status change on the session is not overwritten
+            sessionRepository.updateCanvasData(session.getId(), snapshot);
+            int folded = whiteboardDeltaRepository.deleteUpToSeq(session, seq);
+            System.out.println("Compacted whiteboard of session " + roomId + " at seq " + seq + " (" + folded + " deltas folded)");
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.nerdsoncall.websocket;
+
+/**
+ * A message carried by the SignalingBus from one node to another. The payload is the JSON
+ * text of the frame to deliver, so it can travel over any transport unchanged.
+ */
+public final class BusMessage {
+
+    public enum Kind {
+        /** Deliver the payload to one user */
+        USER,
+        /** Deliver the payload to the node's participants of a room, except excludeUserId */
+        ROOM,
+        /** The room was torn down, drop its local state */
+        CLOSE_ROOM,
+        /** The user connected on another node, close the local socket */
+        KICK
+    }
+
+    private final Kind kind;
+    private final String target;
+    private final String excludeUserId;
+    private final String type;
+    private final String payload;
+    private final long seq;
+
+    private BusMessage(Kind kind, String target, String excludeUserId, String type, String payload, long seq) {
+        this.kind = kind;
+        this.target = target;
+        this.excludeUserId = excludeUserId;
+        this.type = type;
+        this.payload = payload;
+        this.seq = seq;
+    }
+
+    public static BusMessage toUser(String userId, String type, String payload) {
+        return new BusMessage(Kind.USER, userId, null, type, payload, 0);
+    }
+
+    public static BusMessage toRoom(String roomId, String excludeUserId, String type, String payload) {
+        return toRoom(roomId, excludeUserId, type, payload, 0);
+    }
+
+    /**
+     * A room message carrying its room sequence number, for the receiving node's replay buffer
+     */
+    public static BusMessage toRoom(String roomId, String excludeUserId, String type, String payload, long seq) {
+        return new BusMessage(Kind.ROOM, roomId, excludeUserId, type, payload, seq);
+    }
+
+    public static BusMessage closeRoom(String roomId) {
+        return new BusMessage(Kind.CLOSE_ROOM, roomId, null, null, null, 0);
+    }
+
+    public static BusMessage kick(String userId) {
+        return new BusMessage(Kind.KICK, userId, null, null, null, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** userId for USER and KICK, room id for ROOM and CLOSE_ROOM */
+    public String getTarget() {
+        return target;
+    }
+
+    public String getExcludeUserId() {
+        return excludeUserId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    /** Room sequence number of a ROOM message, 0 if it is not replayable */
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -0,0 +1,188 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long calls take to connect. Each call's milestones (created over REST, joined, offer,
+ * answer, first ICE candidate, started, declined) are stamped once, the first time they are
+ * seen, and the time between milestones goes into histograms as soon as the later one lands.
+ *
+ * Stamping is a map lookup and a compare-and-set, so signaling never waits on it. A call is
+ * forgotten when it ends or is cancelled; calls that never do are swept after the TTL, and
+ * past the tracking limit new calls are counted but not timed.
+ */
+@Slf4j
+public class CallSetupTracker {
+
+    public enum Milestone {
+        CREATED, JOINED, OFFER, ANSWER, FIRST_ICE_CANDIDATE, STARTED, DECLINED
+    }
+
+    // Call setup is human-paced: 100ms to 2 minutes
+    private static final long[] BOUNDS_MICROS = {
+        100_000, 250_000, 500_000, 1_000_000, 2_000_000, 3_000_000, 5_000_000, 10_000_000,
+        15_000_000, 20_000_000, 30_000_000, 45_000_000, 60_000_000, 120_000_000
+    };
+    private static final int SWEEP_EVERY_CALLS = 256;
+
+    private final int maxTrackedCalls;
+    private final long ttlNanos;
+    private final Map<String, Timeline> calls = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram createdToJoined = new LatencyHistogram(BOUNDS_MICROS);
+    private final LatencyHistogram timeToAnswer = new LatencyHistogram(BOUNDS_MICROS);
+    private final LatencyHistogram timeToFirstCandidate = new LatencyHistogram(BOUNDS_MICROS);
+    private final LatencyHistogram timeToConnected = new LatencyHistogram(BOUNDS_MICROS);
+    private final LatencyHistogram timeToDecline = new LatencyHistogram(BOUNDS_MICROS);
+
+    private final LongAdder tracked = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    public CallSetupTracker(int maxTrackedCalls, long ttlMillis) {
+        this.maxTrackedCalls = maxTrackedCalls;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+
+        log.info("Call setup tracking configured: maxTrackedCalls={}, ttl={}ms", maxTrackedCalls, ttlMillis);
+    }
+
+    /**
+     * Stamp a milestone of a call; repeats (renegotiation, every later ICE candidate) are ignored
+     */
+    public void record(String callId, Milestone milestone) {
+        if (callId == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        Timeline timeline = calls.get(callId);
+        if (timeline == null) {
+            timeline = track(callId, now);
+            if (timeline == null) {
+                return;
+            }
+        }
+        if (!timeline.stamps.compareAndSet(milestone.ordinal(), 0, now)) {
+            return;
+        }
+
+        switch (milestone) {
+            case JOINED:
+                measure(createdToJoined, timeline, Milestone.CREATED, now);
+                break;
+            case ANSWER:
+                measure(timeToAnswer, timeline, Milestone.OFFER, now);
+                break;
+            case FIRST_ICE_CANDIDATE:
+                measure(timeToFirstCandidate, timeline, Milestone.OFFER, now);
+                break;
+            case STARTED:
+                started.increment();
+                measure(timeToConnected, timeline, timeline.origin(), now);
+                break;
+            case DECLINED:
+                declined.increment();
+                measure(timeToDecline, timeline, timeline.origin(), now);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Forget a call that ended or was cancelled. A call that was neither started nor declined
+     * by then was abandoned, e.g. cancelled after ringing out.
+     */
+    public void finish(String callId) {
+        Timeline timeline = callId != null ? calls.remove(callId) : null;
+        if (timeline != null && !timeline.has(Milestone.STARTED) && !timeline.has(Milestone.DECLINED)) {
+            abandoned.increment();
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        long startedCount = started.sum();
+        long declinedCount = declined.sum();
+        long abandonedCount = abandoned.sum();
+        long outcomes = startedCount + declinedCount + abandonedCount;
+
+        Map<String, Object> histograms = new HashMap<>();
+        histograms.put("createdToJoined", createdToJoined.snapshot());
+        histograms.put("timeToAnswer", timeToAnswer.snapshot());
+        histograms.put("timeToFirstIceCandidate", timeToFirstCandidate.snapshot());
+        histograms.put("timeToConnected", timeToConnected.snapshot());
+        histograms.put("timeToDecline", timeToDecline.snapshot());
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("inProgress", calls.size());
+        snapshot.put("tracked", tracked.sum());
+        snapshot.put("untracked", untracked.sum());
+        snapshot.put("started", startedCount);
+        snapshot.put("declined", declinedCount);
+        snapshot.put("abandoned", abandonedCount);
+        snapshot.put("declineRate", outcomes > 0 ? (double) declinedCount / outcomes : 0.0);
+        snapshot.put("histograms", histograms);
+        return snapshot;
+    }
+
+    private Timeline track(String callId, long now) {
+        if (calls.size() >= maxTrackedCalls) {
+            sweep(now);
+            if (calls.size() >= maxTrackedCalls) {
+                untracked.increment();
+                return null;
+            }
+        }
+        boolean[] created = new boolean[1];
+        Timeline timeline = calls.computeIfAbsent(callId, k -> {
+            created[0] = true;
+            return new Timeline(now);
+        });
+        if (created[0]) {
+            tracked.increment();
+            if (tracked.sum() % SWEEP_EVERY_CALLS == 0) {
+                sweep(now);
+            }
+        }
+        return timeline;
+    }
+
+    private void sweep(long now) {
+        calls.entrySet().removeIf(entry -> now - entry.getValue().trackedAt > ttlNanos);
+    }
+
+    private static void measure(LatencyHistogram histogram, Timeline timeline, Milestone from, long now) {
+        long fromNanos = from != null ? timeline.stamps.get(from.ordinal()) : 0;
+        if (fromNanos != 0) {
+            histogram.record(now - fromNanos);
+        }
+    }
+
+    private static final class Timeline {
+        private final long trackedAt;
+        // nanoTime per milestone, 0 until seen
+        private final AtomicLongArray stamps = new AtomicLongArray(Milestone.values().length);
+
+        private Timeline(long trackedAt) {
+            this.trackedAt = trackedAt;
+        }
+
+        private boolean has(Milestone milestone) {
+            return stamps.get(milestone.ordinal()) != 0;
+        }
+
+        /**
+         * Where the call began for this node: its creation over REST, otherwise the first join
+         */
+        private Milestone origin() {
+            return has(Milestone.CREATED) ? Milestone.CREATED : has(Milestone.JOINED) ? Milestone.JOINED : null;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One channel of a multiplexed connection, presented to a channel's handler as if it were its
+ * own WebSocketSession. The handlers run unchanged: their user and room indexes hold channel
+ * sessions, and everything they send is tagged with the channel on its way out the shared
+ * socket. Text frames get a leading "channel" field, binary frames a leading channel-id byte.
+ */
+final class ChannelSession implements WebSocketSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelSession.class);
+
+    private final MultiplexedConnection connection;
+    private final String channel;
+    private final int channelId;
+    private final WebSocketHandler handler;
+    private final String id;
+    private final URI uri;
+    private final String textPrefix;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    ChannelSession(MultiplexedConnection connection, String channel, int channelId, WebSocketHandler handler,
+                   URI uri) {
+        this.connection = connection;
+        this.channel = channel;
+        this.channelId = channelId;
+        this.handler = handler;
+        this.id = connection.getSession().getId() + ":" + channel;
+        this.uri = uri;
+        this.textPrefix = "{\"channel\":\"" + channel + "\"";
+    }
+
+    String getChannel() {
+        return channel;
+    }
+
+    WebSocketHandler getHandler() {
+        return handler;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The physical connection's URI, with the channel's own parameters added to the query
+     */
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return connection.getSession().getHandshakeHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return connection.getSession().getPrincipal();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getSession().getLocalAddress();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getSession().getRemoteAddress();
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return connection.getSession().getAcceptedProtocol();
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+        // Limits belong to the physical connection
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return connection.getSession().getTextMessageSizeLimit();
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        // Limits belong to the physical connection
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return connection.getSession().getBinaryMessageSizeLimit();
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return connection.getSession().getExtensions();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!isOpen()) {
+            throw new IOException("Channel " + channel + " of WebSocket session "
+                    + connection.getSession().getId() + " is closed");
+        }
+        connection.send(tag(message));
+    }
+
+    private WebSocketMessage<?> tag(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            if (payload.startsWith(textPrefix) || !payload.startsWith("{")) {
+                // Already tagged (relayed from a multiplexed sender), or not an object
+                return message;
+            }
+            StringBuilder tagged = new StringBuilder(textPrefix.length() + payload.length() + 1).append(textPrefix);
+            if (payload.length() > 2) {
+                tagged.append(',');
+            }
+            return new TextMessage(tagged.append(payload, 1, payload.length()));
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            ByteBuffer tagged = ByteBuffer.allocate(payload.remaining() + 1);
+            tagged.put((byte) channelId).put(payload.duplicate()).flip();
+            return new BinaryMessage(tagged, binary.isLast());
+        }
+        // Ping/pong are connection-level and go out as they are
+        return message;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get() && connection.getSession().isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(CloseStatus.NORMAL);
+    }
+
+    /**
+     * Close this channel only. The client is told with a channel_closed frame and the handler
+     * gets its close callback, as it would from the container for a standalone socket.
+     */
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            return;
+        }
+        connection.removeChannel(this);
+        try {
+            if (connection.getSession().isOpen()) {
+                ObjectNode closed = WebSocketJson.createObjectNode();
+                closed.put("channel", channel);
+                closed.put("type", "channel_closed");
+                closed.put("code", status.getCode());
+                closed.put("reason", status.getReason());
+                connection.send(new TextMessage(WebSocketJson.write(closed)));
+            }
+        } finally {
+            notifyClosed(status);
+        }
+    }
+
+    /**
+     * The physical connection went away: no frame to send, just the handler's callback
+     */
+    void connectionClosed(CloseStatus status) {
+        if (open.compareAndSet(true, false)) {
+            notifyClosed(status);
+        }
+    }
+
+    private void notifyClosed(CloseStatus status) {
+        try {
+            handler.afterConnectionClosed(this, status);
+        } catch (Exception e) {
+            logger.error("Error closing channel {} of WebSocket session {}", channel,
+                    connection.getSession().getId(), e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind queue for in-call chat.
+ *
+ * The signaling handler relays a chat message first and then only offers it here, which never
+ * blocks: a full queue drops the message from history, not from the call. A single flush
+ * thread drains the queue every flush interval, or as soon as a batch is full, and hands the
+ * messages to the persistence in batches, so the database sees one batched insert per batch
+ * instead of a transaction per message.
+ */
+@Slf4j
+public class ChatHistoryWriter {
+
+    /**
+     * Durable storage of chat messages. Only ever called from the writer's flush thread.
+     */
+    public interface Persistence {
+        /** Insert a batch; messages of rooms without a backing session are skipped */
+        void insertBatch(List<ChatRecord> messages);
+    }
+
+    /**
+     * One relayed chat message
+     */
+    public record ChatRecord(String roomId, String messageId, String senderId, String senderName,
+                             String message, LocalDateTime sentAt) {
+    }
+
+    private final Persistence persistence;
+    private final int batchSize;
+    private final BlockingQueue<ChatRecord> queue;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public ChatHistoryWriter(Persistence persistence, int queueCapacity, int batchSize, long flushIntervalMillis) {
+        this.persistence = persistence;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-chat-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis,
+            TimeUnit.MILLISECONDS);
+
+        log.info("Chat history configured: queueCapacity={}, batchSize={}, flushInterval={}ms",
+            queueCapacity, batchSize, flushIntervalMillis);
+    }
+
+    /**
+     * Queue a relayed message for writing. Never blocks the caller.
+     */
+    public void offer(ChatRecord message) {
+        if (persistence == null) {
+            return;
+        }
+        if (!queue.offer(message)) {
+            dropped.increment();
+            log.warn("Chat history queue full, message {} in room {} not stored", message.messageId(), message.roomId());
+            return;
+        }
+        queued.increment();
+
+        // A full batch is written right away instead of waiting for the next interval
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushSafely);
+            } catch (Exception e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("pending", queue.size());
+        snapshot.put("queued", queued.sum());
+        snapshot.put("written", written.sum());
+        snapshot.put("batches", batches.sum());
+        snapshot.put("droppedQueueFull", dropped.sum());
+        snapshot.put("failed", failed.sum());
+        return snapshot;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            // Write out everything that is still queued before the application stops
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error flushing chat history on shutdown", e);
+        }
+    }
+
+    private void flushSafely() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error flushing chat history", e);
+        }
+    }
+
+    private void flush() {
+        List<ChatRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                persistence.insertBatch(batch);
+                written.add(batch.size());
+                batches.increment();
+            } catch (Exception e) {
+                // Dropped rather than retried, so a database outage can't back the queue up forever
+                failed.add(batch.size());
+                log.error("Failed to store {} chat messages: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+}
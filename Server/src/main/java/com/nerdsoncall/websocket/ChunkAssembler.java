@@ -0,0 +1,176 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reassembles payloads too large for one frame (screen-share images, full whiteboard scenes)
+ * that clients send as a sequence of "chunk" messages:
+ *
+ * {"type":"chunk","transferId":"t1","index":0,"count":3,"total":180000,"data":"..."}
+ *
+ * The data fields of all chunks, concatenated, are the original message. Chunks of a transfer
+ * must arrive in order, which one WebSocket connection guarantees. A transfer is rejected on
+ * its first chunk if its declared total is over the limit, and dropped as soon as it exceeds
+ * what it declared, has too many transfers open next to it, would push the memory held by all
+ * partial transfers over budget, or stalls for longer than the timeout.
+ */
+@Slf4j
+public class ChunkAssembler {
+
+    private final long maxTransferChars;
+    private final int maxTransfersPerConnection;
+    private final long maxBufferedChars;
+    private final long transferTimeoutNanos;
+
+    // WebSocketSession id -> transfer id -> partial payload
+    private final Map<String, Map<String, Transfer>> transfers = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedChars = new AtomicLong();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public ChunkAssembler(long maxTransferBytes, int maxTransfersPerConnection, long maxBufferedBytes,
+                          long transferTimeoutMillis) {
+        // Strings are measured in chars; a char of JSON text is at least one byte on the wire
+        this.maxTransferChars = maxTransferBytes;
+        this.maxTransfersPerConnection = maxTransfersPerConnection;
+        this.maxBufferedChars = maxBufferedBytes;
+        this.transferTimeoutNanos = transferTimeoutMillis * 1_000_000L;
+
+        log.info("Chunked transfers configured: maxTransfer={} bytes, maxPerConnection={}, maxBuffered={} bytes, timeout={}ms",
+            maxTransferBytes, maxTransfersPerConnection, maxBufferedBytes, transferTimeoutMillis);
+    }
+
+    /**
+     * Add one chunk.
+     *
+     * @return the reassembled message once the last chunk is in, otherwise null
+     * @throws IllegalArgumentException if the chunk is malformed or breaks a limit; the whole
+     *         transfer is discarded and its memory released
+     */
+    public String accept(WebSocketSession session, String transferId, int index, int count, long total, String data) {
+        if (transferId == null || data == null || count < 1 || index < 0 || index >= count) {
+            rejected.increment();
+            throw new IllegalArgumentException("Invalid chunk");
+        }
+
+        Map<String, Transfer> open = transfers.computeIfAbsent(session.getId(), k -> new ConcurrentHashMap<>());
+        long now = System.nanoTime();
+        expire(open, now);
+
+        Transfer transfer = open.get(transferId);
+        if (transfer == null) {
+            if (index != 0) {
+                rejected.increment();
+                throw new IllegalArgumentException("Chunk " + index + " of unknown transfer " + transferId);
+            }
+            if (total < 1 || total > maxTransferChars) {
+                rejected.increment();
+                throw new IllegalArgumentException("Transfer of " + total + " bytes exceeds the limit of "
+                        + maxTransferChars);
+            }
+            if (open.size() >= maxTransfersPerConnection) {
+                rejected.increment();
+                throw new IllegalArgumentException("Too many transfers in progress");
+            }
+            transfer = new Transfer(count, total, now);
+            open.put(transferId, transfer);
+        }
+
+        if (index != transfer.received || count != transfer.count
+                || transfer.payload.length() + data.length() > transfer.total) {
+            discard(open, transferId, transfer);
+            rejected.increment();
+            throw new IllegalArgumentException("Chunk " + index + " of transfer " + transferId
+                    + " is out of order or over its declared size");
+        }
+        if (bufferedChars.addAndGet(data.length()) > maxBufferedChars) {
+            bufferedChars.addAndGet(-data.length());
+            discard(open, transferId, transfer);
+            rejected.increment();
+            throw new IllegalArgumentException("Server is busy reassembling other transfers");
+        }
+
+        transfer.payload.append(data);
+        transfer.received++;
+        transfer.lastChunkNanos = now;
+
+        if (transfer.received < transfer.count) {
+            return null;
+        }
+        discard(open, transferId, transfer);
+        completed.increment();
+        return transfer.payload.toString();
+    }
+
+    /**
+     * Drop every partial transfer of a closed connection
+     */
+    public void release(WebSocketSession session) {
+        Map<String, Transfer> open = transfers.remove(session.getId());
+        if (open != null) {
+            for (Transfer transfer : open.values()) {
+                bufferedChars.addAndGet(-transfer.payload.length());
+            }
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        int inProgress = 0;
+        for (Map<String, Transfer> open : transfers.values()) {
+            inProgress += open.size();
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("transfersInProgress", inProgress);
+        snapshot.put("bufferedBytes", bufferedChars.get());
+        snapshot.put("completed", completed.sum());
+        snapshot.put("rejected", rejected.sum());
+        snapshot.put("expired", expired.sum());
+        return snapshot;
+    }
+
+    private void expire(Map<String, Transfer> open, long now) {
+        Iterator<Map.Entry<String, Transfer>> it = open.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Transfer> entry = it.next();
+            if (now - entry.getValue().lastChunkNanos > transferTimeoutNanos) {
+                log.debug("Dropping stalled chunked transfer {}", entry.getKey());
+                bufferedChars.addAndGet(-entry.getValue().payload.length());
+                it.remove();
+                expired.increment();
+            }
+        }
+    }
+
+    private void discard(Map<String, Transfer> open, String transferId, Transfer transfer) {
+        if (open.remove(transferId, transfer)) {
+            bufferedChars.addAndGet(-transfer.payload.length());
+        }
+    }
+
+    private static final class Transfer {
+        private final int count;
+        private final long total;
+        private final StringBuilder payload;
+        private int received;
+        private long lastChunkNanos;
+
+        private Transfer(int count, long total, long now) {
+            this.count = count;
+            this.total = total;
+            // Grown as chunks arrive, never preallocated from a size the client only claims
+            this.payload = new StringBuilder();
+            this.lastChunkNanos = now;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.nerdsoncall.websocket;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Physical connections on the multiplexed /ws endpoint, one entry per client socket however
+ * many channels it has open.
+ */
+public class ConnectionRegistry {
+
+    // WebSocketSession id -> connection
+    private final Map<String, MultiplexedConnection> connections = new ConcurrentHashMap<>();
+
+    void register(MultiplexedConnection connection) {
+        connections.put(connection.getSession().getId(), connection);
+    }
+
+    MultiplexedConnection get(String sessionId) {
+        return connections.get(sessionId);
+    }
+
+    MultiplexedConnection remove(String sessionId) {
+        return connections.remove(sessionId);
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Set<String> users = new HashSet<>();
+        Map<String, Integer> channels = new HashMap<>();
+        for (MultiplexedConnection connection : connections.values()) {
+            users.add(connection.getUserId());
+            for (ChannelSession channel : connection.getChannels()) {
+                channels.merge(channel.getChannel(), 1, Integer::sum);
+            }
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("connections", connections.size());
+        snapshot.put("users", users.size());
+        snapshot.put("openChannels", channels);
+        return snapshot;
+    }
+}
@@ -0,0 +1,229 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes dashboard changes to the users who have /ws/dashboard open.
+ *
+ * A change only marks the user dirty. The first mark schedules a flush one window later; marks
+ * that land in the meantime ride along, so a burst (a session ending touches completed count,
+ * minutes, open sessions and counterparts at once) costs one read and one frame. The flush loads
+ * the user's current dashboard fields and sends only those that differ from what that user was
+ * last sent, as a {@value #DELTA_TYPE} frame. Users with no open connection cost nothing.
+ */
+@Slf4j
+public class DashboardPublisher {
+
+    public static final String DELTA_TYPE = "dashboard_delta";
+
+    /**
+     * Reads a user's current dashboard fields; the role is the one their token was issued for
+     */
+    @FunctionalInterface
+    public interface FieldsLoader {
+        Map<String, Object> load(Long userId, String role);
+    }
+
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private volatile FieldsLoader loader;
+
+    // userId -> subscriber, only while the user has at least one open connection
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder framesOut = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    public DashboardPublisher(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-dashboard-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("Dashboard push configured: window={}ms", windowMillis);
+    }
+
+    public void setLoader(FieldsLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Add a connection for a user; it is sent the full field set on the next flush
+     */
+    public void attach(Long userId, String role, WebSocketSession session) {
+        // Added inside the compute, so a concurrent detach can't drop the subscriber in between
+        Subscriber subscriber = subscribers.compute(userId, (id, existing) -> {
+            Subscriber attached = existing != null ? existing : new Subscriber(id, role);
+            attached.sessions.add(session);
+            return attached;
+        });
+        subscriber.resync();
+        schedule(subscriber);
+    }
+
+    public void detach(Long userId, WebSocketSession session) {
+        subscribers.computeIfPresent(userId, (id, subscriber) -> {
+            subscriber.sessions.remove(session);
+            return subscriber.sessions.isEmpty() ? null : subscriber;
+        });
+    }
+
+    /**
+     * A user's dashboard changed; called once the change is committed
+     */
+    public void changed(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        Subscriber subscriber = subscribers.get(userId);
+        if (subscriber == null) {
+            return;
+        }
+        changes.increment();
+        schedule(subscriber);
+    }
+
+    /**
+     * Forget what a user was last sent, so the next flush carries every field
+     */
+    public void resync(Long userId) {
+        Subscriber subscriber = subscribers.get(userId);
+        if (subscriber != null) {
+            subscriber.resync();
+            schedule(subscriber);
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        int connections = 0;
+        for (Subscriber subscriber : subscribers.values()) {
+            connections += subscriber.sessions.size();
+        }
+        long flushed = flushes.sum();
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("windowMs", windowMillis);
+        snapshot.put("subscribedUsers", subscribers.size());
+        snapshot.put("connections", connections);
+        snapshot.put("changes", changes.sum());
+        snapshot.put("flushes", flushed);
+        snapshot.put("framesOut", framesOut.sum());
+        snapshot.put("loadFailures", loadFailures.sum());
+        snapshot.put("changesPerFlush", flushed > 0 ? (double) changes.sum() / flushed : 0.0);
+        return snapshot;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.dirty.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> flush(subscriber), windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            subscriber.dirty.set(false);
+        }
+    }
+
+    private void flush(Subscriber subscriber) {
+        // Cleared before loading, so a change committed during the load schedules another flush
+        subscriber.dirty.set(false);
+        if (subscribers.get(subscriber.userId) != subscriber || loader == null) {
+            return;
+        }
+        flushes.increment();
+
+        Map<String, Object> fields;
+        try {
+            fields = loader.load(subscriber.userId, subscriber.role);
+        } catch (Exception e) {
+            loadFailures.increment();
+            log.warn("Could not load dashboard fields for user {}", subscriber.userId, e);
+            return;
+        }
+
+        ObjectNode delta = WebSocketJson.createObjectNode();
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (!Objects.equals(subscriber.lastSent.get(field.getKey()), field.getValue())) {
+                delta.putPOJO(field.getKey(), field.getValue());
+            }
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        subscriber.lastSent.putAll(fields);
+
+        ObjectNode frame = WebSocketJson.createObjectNode();
+        frame.put("type", DELTA_TYPE);
+        frame.put("full", subscriber.lastSent.size() == delta.size());
+        frame.set("fields", delta);
+        frame.put("timestamp", System.currentTimeMillis());
+        TextMessage message = new TextMessage(WebSocketJson.write(frame));
+
+        for (WebSocketSession session : subscriber.sessions) {
+            send(session, message);
+        }
+    }
+
+    private void send(WebSocketSession session, TextMessage message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            // Heartbeat pings for these connections take the same lock
+            synchronized (session) {
+                session.sendMessage(message);
+            }
+            framesOut.increment();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping dashboard connection {} after a failed send", session.getId(), e);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException ignored) {
+                // Already going away
+            }
+        }
+    }
+
+    private static class Subscriber {
+        private final Long userId;
+        private final String role;
+        private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        // Field values as last sent; written by the publisher thread, cleared on resync
+        private final Map<String, Object> lastSent = new ConcurrentHashMap<>();
+
+        private Subscriber(Long userId, String role) {
+            this.userId = userId;
+            this.role = role;
+        }
+
+        private void resync() {
+            lastSent.clear();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nerdsoncall.security.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+
+/**
+ * /ws/dashboard?userId=...&token=... : a push-only channel for the signed-in user's dashboard
+ * fields.
+ *
+ * Unlike the call endpoints this one carries earnings and other per-user figures, so the userId
+ * parameter (which admission counts connections by) must match the JWT. The client may send
+ * {"type":"resync"} to be sent every field again; anything else only counts as a sign of life.
+ */
+@Slf4j
+public class DashboardUpdatesHandler extends TextWebSocketHandler {
+
+    private static final String USER_ATTRIBUTE = "nerdsoncall.dashboardUser";
+
+    private final DashboardPublisher publisher;
+    private final HeartbeatMonitor heartbeatMonitor;
+    private final JwtUtil jwtUtil;
+
+    public DashboardUpdatesHandler(DashboardPublisher publisher, HeartbeatMonitor heartbeatMonitor, JwtUtil jwtUtil) {
+        this.publisher = publisher;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        String token = HandshakeAdmission.queryParameter(session, "token");
+        Long userId = null;
+        String role = null;
+        if (token != null && jwtUtil.validateToken(token)) {
+            userId = jwtUtil.extractUserId(token);
+            role = jwtUtil.extractRole(token);
+        }
+        if (userId == null || !userId.toString().equals(HandshakeAdmission.queryParameter(session, "userId"))) {
+            log.warn("Dashboard connection rejected: missing or invalid token");
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Invalid token"));
+            return;
+        }
+
+        session.getAttributes().put(USER_ATTRIBUTE, userId);
+        heartbeatMonitor.register(session, "dashboard", this, s -> {
+            synchronized (s) {
+                s.sendMessage(new PingMessage());
+            }
+        });
+        publisher.attach(userId, role, session);
+        log.debug("Dashboard connection established for user {}", userId);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        heartbeatMonitor.touch(session);
+        Long userId = (Long) session.getAttributes().get(USER_ATTRIBUTE);
+        if (userId == null) {
+            return;
+        }
+        try {
+            JsonNode node = WebSocketJson.readTree(message.getPayload());
+            if ("resync".equals(node.path("type").asText())) {
+                publisher.resync(userId);
+            }
+        } catch (IOException e) {
+            log.debug("Ignoring unreadable dashboard message from user {}", userId);
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeatMonitor.touch(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        heartbeatMonitor.unregister(session);
+        Long userId = (Long) session.getAttributes().get(USER_ATTRIBUTE);
+        if (userId != null) {
+            publisher.detach(userId, session);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Dashboard transport error on {}", session.getId(), exception);
+        try {
+            session.close(CloseStatus.SERVER_ERROR.withReason("Transport error"));
+        } catch (IOException e) {
+            log.debug("Error closing dashboard connection after transport error", e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket flood control for inbound WebSocket frames.
+ *
+ * Each limited message type has two buckets: one per connection, so a single buggy tab is
+ * capped, and one per room, so the room's fan-out is capped however many senders it has.
+ * A frame is relayed only if both buckets have a token; otherwise it is dropped. The buckets
+ * of a connection or room are allocated once, when it is first seen, and a check only reads
+ * maps and updates two primitives, so the hot path does not allocate.
+ *
+ * Limits are configured as {@code type=connectionRate/connectionBurst/roomRate/roomBurst},
+ * rates in frames per second. Types without a limit are never throttled.
+ */
+@Slf4j
+public class FloodControl {
+
+    public enum Verdict {
+        /** Within both limits, relay the frame */
+        ALLOWED,
+        /** Over a limit, drop the frame */
+        DROPPED,
+        /** Over a limit for the first time since the sender was last within it: drop and report */
+        VIOLATION
+    }
+
+    // Token amounts are kept in millionths so refills don't lose fractions
+    private static final long SCALE = 1_000_000L;
+
+    private final Map<String, Integer> typeIndex = new HashMap<>();
+    private final String[] types;
+    private final long[] connectionRate;
+    private final long[] connectionBurst;
+    private final long[] roomRate;
+    private final long[] roomBurst;
+
+    // WebSocketSession id -> one bucket per limited type
+    private final Map<String, TokenBucket[]> connectionBuckets = new ConcurrentHashMap<>();
+
+    // Room id -> one bucket per limited type
+    private final Map<String, TokenBucket[]> roomBuckets = new ConcurrentHashMap<>();
+
+    private final LongAdder[] dropped;
+    private final LongAdder violations = new LongAdder();
+
+    public FloodControl(Collection<String> limits) {
+        int n = limits.size();
+        this.types = new String[n];
+        this.connectionRate = new long[n];
+        this.connectionBurst = new long[n];
+        this.roomRate = new long[n];
+        this.roomBurst = new long[n];
+        this.dropped = new LongAdder[n];
+
+        int i = 0;
+        for (String limit : limits) {
+            String[] typeAndValues = limit.trim().split("=");
+            String[] values = typeAndValues.length == 2 ? typeAndValues[1].split("/") : new String[0];
+            if (values.length != 4) {
+                throw new IllegalArgumentException("Flood control limit must look like "
+                        + "type=connectionRate/connectionBurst/roomRate/roomBurst: " + limit);
+            }
+            types[i] = typeAndValues[0].trim();
+            connectionRate[i] = Long.parseLong(values[0].trim()) * SCALE;
+            connectionBurst[i] = Long.parseLong(values[1].trim()) * SCALE;
+            roomRate[i] = Long.parseLong(values[2].trim()) * SCALE;
+            roomBurst[i] = Long.parseLong(values[3].trim()) * SCALE;
+            dropped[i] = new LongAdder();
+            typeIndex.put(types[i], i);
+            log.info("WebSocket flood control for {}: {}/s (burst {}) per connection, {}/s (burst {}) per room",
+                types[i], values[0].trim(), values[1].trim(), values[2].trim(), values[3].trim());
+            i++;
+        }
+    }
+
+    /**
+     * Start tracking an accepted connection
+     */
+    public void register(WebSocketSession session) {
+        connectionBuckets.put(session.getId(), newBuckets(connectionBurst));
+    }
+
+    public void release(WebSocketSession session) {
+        connectionBuckets.remove(session.getId());
+    }
+
+    public void removeRoom(String roomId) {
+        roomBuckets.remove(roomId);
+    }
+
+    /**
+     * Take a token for one inbound frame. roomId may be null for frames that don't fan out to
+     * a room (or name a room that doesn't exist), then only the connection limit applies.
+     */
+    public Verdict check(WebSocketSession session, String roomId, String type) {
+        Integer index = type != null ? typeIndex.get(type) : null;
+        if (index == null) {
+            return Verdict.ALLOWED;
+        }
+        int i = index;
+        long now = System.nanoTime();
+
+        TokenBucket connection = null;
+        TokenBucket[] connectionSet = connectionBuckets.get(session.getId());
+        if (connectionSet != null) {
+            connection = connectionSet[i];
+            if (!connection.tryTake(now, connectionRate[i], connectionBurst[i])) {
+                return reject(connection, i);
+            }
+        }
+
+        if (roomId != null) {
+            TokenBucket[] roomSet = roomBuckets.get(roomId);
+            if (roomSet == null) {
+                roomSet = roomBuckets.computeIfAbsent(roomId, k -> newBuckets(roomBurst));
+            }
+            if (!roomSet[i].tryTake(now, roomRate[i], roomBurst[i])) {
+                return reject(connection, i);
+            }
+        }
+
+        if (connection != null) {
+            connection.throttled = false;
+        }
+        return Verdict.ALLOWED;
+    }
+
+    /**
+     * Frames dropped over all types
+     */
+    public long getDropped() {
+        long total = 0;
+        for (LongAdder adder : dropped) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> droppedByType = new HashMap<>();
+        for (int i = 0; i < types.length; i++) {
+            droppedByType.put(types[i], dropped[i].sum());
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("trackedConnections", connectionBuckets.size());
+        snapshot.put("trackedRooms", roomBuckets.size());
+        snapshot.put("dropped", droppedByType);
+        snapshot.put("violations", violations.sum());
+        return snapshot;
+    }
+
+    private Verdict reject(TokenBucket connection, int i) {
+        dropped[i].increment();
+        // One violation per episode: a sender stays throttled until a frame gets through again
+        if (connection == null || !connection.throttled) {
+            if (connection != null) {
+                connection.throttled = true;
+            }
+            violations.increment();
+            return Verdict.VIOLATION;
+        }
+        return Verdict.DROPPED;
+    }
+
+    private TokenBucket[] newBuckets(long[] bursts) {
+        TokenBucket[] buckets = new TokenBucket[bursts.length];
+        long now = System.nanoTime();
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new TokenBucket(bursts[i], now);
+        }
+        return buckets;
+    }
+
+    private static final class TokenBucket {
+        private long tokens;
+        private long lastRefillNanos;
+        private volatile boolean throttled;
+
+        private TokenBucket(long tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+
+        private synchronized boolean tryTake(long now, long ratePerSecond, long burst) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                // Cap the elapsed time first so the multiplication can't overflow
+                long refill = Math.min(elapsed, 1_000_000_000L * (burst / SCALE + 1)) * (ratePerSecond / SCALE);
+                tokens = Math.min(burst, tokens + refill / 1_000L);
+                lastRefillNanos = now;
+            }
+            if (tokens >= SCALE) {
+                tokens -= SCALE;
+                return true;
+            }
+            return false;
+        }
+    }
+}
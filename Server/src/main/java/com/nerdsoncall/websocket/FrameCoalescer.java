@@ -0,0 +1,279 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-room, per-sender coalescing window for high-frequency whiteboard frames.
+ *
+ * The first frame after a quiet period is relayed immediately. Frames that arrive while the
+ * window is open are held back and collapsed into a single frame when it closes:
+ * excalidraw_update keeps the latest scene (or merges element lists by id), drawing_event
+ * keeps the latest "draw" point. Stroke boundaries (start/end/clear) are never coalesced;
+ * they flush whatever is pending first so ordering is preserved.
+ */
+@Slf4j
+public class FrameCoalescer {
+
+    /**
+     * How several excalidraw_update frames in one window are combined
+     */
+    public enum SceneMode {
+        /** Each update carries the full scene, so the latest one wins */
+        LATEST,
+        /** Updates carry element lists; merge them by element id, newest version wins */
+        MERGE_ELEMENTS
+    }
+
+    /**
+     * Receives the frames that survive coalescing
+     */
+    @FunctionalInterface
+    public interface Relay {
+        void relay(String roomId, TextMessage frame, String type, WebSocketSession sender);
+    }
+
+    private static final String DRAWING_EVENT = "drawing_event";
+    private static final String EXCALIDRAW_UPDATE = "excalidraw_update";
+
+    private final long windowMillis;
+    private final Set<String> coalescedTypes;
+    private final SceneMode sceneMode;
+    private final ScheduledExecutorService scheduler;
+
+    // Room id -> coalescing state of that room
+    private final Map<String, RoomWindows> rooms = new ConcurrentHashMap<>();
+
+    public FrameCoalescer(long windowMillis, Set<String> coalescedTypes, SceneMode sceneMode) {
+        this.windowMillis = windowMillis;
+        this.coalescedTypes = Set.copyOf(coalescedTypes);
+        this.sceneMode = sceneMode;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("WebSocket frame coalescing configured: window={}ms, types={}, sceneMode={}",
+            windowMillis, coalescedTypes, sceneMode);
+    }
+
+    /**
+     * Relay a frame now, or hold it in the sender's window to be merged with the next ones
+     */
+    public void submit(String roomId, WebSocketSession sender, MessageEnvelope message, Relay relay) {
+        String type = message.getType();
+        RoomWindows room = rooms.computeIfAbsent(roomId, k -> new RoomWindows());
+        room.framesIn.increment();
+
+        if (windowMillis <= 0 || !coalescedTypes.contains(type)) {
+            room.framesOut.increment();
+            relay.relay(roomId, message.getFrame(), type, sender);
+            return;
+        }
+
+        SenderWindow window = room.windows.computeIfAbsent(sender.getId() + "|" + type,
+            k -> new SenderWindow(roomId, sender, type, relay));
+        window.submit(room, message);
+    }
+
+    /**
+     * Forget a room once it has no subscribers. Pending frames are discarded.
+     */
+    public void removeRoom(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    /**
+     * Flush and forget the windows of a sender that disconnected
+     */
+    public void releaseSender(String roomId, WebSocketSession sender) {
+        RoomWindows room = rooms.get(roomId);
+        if (room != null) {
+            room.windows.entrySet().removeIf(entry -> {
+                if (entry.getValue().sender.getId().equals(sender.getId())) {
+                    entry.getValue().flush(room);
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Frames in vs. frames out per room, for tuning the window
+     */
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> roomStats = new HashMap<>();
+        rooms.forEach((roomId, room) -> {
+            long in = room.framesIn.sum();
+            long out = room.framesOut.sum();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("framesIn", in);
+            stats.put("framesOut", out);
+            stats.put("coalesced", in - out);
+            stats.put("reductionRatio", out > 0 ? (double) in / out : 0.0);
+            roomStats.put(roomId, stats);
+        });
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("windowMs", windowMillis);
+        snapshot.put("sceneMode", sceneMode);
+        snapshot.put("rooms", roomStats);
+        return snapshot;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static class RoomWindows {
+        private final Map<String, SenderWindow> windows = new ConcurrentHashMap<>();
+        private final LongAdder framesIn = new LongAdder();
+        private final LongAdder framesOut = new LongAdder();
+    }
+
+    private class SenderWindow {
+        private final String roomId;
+        private final WebSocketSession sender;
+        private final String type;
+        private final Relay relay;
+
+        // Guarded by "this"
+        private final List<MessageEnvelope> pending = new ArrayList<>();
+        private long lastFlushAt;
+        private boolean flushScheduled;
+
+        private SenderWindow(String roomId, WebSocketSession sender, String type, Relay relay) {
+            this.roomId = roomId;
+            this.sender = sender;
+            this.type = type;
+            this.relay = relay;
+        }
+
+        private synchronized void submit(RoomWindows room, MessageEnvelope message) {
+            long now = System.currentTimeMillis();
+
+            if (DRAWING_EVENT.equals(type) && !"draw".equals(message.getDataType())) {
+                // Stroke boundary: deliver what is pending, then the boundary itself, in order
+                flush(room);
+                emit(room, message.getFrame());
+                return;
+            }
+
+            if (pending.isEmpty() && now - lastFlushAt >= windowMillis) {
+                // Quiet period: no reason to delay this frame
+                emit(room, message.getFrame());
+                lastFlushAt = now;
+                return;
+            }
+
+            if (DRAWING_EVENT.equals(type) || sceneMode == SceneMode.LATEST) {
+                pending.clear();
+            }
+            pending.add(message);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                long delay = Math.max(0, lastFlushAt + windowMillis - now);
+                try {
+                    scheduler.schedule(() -> flush(room), delay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flushScheduled = false;
+                    flush(room);
+                }
+            }
+        }
+
+        private synchronized void flush(RoomWindows room) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            TextMessage frame = pending.size() == 1 ? pending.get(0).getFrame() : mergeScenes(pending);
+            pending.clear();
+            emit(room, frame);
+            lastFlushAt = System.currentTimeMillis();
+        }
+
+        private void emit(RoomWindows room, TextMessage frame) {
+            room.framesOut.increment();
+            try {
+                relay.relay(roomId, frame, type, sender);
+            } catch (Exception e) {
+                log.error("Error relaying coalesced {} frame in room {}", type, roomId, e);
+            }
+        }
+    }
+
+    /**
+     * Merge the element lists of several excalidraw_update frames by element id. The envelope
+     * of the newest frame is kept. Falls back to the newest frame if any of them is not an
+     * element list.
+     */
+    private TextMessage mergeScenes(List<MessageEnvelope> frames) {
+        MessageEnvelope newest = frames.get(frames.size() - 1);
+        if (!EXCALIDRAW_UPDATE.equals(newest.getType())) {
+            return newest.getFrame();
+        }
+
+        try {
+            Map<String, JsonNode> elements = new LinkedHashMap<>();
+            int anonymous = 0;
+
+            for (MessageEnvelope frame : frames) {
+                JsonNode list = frame.tree().path("data").path("elements");
+                if (!list.isArray()) {
+                    return newest.getFrame();
+                }
+                for (JsonNode element : list) {
+                    String id = element.path("id").asText(null);
+                    if (id == null) {
+                        elements.put("#" + anonymous++, element);
+                        continue;
+                    }
+                    JsonNode existing = elements.get(id);
+                    if (existing == null || !hasNewerVersion(existing, element)) {
+                        elements.put(id, element);
+                    }
+                }
+            }
+
+            ObjectNode merged = ((ObjectNode) newest.tree()).deepCopy();
+            ArrayNode mergedElements = ((ObjectNode) merged.get("data")).putArray("elements");
+            mergedElements.addAll(elements.values());
+            return new TextMessage(WebSocketJson.write(merged));
+
+        } catch (IOException | ClassCastException e) {
+            log.debug("Could not merge excalidraw elements, relaying latest scene: {}", e.getMessage());
+            return newest.getFrame();
+        }
+    }
+
+    private static boolean hasNewerVersion(JsonNode existing, JsonNode candidate) {
+        JsonNode existingVersion = existing.get("version");
+        JsonNode candidateVersion = candidate.get("version");
+        return existingVersion != null && candidateVersion != null
+            && existingVersion.isNumber() && candidateVersion.isNumber()
+            && existingVersion.asLong() > candidateVersion.asLong();
+    }
+}
@@ -0,0 +1,227 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control for WebSocket upgrades, applied before the handshake so a rejected client
+ * never gets a socket, buffers or handler state.
+ *
+ * The query string is parsed and validated once here and the parameters handed to the
+ * handlers as a session attribute. An upgrade is refused with 400 if userId is missing or
+ * malformed, with 503 when the node already holds its maximum number of connections, and
+ * with 429 when the user already holds theirs. Both refusals carry a jittered Retry-After so
+ * rejected clients don't come back in lockstep.
+ *
+ * A slot is held from admission until the connection closes; endpoints must be wrapped with
+ * {@link #releasing(WebSocketHandler)} so that closing gives it back.
+ */
+@Slf4j
+public class HandshakeAdmission implements HandshakeInterceptor {
+
+    /**
+     * Session attribute holding the parsed query parameters, a Map of String to String
+     */
+    public static final String QUERY_PARAMS_ATTRIBUTE = "nerdsoncall.queryParams";
+
+    private static final String TICKET_ATTRIBUTE = "nerdsoncall.admission";
+    private static final Pattern USER_ID = Pattern.compile("[A-Za-z0-9._@-]{1,64}");
+    private static final int MAX_QUERY_LENGTH = 2048;
+
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final Map<String, AtomicInteger> openPerUser = new ConcurrentHashMap<>();
+
+    // The ticket admitted by beforeHandshake, until afterHandshake on the same request thread
+    private final ThreadLocal<Ticket> pending = new ThreadLocal<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedInvalid = new LongAdder();
+    private final LongAdder rejectedNodeFull = new LongAdder();
+    private final LongAdder rejectedUserLimit = new LongAdder();
+
+    public HandshakeAdmission(int maxConnections, int maxConnectionsPerUser, int retryAfterSeconds) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        log.info("WebSocket admission configured: maxConnections={}, maxConnectionsPerUser={}, retryAfter={}s",
+            maxConnections, maxConnectionsPerUser, retryAfterSeconds);
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Map<String, String> params = parseQuery(request.getURI().getRawQuery());
+        String userId = params != null ? params.get("userId") : null;
+        if (userId == null || !USER_ID.matcher(userId).matches()) {
+            rejectedInvalid.increment();
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+
+        if (open.incrementAndGet() > maxConnections) {
+            open.decrementAndGet();
+            rejectedNodeFull.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE);
+            log.warn("WebSocket upgrade refused, node at capacity ({} connections)", maxConnections);
+            return false;
+        }
+        // Counted inside compute, so a concurrent last release can't drop the entry under us
+        AtomicInteger userConnections = openPerUser.compute(userId, (k, count) -> {
+            AtomicInteger counter = count != null ? count : new AtomicInteger();
+            counter.incrementAndGet();
+            return counter;
+        });
+        if (userConnections.get() > maxConnectionsPerUser) {
+            release(userId);
+            rejectedUserLimit.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS);
+            log.warn("WebSocket upgrade refused, user {} already has {} connections", userId, maxConnectionsPerUser);
+            return false;
+        }
+
+        Ticket ticket = new Ticket(userId);
+        attributes.put(QUERY_PARAMS_ATTRIBUTE, Collections.unmodifiableMap(params));
+        attributes.put(TICKET_ATTRIBUTE, ticket);
+        pending.set(ticket);
+        admitted.increment();
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        Ticket ticket = pending.get();
+        pending.remove();
+        // Also called when the handshake was refused further on, without an exception
+        if (ticket != null && (exception != null || !upgraded(response))) {
+            ticket.release();
+        }
+    }
+
+    /**
+     * Wrap an endpoint so closing a connection frees its admission slot
+     */
+    public WebSocketHandler releasing(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    if (session.getAttributes().get(TICKET_ATTRIBUTE) instanceof Ticket ticket) {
+                        ticket.release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * A query parameter of a connection: from the parameters parsed at admission, or, for
+     * sessions that did not go through it (multiplexed channels), from the URI
+     */
+    @SuppressWarnings("unchecked")
+    public static String queryParameter(WebSocketSession session, String name) {
+        Object params = session.getAttributes().get(QUERY_PARAMS_ATTRIBUTE);
+        if (params instanceof Map) {
+            return ((Map<String, String>) params).get(name);
+        }
+        return session.getUri() != null
+                ? WebSocketErrorHandler.extractParameterFromQuery(session.getUri().getQuery(), name)
+                : null;
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("openConnections", open.get());
+        snapshot.put("maxConnections", maxConnections);
+        snapshot.put("maxConnectionsPerUser", maxConnectionsPerUser);
+        snapshot.put("usersConnected", openPerUser.size());
+        snapshot.put("admitted", admitted.sum());
+        snapshot.put("rejectedInvalid", rejectedInvalid.sum());
+        snapshot.put("rejectedNodeFull", rejectedNodeFull.sum());
+        snapshot.put("rejectedUserLimit", rejectedUserLimit.sum());
+        return snapshot;
+    }
+
+    /**
+     * Raw (undecoded) query parameters, first value wins; null if the query is too long
+     */
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String value = pair.substring(eq + 1).trim();
+            if (!value.isEmpty()) {
+                params.putIfAbsent(pair.substring(0, eq), value);
+            }
+        }
+        return params;
+    }
+
+    private void reject(ServerHttpResponse response, HttpStatus status) {
+        response.setStatusCode(status);
+        int retryAfter = retryAfterSeconds + ThreadLocalRandom.current().nextInt(retryAfterSeconds + 1);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfter));
+    }
+
+    private static boolean upgraded(ServerHttpResponse response) {
+        if (response instanceof ServletServerHttpResponse servletResponse) {
+            return servletResponse.getServletResponse().getStatus() == HttpStatus.SWITCHING_PROTOCOLS.value();
+        }
+        return true;
+    }
+
+    private void release(String userId) {
+        open.decrementAndGet();
+        openPerUser.computeIfPresent(userId, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    private final class Ticket {
+        private final String userId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(String userId) {
+            this.userId = userId;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                HandshakeAdmission.this.release(userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Ping/pong liveness check for every WebSocket endpoint.
+ *
+ * Connections sit in a hashed timing wheel: one scheduler thread advances one slot per tick
+ * and visits only the connections in that slot, so each connection is looked at once per
+ * heartbeat interval without a scheduled task per socket. On a visit a connection that has
+ * not been heard from (any message or pong) within the timeout is reaped: the socket is
+ * closed and the owning handler's close callback runs right away, instead of whenever the
+ * TCP stack notices the peer is gone. Live connections get a ping and go back into the slot.
+ *
+ * The wheel thread only decides: pings, closes and close callbacks run on a separate sender
+ * pool, so a socket whose write blocks holds up that one connection and never the checks of
+ * the others. A connection has at most one ping in flight, which bounds the pool by the
+ * number of stuck sockets, and a ping still unsent after the timeout reaps it like silence.
+ */
+@Slf4j
+public class HeartbeatMonitor {
+
+    /**
+     * How a ping reaches a connection. Handlers that funnel writes through an outbound queue
+     * must ping through it too, a socket can't be written from two threads at once.
+     */
+    @FunctionalInterface
+    public interface PingSender {
+        PingSender DIRECT = session -> session.sendMessage(new PingMessage());
+
+        void sendPing(WebSocketSession session) throws IOException;
+    }
+
+    private static final CloseStatus REAPED = CloseStatus.SESSION_NOT_RELIABLE.withReason("Heartbeat timeout");
+
+    private final long timeoutMillis;
+    private final int slots;
+    private final List<Queue<Connection>> wheel;
+    private final LongSupplier clock;
+    private final Executor sender;
+    private final ScheduledExecutorService scheduler;
+
+    // WebSocketSession id -> registered connection
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+    // Endpoint name -> counters
+    private final Map<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+
+    // Next slot to visit; only advanced by the scheduler thread
+    private volatile int cursor;
+
+    public HeartbeatMonitor(long intervalMillis, long timeoutMillis, long tickMillis) {
+        this(intervalMillis, timeoutMillis, tickMillis, System::currentTimeMillis, Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ws-heartbeat-send");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param clock milliseconds, for lastSeen and the timeout
+     * @param sender runs pings, closes and close callbacks
+     * @param ticking whether a scheduler advances the wheel; if not, only calls to tick do
+     */
+    HeartbeatMonitor(long intervalMillis, long timeoutMillis, long tickMillis, LongSupplier clock, Executor sender,
+                     boolean ticking) {
+        this.timeoutMillis = timeoutMillis;
+        this.slots = (int) Math.max(1, intervalMillis / tickMillis);
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        this.clock = clock;
+        this.sender = sender;
+        if (ticking) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ws-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleAtFixedRate(this::tickSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+
+        log.info("WebSocket heartbeat configured: interval={}ms, timeout={}ms, tick={}ms ({} slots)",
+            intervalMillis, timeoutMillis, tickMillis, slots);
+    }
+
+    public void register(WebSocketSession session, String endpoint, WebSocketHandler handler) {
+        register(session, endpoint, handler, PingSender.DIRECT);
+    }
+
+    /**
+     * Start watching an accepted connection. Its first check is one interval from now.
+     * Channels of a multiplexed connection are not watched on their own: the connection is.
+     *
+     * A reaped connection's handler gets afterConnectionClosed from the monitor first and
+     * again from the container once the socket is really gone, so the callback must find
+     * nothing left to do the second time (every handler keys its cleanup by a remove).
+     */
+    public void register(WebSocketSession session, String endpoint, WebSocketHandler handler, PingSender pingSender) {
+        if (session instanceof ChannelSession) {
+            // A multiplexed channel is watched through its physical connection
+            return;
+        }
+        Connection connection = new Connection(session, handler, pingSender, statsFor(endpoint), clock.getAsLong());
+        if (connections.putIfAbsent(session.getId(), connection) == null) {
+            wheel.get(Math.floorMod(cursor - 1, slots)).add(connection);
+        }
+    }
+
+    /**
+     * Stop watching a connection. Its wheel entry is dropped lazily on the next visit.
+     */
+    public void unregister(WebSocketSession session) {
+        Connection connection = connections.remove(session.getId());
+        if (connection != null) {
+            connection.removed = true;
+        }
+    }
+
+    /**
+     * Record that a connection is alive (any inbound message or pong)
+     */
+    public void touch(WebSocketSession session) {
+        Connection connection = connections.get(session.getId());
+        if (connection != null) {
+            connection.lastSeen = clock.getAsLong();
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> endpoints = new HashMap<>();
+        endpointStats.forEach((endpoint, stats) -> endpoints.put(endpoint, stats.snapshot()));
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("watchedConnections", connections.size());
+        snapshot.put("timeoutMs", timeoutMillis);
+        snapshot.put("endpoints", endpoints);
+        return snapshot;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (sender instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private EndpointStats statsFor(String endpoint) {
+        return endpointStats.computeIfAbsent(endpoint, k -> new EndpointStats());
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (Exception e) {
+            log.error("Error in WebSocket heartbeat tick", e);
+        }
+    }
+
+    /**
+     * Visit the next slot of the wheel
+     */
+    void tick() {
+        int slot = cursor;
+        cursor = (slot + 1) % slots;
+
+        // Drain first: live connections go back into the same slot for the next round
+        Queue<Connection> bucket = wheel.get(slot);
+        List<Connection> due = new ArrayList<>(bucket.size());
+        for (Connection connection = bucket.poll(); connection != null; connection = bucket.poll()) {
+            due.add(connection);
+        }
+
+        long now = clock.getAsLong();
+        for (Connection connection : due) {
+            if (connection.removed) {
+                continue;
+            }
+            long pingSentAt = connection.pingSentAt;
+            if (pingSentAt != 0 && now - pingSentAt > timeoutMillis) {
+                // The socket took no write for a whole timeout; its peer has stopped reading
+                connection.stats.stalledPings.increment();
+                reap(connection, "ping unsent for " + (now - pingSentAt) + " ms");
+                continue;
+            }
+            if (!connection.session.isOpen() || now - connection.lastSeen > timeoutMillis) {
+                reap(connection, "silent for " + (now - connection.lastSeen) + " ms");
+                continue;
+            }
+            if (pingSentAt == 0) {
+                ping(connection, now);
+            }
+            bucket.add(connection);
+        }
+    }
+
+    private void ping(Connection connection, long now) {
+        connection.pingSentAt = now;
+        try {
+            sender.execute(() -> {
+                try {
+                    connection.pingSender.sendPing(connection.session);
+                    connection.stats.pings.increment();
+                } catch (Exception e) {
+                    // A failed ping is not fatal by itself; the timeout decides
+                    connection.stats.pingFailures.increment();
+                    log.debug("Ping to WebSocket session {} failed: {}", connection.session.getId(), e.getMessage());
+                } finally {
+                    connection.pingSentAt = 0;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connection.pingSentAt = 0;
+        }
+    }
+
+    private void reap(Connection connection, String reason) {
+        if (connections.remove(connection.session.getId(), connection)) {
+            connection.stats.reaped.increment();
+            log.info("Reaping WebSocket session {}: {}", connection.session.getId(), reason);
+
+            try {
+                sender.execute(() -> {
+                    WebSocketErrorHandler.closeSessionSafely(connection.session, CloseStatus.SESSION_NOT_RELIABLE,
+                        "Heartbeat timeout");
+                    try {
+                        // Clean up now; the container's own close callback later finds nothing left to do
+                        connection.handler.afterConnectionClosed(connection.session, REAPED);
+                    } catch (Exception e) {
+                        log.error("Error cleaning up reaped WebSocket session {}", connection.session.getId(), e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.debug("Heartbeat monitor shut down before WebSocket session {} was closed",
+                    connection.session.getId());
+            }
+        }
+    }
+
+    private static final class Connection {
+        private final WebSocketSession session;
+        private final WebSocketHandler handler;
+        private final PingSender pingSender;
+        private final EndpointStats stats;
+        private volatile long lastSeen;
+        // When the ping now waiting for the sender pool was handed to it, 0 if none is
+        private volatile long pingSentAt;
+        private volatile boolean removed;
+
+        private Connection(WebSocketSession session, WebSocketHandler handler, PingSender pingSender,
+                           EndpointStats stats, long now) {
+            this.session = session;
+            this.handler = handler;
+            this.pingSender = pingSender;
+            this.stats = stats;
+            this.lastSeen = now;
+        }
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder pings = new LongAdder();
+        private final LongAdder pingFailures = new LongAdder();
+        private final LongAdder reaped = new LongAdder();
+        private final LongAdder stalledPings = new LongAdder();
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("pings", pings.sum());
+            stats.put("pingFailures", pingFailures.sum());
+            stats.put("reaped", reaped.sum());
+            stats.put("stalledPings", stalledPings.sum());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bundles trickle ICE bursts into one frame per (from, to) pair, for recipients that opted in
+ * with capabilities={@value #CAPABILITY} on their /ws/webrtc connection.
+ *
+ * The first candidate after a quiet period is delivered immediately. Candidates that follow
+ * within the window are held and delivered together when it closes, or as soon as the batch
+ * is full, as one {@value #BATCH_TYPE} frame carrying the candidates in order. A window of a
+ * single candidate goes out as the original ice-candidate frame.
+ */
+@Slf4j
+public class IceCandidateBatcher {
+
+    public static final String CAPABILITY = "ice-batch";
+    public static final String BATCH_TYPE = "ice-candidates";
+
+    private static final String CAPABLE_ATTRIBUTE = "nerdsoncall.iceBatch";
+
+    /**
+     * Delivers a frame to the recipient of a window
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        void deliver(TextMessage frame, String type) throws IOException;
+    }
+
+    private final long windowMillis;
+    private final int maxCandidates;
+    private final ScheduledExecutorService scheduler;
+
+    // Recipient userId -> sender userId -> window, so a leaving recipient drops all of theirs at once
+    private final Map<String, Map<String, PairWindow>> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder candidatesIn = new LongAdder();
+    private final LongAdder framesOut = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public IceCandidateBatcher(long windowMillis, int maxCandidates) {
+        this.windowMillis = windowMillis;
+        this.maxCandidates = maxCandidates;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-ice-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("ICE candidate batching configured: window={}ms, maxCandidates={}", windowMillis, maxCandidates);
+    }
+
+    /**
+     * Whether a connection asked for batched candidates; read once and kept on the session
+     */
+    public boolean accepts(WebSocketSession session) {
+        if (windowMillis <= 0 || session == null) {
+            return false;
+        }
+        Object capable = session.getAttributes().get(CAPABLE_ATTRIBUTE);
+        if (capable == null) {
+            String capabilities = HandshakeAdmission.queryParameter(session, "capabilities");
+            capable = capabilities != null && Arrays.stream(capabilities.split(","))
+                    .anyMatch(c -> CAPABILITY.equals(c.trim()));
+            session.getAttributes().put(CAPABLE_ATTRIBUTE, capable);
+        }
+        return (Boolean) capable;
+    }
+
+    /**
+     * Deliver a candidate now, or hold it in the pair's window
+     */
+    public void submit(String from, String to, MessageEnvelope message, Delivery delivery) {
+        candidatesIn.increment();
+        windows.computeIfAbsent(to, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(from != null ? from : "", k -> new PairWindow(from, to))
+                .submit(message, delivery);
+    }
+
+    /**
+     * Deliver whatever is held for a pair, before a frame that must not overtake it
+     * (a renegotiation offer or answer)
+     */
+    public void flush(String from, String to) {
+        Map<String, PairWindow> senders = windows.get(to);
+        PairWindow window = senders != null ? senders.get(from != null ? from : "") : null;
+        if (window != null) {
+            window.flush();
+        }
+    }
+
+    /**
+     * Forget the windows of a recipient that disconnected; held candidates are dropped
+     */
+    public void release(String userId) {
+        windows.remove(userId);
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        long in = candidatesIn.sum();
+        long out = framesOut.sum();
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("windowMs", windowMillis);
+        snapshot.put("maxCandidates", maxCandidates);
+        snapshot.put("recipients", windows.size());
+        snapshot.put("candidatesIn", in);
+        snapshot.put("framesOut", out);
+        snapshot.put("batches", batches.sum());
+        snapshot.put("reductionRatio", out > 0 ? (double) in / out : 0.0);
+        return snapshot;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private class PairWindow {
+        private final String from;
+        private final String to;
+
+        // Guarded by "this"
+        private final List<MessageEnvelope> pending = new ArrayList<>();
+        private Delivery delivery;
+        private long lastFlushAt;
+        private boolean flushScheduled;
+
+        private PairWindow(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private void submit(MessageEnvelope message, Delivery delivery) {
+            Outgoing outgoing = hold(message, delivery);
+            if (outgoing != null) {
+                outgoing.emit();
+            }
+        }
+
+        private void flush() {
+            Outgoing outgoing = take();
+            if (outgoing != null) {
+                outgoing.emit();
+            }
+        }
+
+        // Decides under the lock what goes out now; the send itself happens after releasing it,
+        // so a slow recipient never holds up the sender's next candidate
+        private synchronized Outgoing hold(MessageEnvelope message, Delivery delivery) {
+            long now = System.currentTimeMillis();
+            this.delivery = delivery;
+
+            if (pending.isEmpty() && now - lastFlushAt >= windowMillis) {
+                // Quiet period: the first candidate of a burst is never delayed
+                lastFlushAt = now;
+                return new Outgoing(message.getFrame(), "ice-candidate", delivery);
+            }
+
+            pending.add(message);
+            if (pending.size() >= maxCandidates) {
+                return take();
+            }
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                long delay = Math.max(0, lastFlushAt + windowMillis - now);
+                try {
+                    scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    return take();
+                }
+            }
+            return null;
+        }
+
+        // Removes the held candidates as one frame, or returns null if there are none
+        private synchronized Outgoing take() {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return null;
+            }
+
+            Outgoing outgoing;
+            if (pending.size() == 1) {
+                outgoing = new Outgoing(pending.get(0).getFrame(), "ice-candidate", delivery);
+            } else {
+                outgoing = new Outgoing(batch(pending), BATCH_TYPE, delivery);
+                batches.increment();
+            }
+            pending.clear();
+            lastFlushAt = System.currentTimeMillis();
+            return outgoing;
+        }
+
+        private TextMessage batch(List<MessageEnvelope> candidates) {
+            MessageEnvelope first = candidates.get(0);
+            ObjectNode frame = WebSocketJson.createObjectNode();
+            frame.put("type", BATCH_TYPE);
+            frame.put("sessionId", first.getSessionId());
+            frame.put("from", from);
+            frame.put("to", to);
+            ArrayNode list = frame.putArray("candidates");
+            for (MessageEnvelope candidate : candidates) {
+                try {
+                    JsonNode data = candidate.tree().get("data");
+                    if (data != null) {
+                        list.add(data);
+                    }
+                } catch (IOException e) {
+                    log.warn("Dropping unreadable ICE candidate from {} to {}", from, to, e);
+                }
+            }
+            return new TextMessage(WebSocketJson.write(frame));
+        }
+
+    }
+
+    private class Outgoing {
+        private final TextMessage frame;
+        private final String type;
+        private final Delivery delivery;
+
+        private Outgoing(TextMessage frame, String type, Delivery delivery) {
+            this.frame = frame;
+            this.type = type;
+            this.delivery = delivery;
+        }
+
+        private void emit() {
+            framesOut.increment();
+            try {
+                delivery.deliver(frame, type);
+            } catch (Exception e) {
+                log.error("Error delivering {}", type, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.nerdsoncall.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is one LongAdder increment, so it can sit on
+ * the send path; percentiles are read from the buckets and are accurate to a bucket.
+ */
+public class LatencyHistogram {
+
+    // Default upper bounds in microseconds, for socket writes; the last bucket catches everything slower
+    private static final long[] SEND_BOUNDS_MICROS = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000
+    };
+
+    private final long[] boundsMicros;
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(SEND_BOUNDS_MICROS);
+    }
+
+    /**
+     * @param boundsMicros ascending bucket upper bounds in microseconds
+     */
+    public LatencyHistogram(long... boundsMicros) {
+        this.boundsMicros = boundsMicros.clone();
+        this.buckets = new LongAdder[boundsMicros.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = nanos / 1_000;
+        int i = 0;
+        while (i < boundsMicros.length && micros > boundsMicros[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+
+        Map<String, Long> bucketCounts = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            bucketCounts.put(i < boundsMicros.length ? "le_" + formatMillis(boundsMicros[i]) + "ms" : "inf",
+                    counts[i]);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", count);
+        snapshot.put("avgMs", count > 0 ? totalNanos.sum() / count / 1_000_000.0 : 0.0);
+        snapshot.put("p50Ms", percentileMillis(counts, count, 0.50));
+        snapshot.put("p90Ms", percentileMillis(counts, count, 0.90));
+        snapshot.put("p99Ms", percentileMillis(counts, count, 0.99));
+        snapshot.put("maxMs", maxNanos.get() / 1_000_000.0);
+        snapshot.put("buckets", bucketCounts);
+        return snapshot;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile; the max for the overflow bucket
+     */
+    private double percentileMillis(long[] counts, long count, double percentile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < boundsMicros.length ? boundsMicros[i] / 1_000.0 : maxNanos.get() / 1_000_000.0;
+            }
+        }
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    private static String formatMillis(long micros) {
+        return micros % 1_000 == 0 ? Long.toString(micros / 1_000) : Double.toString(micros / 1_000.0);
+    }
+}
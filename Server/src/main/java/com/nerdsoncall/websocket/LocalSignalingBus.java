@@ -0,0 +1,115 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SignalingBus. With a single node it is the default deployment: every lookup
+ * resolves to the local node and nothing is ever published. With several handlers on one bus
+ * it simulates a cluster inside one JVM; messages are delivered synchronously on the
+ * publishing thread.
+ */
+@Slf4j
+public class LocalSignalingBus implements SignalingBus {
+
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+
+    // userId -> node
+    private final Map<String, String> presence = new ConcurrentHashMap<>();
+
+    // room id -> (userId -> node)
+    private final Map<String, Map<String, String>> rooms = new ConcurrentHashMap<>();
+
+    // room id -> next sequence number
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String nodeId, Listener listener) {
+        listeners.put(nodeId, listener);
+    }
+
+    @Override
+    public void unregister(String nodeId) {
+        listeners.remove(nodeId);
+        presence.values().removeIf(nodeId::equals);
+        rooms.replaceAll((roomId, members) -> {
+            members.values().removeIf(nodeId::equals);
+            return members;
+        });
+        rooms.values().removeIf(Map::isEmpty);
+        sequences.keySet().retainAll(rooms.keySet());
+    }
+
+    @Override
+    public String registerPresence(String userId, String nodeId) {
+        return presence.put(userId, nodeId);
+    }
+
+    @Override
+    public void unregisterPresence(String userId, String nodeId) {
+        presence.remove(userId, nodeId);
+    }
+
+    @Override
+    public String locate(String userId) {
+        return presence.get(userId);
+    }
+
+    @Override
+    public void joinRoom(String roomId, String userId, String nodeId) {
+        rooms.compute(roomId, (k, members) -> {
+            Map<String, String> map = members != null ? members : new ConcurrentHashMap<>();
+            map.put(userId, nodeId);
+            return map;
+        });
+    }
+
+    @Override
+    public void leaveRoom(String roomId, String userId, String nodeId) {
+        Map<String, String> remaining = rooms.computeIfPresent(roomId, (k, members) -> {
+            members.remove(userId, nodeId);
+            return members.isEmpty() ? null : members;
+        });
+        if (remaining == null) {
+            sequences.remove(roomId);
+        }
+    }
+
+    @Override
+    public Map<String, String> roomMembers(String roomId) {
+        Map<String, String> members = rooms.get(roomId);
+        return members != null ? Map.copyOf(members) : Map.of();
+    }
+
+    @Override
+    public Set<String> removeRoom(String roomId) {
+        Map<String, String> members = rooms.remove(roomId);
+        sequences.remove(roomId);
+        return members != null ? new HashSet<>(members.values()) : Set.of();
+    }
+
+    @Override
+    public long nextSequence(String roomId) {
+        return sequences.computeIfAbsent(roomId, k -> new AtomicLong(RoomReplayBuffer.initialSequence()))
+                .getAndIncrement();
+    }
+
+    @Override
+    public void publish(String nodeId, BusMessage message) {
+        Listener listener = listeners.get(nodeId);
+        if (listener == null) {
+            log.debug("No listener for node {}, dropping {} message", nodeId, message.getKind());
+            return;
+        }
+        try {
+            listener.onMessage(message);
+        } catch (Exception e) {
+            log.error("Error delivering {} message to node {}", message.getKind(), nodeId, e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+
+/**
+ * Routing fields of an incoming WebSocket frame, read with a streaming parser.
+ *
+ * Only the top-level scalar fields used for dispatch are materialized; nested values such as
+ * Excalidraw scenes or screen-share blobs are skipped without building a tree. Frames that are
+ * relayed unchanged are forwarded as the original TextMessage, so they are never re-serialized.
+ * Handlers that need the full content can still ask for {@link #tree()}, which parses lazily.
+ */
+public final class MessageEnvelope {
+
+    private final TextMessage frame;
+
+    private String type;
+    private String sessionId;
+    private String userId;
+    private String to;
+    private String from;
+    private String userName;
+    private String dataType;
+    private boolean hasData;
+    private boolean hasMessage;
+
+    private JsonNode tree;
+
+    private MessageEnvelope(TextMessage frame) {
+        this.frame = frame;
+    }
+
+    public static MessageEnvelope parse(TextMessage frame) throws IOException {
+        MessageEnvelope envelope = new MessageEnvelope(frame);
+
+        try (JsonParser parser = WebSocketJson.createParser(frame.getPayload())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "WebSocket message must be a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                switch (field) {
+                    case "type":
+                        envelope.type = scalar(parser, value);
+                        break;
+                    case "sessionId":
+                        envelope.sessionId = scalar(parser, value);
+                        break;
+                    case "userId":
+                        envelope.userId = scalar(parser, value);
+                        break;
+                    case "to":
+                        envelope.to = scalar(parser, value);
+                        break;
+                    case "from":
+                        envelope.from = scalar(parser, value);
+                        break;
+                    case "userName":
+                        envelope.userName = scalar(parser, value);
+                        break;
+                    case "data":
+                        envelope.hasData = true;
+                        if (value == JsonToken.START_OBJECT) {
+                            envelope.dataType = readDataType(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "message":
+                        envelope.hasMessage = true;
+                        parser.skipChildren();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        return envelope;
+    }
+
+    /**
+     * Walk the top level of the data object for its "type" (drawing events use it to mark
+     * stroke start/end), skipping everything else. Leaves the parser on the closing brace.
+     */
+    private static String readDataType(JsonParser parser) throws IOException {
+        String type = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("type".equals(field)) {
+                type = scalar(parser, value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Text of a scalar value, mirroring JsonNode.asText(): containers become "" and null becomes "null"
+     */
+    private static String scalar(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Full JSON tree of the frame, parsed on first use
+     */
+    public JsonNode tree() throws IOException {
+        if (tree == null) {
+            tree = WebSocketJson.readTree(frame.getPayload());
+        }
+        return tree;
+    }
+
+    /**
+     * The original frame, for relaying the message unchanged
+     */
+    public TextMessage getFrame() {
+        return frame;
+    }
+
+    public String getPayload() {
+        return frame.getPayload();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * The "type" field inside the data object, if data is an object
+     */
+    public String getDataType() {
+        return dataType;
+    }
+
+    public boolean hasType() {
+        return type != null;
+    }
+
+    public boolean hasSessionId() {
+        return sessionId != null;
+    }
+
+    public boolean hasUserId() {
+        return userId != null;
+    }
+
+    public boolean hasTo() {
+        return to != null;
+    }
+
+    public boolean hasFrom() {
+        return from != null;
+    }
+
+    public boolean hasData() {
+        return hasData;
+    }
+
+    public boolean hasMessage() {
+        return hasMessage;
+    }
+}
@@ -0,0 +1,30 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Per-endpoint maximum message sizes. The limits are applied to each session as it opens, so
+ * the container sizes its receive buffers from them and closes the connection with 1009
+ * (message too big) as soon as a larger message starts arriving, instead of buffering it.
+ * Payloads above the limit have to be sent as chunks, see ChunkAssembler.
+ */
+public class MessageSizeLimitHandler extends WebSocketHandlerDecorator {
+
+    private final int textMessageSizeLimit;
+    private final int binaryMessageSizeLimit;
+
+    public MessageSizeLimitHandler(WebSocketHandler delegate, int textMessageSizeLimit, int binaryMessageSizeLimit) {
+        super(delegate);
+        this.textMessageSizeLimit = textMessageSizeLimit;
+        this.binaryMessageSizeLimit = binaryMessageSizeLimit;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        session.setTextMessageSizeLimit(textMessageSizeLimit);
+        session.setBinaryMessageSizeLimit(binaryMessageSizeLimit);
+        super.afterConnectionEstablished(session);
+    }
+}
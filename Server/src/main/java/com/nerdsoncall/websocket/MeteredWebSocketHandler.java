@@ -0,0 +1,82 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records an endpoint's traffic in WebSocketTelemetry. The wrapped handler is given a
+ * metering decorator of each session in every callback, so whatever path it sends on (inline,
+ * an outbox thread, a heartbeat ping) is counted and its socket write timed.
+ */
+public class MeteredWebSocketHandler extends WebSocketHandlerDecorator {
+
+    private final WebSocketTelemetry.Endpoint telemetry;
+    private final Map<String, MeteredSession> sessions = new ConcurrentHashMap<>();
+
+    public MeteredWebSocketHandler(WebSocketHandler delegate, WebSocketTelemetry.Endpoint telemetry) {
+        super(delegate);
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        MeteredSession metered = new MeteredSession(session, telemetry);
+        sessions.put(session.getId(), metered);
+        telemetry.connectionOpened();
+        super.afterConnectionEstablished(metered);
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        telemetry.recordInbound(message);
+        super.handleMessage(metered(session), message);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        super.handleTransportError(metered(session), exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        MeteredSession metered = sessions.remove(session.getId());
+        if (metered != null) {
+            telemetry.connectionClosed();
+        }
+        super.afterConnectionClosed(metered != null ? metered : session, closeStatus);
+    }
+
+    private WebSocketSession metered(WebSocketSession session) {
+        MeteredSession metered = sessions.get(session.getId());
+        return metered != null ? metered : session;
+    }
+
+    private static final class MeteredSession extends WebSocketSessionDecorator {
+        private final WebSocketTelemetry.Endpoint telemetry;
+
+        private MeteredSession(WebSocketSession session, WebSocketTelemetry.Endpoint telemetry) {
+            super(session);
+            this.telemetry = telemetry;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } catch (IOException | RuntimeException e) {
+                telemetry.recordSendFailure();
+                throw e;
+            }
+            telemetry.recordSent(message, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.nerdsoncall.websocket.WebSocketErrorHandler.*;
+
+/**
+ * Single WebSocket endpoint that carries every real-time feature over one connection.
+ *
+ * Each frame names its channel, and the channel's existing handler processes it exactly as it
+ * would on its own endpoint. Text frames carry a top-level "channel" field (put it first, the
+ * rest of the frame is not read to find it); binary frames start with one byte holding the
+ * channel's position in the list sent with multiplex_established. A channel opens with
+ * {"channel":"webrtc","type":"channel_open","params":{"sessionId":"..."}}, or implicitly with
+ * its first frame, and closes with channel_close. The userId of the connection applies to
+ * every channel. Frames without a channel are connection-level: multiplex_established and
+ * errors from the server.
+ */
+public class MultiplexHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiplexHandler.class);
+
+    private static final String CHANNEL_OPEN = "channel_open";
+    private static final String CHANNEL_CLOSE = "channel_close";
+
+    private final ConnectionRegistry connectionRegistry;
+    private final HeartbeatMonitor heartbeatMonitor;
+
+    // Channel name -> handler; a channel's id on binary frames is its position here
+    private final Map<String, WebSocketHandler> channelHandlers;
+    private final List<String> channelNames;
+
+    public MultiplexHandler(ConnectionRegistry connectionRegistry, HeartbeatMonitor heartbeatMonitor,
+                            Map<String, WebSocketHandler> channelHandlers) {
+        this.connectionRegistry = connectionRegistry;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.channelHandlers = channelHandlers;
+        this.channelNames = List.copyOf(channelHandlers.keySet());
+        if (channelNames.size() > 256) {
+            throw new IllegalArgumentException("At most 256 channels fit the binary channel id");
+        }
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        try {
+            String userId = HandshakeAdmission.queryParameter(session, "userId");
+            if (userId == null || userId.trim().isEmpty()) {
+                logger.error("Multiplexed connection rejected: No userId provided");
+                closeSessionSafely(session, CloseStatus.BAD_DATA, "No userId provided");
+                return;
+            }
+
+            MultiplexedConnection connection = new MultiplexedConnection(session, userId);
+            connectionRegistry.register(connection);
+            // One heartbeat for the socket; its channels live and die with it
+            heartbeatMonitor.register(session, "multiplex", this, s -> connection.send(new PingMessage()));
+            logger.info("Multiplexed connection established for user: {}", userId);
+
+            ObjectNode established = WebSocketJson.createObjectNode();
+            established.put("type", "multiplex_established");
+            established.put("userId", userId);
+            channelNames.forEach(established.putArray("channels")::add);
+            connection.send(new TextMessage(WebSocketJson.write(established)));
+        } catch (Exception e) {
+            logger.error("Error establishing multiplexed connection", e);
+            closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Server error during connection establishment");
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        heartbeatMonitor.touch(session);
+        MultiplexedConnection connection = connectionRegistry.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+
+        String channel = null;
+        String type = null;
+        try (JsonParser parser = WebSocketJson.createParser(message.getPayload())) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                // Stop as soon as both routing fields are known
+                while ((channel == null || type == null) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("channel".equals(field) && value.isScalarValue()) {
+                        channel = parser.getValueAsString();
+                    } else if ("type".equals(field) && value.isScalarValue()) {
+                        type = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Invalid multiplexed frame from session {}: {}", session.getId(), e.getMessage());
+            sendError(connection, "Invalid message format");
+            return;
+        }
+
+        if (channel == null) {
+            sendError(connection, "Missing channel");
+            return;
+        }
+
+        if (CHANNEL_OPEN.equals(type)) {
+            JsonNode params = WebSocketJson.readTree(message.getPayload()).path("params");
+            openChannel(connection, channel, params);
+        } else if (CHANNEL_CLOSE.equals(type)) {
+            ChannelSession channelSession = connection.getChannel(channel);
+            if (channelSession != null) {
+                channelSession.close(CloseStatus.NORMAL);
+            }
+        } else {
+            ChannelSession channelSession = channelFor(connection, channel);
+            if (channelSession != null) {
+                channelSession.getHandler().handleMessage(channelSession, message);
+            }
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        heartbeatMonitor.touch(session);
+        MultiplexedConnection connection = connectionRegistry.get(session.getId());
+        ByteBuffer payload = message.getPayload();
+        if (connection == null || !payload.hasRemaining()) {
+            return;
+        }
+
+        int channelId = payload.get(payload.position()) & 0xFF;
+        if (channelId >= channelNames.size()) {
+            sendError(connection, "Unknown channel id " + channelId);
+            return;
+        }
+
+        ChannelSession channelSession = channelFor(connection, channelNames.get(channelId));
+        if (channelSession != null) {
+            // The handler sees the frame without the channel byte
+            ByteBuffer frame = payload.duplicate();
+            frame.position(frame.position() + 1);
+            channelSession.getHandler().handleMessage(channelSession, new BinaryMessage(frame.slice()));
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeatMonitor.touch(session);
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return WireProtocol.SUBPROTOCOLS;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        logger.info("Multiplexed connection closed: {}", status);
+        heartbeatMonitor.unregister(session);
+
+        MultiplexedConnection connection = connectionRegistry.remove(session.getId());
+        if (connection != null) {
+            for (ChannelSession channel : new ArrayList<>(connection.getChannels())) {
+                channel.connectionClosed(status);
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.error("Multiplexed connection transport error", exception);
+        closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Transport error");
+    }
+
+    /**
+     * Physical connections and open channels
+     */
+    public Map<String, Object> getStatsSnapshot() {
+        return connectionRegistry.getStatsSnapshot();
+    }
+
+    private ChannelSession channelFor(MultiplexedConnection connection, String channel) throws IOException {
+        ChannelSession channelSession = connection.getChannel(channel);
+        return channelSession != null ? channelSession : openChannel(connection, channel, null);
+    }
+
+    private ChannelSession openChannel(MultiplexedConnection connection, String channel, JsonNode params)
+            throws IOException {
+        WebSocketHandler handler = channelHandlers.get(channel);
+        if (handler == null) {
+            sendError(connection, "Unknown channel: " + channel);
+            return null;
+        }
+
+        ChannelSession channelSession = new ChannelSession(connection, channel, channelNames.indexOf(channel),
+                handler, channelUri(connection, params));
+        ChannelSession existing = connection.addChannel(channelSession);
+        if (existing != null) {
+            logger.debug("Channel {} already open on session {}", channel, connection.getSession().getId());
+            return existing;
+        }
+
+        logger.debug("Opening channel {} for user {}", channel, connection.getUserId());
+        try {
+            handler.afterConnectionEstablished(channelSession);
+        } catch (Exception e) {
+            logger.error("Error opening channel {} for user {}", channel, connection.getUserId(), e);
+            closeSessionSafely(channelSession, CloseStatus.SERVER_ERROR, "Server error opening channel");
+        }
+        // The handler may have refused the channel
+        return channelSession.isOpen() ? channelSession : null;
+    }
+
+    /**
+     * The URI a channel handler sees: the connection's userId first, so a channel parameter can
+     * never stand in for it, then the channel_open params, then the rest of the connection query
+     */
+    private static URI channelUri(MultiplexedConnection connection, JsonNode params) throws IOException {
+        URI uri = connection.getSession().getUri();
+        StringBuilder query = new StringBuilder("userId=").append(connection.getUserId());
+        if (params != null && params.isObject()) {
+            for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                if (!param.getKey().contains("userId") && param.getValue().isValueNode()) {
+                    query.append('&').append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+                            .append('=').append(URLEncoder.encode(param.getValue().asText(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (uri.getQuery() != null) {
+            query.append('&').append(uri.getQuery());
+        }
+
+        try {
+            return new URI(uri.getScheme(), uri.getAuthority(), uri.getPath(), query.toString(), null);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid channel parameters", e);
+        }
+    }
+
+    private void sendError(MultiplexedConnection connection, String errorMessage) throws IOException {
+        ObjectNode error = WebSocketJson.createObjectNode();
+        error.put("type", "error");
+        error.put("message", errorMessage);
+        connection.send(new TextMessage(WebSocketJson.write(error)));
+    }
+}
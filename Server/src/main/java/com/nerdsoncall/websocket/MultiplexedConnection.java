@@ -0,0 +1,63 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A physical /ws connection and the channels open on it.
+ *
+ * Every channel writes through {@link #send}, which serializes writes on the socket: the
+ * channel handlers send from their own threads (bus delivery, session outbox, heartbeat) and
+ * a container socket must not be written from two threads at once.
+ */
+final class MultiplexedConnection {
+
+    private final WebSocketSession session;
+    private final String userId;
+
+    // Channel name -> open channel
+    private final Map<String, ChannelSession> channels = new ConcurrentHashMap<>(4);
+
+    MultiplexedConnection(WebSocketSession session, String userId) {
+        this.session = session;
+        this.userId = userId;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    ChannelSession getChannel(String channel) {
+        return channels.get(channel);
+    }
+
+    /**
+     * @return the channel already open under that name, or null if this one was added
+     */
+    ChannelSession addChannel(ChannelSession channel) {
+        return channels.putIfAbsent(channel.getChannel(), channel);
+    }
+
+    void removeChannel(ChannelSession channel) {
+        channels.remove(channel.getChannel(), channel);
+    }
+
+    Collection<ChannelSession> getChannels() {
+        return channels.values();
+    }
+
+    void send(WebSocketMessage<?> message) throws IOException {
+        synchronized (this) {
+            session.sendMessage(message);
+        }
+    }
+}
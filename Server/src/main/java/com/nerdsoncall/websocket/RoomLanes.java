@@ -0,0 +1,202 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Room-affine execution: every room is pinned to one of N lanes by a consistent hash of its
+ * id, and everything that reads or changes a room runs as a task on that lane.
+ *
+ * With dedicated threads each lane is one thread, so a room's state can live in plain
+ * collections owned by the lane, tasks need no locks, and all subscribers of a room see its
+ * frames in one order, whichever container threads received them. With zero threads a task
+ * runs on the caller's thread under the lane's lock instead, which keeps the same guarantees
+ * at the cost of senders waiting for each other.
+ *
+ * A lane's queue holds at most queueCapacity offered tasks: past that, offer refuses the task
+ * and its caller drops the frame, so one hot room cannot grow the heap without limit. Tasks
+ * that keep a room consistent (joins, leaves, cleanup) go through execute, which is never
+ * refused, the same way control frames go past an outbox's limit.
+ *
+ * Jump consistent hashing (Lamping and Veach) moves only 1/N of the rooms when the lane
+ * count changes from N-1 to N, and needs no ring to look up.
+ */
+@Slf4j
+public class RoomLanes {
+
+    private final int laneCount;
+    private final int queueCapacity;
+    private final Lane[] lanes;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param threads number of lanes with a dedicated thread each, or 0 to run tasks on the
+     *                caller's thread, serialized by one lock per lane
+     * @param lockStripes number of lanes when threads is 0
+     * @param queueCapacity tasks a lane holds before offer refuses more
+     */
+    public RoomLanes(int threads, int lockStripes, int queueCapacity) {
+        this.laneCount = threads > 0 ? threads : Math.max(1, lockStripes);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, threads > 0);
+        }
+
+        log.info("Room lanes configured: {} lanes, {}", laneCount,
+            threads > 0 ? "one thread each, up to " + this.queueCapacity + " queued tasks" : "caller-runs with one lock each");
+    }
+
+    public int size() {
+        return laneCount;
+    }
+
+    /**
+     * Index of the lane a room is pinned to
+     */
+    public int laneOf(String roomId) {
+        return jumpConsistentHash(fnv1a64(roomId), laneCount);
+    }
+
+    /**
+     * Run a task on the room's lane, after every task submitted to that lane before it.
+     * A task submitted from the room's own lane runs immediately. Never refused for a full
+     * lane, so keep it for work a room cannot do without.
+     */
+    public void execute(String roomId, Runnable task) {
+        Lane lane = lanes[laneOf(roomId)];
+        if (lane.executor == null) {
+            synchronized (lane) {
+                run(task);
+            }
+        } else if (Thread.currentThread() == lane.thread) {
+            inline.increment();
+            run(task);
+        } else {
+            try {
+                lane.executor.execute(() -> run(task));
+            } catch (RejectedExecutionException e) {
+                log.warn("Room lane {} is shut down, dropping task for room {}", lane.index, roomId);
+            }
+        }
+    }
+
+    /**
+     * Run a task on the room's lane unless the lane already holds queueCapacity tasks, in
+     * which case it is refused and counted. Caller-runs lanes never refuse: the caller waits
+     * for the lane's lock instead.
+     *
+     * @return whether the task was accepted
+     */
+    public boolean offer(String roomId, Runnable task) {
+        Lane lane = lanes[laneOf(roomId)];
+        if (lane.executor != null && Thread.currentThread() != lane.thread
+                && lane.executor.getQueue().size() >= queueCapacity) {
+            rejected.increment();
+            return false;
+        }
+        execute(roomId, task);
+        return true;
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        List<Integer> queued = new ArrayList<>(laneCount);
+        for (Lane lane : lanes) {
+            queued.add(lane.executor != null ? lane.executor.getQueue().size() : 0);
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("lanes", laneCount);
+        snapshot.put("dedicatedThreads", lanes[0].executor != null);
+        snapshot.put("queuedPerLane", queued);
+        snapshot.put("queueCapacity", queueCapacity);
+        snapshot.put("executed", executed.sum());
+        snapshot.put("ranInline", inline.sum());
+        snapshot.put("failed", failed.sum());
+        snapshot.put("rejected", rejected.sum());
+        return snapshot;
+    }
+
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            if (lane.executor != null) {
+                lane.executor.shutdown();
+            }
+        }
+        try {
+            for (Lane lane : lanes) {
+                if (lane.executor != null) {
+                    lane.executor.awaitTermination(5, TimeUnit.SECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Runnable task) {
+        // A failing task must not take the lane's thread with it, the thread is the lane's identity
+        try {
+            task.run();
+            executed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Error in room lane task", e);
+        }
+    }
+
+    static long fnv1a64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    private static final class Lane {
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private volatile Thread thread;
+
+        private Lane(int index, boolean dedicatedThread) {
+            this.index = index;
+            this.executor = dedicatedThread
+                    ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "ws-room-lane-" + index);
+                        t.setDaemon(true);
+                        thread = t;
+                        return t;
+                    })
+                    : null;
+            if (executor != null) {
+                // Start the thread now, so the identity check never sees a lane without one
+                executor.prestartCoreThread();
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Recent relayed messages of each room, so a client that reconnects after a network blip can
+ * ask for what it missed instead of a full resend to the whole room.
+ *
+ * Every replayable message gets a room-scoped sequence number, appended to the frame as a
+ * "seq" field, and is kept in a bounded per-room ring (by count and by bytes). A reconnecting
+ * client says "resume from seq N" and gets exactly the frames after N, unless some of them
+ * were already evicted, in which case the caller falls back to a snapshot.
+ *
+ * Recording and delivering a frame happen under the room's lock, and so do attaching a
+ * resuming client and replaying its gap, so every client sees a room's frames in sequence
+ * order with nothing lost between the replay and the live stream.
+ */
+public class RoomReplayBuffer {
+
+    private final int capacityPerRoom;
+    private final long maxBytesPerRoom;
+
+    // Room id -> ring of recent frames
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public RoomReplayBuffer(int capacityPerRoom, long maxBytesPerRoom) {
+        this.capacityPerRoom = capacityPerRoom;
+        this.maxBytesPerRoom = maxBytesPerRoom;
+    }
+
+    /**
+     * First sequence number of a new room. Derived from the clock, so a room that empties and
+     * is created again never reuses the numbers a client may still hold from before.
+     */
+    public static long initialSequence() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+    /**
+     * The frame with "seq" added as its last field
+     */
+    public static TextMessage stamp(TextMessage frame, long seq) {
+        String payload = frame.getPayload();
+        int end = payload.lastIndexOf('}');
+        if (end < 0) {
+            return frame;
+        }
+        boolean empty = payload.substring(0, end).trim().equals("{");
+        return new TextMessage(new StringBuilder(payload.length() + 24)
+                .append(payload, 0, end)
+                .append(empty ? "\"seq\":" : ",\"seq\":").append(seq)
+                .append(payload, end, payload.length()));
+    }
+
+    /**
+     * Number the frame with the room's next sequence number, record it and deliver it
+     */
+    public void publish(String roomId, TextMessage frame, String type, String excludeUserId,
+                        BiConsumer<TextMessage, String> deliver) {
+        Room room = rooms.computeIfAbsent(roomId, k -> new Room(initialSequence()));
+        synchronized (room) {
+            TextMessage stamped = stamp(frame, room.nextSeq);
+            append(room, room.nextSeq++, stamped, type, excludeUserId);
+            deliver.accept(stamped, type);
+        }
+    }
+
+    /**
+     * Record and deliver a frame numbered elsewhere (cluster-wide by the signaling bus).
+     * Frames are kept in arrival order; replay selects by number, not position.
+     */
+    public void record(String roomId, long seq, TextMessage stampedFrame, String type, String excludeUserId,
+                       BiConsumer<TextMessage, String> deliver) {
+        Room room = rooms.computeIfAbsent(roomId, k -> new Room(seq));
+        synchronized (room) {
+            boolean first = room.frames.isEmpty();
+            append(room, seq, stampedFrame, type, excludeUserId);
+            // The numbering is the bus's, whatever this node started the room at
+            room.nextSeq = first ? seq + 1 : Math.max(room.nextSeq, seq + 1);
+            deliver.accept(stampedFrame, type);
+        }
+    }
+
+    /**
+     * Attach a (re)joining client and replay what it missed after afterSeq, atomically with
+     * respect to live delivery. The attach callback gets the room's last sequence number.
+     * Frames the user sent itself are skipped, senders never get their own frames back.
+     *
+     * @return false if the gap is not fully buffered (evicted, unknown room, or a sequence
+     *         number from an earlier incarnation of the room); the caller then sends a snapshot
+     */
+    public boolean resume(String roomId, long afterSeq, String userId, LongConsumer attach,
+                          BiConsumer<TextMessage, String> deliver) {
+        Room room = rooms.computeIfAbsent(roomId, k -> new Room(initialSequence()));
+        synchronized (room) {
+            long lastSeq = room.nextSeq - 1;
+            attach.accept(lastSeq);
+
+            long firstSeq = room.frames.isEmpty() ? room.nextSeq : room.frames.peekFirst().seq;
+            if (afterSeq < firstSeq - 1 || afterSeq > lastSeq) {
+                fallbacks.increment();
+                return false;
+            }
+
+            resumed.increment();
+            for (Entry entry : room.frames) {
+                if (entry.seq > afterSeq && (userId == null || !userId.equals(entry.excludeUserId))) {
+                    deliver.accept(entry.frame, entry.type);
+                    replayed.increment();
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Last sequence number handed out in a room, or -1 if the room has none
+     */
+    public long lastSeq(String roomId) {
+        Room room = rooms.get(roomId);
+        if (room == null) {
+            return -1;
+        }
+        synchronized (room) {
+            return room.nextSeq - 1;
+        }
+    }
+
+    public void removeRoom(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        long frames = 0;
+        long bytes = 0;
+        for (Room room : rooms.values()) {
+            synchronized (room) {
+                frames += room.frames.size();
+                bytes += room.bytes;
+            }
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("rooms", rooms.size());
+        snapshot.put("bufferedFrames", frames);
+        snapshot.put("bufferedBytes", bytes);
+        snapshot.put("recorded", recorded.sum());
+        snapshot.put("evicted", evicted.sum());
+        snapshot.put("resumed", resumed.sum());
+        snapshot.put("replayedFrames", replayed.sum());
+        snapshot.put("snapshotFallbacks", fallbacks.sum());
+        return snapshot;
+    }
+
+    private void append(Room room, long seq, TextMessage frame, String type, String excludeUserId) {
+        Entry entry = new Entry(seq, frame, type, excludeUserId);
+        room.frames.addLast(entry);
+        room.bytes += entry.frame.getPayloadLength();
+        recorded.increment();
+
+        while (room.frames.size() > capacityPerRoom || (room.bytes > maxBytesPerRoom && room.frames.size() > 1)) {
+            Entry oldest = room.frames.pollFirst();
+            room.bytes -= oldest.frame.getPayloadLength();
+            evicted.increment();
+        }
+    }
+
+    private static final class Room {
+        private final Deque<Entry> frames = new ArrayDeque<>();
+        private long nextSeq;
+        private long bytes;
+
+        private Room(long nextSeq) {
+            this.nextSeq = nextSeq;
+        }
+    }
+
+    private static final class Entry {
+        private final long seq;
+        private final TextMessage frame;
+        private final String type;
+        private final String excludeUserId;
+
+        private Entry(long seq, TextMessage frame, String type, String excludeUserId) {
+            this.seq = seq;
+            this.frame = frame;
+            this.type = type;
+            this.excludeUserId = excludeUserId;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.nerdsoncall.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbound delivery counters for one tutoring room. Latency is measured from the moment
+ * a frame is queued until the socket write completes. Counts also roll up into a parent,
+ * so server-wide totals outlive the rooms.
+ */
+public class RoomSendStats {
+
+    private final RoomSendStats parent;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    public RoomSendStats() {
+        this(null);
+    }
+
+    public RoomSendStats(RoomSendStats parent) {
+        this.parent = parent;
+    }
+
+    public void recordQueued() {
+        queued.increment();
+        if (parent != null) {
+            parent.recordQueued();
+        }
+    }
+
+    public void recordSent(long latencyNanos) {
+        sent.increment();
+        totalSendNanos.add(latencyNanos);
+        maxSendNanos.accumulateAndGet(latencyNanos, Math::max);
+        if (parent != null) {
+            parent.recordSent(latencyNanos);
+        }
+    }
+
+    public void recordDropped() {
+        dropped.increment();
+        if (parent != null) {
+            parent.recordDropped();
+        }
+    }
+
+    public void recordFailed() {
+        failed.increment();
+        if (parent != null) {
+            parent.recordFailed();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        long sentCount = sent.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queued.sum());
+        stats.put("sent", sentCount);
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("avgSendLatencyMs", sentCount > 0 ? totalSendNanos.sum() / sentCount / 1_000_000.0 : 0.0);
+        stats.put("maxSendLatencyMs", maxSendNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,260 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded outbound buffer for a single WebSocket connection.
+ *
+ * Callers enqueue frames and return immediately; a single drain task per connection
+ * performs the actual (blocking) sends on a shared executor, so a slow client never
+ * stalls the sender's inbound thread and two broadcasts never write to the same socket
+ * concurrently. Droppable frames (stale drawing updates) may be discarded on overflow,
+ * control frames never are.
+ */
+@Slf4j
+public class SessionOutbox {
+
+    /**
+     * What to do when the buffered bytes exceed the configured limit
+     */
+    public enum OverflowPolicy {
+        /** Evict the oldest droppable frames to make room for the new one */
+        DROP_OLDEST,
+        /** Discard the incoming frame if it is droppable */
+        DROP_NEWEST,
+        /** Close the connection, the client is too slow to keep up */
+        TERMINATE
+    }
+
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitMillis;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<OutboundFrame> queue = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private int bufferedBytes;
+
+    private volatile long sendStartTime;
+    private volatile boolean closed;
+
+    public SessionOutbox(WebSocketSession session, Executor executor, int bufferSizeLimit,
+                         long sendTimeLimitMillis, OverflowPolicy overflowPolicy) {
+        this.session = session;
+        this.executor = executor;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Queue a frame for delivery. Returns false if the frame was dropped.
+     */
+    public boolean offer(WebSocketMessage<?> message, boolean droppable, RoomSendStats stats) {
+        if (closed || !session.isOpen()) {
+            return false;
+        }
+
+        if (closeIfSendTimeLimitExceeded()) {
+            return false;
+        }
+
+        OutboundFrame frame = new OutboundFrame(message, droppable, stats, System.nanoTime());
+
+        boolean overflowed = false;
+        synchronized (lock) {
+            if (bufferedBytes + frame.size > bufferSizeLimit && !makeRoom(frame)) {
+                overflowed = true;
+            } else {
+                queue.addLast(frame);
+                bufferedBytes += frame.size;
+            }
+        }
+
+        if (overflowed) {
+            if (stats != null) {
+                stats.recordDropped();
+            }
+            if (overflowPolicy == OverflowPolicy.TERMINATE) {
+                log.warn("Outbound buffer for session {} exceeded {} bytes, closing connection",
+                    session.getId(), bufferSizeLimit);
+                terminate("Outbound buffer overflow");
+            }
+            return false;
+        }
+
+        if (stats != null) {
+            stats.recordQueued();
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Apply the overflow policy. Must be called while holding the lock.
+     * Returns true if the frame should still be enqueued.
+     */
+    private boolean makeRoom(OutboundFrame incoming) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                Iterator<OutboundFrame> it = queue.iterator();
+                while (bufferedBytes + incoming.size > bufferSizeLimit && it.hasNext()) {
+                    OutboundFrame queued = it.next();
+                    if (queued.droppable) {
+                        it.remove();
+                        bufferedBytes -= queued.size;
+                        if (queued.stats != null) {
+                            queued.stats.recordDropped();
+                        }
+                    }
+                }
+                // Control frames are always delivered, even past the limit
+                return !incoming.droppable || bufferedBytes + incoming.size <= bufferSizeLimit;
+            case DROP_NEWEST:
+            case TERMINATE:
+            default:
+                return !incoming.droppable;
+        }
+    }
+
+    /**
+     * Close the connection if a send has been blocked for longer than the limit. Checked on
+     * every offer, and by the registry's watchdog for connections nothing new is sent to.
+     */
+    public boolean closeIfSendTimeLimitExceeded() {
+        long start = sendStartTime;
+        if (closed || start == 0 || System.currentTimeMillis() - start <= sendTimeLimitMillis) {
+            return false;
+        }
+        log.warn("Send to session {} blocked for more than {} ms, closing connection",
+            session.getId(), sendTimeLimitMillis);
+        terminate("Send time limit exceeded");
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                log.warn("Outbound executor rejected drain for session {}", session.getId());
+            }
+        }
+    }
+
+    private void drain() {
+        for (int sent = 0; sent < MAX_FRAMES_PER_DRAIN; sent++) {
+            OutboundFrame frame;
+            synchronized (lock) {
+                frame = queue.pollFirst();
+                if (frame == null) {
+                    draining.set(false);
+                    return;
+                }
+                bufferedBytes -= frame.size;
+            }
+            send(frame);
+        }
+
+        // Yield the worker to other connections, then continue where we left off
+        draining.set(false);
+        boolean pending;
+        synchronized (lock) {
+            pending = !queue.isEmpty();
+        }
+        if (pending) {
+            scheduleDrain();
+        }
+    }
+
+    private void send(OutboundFrame frame) {
+        if (closed || !session.isOpen()) {
+            if (frame.stats != null) {
+                frame.stats.recordDropped();
+            }
+            return;
+        }
+
+        sendStartTime = System.currentTimeMillis();
+        try {
+            session.sendMessage(frame.message);
+            if (frame.stats != null) {
+                frame.stats.recordSent(System.nanoTime() - frame.enqueuedAt);
+            }
+        } catch (Exception e) {
+            log.debug("Error sending outbound frame to session {}: {}", session.getId(), e.getMessage());
+            if (frame.stats != null) {
+                frame.stats.recordFailed();
+            }
+        } finally {
+            sendStartTime = 0;
+        }
+    }
+
+    private void terminate(String reason) {
+        discardPending();
+        WebSocketErrorHandler.closeSessionSafely(session, CloseStatus.SESSION_NOT_RELIABLE, reason);
+    }
+
+    /**
+     * Drop everything still buffered (called when the connection goes away)
+     */
+    public void discardPending() {
+        closed = true;
+        synchronized (lock) {
+            for (OutboundFrame frame : queue) {
+                if (frame.stats != null) {
+                    frame.stats.recordDropped();
+                }
+            }
+            queue.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    public int getBufferedBytes() {
+        synchronized (lock) {
+            return bufferedBytes;
+        }
+    }
+
+    public int getQueuedFrames() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    private static final class OutboundFrame {
+        private final WebSocketMessage<?> message;
+        private final boolean droppable;
+        private final RoomSendStats stats;
+        private final long enqueuedAt;
+        private final int size;
+
+        private OutboundFrame(WebSocketMessage<?> message, boolean droppable, RoomSendStats stats, long enqueuedAt) {
+            this.message = message;
+            this.droppable = droppable;
+            this.stats = stats;
+            this.enqueuedAt = enqueuedAt;
+            this.size = message.getPayloadLength();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.nerdsoncall.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the outbound queue of every connection and the shared executor that drains them,
+ * together with per-room delivery statistics.
+ *
+ * A watchdog thread closes connections whose send has been blocked past the send time
+ * limit. Without it the limit would only be noticed when the next frame is offered, and a
+ * few dead sockets nobody sends to could hold every drain worker forever.
+ */
+@Slf4j
+public class SessionOutboxRegistry {
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitMillis;
+    private final SessionOutbox.OverflowPolicy overflowPolicy;
+    private final Set<String> droppableTypes;
+
+    // WebSocketSession id -> outbound queue
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    // Room id -> delivery statistics
+    private final Map<String, RoomSendStats> roomStats = new ConcurrentHashMap<>();
+    private final RoomSendStats totals = new RoomSendStats();
+
+    public SessionOutboxRegistry(int threads, int bufferSizeLimit, long sendTimeLimitMillis,
+                                 SessionOutbox.OverflowPolicy overflowPolicy, Set<String> droppableTypes) {
+        this.executor = Executors.newFixedThreadPool(threads, new OutboundThreadFactory());
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.droppableTypes = Set.copyOf(droppableTypes);
+
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-outbound-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = Math.max(10, sendTimeLimitMillis / 4);
+        this.watchdog.scheduleWithFixedDelay(this::closeBlockedSends, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+
+        log.info("WebSocket outbound queues configured: threads={}, bufferSizeLimit={}, sendTimeLimit={}ms, policy={}",
+            threads, bufferSizeLimit, sendTimeLimitMillis, overflowPolicy);
+    }
+
+    /**
+     * Create the outbound queue for a newly accepted connection
+     */
+    public SessionOutbox register(WebSocketSession session) {
+        return outboxes.computeIfAbsent(session.getId(), id -> new SessionOutbox(
+            session, executor, bufferSizeLimit, sendTimeLimitMillis, overflowPolicy));
+    }
+
+    /**
+     * Queue a frame for a registered connection. Frames for connections that were
+     * never registered or have already been released are dropped.
+     */
+    public boolean offer(WebSocketSession session, WebSocketMessage<?> message, boolean droppable, RoomSendStats stats) {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox == null) {
+            if (stats != null) {
+                stats.recordDropped();
+            }
+            return false;
+        }
+        return outbox.offer(message, droppable, stats);
+    }
+
+    public void release(WebSocketSession session) {
+        SessionOutbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.discardPending();
+        }
+    }
+
+    public boolean isDroppable(String messageType) {
+        return messageType != null && droppableTypes.contains(messageType);
+    }
+
+    public RoomSendStats statsFor(String roomId) {
+        return roomStats.computeIfAbsent(roomId, id -> new RoomSendStats(totals));
+    }
+
+    /**
+     * Counters of all rooms together, including rooms that have since emptied
+     */
+    public RoomSendStats getTotals() {
+        return totals;
+    }
+
+    public void removeRoomStats(String roomId) {
+        roomStats.remove(roomId);
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> rooms = new HashMap<>();
+        roomStats.forEach((roomId, stats) -> rooms.put(roomId, stats.snapshot()));
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("openOutboxes", outboxes.size());
+        snapshot.put("rooms", rooms);
+        snapshot.put("totals", totals.snapshot());
+        return snapshot;
+    }
+
+    public void shutdown() {
+        watchdog.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeBlockedSends() {
+        try {
+            for (SessionOutbox outbox : outboxes.values()) {
+                outbox.closeIfSendTimeLimitExceeded();
+            }
+        } catch (Exception e) {
+            log.error("Error checking outbound send times", e);
+        }
+    }
+
+    private static class OutboundThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ws-outbound-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
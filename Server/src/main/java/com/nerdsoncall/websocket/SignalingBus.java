@@ -0,0 +1,68 @@
+package com.nerdsoncall.websocket;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes WebRTC signaling between server nodes.
+ *
+ * Each node keeps the sockets of its own users; the bus holds the cluster-wide presence
+ * directory (userId -> node) and room membership (room -> userId -> node), and carries
+ * messages to the node that owns the recipient. Implementations must deliver messages to one
+ * node in the order they were published.
+ */
+public interface SignalingBus {
+
+    /**
+     * Receives the messages published to a node
+     */
+    @FunctionalInterface
+    interface Listener {
+        void onMessage(BusMessage message);
+    }
+
+    void register(String nodeId, Listener listener);
+
+    void unregister(String nodeId);
+
+    /**
+     * Record that a user is connected to a node. Returns the node the user was connected to
+     * before, or null.
+     */
+    String registerPresence(String userId, String nodeId);
+
+    /**
+     * Forget a user's presence, unless it has meanwhile moved to another node
+     */
+    void unregisterPresence(String userId, String nodeId);
+
+    /**
+     * The node a user is connected to, or null if the user is offline
+     */
+    String locate(String userId);
+
+    void joinRoom(String roomId, String userId, String nodeId);
+
+    /**
+     * Remove a room member, unless it has meanwhile rejoined from another node
+     */
+    void leaveRoom(String roomId, String userId, String nodeId);
+
+    /**
+     * Members of a room: userId -> node
+     */
+    Map<String, String> roomMembers(String roomId);
+
+    /**
+     * Drop a room entirely. Returns the nodes that had members in it.
+     */
+    Set<String> removeRoom(String roomId);
+
+    /**
+     * Next cluster-wide sequence number for a room's replayable messages. A room's numbering
+     * starts at {@link RoomReplayBuffer#initialSequence()} and is dropped with the room.
+     */
+    long nextSequence(String roomId);
+
+    void publish(String nodeId, BusMessage message);
+}
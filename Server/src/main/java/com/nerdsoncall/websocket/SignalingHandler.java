@@ -1,13 +1,13 @@
 package com.nerdsoncall.websocket;
 
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,20 +18,30 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SignalingHandler extends TextWebSocketHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(SignalingHandler.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
     
     // Store active sessions by userId
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
     
+    // Reverse index for O(1) disconnect cleanup: WebSocketSession id -> userId
+    private final Map<String, String> connectionUsers = new ConcurrentHashMap<>();
+    
+    // Pings idle connections and reaps the ones that stopped answering
+    private final HeartbeatMonitor heartbeatMonitor;
+    
+    public SignalingHandler(HeartbeatMonitor heartbeatMonitor) {
+        this.heartbeatMonitor = heartbeatMonitor;
+    }
+    
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         try {
-            // Extract userId from query parameters
-            String query = session.getUri().getQuery();
-            if (query != null && query.contains("userId=")) {
-                String userId = query.split("userId=")[1].split("&")[0];
+            // userId from the query parameters, parsed once at the handshake
+            String userId = HandshakeAdmission.queryParameter(session, "userId");
+            if (userId != null) {
                 logger.info("WebSocket connection established for user: {}", userId);
                 sessions.put(userId, session);
+                connectionUsers.put(session.getId(), userId);
+                heartbeatMonitor.register(session, "signaling", this, s -> send(s, new PingMessage()));
             } else {
                 logger.error("WebSocket connection rejected: No userId provided");
                 session.close(CloseStatus.BAD_DATA.withReason("No userId provided"));
@@ -48,25 +58,27 @@ public class SignalingHandler extends TextWebSocketHandler {
     
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        heartbeatMonitor.touch(session);
         try {
             String payload = message.getPayload();
             logger.debug("Received message: {}", payload);
             
-            JsonNode jsonNode = objectMapper.readTree(payload);
+            // Only the routing fields are read; the payload is forwarded untouched
+            MessageEnvelope envelope = MessageEnvelope.parse(message);
             
             // Check if message contains required fields
-            if (jsonNode.has("to") && jsonNode.has("type")) {
-                String toUserId = jsonNode.get("to").asText();
+            if (envelope.hasTo() && envelope.hasType()) {
+                String toUserId = envelope.getTo();
                 
                 // Forward message to intended recipient
                 if (sessions.containsKey(toUserId)) {
                     WebSocketSession recipientSession = sessions.get(toUserId);
                     if (recipientSession.isOpen()) {
-                        recipientSession.sendMessage(new TextMessage(payload));
+                        send(recipientSession, message);
                         logger.debug("Message forwarded to user: {}", toUserId);
                     } else {
                         logger.warn("Recipient session is closed for user: {}", toUserId);
-                        sessions.remove(toUserId);
+                        sessions.remove(toUserId, recipientSession);
                     }
                 } else {
                     logger.debug("Recipient not found or offline: {}", toUserId);
@@ -82,12 +94,21 @@ public class SignalingHandler extends TextWebSocketHandler {
         }
     }
     
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeatMonitor.touch(session);
+    }
+    
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         logger.info("WebSocket connection closed: {}", status);
+        heartbeatMonitor.unregister(session);
         
-        // Remove session from active sessions
-        sessions.values().removeIf(s -> s.getId().equals(session.getId()));
+        // Remove session from active sessions, unless the user has already reconnected
+        String userId = connectionUsers.remove(session.getId());
+        if (userId != null) {
+            sessions.remove(userId, session);
+        }
     }
     
     @Override
@@ -99,4 +120,12 @@ public class SignalingHandler extends TextWebSocketHandler {
             logger.error("Error closing WebSocket session after transport error", e);
         }
     }
-}
\ No newline at end of file
+    
+    // Several senders can forward to one recipient while the heartbeat pings it; a session
+    // takes one send at a time
+    private static void send(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+        synchronized (session) {
+            session.sendMessage(message);
+        }
+    }
+}
@@ -1,56 +1,120 @@
 package com.nerdsoncall.websocket;
 
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * WebSocket handler for tutoring session features like canvas sharing and screen sharing
  */
 @Component
-public class TutoringSessionHandler extends TextWebSocketHandler {
+public class TutoringSessionHandler extends TextWebSocketHandler implements SubProtocolCapable {
     
     private static final Logger logger = LoggerFactory.getLogger(TutoringSessionHandler.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
     
-    // Map of session subscriptions: sessionId -> set of WebSocketSessions
-    private final Map<String, Set<WebSocketSession>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // Room messages that are numbered and kept for clients resuming after a reconnect
+    private static final Set<String> REPLAYED_TYPES = Set.of(
+            "canvas_update", "excalidraw_update", "drawing_event", "whiteboard_enabled", "whiteboard_disabled");
+    
+    // Room subscriptions, one map per lane: sessionId -> subscribed WebSocketSessions.
+    // Only ever touched from the room's lane, so plain collections without locks.
+    private final List<Map<String, List<WebSocketSession>>> laneRooms;
+    
+    // Rooms with subscribers and their sizes, readable from any thread
+    private final Map<String, Integer> activeRooms = new ConcurrentHashMap<>();
     
     // Map of user sessions: userId -> WebSocketSession
     private final Map<String, WebSocketSession> userSessions = new ConcurrentHashMap<>();
     
+    // Reverse indexes for O(1) disconnect cleanup: WebSocketSession id -> userId / subscribed sessionIds
+    private final Map<String, String> connectionUsers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> connectionRooms = new ConcurrentHashMap<>();
+    
+    // Per-connection outbound queues, so a slow subscriber never stalls the sender
+    private final SessionOutboxRegistry outboxRegistry;
+    
+    // Collapses bursts of whiteboard frames from one sender before fan-out
+    private final FrameCoalescer frameCoalescer;
+    
+    // Current whiteboard of each room, served to late joiners and written behind to the database
+    private final WhiteboardSnapshotStore whiteboardStore;
+    
+    // Pings idle connections and reaps the ones that stopped answering
+    private final HeartbeatMonitor heartbeatMonitor;
+    
+    // Recent whiteboard frames of each room, so a reconnecting client only gets what it missed
+    private final RoomReplayBuffer replayBuffer;
+    
+    // Per-connection and per-room rate limits, so one client can't saturate a room's fan-out
+    private final FloodControl floodControl;
+    
+    // Reassembles screen-share and whiteboard payloads sent in chunks, within memory limits
+    private final ChunkAssembler chunkAssembler;
+    
+    // Every room runs on one lane, so its frames are relayed in one order to everyone
+    private final RoomLanes roomLanes;
+    
+    public TutoringSessionHandler(SessionOutboxRegistry outboxRegistry, FrameCoalescer frameCoalescer,
+                                  WhiteboardSnapshotStore whiteboardStore, HeartbeatMonitor heartbeatMonitor,
+                                  RoomReplayBuffer replayBuffer, FloodControl floodControl,
+                                  ChunkAssembler chunkAssembler, RoomLanes roomLanes) {
+        this.outboxRegistry = outboxRegistry;
+        this.frameCoalescer = frameCoalescer;
+        this.whiteboardStore = whiteboardStore;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.replayBuffer = replayBuffer;
+        this.floodControl = floodControl;
+        this.chunkAssembler = chunkAssembler;
+        this.roomLanes = roomLanes;
+        this.laneRooms = new ArrayList<>(roomLanes.size());
+        for (int i = 0; i < roomLanes.size(); i++) {
+            laneRooms.add(new HashMap<>());
+        }
+    }
+    
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         try {
-            // Extract userId from query parameters
-            String query = session.getUri().getQuery();
-            logger.info("🔗 New tutoring session connection attempt. Query: {}", query);
+            // userId from the query parameters, parsed once at the handshake
+            String userId = HandshakeAdmission.queryParameter(session, "userId");
+            logger.info("🔗 New tutoring session connection attempt for user: {}", userId);
 
-            if (query != null && query.contains("userId=")) {
-                String userId = query.split("userId=")[1].split("&")[0];
+            if (userId != null) {
                 logger.info("✅ Tutoring session connection established for user: {}", userId);
                 userSessions.put(userId, session);
+                connectionUsers.put(session.getId(), userId);
+                outboxRegistry.register(session);
+                floodControl.register(session);
+                // Pings go through the outbox so they never race a queued broadcast on the socket
+                heartbeatMonitor.register(session, "session", this,
+                        s -> outboxRegistry.offer(s, new PingMessage(), false, null));
 
                 // Send connection confirmation
-                ObjectNode confirmMsg = objectMapper.createObjectNode();
+                ObjectNode confirmMsg = WebSocketJson.createObjectNode();
                 confirmMsg.put("type", "connection_established");
                 confirmMsg.put("userId", userId);
-                session.sendMessage(new TextMessage(confirmMsg.toString()));
+                sendControlMessage(session, confirmMsg);
 
             } else {
                 logger.error("❌ Tutoring session connection rejected: No userId provided");
@@ -68,46 +132,52 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
     
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        heartbeatMonitor.touch(session);
         try {
-            String payload = message.getPayload();
-            logger.debug("Received tutoring session message: {}", payload);
+            MessageEnvelope envelope = MessageEnvelope.parse(message);
+            logger.debug("Received tutoring session message: {}", message.getPayload());
             
-            JsonNode jsonNode = objectMapper.readTree(payload);
-            
-            if (jsonNode.has("type")) {
-                String type = jsonNode.get("type").asText();
+            if (envelope.hasType()) {
+                String type = envelope.getType();
+                if (!admitFrame(session, envelope)) {
+                    return;
+                }
                 
+                // Room messages are handled on the room's lane, in arrival order
                 switch (type) {
                     case "subscribe":
-                        handleSubscribe(session, jsonNode);
+                        onRoomLane(session, envelope, this::handleSubscribe);
                         break;
                     case "unsubscribe":
-                        handleUnsubscribe(session, jsonNode);
+                        onRoomLane(session, envelope, this::handleUnsubscribe);
                         break;
                     case "canvas_update":
-                        handleCanvasUpdate(session, jsonNode);
+                        offerToRoomLane(session, envelope, this::handleCanvasUpdate);
                         break;
                     case "excalidraw_update":
-                        handleExcalidrawUpdate(session, jsonNode);
+                        offerToRoomLane(session, envelope, this::handleExcalidrawUpdate);
                         break;
                     case "drawing_event":
-                        handleDrawingEvent(session, jsonNode);
+                        offerToRoomLane(session, envelope, this::handleDrawingEvent);
                         break;
                     case "whiteboard_enabled":
-                        handleWhiteboardEnabled(session, jsonNode);
+                        onRoomLane(session, envelope, this::handleWhiteboardEnabled);
                         break;
                     case "whiteboard_disabled":
-                        handleWhiteboardDisabled(session, jsonNode);
+                        onRoomLane(session, envelope, this::handleWhiteboardDisabled);
                         break;
                     case "screen_share":
-                        handleScreenShare(session, jsonNode);
+                        offerToRoomLane(session, envelope, this::handleScreenShare);
+                        break;
+                    case "chunk":
+                        handleChunk(session, envelope);
                         break;
                     default:
                         logger.warn("Unknown message type: {}", type);
                         sendErrorMessage(session, "Unknown message type");
                 }
             } else {
-                logger.warn("Invalid message format (missing type): {}", payload);
+                logger.warn("Invalid message format (missing type): {}", message.getPayload());
                 sendErrorMessage(session, "Invalid message format");
             }
         } catch (Exception e) {
@@ -116,23 +186,61 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
     
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        if (!WireProtocol.isBinary(session)) {
+            // Binary frames are only understood once the CBOR subprotocol was negotiated
+            super.handleBinaryMessage(session, message);
+            return;
+        }
+        try {
+            handleTextMessage(session, WireProtocol.decode(message));
+        } catch (Exception e) {
+            logger.error("Error decoding binary tutoring session message", e);
+            try {
+                sendErrorMessage(session, "Invalid binary message");
+            } catch (IOException ex) {
+                logger.error("Error sending error message", ex);
+            }
+        }
+    }
+    
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeatMonitor.touch(session);
+    }
+    
+    @Override
+    public List<String> getSubProtocols() {
+        return WireProtocol.SUBPROTOCOLS;
+    }
+    
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         logger.info("Tutoring session connection closed: {}", status);
+        heartbeatMonitor.unregister(session);
         
-        // Find and remove user from all mappings
-        String userId = findUserIdBySession(session);
+        // Remove user mapping, unless the user has already reconnected on a new socket
+        String userId = connectionUsers.remove(session.getId());
         if (userId != null) {
-            userSessions.remove(userId);
+            userSessions.remove(userId, session);
         }
         
-        // Remove session from all subscriptions
-        for (Map.Entry<String, Set<WebSocketSession>> entry : sessionSubscriptions.entrySet()) {
-            entry.getValue().remove(session);
-            
-            // If no subscribers left, remove the subscription
-            if (entry.getValue().isEmpty()) {
-                sessionSubscriptions.remove(entry.getKey());
+        // Drop anything still queued for this connection
+        outboxRegistry.release(session);
+        floodControl.release(session);
+        chunkAssembler.release(session);
+        WebSocketErrorHandler.resetErrorCount(session.getId());
+        
+        // Remove session from the subscriptions it actually joined, each on its room's lane
+        Set<String> rooms = connectionRooms.remove(session.getId());
+        if (rooms != null) {
+            for (String sessionId : rooms) {
+                roomLanes.execute(sessionId, () -> {
+                    // Deliver the sender's last pending stroke/scene before it leaves
+                    frameCoalescer.releaseSender(sessionId, session);
+                    removeSubscriber(sessionId, session);
+                });
             }
         }
     }
@@ -149,67 +257,137 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
     
     // Helper methods
     
-    private void handleSubscribe(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
-
-            // Add session to subscription list
-            sessionSubscriptions.computeIfAbsent(sessionId, k -> new CopyOnWriteArraySet<>())
-                              .add(session);
+    @FunctionalInterface
+    private interface RoomMessageHandler {
+        void handle(WebSocketSession session, MessageEnvelope message) throws IOException;
+    }
+    
+    /**
+     * Hand a room message to its room's lane. Messages without a room are malformed and
+     * handled right away, which only sends the client an error.
+     */
+    private void onRoomLane(WebSocketSession session, MessageEnvelope message, RoomMessageHandler handler)
+            throws IOException {
+        String sessionId = message.getSessionId();
+        if (sessionId == null) {
+            handler.handle(session, message);
+            return;
+        }
+        roomLanes.execute(sessionId, () -> handleOnLane(session, message, handler));
+    }
+    
+    /**
+     * Hand a relayed frame to its room's lane, or drop it when the lane is full. The sender
+     * is told, since the rest of the room will never see it.
+     */
+    private void offerToRoomLane(WebSocketSession session, MessageEnvelope message, RoomMessageHandler handler)
+            throws IOException {
+        String sessionId = message.getSessionId();
+        if (sessionId == null) {
+            handler.handle(session, message);
+            return;
+        }
+        if (!roomLanes.offer(sessionId, () -> handleOnLane(session, message, handler))) {
+            logger.warn("Room lane for session {} is full, dropping {}", sessionId, message.getType());
+            sendErrorMessage(session, "Room is busy, message dropped");
+        }
+    }
+    
+    private void handleOnLane(WebSocketSession session, MessageEnvelope message, RoomMessageHandler handler) {
+        try {
+            handler.handle(session, message);
+        } catch (Exception e) {
+            logger.error("Error handling {} in session {}", message.getType(), message.getSessionId(), e);
+        }
+    }
+    
+    private void handleSubscribe(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            JsonNode resumeFrom = message.tree().path("resumeFrom");
+
+            boolean resumed = false;
+            if (resumeFrom.isNumber()) {
+                // Back after a network blip: replay just the gap if it is still buffered
+                resumed = replayBuffer.resume(sessionId, resumeFrom.asLong(), userId,
+                        lastSeq -> subscribe(session, sessionId, userId, lastSeq),
+                        (frame, type) -> outboxRegistry.offer(session, WireProtocol.forSession(session, frame, type),
+                                false, null));
+            } else {
+                subscribe(session, sessionId, userId, replayBuffer.lastSeq(sessionId));
+            }
 
-            logger.info("🎨 Client {} subscribed to whiteboard session: {}", userId, sessionId);
+            if (resumed) {
+                logger.info("✅ User {} resumed session {} after seq {}", userId, sessionId, resumeFrom.asLong());
+                return;
+            }
 
-            // Confirm subscription
-            ObjectNode confirmMsg = objectMapper.createObjectNode();
-            confirmMsg.put("type", "subscribed");
-            confirmMsg.put("sessionId", sessionId);
-            confirmMsg.put("userId", userId);
-            session.sendMessage(new TextMessage(confirmMsg.toString()));
+            // Bring a late joiner up to date with one compact snapshot of the board
+            whiteboardStore.snapshot(sessionId, snapshot -> {
+                outboxRegistry.offer(session, snapshot, false, null);
+                logger.info("🖼️ Sent whiteboard snapshot ({} bytes) to user {} in session {}",
+                        snapshot.getPayloadLength(), userId, sessionId);
+            });
 
             logger.info("✅ Subscription confirmed for user {} in session {}", userId, sessionId);
         } else {
-            logger.error("❌ Invalid subscribe message format: {}", message.toString());
+            logger.error("❌ Invalid subscribe message format: {}", message.getPayload());
             sendErrorMessage(session, "Invalid subscribe message format - missing sessionId or userId");
         }
     }
     
-    private void handleUnsubscribe(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId")) {
-            String sessionId = message.get("sessionId").asText();
+    /**
+     * Add the connection to the room and confirm, with the room's last seq as the client's
+     * starting point for a later resume
+     */
+    private void subscribe(WebSocketSession session, String sessionId, String userId, long lastSeq) {
+        addSubscriber(sessionId, session);
+
+        logger.info("🎨 Client {} subscribed to whiteboard session: {}", userId, sessionId);
+
+        ObjectNode confirmMsg = WebSocketJson.createObjectNode();
+        confirmMsg.put("type", "subscribed");
+        confirmMsg.put("sessionId", sessionId);
+        confirmMsg.put("userId", userId);
+        if (lastSeq >= 0) {
+            confirmMsg.put("seq", lastSeq);
+        }
+        sendControlMessage(session, confirmMsg);
+    }
+    
+    private void handleUnsubscribe(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId()) {
+            String sessionId = message.getSessionId();
             
             // Remove session from subscription list
-            Set<WebSocketSession> subscribers = sessionSubscriptions.get(sessionId);
-            if (subscribers != null) {
-                subscribers.remove(session);
-                
-                // If no subscribers left, remove the subscription
-                if (subscribers.isEmpty()) {
-                    sessionSubscriptions.remove(sessionId);
-                }
+            Set<String> rooms = connectionRooms.get(session.getId());
+            if (rooms != null) {
+                rooms.remove(sessionId);
             }
+            removeSubscriber(sessionId, session);
             
             logger.info("Client unsubscribed from session: {}", sessionId);
             
             // Confirm unsubscription
-            ObjectNode confirmMsg = objectMapper.createObjectNode();
+            ObjectNode confirmMsg = WebSocketJson.createObjectNode();
             confirmMsg.put("type", "unsubscribed");
             confirmMsg.put("sessionId", sessionId);
-            session.sendMessage(new TextMessage(confirmMsg.toString()));
+            sendControlMessage(session, confirmMsg);
         } else {
             sendErrorMessage(session, "Invalid unsubscribe message format");
         }
     }
     
-    private void handleCanvasUpdate(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("data") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleCanvasUpdate(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasData() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
 
             logger.debug("📝 Canvas update from user {} in session {}", userId, sessionId);
 
             // Broadcast canvas update to all subscribers of this session (except sender)
-            broadcastToSessionExceptSender(sessionId, message, session);
+            relayWhiteboardFrame(sessionId, message.getFrame(), message.getType(), session);
         } else {
             try {
                 sendErrorMessage(session, "Invalid canvas update message format");
@@ -219,15 +397,16 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleExcalidrawUpdate(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("data") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleExcalidrawUpdate(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasData() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
 
             logger.debug("🎨 Excalidraw update from user {} in session {}", userId, sessionId);
 
-            // Broadcast Excalidraw update to all subscribers of this session (except sender)
-            broadcastToSessionExceptSender(sessionId, message, session);
+            // Broadcast Excalidraw update to all subscribers of this session (except sender),
+            // collapsing bursts within the coalescing window
+            frameCoalescer.submit(sessionId, session, message, this::relayOnRoomLane);
         } else {
             try {
                 sendErrorMessage(session, "Invalid Excalidraw update message format");
@@ -237,21 +416,19 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleDrawingEvent(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("data") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleDrawingEvent(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasData() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
 
             // Get the drawing event type for logging
-            String eventType = "unknown";
-            if (message.has("data") && message.get("data").has("type")) {
-                eventType = message.get("data").get("type").asText();
-            }
+            String eventType = message.getDataType() != null ? message.getDataType() : "unknown";
 
             logger.debug("✏️ Drawing event '{}' from user {} in session {}", eventType, userId, sessionId);
 
-            // Broadcast drawing event to all subscribers of this session (except sender)
-            broadcastToSessionExceptSender(sessionId, message, session);
+            // Broadcast drawing event to all subscribers of this session (except sender),
+            // collapsing bursts of "draw" points within the coalescing window
+            frameCoalescer.submit(sessionId, session, message, this::relayOnRoomLane);
         } else {
             try {
                 sendErrorMessage(session, "Invalid drawing event message format");
@@ -261,16 +438,16 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleWhiteboardEnabled(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
-            String userName = message.has("userName") ? message.get("userName").asText() : "User";
+    private void handleWhiteboardEnabled(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            String userName = message.getUserName() != null ? message.getUserName() : "User";
 
             logger.info("🎨 Whiteboard enabled by user {} ({}) in session {}", userName, userId, sessionId);
 
             // Broadcast whiteboard enabled to all subscribers of this session (except sender)
-            broadcastToSessionExceptSender(sessionId, message, session);
+            broadcastToSessionExceptSender(sessionId, message.getFrame(), message.getType(), session);
         } else {
             try {
                 sendErrorMessage(session, "Invalid whiteboard enabled message format");
@@ -280,16 +457,16 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleWhiteboardDisabled(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
-            String userName = message.has("userName") ? message.get("userName").asText() : "User";
+    private void handleWhiteboardDisabled(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            String userName = message.getUserName() != null ? message.getUserName() : "User";
 
             logger.info("🎨 Whiteboard disabled by user {} ({}) in session {}", userName, userId, sessionId);
 
             // Broadcast whiteboard disabled to all subscribers of this session (except sender)
-            broadcastToSessionExceptSender(sessionId, message, session);
+            broadcastToSessionExceptSender(sessionId, message.getFrame(), message.getType(), session);
         } else {
             try {
                 sendErrorMessage(session, "Invalid whiteboard disabled message format");
@@ -299,12 +476,12 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
     
-    private void handleScreenShare(WebSocketSession session, JsonNode message) {
-        if (message.has("sessionId") && message.has("data") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
+    private void handleScreenShare(WebSocketSession session, MessageEnvelope message) {
+        if (message.hasSessionId() && message.hasData() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
             
-            // Broadcast screen share update to all subscribers of this session
-            broadcastToSession(sessionId, message);
+            // Broadcast screen share update to all subscribers of this session (except sender)
+            broadcastToSessionExceptSender(sessionId, message.getFrame(), message.getType(), session);
         } else {
             try {
                 sendErrorMessage(session, "Invalid screen share message format");
@@ -314,57 +491,226 @@ public class TutoringSessionHandler extends TextWebSocketHandler {
         }
     }
     
-    private void broadcastToSession(String sessionId, JsonNode message) {
-        Set<WebSocketSession> subscribers = sessionSubscriptions.get(sessionId);
+    /**
+     * One piece of a payload too large for a single frame. The reassembled message is handled
+     * as if it had arrived whole, so it goes through the same checks and relay.
+     */
+    private void handleChunk(WebSocketSession session, MessageEnvelope message) throws Exception {
+        JsonNode chunk = message.tree();
+        String transferId = chunk.path("transferId").asText(null);
+        String payload;
+        try {
+            payload = chunkAssembler.accept(session, transferId, chunk.path("index").asInt(-1),
+                    chunk.path("count").asInt(0), chunk.path("total").asLong(0), chunk.path("data").asText(null));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected chunk from connection {}: {}", session.getId(), e.getMessage());
+            sendTransferError(session, transferId, e.getMessage());
+            return;
+        }
+        if (payload == null) {
+            return;
+        }
 
-        if (subscribers != null && !subscribers.isEmpty()) {
-            TextMessage textMessage = new TextMessage(message.toString());
+        MessageEnvelope reassembled = MessageEnvelope.parse(new TextMessage(payload));
+        if (!"screen_share".equals(reassembled.getType()) && !REPLAYED_TYPES.contains(reassembled.getType())) {
+            sendTransferError(session, transferId, "Chunked transfers carry screen_share or whiteboard messages only");
+            return;
+        }
+        handleTextMessage(session, reassembled.getFrame());
+    }
 
-            for (WebSocketSession subscriber : subscribers) {
-                if (subscriber.isOpen()) {
-                    try {
-                        subscriber.sendMessage(textMessage);
-                    } catch (IOException e) {
-                        logger.error("Error broadcasting message to session subscriber", e);
-                    }
-                }
-            }
+    private void sendTransferError(WebSocketSession session, String transferId, String errorMessage) {
+        ObjectNode errorMsg = WebSocketJson.createObjectNode();
+        errorMsg.put("type", "chunk_rejected");
+        errorMsg.put("transferId", transferId);
+        errorMsg.put("message", errorMessage);
+        sendControlMessage(session, errorMsg);
+    }
+
+    /**
+     * Coalesced frames are emitted on the coalescer's thread; relay them from the room's lane
+     */
+    private void relayOnRoomLane(String sessionId, TextMessage textMessage, String type,
+                                 WebSocketSession senderSession) {
+        roomLanes.execute(sessionId, () -> relayWhiteboardFrame(sessionId, textMessage, type, senderSession));
+    }
+
+    private void relayWhiteboardFrame(String sessionId, TextMessage textMessage, String type,
+                                      WebSocketSession senderSession) {
+        // Keep the room's board current with exactly what the other subscribers receive
+        whiteboardStore.apply(sessionId, textMessage, type);
+        broadcastToSessionExceptSender(sessionId, textMessage, type, senderSession);
+    }
+
+    private void broadcastToSessionExceptSender(String sessionId, TextMessage textMessage, String type,
+                                                WebSocketSession senderSession) {
+        if (REPLAYED_TYPES.contains(type)) {
+            // Numbered and buffered; the replay skips the sender's own frames by userId
+            String senderUserId = senderSession != null ? connectionUsers.get(senderSession.getId()) : null;
+            replayBuffer.publish(sessionId, textMessage, type, senderUserId,
+                    (frame, t) -> fanOut(sessionId, frame, t, senderSession));
+            return;
         }
+        // Don't send message back to the sender
+        fanOut(sessionId, textMessage, type, senderSession);
     }
 
-    private void broadcastToSessionExceptSender(String sessionId, JsonNode message, WebSocketSession senderSession) {
-        Set<WebSocketSession> subscribers = sessionSubscriptions.get(sessionId);
+    private void fanOut(String sessionId, TextMessage textMessage, String type, WebSocketSession excluded) {
+        List<WebSocketSession> subscribers = laneRooms.get(roomLanes.laneOf(sessionId)).get(sessionId);
 
         if (subscribers != null && !subscribers.isEmpty()) {
-            TextMessage textMessage = new TextMessage(message.toString());
+            boolean droppable = outboxRegistry.isDroppable(type);
+            boolean binaryType = WireProtocol.isBinaryType(type);
+            RoomSendStats stats = outboxRegistry.statsFor(sessionId);
+            byte[] binaryPayload = null;
 
             for (WebSocketSession subscriber : subscribers) {
-                // Don't send message back to the sender
-                if (subscriber.isOpen() && !subscriber.getId().equals(senderSession.getId())) {
-                    try {
-                        subscriber.sendMessage(textMessage);
-                        logger.debug("📤 Broadcasted message to session {} subscriber", sessionId);
-                    } catch (IOException e) {
-                        logger.error("Error broadcasting to session subscriber", e);
+                if (!subscriber.isOpen() || (excluded != null && subscriber.getId().equals(excluded.getId()))) {
+                    continue;
+                }
+
+                // Encoded once per broadcast, only if some subscriber negotiated the binary protocol
+                WebSocketMessage<?> frame = textMessage;
+                if (binaryType && WireProtocol.isBinary(subscriber)) {
+                    if (binaryPayload == null) {
+                        binaryPayload = WireProtocol.encodeBytes(textMessage);
                     }
+                    frame = new BinaryMessage(binaryPayload);
+                }
+
+                // Queued, not sent inline: a slow subscriber must not stall the sender's thread
+                if (outboxRegistry.offer(subscriber, frame, droppable, stats)) {
+                    logger.debug("📤 Queued broadcast to session {} subscriber", sessionId);
                 }
             }
         }
     }
     
-    private String findUserIdBySession(WebSocketSession session) {
-        for (Map.Entry<String, WebSocketSession> entry : userSessions.entrySet()) {
-            if (entry.getValue().getId().equals(session.getId())) {
-                return entry.getKey();
-            }
+    // Runs on the room's lane
+    private void addSubscriber(String sessionId, WebSocketSession session) {
+        Map<String, List<WebSocketSession>> rooms = laneRooms.get(roomLanes.laneOf(sessionId));
+        List<WebSocketSession> subscribers = rooms.get(sessionId);
+        if (subscribers == null) {
+            subscribers = new ArrayList<>(4);
+            rooms.put(sessionId, subscribers);
+        }
+        if (!subscribers.contains(session)) {
+            subscribers.add(session);
+            activeRooms.put(sessionId, subscribers.size());
         }
-        return null;
+        connectionRooms.computeIfAbsent(session.getId(), k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        
+        // The connection may have closed while the subscribe waited on the lane; its cleanup
+        // then either saw this room in connectionRooms or we see the user mapping gone here
+        if (!connectionUsers.containsKey(session.getId())) {
+            connectionRooms.remove(session.getId());
+            removeSubscriber(sessionId, session);
+        }
+    }
+    
+    // Runs on the room's lane
+    private void removeSubscriber(String sessionId, WebSocketSession session) {
+        Map<String, List<WebSocketSession>> rooms = laneRooms.get(roomLanes.laneOf(sessionId));
+        List<WebSocketSession> subscribers = rooms.get(sessionId);
+        if (subscribers == null || !subscribers.contains(session)) {
+            return;
+        }
+        if (subscribers.size() > 1) {
+            // A fresh list rather than an in-place removal: a close triggered by a send can
+            // land here while fanOut is still iterating the old one
+            List<WebSocketSession> remaining = new ArrayList<>(subscribers);
+            remaining.remove(session);
+            rooms.put(sessionId, remaining);
+            activeRooms.put(sessionId, remaining.size());
+        } else {
+            rooms.remove(sessionId);
+            activeRooms.remove(sessionId);
+            outboxRegistry.removeRoomStats(sessionId);
+            frameCoalescer.removeRoom(sessionId);
+            whiteboardStore.markIdle(sessionId);
+            replayBuffer.removeRoom(sessionId);
+            floodControl.removeRoom(sessionId);
+        }
+    }
+    
+    /**
+     * Apply flood control to an inbound frame; over-limit frames are dropped, not relayed
+     */
+    private boolean admitFrame(WebSocketSession session, MessageEnvelope message) throws IOException {
+        // Only rooms that exist get a room bucket, a made-up room id has nobody to flood
+        String sessionId = message.getSessionId();
+        String roomId = sessionId != null && activeRooms.containsKey(sessionId) ? sessionId : null;
+        
+        FloodControl.Verdict verdict = floodControl.check(session, roomId, message.getType());
+        if (verdict == FloodControl.Verdict.ALLOWED) {
+            return true;
+        }
+        if (verdict == FloodControl.Verdict.VIOLATION
+                && WebSocketErrorHandler.handleRateLimitViolation(session, message.getType())) {
+            sendErrorMessage(session, "Too many " + message.getType() + " messages, some were dropped");
+        }
+        return false;
     }
     
     private void sendErrorMessage(WebSocketSession session, String errorMessage) throws IOException {
-        ObjectNode errorMsg = objectMapper.createObjectNode();
+        ObjectNode errorMsg = WebSocketJson.createObjectNode();
         errorMsg.put("type", "error");
         errorMsg.put("message", errorMessage);
-        session.sendMessage(new TextMessage(errorMsg.toString()));
+        sendControlMessage(session, errorMsg);
+    }
+    
+    private void sendControlMessage(WebSocketSession session, ObjectNode message) {
+        outboxRegistry.offer(session, new TextMessage(WebSocketJson.write(message)), false, null);
+    }
+    
+    /**
+     * Rooms with subscribers, by size
+     */
+    public Map<String, Object> getRoomStats() {
+        return WebSocketTelemetry.roomSizes(activeRooms.values());
+    }
+    
+    /**
+     * Rooms with subscribers and the load of the room lanes
+     */
+    public Map<String, Object> getRoomLaneStats() {
+        Map<String, Object> stats = new HashMap<>(roomLanes.getStatsSnapshot());
+        stats.put("activeRooms", activeRooms.size());
+        return stats;
+    }
+    
+    /**
+     * In-progress and completed chunked transfers
+     */
+    public Map<String, Object> getChunkingStats() {
+        return chunkAssembler.getStatsSnapshot();
+    }
+    
+    /**
+     * Per-room coalescing statistics (frames in vs. frames out)
+     */
+    public Map<String, Object> getCoalescingStats() {
+        return frameCoalescer.getStatsSnapshot();
+    }
+    
+    /**
+     * Per-room outbound delivery statistics (latency, drops)
+     */
+    public Map<String, Object> getOutboundStats() {
+        return outboxRegistry.getStatsSnapshot();
+    }
+    
+    /**
+     * Resident whiteboard boards, persistence and eviction counters
+     */
+    public Map<String, Object> getWhiteboardStats() {
+        return whiteboardStore.getStatsSnapshot();
+    }
+    
+    /**
+     * Rooms, buffered frames and resume counters of the replay buffer
+     */
+    public Map<String, Object> getReplayStats() {
+        return replayBuffer.getStatsSnapshot();
     }
 }
\ No newline at end of file
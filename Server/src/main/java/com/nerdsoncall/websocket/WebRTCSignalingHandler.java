@@ -1,20 +1,28 @@
 package com.nerdsoncall.websocket;
 
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.nerdsoncall.websocket.WebSocketErrorHandler.*;
@@ -24,10 +32,18 @@ import static com.nerdsoncall.websocket.WebSocketErrorHandler.*;
  * This handler supports more advanced WebRTC signaling features
  */
 @Component
-public class WebRTCSignalingHandler extends TextWebSocketHandler {
+public class WebRTCSignalingHandler extends TextWebSocketHandler implements SubProtocolCapable {
     
     private static final Logger logger = LoggerFactory.getLogger(WebRTCSignalingHandler.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    // Room messages that are numbered and kept for clients resuming after a reconnect
+    private static final Set<String> REPLAYED_TYPES = Set.of("chat_message");
+    
+    // Relayed signaling that marks a step of call setup
+    private static final Map<String, CallSetupTracker.Milestone> SIGNALING_MILESTONES = Map.of(
+            "offer", CallSetupTracker.Milestone.OFFER,
+            "answer", CallSetupTracker.Milestone.ANSWER,
+            "ice-candidate", CallSetupTracker.Milestone.FIRST_ICE_CANDIDATE);
     
     // Store active sessions by userId
     private final Map<String, WebSocketSession> userSessions = new ConcurrentHashMap<>();
@@ -35,6 +51,47 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
     // Store session mappings (tutoring session ID -> participants)
     private final Map<String, Map<String, WebSocketSession>> tutoringSessionParticipants = new ConcurrentHashMap<>();
     
+    // Reverse indexes for O(1) disconnect cleanup: WebSocketSession id -> userId / joined tutoring sessions
+    private final Map<String, String> connectionUsers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> connectionRooms = new ConcurrentHashMap<>();
+    
+    // Cluster-wide presence and room membership; this node only holds the sockets of its own users
+    private final SignalingBus signalingBus;
+    private final String nodeId;
+    
+    // Pings idle connections and reaps the ones that stopped answering
+    private final HeartbeatMonitor heartbeatMonitor;
+    
+    // Recent chat of the rooms with participants on this node, for resuming clients
+    private final RoomReplayBuffer replayBuffer;
+    
+    // Per-connection and per-room rate limits for chat, typing and ICE traffic
+    private final FloodControl floodControl;
+    
+    // Writes relayed chat behind to the database, off the relay path
+    private final ChatHistoryWriter chatHistoryWriter;
+    
+    // Timestamps of each call's join, offer, answer and first candidate, for setup latency
+    private final CallSetupTracker callSetupTracker;
+    
+    // Bundles candidate bursts for recipients that opted in
+    private final IceCandidateBatcher iceCandidateBatcher;
+    
+    public WebRTCSignalingHandler(SignalingBus signalingBus, String nodeId, HeartbeatMonitor heartbeatMonitor,
+                                  RoomReplayBuffer replayBuffer, FloodControl floodControl,
+                                  ChatHistoryWriter chatHistoryWriter, CallSetupTracker callSetupTracker,
+                                  IceCandidateBatcher iceCandidateBatcher) {
+        this.signalingBus = signalingBus;
+        this.nodeId = nodeId;
+        this.heartbeatMonitor = heartbeatMonitor;
+        this.replayBuffer = replayBuffer;
+        this.floodControl = floodControl;
+        this.chatHistoryWriter = chatHistoryWriter;
+        this.callSetupTracker = callSetupTracker;
+        this.iceCandidateBatcher = iceCandidateBatcher;
+        signalingBus.register(nodeId, this::onBusMessage);
+    }
+    
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         try {
@@ -49,17 +106,10 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
                 return;
             }
 
-            // Extract userId from query parameters
-            String query = session.getUri().getQuery();
-            if (query != null && query.contains("userId=")) {
+            // Query parameters, parsed once at the handshake
+            String userId = HandshakeAdmission.queryParameter(session, "userId");
+            if (userId != null) {
                 try {
-                    String userId = extractParameterFromQuery(query, "userId");
-                    if (userId == null || userId.trim().isEmpty()) {
-                        logger.warn("Empty userId parameter in WebRTC connection");
-                        closeSessionSafely(session, CloseStatus.BAD_DATA, "Invalid userId parameter");
-                        return;
-                    }
-
                     logger.info("WebRTC signaling connection established for user: {}", userId);
 
                     // Close any existing session for this user to prevent duplicates
@@ -70,15 +120,21 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
                     }
 
                     userSessions.put(userId, session);
+                    connectionUsers.put(session.getId(), userId);
+                    heartbeatMonitor.register(session, "webrtc", this, s -> send(s, new PingMessage()));
+                    floodControl.register(session);
+
+                    // Same for a socket the user still has open on another node
+                    String previousNode = signalingBus.registerPresence(userId, nodeId);
+                    if (previousNode != null && !previousNode.equals(nodeId)) {
+                        signalingBus.publish(previousNode, BusMessage.kick(userId));
+                    }
 
                     // Check if user is joining a specific tutoring session
-                    if (query.contains("sessionId=")) {
-                        String tutoringSessionId = extractParameterFromQuery(query, "sessionId");
-                        if (tutoringSessionId != null && !tutoringSessionId.trim().isEmpty()) {
-                            addUserToTutoringSession(userId, tutoringSessionId, session);
-                        } else {
-                            logger.warn("Empty sessionId parameter for user: {}", userId);
-                        }
+                    String tutoringSessionId = HandshakeAdmission.queryParameter(session, "sessionId");
+                    if (tutoringSessionId != null) {
+                        joinTutoringSession(userId, tutoringSessionId, session,
+                                parseResumeFrom(HandshakeAdmission.queryParameter(session, "resumeFrom")));
                     }
 
                     // Send connection confirmation
@@ -100,45 +156,47 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
     
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        heartbeatMonitor.touch(session);
         try {
-            String payload = message.getPayload();
-            logger.debug("Received WebRTC message: {}", payload);
-            
-            JsonNode jsonNode = objectMapper.readTree(payload);
+            MessageEnvelope envelope = MessageEnvelope.parse(message);
+            logger.debug("Received WebRTC message: {}", message.getPayload());
             
-            if (jsonNode.has("type")) {
-                String type = jsonNode.get("type").asText();
+            if (envelope.hasType()) {
+                String type = envelope.getType();
+                if (!admitFrame(session, envelope)) {
+                    return;
+                }
                 
                 switch (type) {
                     case "join":
-                        handleJoinMessage(session, jsonNode);
+                        handleJoinMessage(session, envelope);
                         break;
                     case "offer":
                     case "answer":
                     case "ice-candidate":
-                        forwardSignalingMessage(session, jsonNode);
+                        forwardSignalingMessage(session, envelope);
                         break;
                     case "leave":
-                        handleLeaveMessage(session, jsonNode);
+                        handleLeaveMessage(session, envelope);
                         break;
                     case "chat_message":
-                        handleChatMessage(session, jsonNode);
+                        handleChatMessage(session, envelope);
                         break;
                     case "user_typing":
-                        handleUserTyping(session, jsonNode);
+                        handleUserTyping(session, envelope);
                         break;
                     case "user-disconnect":
-                        handleUserDisconnect(session, jsonNode);
+                        handleUserDisconnect(session, envelope);
                         break;
                     case "call_declined":
-                        handleCallDeclinedMessage(session, jsonNode);
+                        handleCallDeclinedMessage(session, envelope);
                         break;
                     default:
                         logger.debug("Unknown message type: {}", type);
                         // Don't send error for unknown message types to reduce frontend spam
                 }
             } else {
-                logger.warn("Invalid message format (missing type): {}", payload);
+                logger.warn("Invalid message format (missing type): {}", message.getPayload());
                 sendErrorMessage(session, "Invalid message format");
             }
         } catch (Exception e) {
@@ -147,29 +205,60 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
         }
     }
     
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        if (!WireProtocol.isBinary(session)) {
+            // Binary frames are only understood once the CBOR subprotocol was negotiated
+            super.handleBinaryMessage(session, message);
+            return;
+        }
+        try {
+            handleTextMessage(session, WireProtocol.decode(message));
+        } catch (Exception e) {
+            logger.error("Error decoding binary WebRTC message", e);
+        }
+    }
+    
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeatMonitor.touch(session);
+    }
+    
+    @Override
+    public List<String> getSubProtocols() {
+        return WireProtocol.SUBPROTOCOLS;
+    }
+    
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         logger.info("WebRTC connection closed: {}", status);
+        heartbeatMonitor.unregister(session);
+        floodControl.release(session);
+        resetErrorCount(session.getId());
         
-        // Find and remove user from all mappings
-        String userId = findUserIdBySession(session);
-        if (userId != null) {
-            userSessions.remove(userId);
-            
-            // Remove from all tutoring sessions
-            for (Map.Entry<String, Map<String, WebSocketSession>> entry : tutoringSessionParticipants.entrySet()) {
-                String sessionId = entry.getKey();
-                Map<String, WebSocketSession> participants = entry.getValue();
+        // Remove user mapping, unless the user has already reconnected on a new socket
+        String userId = connectionUsers.remove(session.getId());
+        if (userId != null && userSessions.remove(userId, session)) {
+            signalingBus.unregisterPresence(userId, nodeId);
+            iceCandidateBatcher.release(userId);
+        }
+        
+        // Remove from the tutoring sessions this connection joined
+        Set<String> rooms = connectionRooms.remove(session.getId());
+        if (rooms != null) {
+            for (String sessionId : rooms) {
+                Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
+                if (participants == null) {
+                    continue;
+                }
                 
-                if (participants.containsKey(userId)) {
-                    participants.remove(userId);
-                    
-                    // Notify other participants that this user has left
-                    notifyParticipantLeft(sessionId, userId);
-                    
-                    // If no participants left, remove the session
-                    if (participants.isEmpty()) {
-                        tutoringSessionParticipants.remove(sessionId);
+                for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
+                    if (entry.getValue() == session) {
+                        String participantId = entry.getKey();
+                        removeParticipant(sessionId, participantId, session);
+                        
+                        // Notify other participants that this user has left
+                        notifyParticipantLeft(sessionId, participantId);
                     }
                 }
             }
@@ -188,12 +277,13 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
     
     // Helper methods
     
-    private void handleJoinMessage(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleJoinMessage(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            JsonNode resumeFrom = message.tree().path("resumeFrom");
             
-            addUserToTutoringSession(userId, sessionId, session);
+            joinTutoringSession(userId, sessionId, session, resumeFrom.isNumber() ? resumeFrom.asLong() : null);
             
             // Notify other participants that a new user has joined
             notifyParticipantJoined(sessionId, userId);
@@ -205,35 +295,30 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
         }
     }
     
-    private void handleLeaveMessage(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleLeaveMessage(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
             
-            Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-            if (participants != null) {
-                participants.remove(userId);
+            if (tutoringSessionParticipants.containsKey(sessionId)) {
+                removeParticipant(sessionId, userId, null);
                 
                 // Notify other participants that this user has left
                 notifyParticipantLeft(sessionId, userId);
-                
-                // If no participants left, remove the session
-                if (participants.isEmpty()) {
-                    tutoringSessionParticipants.remove(sessionId);
-                }
             }
         } else {
             sendErrorMessage(session, "Invalid leave message format");
         }
     }
     
-    private void forwardSignalingMessage(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("to")) {
-            String toUserId = message.get("to").asText();
+    private void forwardSignalingMessage(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasTo()) {
+            callSetupTracker.record(message.getSessionId(), SIGNALING_MILESTONES.get(message.getType()));
+            String toUserId = message.getTo();
             
-            WebSocketSession recipientSession = userSessions.get(toUserId);
-            if (recipientSession != null && recipientSession.isOpen()) {
-                recipientSession.sendMessage(new TextMessage(message.toString()));
+            if (batchIceCandidate(message, toUserId)) {
+                logger.debug("ICE candidate for user {} held for batching", toUserId);
+            } else if (sendToUser(toUserId, message.getFrame(), message.getType())) {
                 logger.debug("WebRTC message forwarded to user: {}", toUserId);
             } else {
                 logger.debug("WebRTC recipient not found or offline: {}", toUserId);
@@ -246,56 +331,147 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
         }
     }
     
+    /**
+     * Add a user to a tutoring session. A client coming back after a network blip passes the
+     * last seq it received and gets the chat it missed, or replay_unavailable if that is no
+     * longer buffered here.
+     */
+    private void joinTutoringSession(String userId, String sessionId, WebSocketSession session, Long resumeFrom) {
+        callSetupTracker.record(sessionId, CallSetupTracker.Milestone.JOINED);
+        if (resumeFrom == null) {
+            addUserToTutoringSession(userId, sessionId, session);
+            return;
+        }
+        
+        boolean resumed = replayBuffer.resume(sessionId, resumeFrom, userId,
+                lastSeq -> addUserToTutoringSession(userId, sessionId, session),
+                (frame, type) -> sendReplayed(session, frame, type));
+        if (resumed) {
+            logger.info("User {} resumed tutoring session {} after seq {}", userId, sessionId, resumeFrom);
+        } else {
+            ObjectNode unavailable = WebSocketJson.createObjectNode();
+            unavailable.put("type", "replay_unavailable");
+            unavailable.put("sessionId", sessionId);
+            unavailable.put("resumeFrom", resumeFrom);
+            sendReplayed(session, new TextMessage(WebSocketJson.write(unavailable)), "replay_unavailable");
+        }
+    }
+    
+    private void sendReplayed(WebSocketSession session, TextMessage frame, String type) {
+        try {
+            if (session.isOpen()) {
+                send(session, WireProtocol.forSession(session, frame, type));
+            }
+        } catch (IOException e) {
+            logger.error("Error replaying {} to WebSocket session {}", type, session.getId(), e);
+        }
+    }
+    
+    private static Long parseResumeFrom(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid resumeFrom parameter: {}", value);
+            return null;
+        }
+    }
+    
     private void addUserToTutoringSession(String userId, String sessionId, WebSocketSession session) {
-        tutoringSessionParticipants.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
-                                  .put(userId, session);
+        // compute() holds the bin lock, so a concurrent last-participant removal
+        // can't drop the map we are adding to
+        tutoringSessionParticipants.compute(sessionId, (k, participants) -> {
+            Map<String, WebSocketSession> map = participants != null ? participants : new ConcurrentHashMap<>();
+            WebSocketSession previous = map.put(userId, session);
+            if (previous != null && previous != session) {
+                unindexRoom(previous, sessionId);
+            }
+            return map;
+        });
+        connectionRooms.computeIfAbsent(session.getId(), k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        signalingBus.joinRoom(sessionId, userId, nodeId);
         logger.info("User {} added to tutoring session {}", userId, sessionId);
     }
     
-    private void notifyParticipantJoined(String sessionId, String userId) throws IOException {
-        Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-        if (participants != null) {
-            ObjectNode joinMsg = objectMapper.createObjectNode();
-            joinMsg.put("type", "user-joined");
-            joinMsg.put("userId", userId);
-            joinMsg.put("sessionId", sessionId);
-            
-            TextMessage textMessage = new TextMessage(joinMsg.toString());
-            
-            for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
-                String participantId = entry.getKey();
-                WebSocketSession participantSession = entry.getValue();
-                
-                // Don't send notification to the user who just joined
-                if (!participantId.equals(userId) && participantSession.isOpen()) {
-                    participantSession.sendMessage(textMessage);
-                }
+    /**
+     * Remove a participant (only if still mapped to the given connection, when one is given)
+     * and drop the tutoring session atomically once it is empty.
+     */
+    private void removeParticipant(String sessionId, String userId, WebSocketSession expected) {
+        boolean[] removed = new boolean[1];
+        tutoringSessionParticipants.computeIfPresent(sessionId, (k, participants) -> {
+            WebSocketSession current = participants.get(userId);
+            if (current != null && (expected == null || current == expected)) {
+                participants.remove(userId);
+                unindexRoom(current, sessionId);
+                removed[0] = true;
+            }
+            if (participants.isEmpty()) {
+                logger.info("Session {} removed - no participants left", sessionId);
+                replayBuffer.removeRoom(sessionId);
+                floodControl.removeRoom(sessionId);
+                return null;
             }
+            return participants;
+        });
+        if (removed[0]) {
+            signalingBus.leaveRoom(sessionId, userId, nodeId);
         }
     }
     
-    private void notifyParticipantLeft(String sessionId, String userId) {
-        Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-        if (participants != null) {
-            ObjectNode leaveMsg = objectMapper.createObjectNode();
-            leaveMsg.put("type", "user-left");
-            leaveMsg.put("userId", userId);
-            leaveMsg.put("sessionId", sessionId);
-            
-            TextMessage textMessage = new TextMessage(leaveMsg.toString());
-            
-            for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
-                WebSocketSession participantSession = entry.getValue();
-                
-                if (participantSession.isOpen()) {
-                    try {
-                        participantSession.sendMessage(textMessage);
-                    } catch (IOException e) {
-                        logger.error("Error sending participant-left notification", e);
-                    }
-                }
+    /**
+     * Tear a tutoring session down on every node. Returns false if nobody was in it.
+     */
+    private boolean removeTutoringSession(String sessionId) {
+        boolean local = removeLocalTutoringSession(sessionId);
+        boolean remote = false;
+        for (String node : signalingBus.removeRoom(sessionId)) {
+            if (!node.equals(nodeId)) {
+                signalingBus.publish(node, BusMessage.closeRoom(sessionId));
+                remote = true;
             }
         }
+        return local || remote;
+    }
+    
+    private boolean removeLocalTutoringSession(String sessionId) {
+        Map<String, WebSocketSession> participants = tutoringSessionParticipants.remove(sessionId);
+        replayBuffer.removeRoom(sessionId);
+        floodControl.removeRoom(sessionId);
+        if (participants != null) {
+            participants.values().forEach(s -> unindexRoom(s, sessionId));
+            participants.clear();
+            return true;
+        }
+        return false;
+    }
+    
+    private void unindexRoom(WebSocketSession session, String sessionId) {
+        Set<String> rooms = connectionRooms.get(session.getId());
+        if (rooms != null) {
+            rooms.remove(sessionId);
+        }
+    }
+    
+    private void notifyParticipantJoined(String sessionId, String userId) {
+        ObjectNode joinMsg = WebSocketJson.createObjectNode();
+        joinMsg.put("type", "user-joined");
+        joinMsg.put("userId", userId);
+        joinMsg.put("sessionId", sessionId);
+        
+        // Don't send notification to the user who just joined
+        broadcastToRoom(sessionId, new TextMessage(WebSocketJson.write(joinMsg)), "user-joined", userId);
+    }
+    
+    private void notifyParticipantLeft(String sessionId, String userId) {
+        ObjectNode leaveMsg = WebSocketJson.createObjectNode();
+        leaveMsg.put("type", "user-left");
+        leaveMsg.put("userId", userId);
+        leaveMsg.put("sessionId", sessionId);
+        
+        broadcastToRoom(sessionId, new TextMessage(WebSocketJson.write(leaveMsg)), "user-left", null);
     }
     
     private void sendParticipantsList(String sessionId, String toUserId) throws IOException {
@@ -304,52 +480,63 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
             WebSocketSession recipientSession = participants.get(toUserId);
             
             if (recipientSession != null && recipientSession.isOpen()) {
-                ObjectNode participantsMsg = objectMapper.createObjectNode();
+                ObjectNode participantsMsg = WebSocketJson.createObjectNode();
                 participantsMsg.put("type", "participants-list");
                 participantsMsg.put("sessionId", sessionId);
                 
-                // Add participants array
+                // Add participants array, including those connected to other nodes
                 var participantsArray = participantsMsg.putArray("participants");
-                participants.keySet().stream()
+                signalingBus.roomMembers(sessionId).keySet().stream()
                         .filter(id -> !id.equals(toUserId))
                         .forEach(id -> participantsArray.add(id));
                 
-                recipientSession.sendMessage(new TextMessage(participantsMsg.toString()));
+                send(recipientSession, new TextMessage(WebSocketJson.write(participantsMsg)));
             }
         }
     }
     
-    private String findUserIdBySession(WebSocketSession session) {
-        for (Map.Entry<String, WebSocketSession> entry : userSessions.entrySet()) {
-            if (entry.getValue().getId().equals(session.getId())) {
-                return entry.getKey();
-            }
+    /**
+     * Apply flood control to an inbound frame; over-limit frames are dropped, not relayed.
+     * Room limits are per node, each node caps what its own clients push into a room.
+     */
+    private boolean admitFrame(WebSocketSession session, MessageEnvelope message) throws IOException {
+        // Only rooms with participants here get a room bucket, a made-up room id has nobody to flood
+        String sessionId = message.getSessionId();
+        String roomId = sessionId != null && tutoringSessionParticipants.containsKey(sessionId) ? sessionId : null;
+        
+        FloodControl.Verdict verdict = floodControl.check(session, roomId, message.getType());
+        if (verdict == FloodControl.Verdict.ALLOWED) {
+            return true;
         }
-        return null;
+        if (verdict == FloodControl.Verdict.VIOLATION && handleRateLimitViolation(session, message.getType())) {
+            sendErrorMessage(session, "Too many " + message.getType() + " messages, some were dropped");
+        }
+        return false;
     }
     
     private void sendErrorMessage(WebSocketSession session, String errorMessage) throws IOException {
-        ObjectNode errorMsg = objectMapper.createObjectNode();
+        ObjectNode errorMsg = WebSocketJson.createObjectNode();
         errorMsg.put("type", "error");
         errorMsg.put("message", errorMessage);
-        session.sendMessage(new TextMessage(errorMsg.toString()));
+        send(session, new TextMessage(WebSocketJson.write(errorMsg)));
     }
     
-    private void handleChatMessage(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId") && message.has("message")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
-            String chatMessage = message.get("message").asText();
-            String userName = message.has("userName") ? message.get("userName").asText() : "Unknown User";
-            String timestamp = message.has("timestamp") ? message.get("timestamp").asText() : "";
-            String messageId = message.has("id") ? message.get("id").asText() : String.valueOf(System.currentTimeMillis());
+    private void handleChatMessage(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId() && message.hasMessage()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            // Chat messages are small and rebuilt below, so the full tree is fine here
+            JsonNode body = message.tree();
+            String chatMessage = body.get("message").asText();
+            String userName = message.getUserName() != null ? message.getUserName() : "Unknown User";
+            String timestamp = body.has("timestamp") ? body.get("timestamp").asText() : "";
+            String messageId = body.has("id") ? body.get("id").asText() : String.valueOf(System.currentTimeMillis());
             
             logger.info("💬 Chat message from user {} in session {}: {}", userId, sessionId, chatMessage);
             
             // Broadcast the chat message to all participants in the session
-            Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-            if (participants != null) {
-                ObjectNode chatMsg = objectMapper.createObjectNode();
+            if (!signalingBus.roomMembers(sessionId).isEmpty()) {
+                ObjectNode chatMsg = WebSocketJson.createObjectNode();
                 chatMsg.put("type", "chat_message");
                 chatMsg.put("sessionId", sessionId);
                 chatMsg.put("userId", userId);
@@ -358,15 +545,11 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
                 chatMsg.put("timestamp", timestamp);
                 chatMsg.put("id", messageId);
                 
-                TextMessage textMessage = new TextMessage(chatMsg.toString());
+                broadcastToRoom(sessionId, new TextMessage(WebSocketJson.write(chatMsg)), "chat_message", null);
                 
-                for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
-                    WebSocketSession participantSession = entry.getValue();
-                    
-                    if (participantSession.isOpen()) {
-                        participantSession.sendMessage(textMessage);
-                    }
-                }
+                // Stored by the node the sender is on, after the relay, so the database never delays it
+                chatHistoryWriter.offer(new ChatHistoryWriter.ChatRecord(sessionId, messageId, userId, userName,
+                        chatMessage, LocalDateTime.now()));
             } else {
                 logger.warn("No participants found for session: {}", sessionId);
             }
@@ -375,85 +558,68 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
         }
     }
     
-    private void handleUserTyping(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
-            String userName = message.has("userName") ? message.get("userName").asText() : "Unknown User";
+    private void handleUserTyping(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
+            String userName = message.getUserName() != null ? message.getUserName() : "Unknown User";
             
             logger.debug("⌨️ User {} typing in session {}", userId, sessionId);
             
             // Broadcast typing indicator to all participants in the session
-            Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-            if (participants != null) {
-                ObjectNode typingMsg = objectMapper.createObjectNode();
-                typingMsg.put("type", "user_typing");
-                typingMsg.put("sessionId", sessionId);
-                typingMsg.put("userId", userId);
-                typingMsg.put("userName", userName);
-                
-                TextMessage textMessage = new TextMessage(typingMsg.toString());
-                
-                for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
-                    String participantId = entry.getKey();
-                    WebSocketSession participantSession = entry.getValue();
-                    
-                    // Don't send typing indicator to the user who is typing
-                    if (!participantId.equals(userId) && participantSession.isOpen()) {
-                        participantSession.sendMessage(textMessage);
-                    }
-                }
-            }
+            ObjectNode typingMsg = WebSocketJson.createObjectNode();
+            typingMsg.put("type", "user_typing");
+            typingMsg.put("sessionId", sessionId);
+            typingMsg.put("userId", userId);
+            typingMsg.put("userName", userName);
+            
+            // Don't send typing indicator to the user who is typing
+            broadcastToRoom(sessionId, new TextMessage(WebSocketJson.write(typingMsg)), "user_typing", userId);
         } else {
             sendErrorMessage(session, "Invalid typing message format");
         }
     }
     
-    private void handleUserDisconnect(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("sessionId") && message.has("userId")) {
-            String sessionId = message.get("sessionId").asText();
-            String userId = message.get("userId").asText();
+    private void handleUserDisconnect(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasSessionId() && message.hasUserId()) {
+            String sessionId = message.getSessionId();
+            String userId = message.getUserId();
             
             logger.info("👋 User {} disconnecting from session {}", userId, sessionId);
             
             // Remove user from session participants
-            Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-            if (participants != null) {
-                participants.remove(userId);
+            if (tutoringSessionParticipants.containsKey(sessionId)) {
+                removeParticipant(sessionId, userId, null);
                 
                 // Notify other participants that this user has left
                 notifyParticipantLeft(sessionId, userId);
-                
-                // If no participants left, remove the session
-                if (participants.isEmpty()) {
-                    tutoringSessionParticipants.remove(sessionId);
-                    logger.info("Session {} removed - no participants left", sessionId);
-                }
             }
         } else {
             sendErrorMessage(session, "Invalid disconnect message format");
         }
     }
 
-    private void handleCallDeclinedMessage(WebSocketSession session, JsonNode message) throws IOException {
-        if (message.has("to") && message.has("from") && message.has("sessionId")) {
-            String toUserId = message.get("to").asText();
-            String fromUserId = message.get("from").asText();
-            String sessionId = message.get("sessionId").asText();
-            String declinerName = message.has("declinerName") ? message.get("declinerName").asText() : "Teacher";
+    private void handleCallDeclinedMessage(WebSocketSession session, MessageEnvelope message) throws IOException {
+        if (message.hasTo() && message.hasFrom() && message.hasSessionId()) {
+            String toUserId = message.getTo();
+            String fromUserId = message.getFrom();
+            String sessionId = message.getSessionId();
+            String declinerName = message.tree().path("declinerName").asText("Teacher");
 
             logger.info("📞❌ Call declined by {} (ID: {}) for session {}", declinerName, fromUserId, sessionId);
+            callSetupTracker.record(sessionId, CallSetupTracker.Milestone.DECLINED);
 
-            // Forward the decline message to the caller using direct user sessions
-            WebSocketSession targetSession = userSessions.get(toUserId);
-            if (targetSession != null && targetSession.isOpen()) {
-                try {
-                    targetSession.sendMessage(new TextMessage(message.toString()));
+            // Forward the decline message to the caller using direct user sessions, on whichever node
+            boolean forwarded = false;
+            try {
+                forwarded = sendToUser(toUserId, message.getFrame(), message.getType());
+                if (forwarded) {
                     logger.info("✅ Call decline message forwarded to user {} via direct session", toUserId);
-                } catch (IOException e) {
-                    logger.error("❌ Failed to forward call decline message to user {}: {}", toUserId, e.getMessage());
                 }
-            } else {
+            } catch (IOException e) {
+                logger.error("❌ Failed to forward call decline message to user {}: {}", toUserId, e.getMessage());
+            }
+            if (!forwarded) {
                 logger.warn("⚠️ Target user {} not found in active sessions or session is closed", toUserId);
 
                 // Try fallback with tutoring session participants
@@ -462,7 +628,7 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
                     WebSocketSession fallbackSession = participants.get(toUserId);
                     if (fallbackSession != null && fallbackSession.isOpen()) {
                         try {
-                            fallbackSession.sendMessage(new TextMessage(message.toString()));
+                            send(fallbackSession, message.getFrame());
                             logger.info("✅ Call decline message forwarded to user {} via fallback method", toUserId);
                         } catch (IOException e) {
                             logger.error("❌ Fallback method also failed for user {}: {}", toUserId, e.getMessage());
@@ -471,15 +637,175 @@ public class WebRTCSignalingHandler extends TextWebSocketHandler {
                 }
             }
 
-            // Clean up session participants
-            Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
-            if (participants != null) {
-                participants.clear();
-                tutoringSessionParticipants.remove(sessionId);
+            // Clean up session participants on every node
+            if (removeTutoringSession(sessionId)) {
                 logger.info("🧹 Session {} cleaned up after call decline", sessionId);
             }
         } else {
             sendErrorMessage(session, "Invalid call declined message format");
         }
     }
+    
+    /**
+     * Send a frame to a user connected to this node, or route it to the node that owns the
+     * user. Returns false if the user is offline.
+     */
+    private boolean sendToUser(String userId, TextMessage textMessage, String type) throws IOException {
+        if (sendToLocalUser(userId, textMessage, type)) {
+            return true;
+        }
+        
+        String node = signalingBus.locate(userId);
+        if (node != null && !node.equals(nodeId)) {
+            signalingBus.publish(node, BusMessage.toUser(userId, type, textMessage.getPayload()));
+            return true;
+        }
+        return false;
+    }
+    
+    // Inbound threads, the bus listener and the ICE batcher all write to the same sockets; a
+    // Tomcat session can't take two sends at once, so every write here holds the session's lock
+    private static void send(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+        synchronized (session) {
+            session.sendMessage(message);
+        }
+    }
+    
+    private boolean sendToLocalUser(String userId, TextMessage textMessage, String type) throws IOException {
+        WebSocketSession recipientSession = userSessions.get(userId);
+        if (recipientSession != null && recipientSession.isOpen()) {
+            // ICE candidates go out as CBOR if the recipient negotiated the binary protocol
+            send(recipientSession, WireProtocol.forSession(recipientSession, textMessage, type));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Hand an ICE candidate for a recipient on this node that opted in to the batcher. An
+     * offer or answer first delivers the candidates held for the pair so it never overtakes
+     * them. Returns true if the batcher took the frame.
+     */
+    private boolean batchIceCandidate(MessageEnvelope message, String toUserId) {
+        if (!SIGNALING_MILESTONES.containsKey(message.getType())
+                || !iceCandidateBatcher.accepts(userSessions.get(toUserId))) {
+            return false;
+        }
+        if (!"ice-candidate".equals(message.getType())) {
+            iceCandidateBatcher.flush(message.getFrom(), toUserId);
+            return false;
+        }
+        iceCandidateBatcher.submit(message.getFrom(), toUserId, message,
+                (frame, type) -> sendToLocalUser(toUserId, frame, type));
+        return true;
+    }
+    
+    /**
+     * Send a frame to every participant of a room: directly to the ones on this node, and once
+     * per other node that has participants in it
+     */
+    private void broadcastToRoom(String sessionId, TextMessage textMessage, String type, String excludeUserId) {
+        long seq = 0;
+        if (REPLAYED_TYPES.contains(type)) {
+            // Numbered by the bus, so every node buffers the same room sequence
+            seq = signalingBus.nextSequence(sessionId);
+            textMessage = RoomReplayBuffer.stamp(textMessage, seq);
+            replayBuffer.record(sessionId, seq, textMessage, type, excludeUserId,
+                    (frame, t) -> deliverToLocalRoom(sessionId, frame, t, excludeUserId));
+        } else {
+            deliverToLocalRoom(sessionId, textMessage, type, excludeUserId);
+        }
+        
+        Set<String> remoteNodes = new HashSet<>(signalingBus.roomMembers(sessionId).values());
+        remoteNodes.remove(nodeId);
+        if (!remoteNodes.isEmpty()) {
+            BusMessage busMessage = BusMessage.toRoom(sessionId, excludeUserId, type, textMessage.getPayload(), seq);
+            remoteNodes.forEach(node -> signalingBus.publish(node, busMessage));
+        }
+    }
+    
+    private void deliverToLocalRoom(String sessionId, TextMessage textMessage, String type, String excludeUserId) {
+        Map<String, WebSocketSession> participants = tutoringSessionParticipants.get(sessionId);
+        if (participants == null) {
+            return;
+        }
+        
+        for (Map.Entry<String, WebSocketSession> entry : participants.entrySet()) {
+            WebSocketSession participantSession = entry.getValue();
+            if (!entry.getKey().equals(excludeUserId) && participantSession.isOpen()) {
+                try {
+                    send(participantSession, WireProtocol.forSession(participantSession, textMessage, type));
+                } catch (IOException e) {
+                    logger.error("Error sending {} to participant {} of session {}", type, entry.getKey(), sessionId, e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Messages routed to this node by other nodes
+     */
+    private void onBusMessage(BusMessage message) {
+        switch (message.getKind()) {
+            case USER -> {
+                WebSocketSession recipientSession = userSessions.get(message.getTarget());
+                if (recipientSession != null && recipientSession.isOpen()) {
+                    try {
+                        TextMessage frame = new TextMessage(message.getPayload());
+                        // Relayed signaling is batched like local signaling; nothing else is parsed here
+                        boolean batched = SIGNALING_MILESTONES.containsKey(message.getType())
+                                && batchIceCandidate(MessageEnvelope.parse(frame), message.getTarget());
+                        if (!batched) {
+                            send(recipientSession, WireProtocol.forSession(recipientSession, frame, message.getType()));
+                        }
+                    } catch (IOException e) {
+                        logger.error("Error delivering routed {} to user {}", message.getType(), message.getTarget(), e);
+                    }
+                } else {
+                    logger.debug("Routed {} for user {} arrived after the user left node {}",
+                            message.getType(), message.getTarget(), nodeId);
+                }
+            }
+            case ROOM -> {
+                String roomId = message.getTarget();
+                String excludeUserId = message.getExcludeUserId();
+                TextMessage frame = new TextMessage(message.getPayload());
+                if (message.getSeq() != 0) {
+                    replayBuffer.record(roomId, message.getSeq(), frame, message.getType(), excludeUserId,
+                            (f, type) -> deliverToLocalRoom(roomId, f, type, excludeUserId));
+                } else {
+                    deliverToLocalRoom(roomId, frame, message.getType(), excludeUserId);
+                }
+            }
+            case CLOSE_ROOM -> removeLocalTutoringSession(message.getTarget());
+            case KICK -> {
+                WebSocketSession existingSession = userSessions.get(message.getTarget());
+                if (existingSession != null && existingSession.isOpen()) {
+                    logger.info("Closing WebRTC session of user {}, reconnected on another node", message.getTarget());
+                    closeSessionSafely(existingSession, CloseStatus.NORMAL, "New session established");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Calls on this node, by number of participants
+     */
+    public Map<String, Object> getRoomStats() {
+        return WebSocketTelemetry.roomSizes(tutoringSessionParticipants.values().stream().map(Map::size).toList());
+    }
+    
+    /**
+     * Queue and batch counters of the chat history write-behind
+     */
+    public Map<String, Object> getChatHistoryStats() {
+        return chatHistoryWriter.getStatsSnapshot();
+    }
+    
+    /**
+     * Rooms, buffered chat and resume counters of the replay buffer
+     */
+    public Map<String, Object> getReplayStats() {
+        return replayBuffer.getStatsSnapshot();
+    }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.nerdsoncall.websocket;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.CloseStatus;
@@ -8,7 +8,11 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -18,7 +22,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class WebSocketErrorHandler {
     
-    private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final int MAX_RETRY_ATTEMPTS = 3;
     private static final long RETRY_DELAY_MS = 1000;
     
@@ -26,6 +29,13 @@ public class WebSocketErrorHandler {
     private static final ConcurrentHashMap<String, AtomicInteger> sessionErrorCounts = new ConcurrentHashMap<>();
     private static final int MAX_ERRORS_PER_SESSION = 10;
     
+    // Delayed send retries for every handler share this thread; callers never wait on a retry
+    private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-send-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     /**
      * Safely close a WebSocket session with proper error handling
      */
@@ -51,77 +61,83 @@ public class WebSocketErrorHandler {
     }
     
     /**
-     * Safely send a message to a WebSocket session with retry logic
+     * Safely send a message to a WebSocket session with retry logic.
+     * The first attempt runs on the caller's thread; retries are scheduled, never slept on.
      */
-    public static boolean sendMessageSafely(WebSocketSession session, String message) {
+    public static CompletableFuture<Boolean> sendMessageSafely(WebSocketSession session, String message) {
         return sendMessageSafely(session, message, MAX_RETRY_ATTEMPTS);
     }
     
     /**
-     * Safely send a message to a WebSocket session with specified retry attempts
+     * Safely send a message to a WebSocket session with specified retry attempts.
+     * The future completes with true once the message is sent, or false when it was given up on.
      */
-    public static boolean sendMessageSafely(WebSocketSession session, String message, int maxRetries) {
+    public static CompletableFuture<Boolean> sendMessageSafely(WebSocketSession session, String message, int maxRetries) {
         if (session == null) {
             log.warn("Attempted to send message to null WebSocket session");
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
         
         if (message == null || message.isEmpty()) {
             log.warn("Attempted to send null or empty message");
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
         
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        attemptSend(session, new TextMessage(message), 1, maxRetries, result);
+        return result;
+    }
+    
+    private static void attemptSend(WebSocketSession session, TextMessage message, int attempt, int maxRetries,
+                                    CompletableFuture<Boolean> result) {
+        String sessionId = session.getId();
         if (!session.isOpen()) {
-            log.debug("Cannot send message to closed WebSocket session: {}", session.getId());
-            return false;
+            log.debug("Cannot send message to closed WebSocket session: {}", sessionId);
+            result.complete(false);
+            return;
         }
         
         // Check if session has exceeded error limit
-        String sessionId = session.getId();
         AtomicInteger errorCount = sessionErrorCounts.get(sessionId);
         if (errorCount != null && errorCount.get() >= MAX_ERRORS_PER_SESSION) {
             log.warn("Session {} has exceeded maximum error count, closing connection", sessionId);
             closeSessionSafely(session, CloseStatus.POLICY_VIOLATION, "Too many errors");
-            return false;
+            result.complete(false);
+            return;
         }
         
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                session.sendMessage(new TextMessage(message));
-                log.debug("Message sent successfully to session {} on attempt {}", sessionId, attempt);
-                return true;
-                
-            } catch (IOException e) {
-                log.warn("IO error sending message to session {} (attempt {}): {}", 
-                    sessionId, attempt, e.getMessage());
-                
-                if (attempt == maxRetries) {
-                    log.error("Failed to send message after {} attempts, closing session {}", 
-                        maxRetries, sessionId);
-                    incrementErrorCount(sessionId);
-                    closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Message send failed");
-                    return false;
-                }
-                
-                // Wait before retry
-                try {
-                    Thread.sleep(RETRY_DELAY_MS * attempt);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while waiting to retry message send");
-                    return false;
-                }
-                
-            } catch (Exception e) {
-                log.error("Unexpected error sending message to session {} (attempt {}): {}", 
-                    sessionId, attempt, e.getMessage(), e);
+        try {
+            // Same lock as the handlers' own sends, so a confirmation or error never interleaves with them
+            synchronized (session) {
+                session.sendMessage(message);
+            }
+            log.debug("Message sent successfully to session {} on attempt {}", sessionId, attempt);
+            result.complete(true);
+            
+        } catch (IOException e) {
+            log.warn("IO error sending message to session {} (attempt {}): {}", 
+                sessionId, attempt, e.getMessage());
+            
+            if (attempt >= maxRetries) {
+                log.error("Failed to send message after {} attempts, closing session {}", 
+                    attempt, sessionId);
                 incrementErrorCount(sessionId);
-                closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Unexpected error");
-                return false;
+                closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Message send failed");
+                result.complete(false);
+                return;
             }
+            
+            // Back off on the shared scheduler instead of parking the caller's thread
+            retryScheduler.schedule(() -> attemptSend(session, message, attempt + 1, maxRetries, result),
+                RETRY_DELAY_MS * attempt, TimeUnit.MILLISECONDS);
+            
+        } catch (Exception e) {
+            log.error("Unexpected error sending message to session {} (attempt {}): {}", 
+                sessionId, attempt, e.getMessage(), e);
+            incrementErrorCount(sessionId);
+            closeSessionSafely(session, CloseStatus.SERVER_ERROR, "Unexpected error");
+            result.complete(false);
         }
-        
-        return false;
     }
     
     /**
@@ -133,13 +149,13 @@ public class WebSocketErrorHandler {
         }
         
         try {
-            ObjectNode errorResponse = objectMapper.createObjectNode();
+            ObjectNode errorResponse = WebSocketJson.createObjectNode();
             errorResponse.put("type", "error");
             errorResponse.put("errorCode", errorCode);
             errorResponse.put("message", errorMessage);
             errorResponse.put("timestamp", System.currentTimeMillis());
             
-            sendMessageSafely(session, errorResponse.toString());
+            sendMessageSafely(session, WebSocketJson.write(errorResponse));
             
         } catch (Exception e) {
             log.error("Error creating error message for session {}: {}", session.getId(), e.getMessage());
@@ -184,8 +200,11 @@ public class WebSocketErrorHandler {
             return false;
         }
         
-        try {
-            objectMapper.readTree(message);
+        // Stream through the tokens instead of building a tree that is thrown away
+        try (JsonParser parser = WebSocketJson.createParser(message)) {
+            while (parser.nextToken() != null) {
+                parser.skipChildren();
+            }
             return true;
         } catch (Exception e) {
             log.debug("Invalid JSON message: {}", e.getMessage());
@@ -228,18 +247,44 @@ public class WebSocketErrorHandler {
         }
     }
     
+    /**
+     * Record a client going over a flood control limit. Counts towards the session's error
+     * limit, so a client that keeps flooding is eventually disconnected.
+     *
+     * @return false if the session was closed for it, true if the caller should just tell the
+     *         client its frames are being dropped
+     */
+    public static boolean handleRateLimitViolation(WebSocketSession session, String messageType) {
+        if (session == null) {
+            return false;
+        }
+        
+        String sessionId = session.getId();
+        log.warn("Session {} is over the {} rate limit, dropping frames", sessionId, messageType);
+        
+        incrementErrorCount(sessionId);
+        
+        AtomicInteger errorCount = sessionErrorCounts.get(sessionId);
+        if (errorCount != null && errorCount.get() >= MAX_ERRORS_PER_SESSION) {
+            log.warn("Session {} has exceeded maximum error count, closing connection", sessionId);
+            closeSessionSafely(session, CloseStatus.POLICY_VIOLATION, "Too many errors");
+            return false;
+        }
+        return true;
+    }
+    
     /**
      * Send connection confirmation to client
      */
     public static void sendConnectionConfirmation(WebSocketSession session, String userId) {
         try {
-            ObjectNode confirmation = objectMapper.createObjectNode();
+            ObjectNode confirmation = WebSocketJson.createObjectNode();
             confirmation.put("type", "connection_confirmed");
             confirmation.put("userId", userId);
             confirmation.put("sessionId", session.getId());
             confirmation.put("timestamp", System.currentTimeMillis());
             
-            sendMessageSafely(session, confirmation.toString());
+            sendMessageSafely(session, WebSocketJson.write(confirmation));
             
         } catch (Exception e) {
             log.error("Error sending connection confirmation to session {}: {}", session.getId(), e.getMessage());
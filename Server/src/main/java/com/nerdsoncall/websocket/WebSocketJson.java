@@ -0,0 +1,62 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Shared JSON infrastructure for the WebSocket handlers. One factory, reader and writer
+ * are reused by every handler instead of an ObjectMapper per class.
+ */
+public final class WebSocketJson {
+
+    // Field names in whiteboard scenes are arbitrary client data; interning them would only
+    // grow the JVM string table and contend on it
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build();
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder(FACTORY).build();
+
+    private static final ObjectReader TREE_READER = MAPPER.readerFor(JsonNode.class);
+
+    private static final ObjectWriter WRITER = MAPPER.writer();
+
+    private WebSocketJson() {
+    }
+
+    public static JsonParser createParser(String content) throws IOException {
+        return FACTORY.createParser(content);
+    }
+
+    public static JsonGenerator createGenerator(Writer out) throws IOException {
+        return FACTORY.createGenerator(out);
+    }
+
+    public static JsonNode readTree(String content) throws IOException {
+        return TREE_READER.readTree(content);
+    }
+
+    public static ObjectNode createObjectNode() {
+        return MAPPER.createObjectNode();
+    }
+
+    public static String write(JsonNode node) {
+        try {
+            return WRITER.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            // Writing an in-memory tree to a String involves no I/O
+            throw new IllegalStateException("Could not serialize WebSocket message", e);
+        }
+    }
+}
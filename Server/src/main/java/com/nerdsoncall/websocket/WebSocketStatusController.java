@@ -17,6 +17,36 @@ public class WebSocketStatusController {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private TutoringSessionHandler tutoringSessionHandler;
+
+    @Autowired
+    private WebRTCSignalingHandler webRTCSignalingHandler;
+
+    @Autowired
+    private HeartbeatMonitor heartbeatMonitor;
+
+    @Autowired
+    private MultiplexHandler multiplexHandler;
+
+    @Autowired
+    private FloodControl floodControl;
+
+    @Autowired
+    private WebSocketTelemetry webSocketTelemetry;
+
+    @Autowired
+    private HandshakeAdmission handshakeAdmission;
+
+    @Autowired
+    private CallSetupTracker callSetupTracker;
+
+    @Autowired
+    private IceCandidateBatcher iceCandidateBatcher;
+
+    @Autowired
+    private DashboardPublisher dashboardPublisher;
+
     @GetMapping("/status")
     public Map<String, Object> getWebSocketStatus() {
         Map<String, Object> status = new HashMap<>();
@@ -30,11 +60,91 @@ public class WebSocketStatusController {
         boolean signalingHandlerExists = applicationContext.containsBean("signalingHandler");
         boolean webRTCHandlerExists = applicationContext.containsBean("webRTCSignalingHandler");
         boolean tutoringSessionHandlerExists = applicationContext.containsBean("tutoringSessionHandler");
+        boolean multiplexHandlerExists = applicationContext.containsBean("multiplexHandler");
 
         status.put("signalingHandlerRegistered", signalingHandlerExists);
         status.put("webRTCHandlerRegistered", webRTCHandlerExists);
         status.put("tutoringSessionHandlerRegistered", tutoringSessionHandlerExists);
+        status.put("multiplexHandlerRegistered", multiplexHandlerExists);
 
         return status;
     }
-}
\ No newline at end of file
+
+    @GetMapping("/dashboard-stats")
+    public Map<String, Object> getDashboardStats() {
+        return dashboardPublisher.getStatsSnapshot();
+    }
+
+    @GetMapping("/ice-batch-stats")
+    public Map<String, Object> getIceBatchStats() {
+        return iceCandidateBatcher.getStatsSnapshot();
+    }
+
+    @GetMapping("/call-setup-stats")
+    public Map<String, Object> getCallSetupStats() {
+        return callSetupTracker.getStatsSnapshot();
+    }
+
+    @GetMapping("/admission-stats")
+    public Map<String, Object> getAdmissionStats() {
+        return handshakeAdmission.getStatsSnapshot();
+    }
+
+    @GetMapping("/telemetry")
+    public Map<String, Object> getTelemetry() {
+        return webSocketTelemetry.getStatsSnapshot();
+    }
+
+    @GetMapping("/session-stats")
+    public Map<String, Object> getSessionOutboundStats() {
+        return tutoringSessionHandler.getOutboundStats();
+    }
+
+    @GetMapping("/coalescing-stats")
+    public Map<String, Object> getCoalescingStats() {
+        return tutoringSessionHandler.getCoalescingStats();
+    }
+
+    @GetMapping("/chunking-stats")
+    public Map<String, Object> getChunkingStats() {
+        return tutoringSessionHandler.getChunkingStats();
+    }
+
+    @GetMapping("/room-lane-stats")
+    public Map<String, Object> getRoomLaneStats() {
+        return tutoringSessionHandler.getRoomLaneStats();
+    }
+
+    @GetMapping("/whiteboard-stats")
+    public Map<String, Object> getWhiteboardStats() {
+        return tutoringSessionHandler.getWhiteboardStats();
+    }
+
+    @GetMapping("/replay-stats")
+    public Map<String, Object> getReplayStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("session", tutoringSessionHandler.getReplayStats());
+        stats.put("webrtc", webRTCSignalingHandler.getReplayStats());
+        return stats;
+    }
+
+    @GetMapping("/chat-history-stats")
+    public Map<String, Object> getChatHistoryStats() {
+        return webRTCSignalingHandler.getChatHistoryStats();
+    }
+
+    @GetMapping("/heartbeat-stats")
+    public Map<String, Object> getHeartbeatStats() {
+        return heartbeatMonitor.getStatsSnapshot();
+    }
+
+    @GetMapping("/multiplex-stats")
+    public Map<String, Object> getMultiplexStats() {
+        return multiplexHandler.getStatsSnapshot();
+    }
+
+    @GetMapping("/flood-control-stats")
+    public Map<String, Object> getFloodControlStats() {
+        return floodControl.getStatsSnapshot();
+    }
+}
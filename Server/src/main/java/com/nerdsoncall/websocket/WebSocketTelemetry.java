@@ -0,0 +1,241 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of per-endpoint WebSocket traffic metrics: open connections, messages and bytes
+ * in each direction by message type, socket send latency and send failures.
+ *
+ * Everything on the message path is a LongAdder increment or a lookup in a concurrent map,
+ * so recording never contends between connections. Rates are worked out when a snapshot is
+ * read, from the counts since the previous snapshot. Sizes are counted in chars of the text
+ * payload, which for JSON frames is the byte count on the wire in all but non-ASCII text.
+ */
+public class WebSocketTelemetry {
+
+    // Clients choose the type field; past this many distinct types the rest share one entry
+    static final int MAX_TYPES_PER_DIRECTION = 64;
+    static final String OTHER_TYPE = "other";
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, k -> new Endpoint());
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> snapshot.put(name, endpoint.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Room count and how many rooms there are of each size
+     */
+    static Map<String, Object> roomSizes(Iterable<Integer> sizes) {
+        Map<Integer, Integer> bySize = new TreeMap<>();
+        int rooms = 0;
+        long participants = 0;
+        for (int size : sizes) {
+            bySize.merge(size, 1, Integer::sum);
+            rooms++;
+            participants += size;
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("rooms", rooms);
+        snapshot.put("participants", participants);
+        snapshot.put("roomsBySize", bySize);
+        return snapshot;
+    }
+
+    /**
+     * Type label of a frame: the top-level "type" field of a JSON text frame, found without
+     * parsing the rest of it
+     */
+    static String typeOf(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            String type = topLevelType(text.getPayload());
+            return type != null ? type : "unknown";
+        }
+        if (message instanceof BinaryMessage) {
+            return "binary";
+        }
+        if (message instanceof PingMessage) {
+            return "ping";
+        }
+        if (message instanceof PongMessage) {
+            return "pong";
+        }
+        return "unknown";
+    }
+
+    static String topLevelType(String json) {
+        int depth = 0;
+        int n = json.length();
+        for (int i = 0; i < n; i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                int end = endOfString(json, i);
+                if (end < 0) {
+                    return null;
+                }
+                if (depth == 1 && end == i + 5 && json.startsWith("type", i + 1)) {
+                    int colon = skipWhitespace(json, end + 1);
+                    if (colon < n && json.charAt(colon) == ':') {
+                        int value = skipWhitespace(json, colon + 1);
+                        if (value < n && json.charAt(value) == '"') {
+                            int valueEnd = endOfString(json, value);
+                            return valueEnd > 0 ? json.substring(value + 1, valueEnd) : null;
+                        }
+                        return null;
+                    }
+                }
+                i = end;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    private static int endOfString(String json, int openQuote) {
+        for (int i = openQuote + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int sizeOf(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text ? text.getPayload().length() : message.getPayloadLength();
+    }
+
+    /**
+     * Metrics of one endpoint
+     */
+    public static final class Endpoint {
+        private final LongAdder opened = new LongAdder();
+        private final LongAdder closed = new LongAdder();
+        private final Direction inbound = new Direction();
+        private final Direction outbound = new Direction();
+        private final LatencyHistogram sendLatency = new LatencyHistogram();
+        private final LongAdder sendFailures = new LongAdder();
+
+        private long lastSnapshotNanos = System.nanoTime();
+
+        public void connectionOpened() {
+            opened.increment();
+        }
+
+        public void connectionClosed() {
+            closed.increment();
+        }
+
+        public void recordInbound(WebSocketMessage<?> message) {
+            inbound.record(typeOf(message), sizeOf(message));
+        }
+
+        public void recordSent(WebSocketMessage<?> message, long sendNanos) {
+            outbound.record(typeOf(message), sizeOf(message));
+            sendLatency.record(sendNanos);
+        }
+
+        public void recordSendFailure() {
+            sendFailures.increment();
+        }
+
+        public long getOpenConnections() {
+            return opened.sum() - closed.sum();
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            long now = System.nanoTime();
+            double seconds = Math.max(now - lastSnapshotNanos, 1_000_000L) / 1e9;
+            lastSnapshotNanos = now;
+
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("openConnections", getOpenConnections());
+            snapshot.put("connectionsOpened", opened.sum());
+            snapshot.put("inbound", inbound.snapshot(seconds));
+            snapshot.put("outbound", outbound.snapshot(seconds));
+            snapshot.put("sendLatency", sendLatency.snapshot());
+            snapshot.put("sendFailures", sendFailures.sum());
+            return snapshot;
+        }
+    }
+
+    private static final class Direction {
+        private final Map<String, TypeCounters> types = new ConcurrentHashMap<>();
+        private final LongAdder bytes = new LongAdder();
+        // Only touched by the synchronized Endpoint snapshot
+        private long lastBytes;
+
+        private void record(String type, int size) {
+            TypeCounters counters = types.get(type);
+            if (counters == null) {
+                String key = types.size() < MAX_TYPES_PER_DIRECTION ? type : OTHER_TYPE;
+                counters = types.computeIfAbsent(key, k -> new TypeCounters());
+            }
+            counters.messages.increment();
+            counters.bytes.add(size);
+            bytes.add(size);
+        }
+
+        private Map<String, Object> snapshot(double seconds) {
+            Map<String, Object> byType = new TreeMap<>();
+            long messages = 0;
+            for (Map.Entry<String, TypeCounters> entry : types.entrySet()) {
+                TypeCounters counters = entry.getValue();
+                long count = counters.messages.sum();
+                long bytesForType = counters.bytes.sum();
+                messages += count;
+
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("messages", count);
+                stats.put("bytes", bytesForType);
+                stats.put("messagesPerSecond", (count - counters.lastMessages) / seconds);
+                byType.put(entry.getKey(), stats);
+                counters.lastMessages = count;
+            }
+
+            long totalBytes = bytes.sum();
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("messages", messages);
+            snapshot.put("bytes", totalBytes);
+            snapshot.put("bytesPerSecond", (totalBytes - lastBytes) / seconds);
+            snapshot.put("byType", byType);
+            lastBytes = totalBytes;
+            return snapshot;
+        }
+    }
+
+    private static final class TypeCounters {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private long lastMessages;
+    }
+}
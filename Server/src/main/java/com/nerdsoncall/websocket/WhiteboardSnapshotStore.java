@@ -0,0 +1,757 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Authoritative whiteboard state of every active tutoring room.
+ *
+ * Relayed whiteboard frames are folded into an in-memory board per room (excalidraw elements
+ * by id, the current pen stroke log, the last canvas_update payload), so a client that
+ * subscribes mid-session gets one compact whiteboard_snapshot instead of waiting for the next
+ * full scene. Relaying a frame only queues it on its board; the queue is parsed and folded
+ * on the store's thread at the next flush (or by a snapshot request), so relaying never pays
+ * for a tree parse. Changes are written behind as append-only deltas on a fixed interval and
+ * folded into Session.canvasData every few deltas. Rooms without subscribers are evicted after an
+ * idle timeout, or earlier when the resident boards exceed the memory budget.
+ */
+@Slf4j
+public class WhiteboardSnapshotStore {
+
+    /**
+     * Durable storage of boards. Implementations must keep appends and compactions of one
+     * room in order; they are only ever called from the store's own thread (and once more on
+     * shutdown, after that thread has stopped), never from a room's thread.
+     */
+    public interface Persistence {
+        /** The stored board of a room, or null if the room has no backing session */
+        StoredBoard load(String roomId);
+
+        void appendDelta(String roomId, long seq, String delta);
+
+        /** Replace the stored snapshot and drop every delta up to and including seq */
+        void compact(String roomId, long seq, String snapshot);
+    }
+
+    /**
+     * Snapshot (may be null) plus the deltas written after it, oldest first
+     */
+    public record StoredBoard(String snapshot, List<String> deltas) {
+    }
+
+    private static final String DRAWING_EVENT = "drawing_event";
+    private static final String EXCALIDRAW_UPDATE = "excalidraw_update";
+    private static final String CANVAS_UPDATE = "canvas_update";
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+
+    private final FrameCoalescer.SceneMode sceneMode;
+    private final Persistence persistence;
+    private final long maxResidentBytes;
+    private final long idleTimeoutMillis;
+    private final int compactEveryDeltas;
+    private final int maxStrokes;
+    private final ScheduledExecutorService scheduler;
+
+    // Room id -> resident board
+    private final Map<String, RoomBoard> boards = new ConcurrentHashMap<>();
+
+    private final LongAdder deltasWritten = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder snapshotsServed = new LongAdder();
+    private final LongAdder strokesTrimmed = new LongAdder();
+    private volatile long residentBytes;
+
+    public WhiteboardSnapshotStore(FrameCoalescer.SceneMode sceneMode, Persistence persistence,
+                                   long flushIntervalMillis, int compactEveryDeltas, int maxStrokes,
+                                   long maxResidentBytes, long idleTimeoutMillis) {
+        this.sceneMode = sceneMode;
+        this.persistence = persistence;
+        this.maxResidentBytes = maxResidentBytes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.compactEveryDeltas = Math.max(1, compactEveryDeltas);
+        this.maxStrokes = Math.max(1, maxStrokes);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-whiteboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis,
+            TimeUnit.MILLISECONDS);
+
+        log.info("Whiteboard snapshots configured: flushInterval={}ms, compactEvery={} deltas, maxStrokes={}, maxResident={} bytes, idleTimeout={}ms",
+            flushIntervalMillis, compactEveryDeltas, maxStrokes, maxResidentBytes, idleTimeoutMillis);
+    }
+
+    /**
+     * Fold a relayed whiteboard frame into the room's board. Other frame types are ignored.
+     */
+    public void apply(String roomId, TextMessage frame, String type) {
+        if (!DRAWING_EVENT.equals(type) && !EXCALIDRAW_UPDATE.equals(type) && !CANVAS_UPDATE.equals(type)) {
+            return;
+        }
+
+        // Only queued here; the frame is parsed and folded on the store's thread
+        while (true) {
+            RoomBoard board = residentBoard(roomId);
+            synchronized (board) {
+                if (board.evicted) {
+                    continue;
+                }
+                board.touch();
+                board.inbox.add(new Queued(type, frame, null));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand a (new) subscriber the compact whiteboard_snapshot frame of the board as of this
+     * call; nothing is handed over if the board is empty. A resident board answers right away,
+     * one still being loaded answers from the store's thread once the load is done, so the
+     * receiver must not block. Marks the room as active so it is not evicted while someone is
+     * connected.
+     */
+    public void snapshot(String roomId, Consumer<TextMessage> receiver) {
+        TextMessage snapshot;
+        while (true) {
+            RoomBoard board = residentBoard(roomId);
+            synchronized (board) {
+                if (board.evicted) {
+                    continue;
+                }
+                board.touch();
+                board.idleSince = 0;
+                if (!board.loaded) {
+                    // Answered in order with the frames queued before it
+                    board.inbox.add(new Queued(null, null, receiver));
+                    return;
+                }
+                board.foldInbox();
+                snapshot = board.snapshotFrame();
+                break;
+            }
+        }
+        if (snapshot != null) {
+            receiver.accept(snapshot);
+        }
+    }
+
+    /**
+     * The last subscriber left; the board becomes a candidate for eviction
+     */
+    public void markIdle(String roomId) {
+        RoomBoard board = boards.get(roomId);
+        if (board != null) {
+            synchronized (board) {
+                board.idleSince = System.currentTimeMillis();
+            }
+        }
+    }
+
+    public Map<String, Object> getStatsSnapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("residentRooms", boards.size());
+        snapshot.put("residentBytes", residentBytes);
+        snapshot.put("maxResidentBytes", maxResidentBytes);
+        snapshot.put("deltasWritten", deltasWritten.sum());
+        snapshot.put("compactions", compactions.sum());
+        snapshot.put("evictions", evictions.sum());
+        snapshot.put("snapshotsServed", snapshotsServed.sum());
+        snapshot.put("strokesTrimmed", strokesTrimmed.sum());
+        snapshot.put("maxStrokes", maxStrokes);
+        return snapshot;
+    }
+
+    /**
+     * Run a flush on the store's thread, after everything already queued there, and wait for it
+     */
+    void flushNow() throws Exception {
+        scheduler.submit(() -> flush(false)).get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            // Write out everything that is still pending before the application stops
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            flush(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error flushing whiteboard boards on shutdown", e);
+        }
+    }
+
+    /**
+     * The room's board; a board created here is loaded on the store's thread, and frames
+     * arriving meanwhile wait in its queue
+     */
+    private RoomBoard residentBoard(String roomId) {
+        RoomBoard board = boards.computeIfAbsent(roomId, RoomBoard::new);
+        synchronized (board) {
+            if (!board.loaded && !board.loading) {
+                board.loading = true;
+                if (persistence == null) {
+                    board.loaded = true;
+                } else {
+                    try {
+                        scheduler.execute(() -> load(board));
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down, nothing will be written any more
+                        board.loaded = true;
+                    }
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Read the stored board and replay it outside the board's lock, then adopt it and fold
+     * whatever was queued during the load. Runs on the store's thread.
+     */
+    private void load(RoomBoard board) {
+        RoomBoard restored = new RoomBoard(board.roomId);
+        boolean persistent = false;
+        int deltas = 0;
+        try {
+            StoredBoard stored = persistence.load(board.roomId);
+            // Without a session row behind this room the board is kept in memory only
+            if (stored != null) {
+                if (stored.snapshot() != null && !stored.snapshot().isBlank()) {
+                    JsonNode snapshot = WebSocketJson.readTree(stored.snapshot());
+                    if (snapshot.path("version").asInt() == SNAPSHOT_FORMAT_VERSION) {
+                        restored.restoreSnapshot(snapshot);
+                    } else {
+                        log.warn("Ignoring canvasData of room {} in an unknown format", board.roomId);
+                    }
+                }
+                for (String delta : stored.deltas()) {
+                    restored.replayDelta(WebSocketJson.readTree(delta));
+                }
+                deltas = stored.deltas().size();
+                persistent = true;
+            }
+        } catch (Exception e) {
+            // Never overwrite what is stored with a board we could not restore
+            restored = new RoomBoard(board.roomId);
+            persistent = false;
+            log.error("Error restoring whiteboard of room {}, keeping it in memory only", board.roomId, e);
+        }
+
+        synchronized (board) {
+            board.adopt(restored);
+            board.persistent = persistent;
+            board.loaded = true;
+            board.foldInbox();
+        }
+        if (persistent) {
+            log.info("Restored whiteboard of room {} at seq {} ({} deltas)", board.roomId, restored.seq, deltas);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("Error flushing whiteboard boards", e);
+        }
+    }
+
+    /**
+     * Write pending deltas, compact boards that have accumulated enough of them and evict
+     * idle boards. Runs on the store's own thread, database writes happen outside board locks.
+     */
+    private void flush(boolean finalFlush) {
+        long now = System.currentTimeMillis();
+        long total = 0;
+        List<RoomBoard> idle = new ArrayList<>();
+
+        for (RoomBoard board : boards.values()) {
+            String delta = null;
+            String snapshot = null;
+            long seq;
+
+            synchronized (board) {
+                if (board.evicted || !board.loaded) {
+                    continue;
+                }
+                board.foldInbox();
+                if (board.hasPending()) {
+                    if (board.persistent) {
+                        board.seq++;
+                        delta = board.drainDelta();
+                        board.deltasSinceCompaction++;
+                        if (board.deltasSinceCompaction >= compactEveryDeltas || finalFlush) {
+                            snapshot = board.toStoredSnapshot();
+                            board.deltasSinceCompaction = 0;
+                        }
+                    } else {
+                        board.clearPending();
+                    }
+                }
+                seq = board.seq;
+                total += board.approxBytes;
+                if (board.idleSince > 0) {
+                    idle.add(board);
+                }
+            }
+
+            write(board.roomId, seq, delta, snapshot);
+        }
+        residentBytes = total;
+
+        if (finalFlush) {
+            return;
+        }
+
+        // Least recently used idle boards first; past the timeout they go regardless of the budget
+        idle.sort(Comparator.comparingLong(board -> board.lastActivity));
+        for (RoomBoard board : idle) {
+            boolean expired = now - board.lastActivity >= idleTimeoutMillis;
+            if (!expired && residentBytes <= maxResidentBytes) {
+                break;
+            }
+            evict(board);
+        }
+
+        if (residentBytes > maxResidentBytes) {
+            log.warn("Whiteboard boards of active rooms use {} bytes, above the {} byte budget",
+                residentBytes, maxResidentBytes);
+        }
+    }
+
+    private void evict(RoomBoard board) {
+        String snapshot = null;
+        long seq;
+        synchronized (board) {
+            if (board.idleSince == 0 || board.evicted) {
+                return;
+            }
+            board.foldInbox();
+            if (board.persistent && (board.deltasSinceCompaction > 0 || board.hasPending())) {
+                if (board.hasPending()) {
+                    board.seq++;
+                    board.clearPending();
+                }
+                snapshot = board.toStoredSnapshot();
+                board.deltasSinceCompaction = 0;
+            }
+            seq = board.seq;
+        }
+
+        // Compact before dropping the board so a reload sees everything
+        write(board.roomId, seq, null, snapshot);
+
+        synchronized (board) {
+            if (board.idleSince == 0 || board.hasPending()) {
+                // Someone subscribed or drew while we were writing
+                return;
+            }
+            board.evicted = true;
+            boards.remove(board.roomId, board);
+            residentBytes -= board.approxBytes;
+        }
+        evictions.increment();
+        log.debug("Evicted idle whiteboard of room {}", board.roomId);
+    }
+
+    private void write(String roomId, long seq, String delta, String snapshot) {
+        if (delta == null && snapshot == null) {
+            return;
+        }
+        try {
+            if (delta != null) {
+                persistence.appendDelta(roomId, seq, delta);
+                deltasWritten.increment();
+            }
+            if (snapshot != null) {
+                persistence.compact(roomId, seq, snapshot);
+                compactions.increment();
+            }
+        } catch (Exception e) {
+            log.error("Error persisting whiteboard of room {} at seq {}", roomId, seq, e);
+        }
+    }
+
+    /**
+     * One room's board. All fields are guarded by the board's monitor.
+     */
+    private class RoomBoard {
+        private final String roomId;
+
+        // Current state
+        private final Map<String, JsonNode> elements = new LinkedHashMap<>();
+        private JsonNode appState;
+        private final ArrayDeque<Stroke> strokes = new ArrayDeque<>();
+        private JsonNode canvas;
+
+        // Serialized size of each part, kept current as the parts change
+        private final Map<String, Integer> elementBytes = new HashMap<>();
+        private int appStateBytes;
+        private long strokeBytes;
+        private int canvasBytes;
+
+        // Frames relayed since the last fold, not parsed yet
+        private final List<Queued> inbox = new ArrayList<>();
+
+        // Changes not yet written as a delta
+        private final Set<String> upserted = new LinkedHashSet<>();
+        private final Set<String> removed = new LinkedHashSet<>();
+        private final List<JsonNode> pendingStrokes = new ArrayList<>();
+        private boolean pendingClear;
+        private boolean appStateDirty;
+        private boolean canvasDirty;
+
+        private long seq;
+        private int deltasSinceCompaction;
+        private long approxBytes; // sum of the sizes above
+        private long lastActivity;
+        private long idleSince;
+        private boolean loading;
+        private boolean loaded;
+        private boolean persistent;
+        private boolean evicted;
+
+        private RoomBoard(String roomId) {
+            this.roomId = roomId;
+            // Idle until someone subscribes, so frames sent to an empty room can't pin a board
+            this.lastActivity = System.currentTimeMillis();
+            this.idleSince = lastActivity;
+        }
+
+        private void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private boolean isEmpty() {
+            return elements.isEmpty() && strokes.isEmpty() && canvas == null && appState == null;
+        }
+
+        /**
+         * Parse the queued frames and apply them in arrival order, answering queued snapshot
+         * requests as their turn comes
+         */
+        private void foldInbox() {
+            for (Queued frame : inbox) {
+                if (frame.snapshotReceiver() != null) {
+                    TextMessage snapshot = snapshotFrame();
+                    if (snapshot != null) {
+                        frame.snapshotReceiver().accept(snapshot);
+                    }
+                    continue;
+                }
+                JsonNode data;
+                try {
+                    data = WebSocketJson.readTree(frame.frame().getPayload()).path("data");
+                } catch (Exception e) {
+                    log.debug("Ignoring unparseable {} frame for room {}: {}", frame.type(), roomId, e.getMessage());
+                    continue;
+                }
+                switch (frame.type()) {
+                    case EXCALIDRAW_UPDATE -> applyScene(data);
+                    case DRAWING_EVENT -> applyDrawingEvent(data);
+                    default -> applyCanvas(data);
+                }
+            }
+            inbox.clear();
+        }
+
+        private void applyScene(JsonNode data) {
+            if (data.has("appState")) {
+                setAppState(data.get("appState"));
+                appStateDirty = true;
+            }
+
+            JsonNode list = data.path("elements");
+            if (!list.isArray()) {
+                return;
+            }
+
+            Set<String> seen = sceneMode == FrameCoalescer.SceneMode.LATEST ? new HashSet<>() : null;
+            for (JsonNode element : list) {
+                String id = element.path("id").asText(null);
+                if (id == null) {
+                    continue;
+                }
+                if (seen != null) {
+                    seen.add(id);
+                }
+                JsonNode existing = elements.get(id);
+                if (existing == null || isNewer(element, existing)) {
+                    putElement(id, element);
+                    upserted.add(id);
+                    removed.remove(id);
+                }
+            }
+
+            if (seen != null) {
+                // A full scene: whatever it no longer contains is gone
+                Iterator<String> ids = elements.keySet().iterator();
+                while (ids.hasNext()) {
+                    String id = ids.next();
+                    if (!seen.contains(id)) {
+                        ids.remove();
+                        approxBytes -= elementBytes.remove(id);
+                        upserted.remove(id);
+                        removed.add(id);
+                    }
+                }
+            }
+        }
+
+        private void applyDrawingEvent(JsonNode data) {
+            if ("clear".equals(data.path("type").asText())) {
+                clearStrokes();
+                pendingStrokes.clear();
+                pendingClear = true;
+                return;
+            }
+            addStroke(data);
+            pendingStrokes.add(data);
+        }
+
+        private void applyCanvas(JsonNode data) {
+            setCanvas(data);
+            canvasDirty = true;
+        }
+
+        private void putElement(String id, JsonNode element) {
+            Integer previous = elementBytes.put(id, measure(element));
+            approxBytes += elementBytes.get(id) - (previous != null ? previous : 0);
+            elements.put(id, element);
+        }
+
+        private void removeElement(String id) {
+            elements.remove(id);
+            Integer previous = elementBytes.remove(id);
+            if (previous != null) {
+                approxBytes -= previous;
+            }
+        }
+
+        private void setAppState(JsonNode value) {
+            int bytes = measure(value);
+            approxBytes += bytes - appStateBytes;
+            appStateBytes = bytes;
+            appState = value;
+        }
+
+        private void setCanvas(JsonNode value) {
+            int bytes = measure(value);
+            approxBytes += bytes - canvasBytes;
+            canvasBytes = bytes;
+            canvas = value;
+        }
+
+        /**
+         * Append a pen stroke; past the cap the oldest strokes fall off the board (and out of
+         * the next compacted snapshot), so a board that stays active can't grow without bound
+         */
+        private void addStroke(JsonNode data) {
+            Stroke stroke = new Stroke(data, measure(data));
+            strokes.addLast(stroke);
+            strokeBytes += stroke.bytes();
+            approxBytes += stroke.bytes();
+            while (strokes.size() > maxStrokes) {
+                Stroke oldest = strokes.removeFirst();
+                strokeBytes -= oldest.bytes();
+                approxBytes -= oldest.bytes();
+                strokesTrimmed.increment();
+            }
+        }
+
+        private void clearStrokes() {
+            strokes.clear();
+            approxBytes -= strokeBytes;
+            strokeBytes = 0;
+        }
+
+        private boolean hasPending() {
+            return !inbox.isEmpty() || !upserted.isEmpty() || !removed.isEmpty() || !pendingStrokes.isEmpty()
+                || pendingClear || appStateDirty || canvasDirty;
+        }
+
+        private void clearPending() {
+            upserted.clear();
+            removed.clear();
+            pendingStrokes.clear();
+            pendingClear = false;
+            appStateDirty = false;
+            canvasDirty = false;
+        }
+
+        /**
+         * Serialize the pending changes as one delta and reset them
+         */
+        private String drainDelta() {
+            ObjectNode delta = WebSocketJson.createObjectNode();
+            delta.put("seq", seq);
+            if (!upserted.isEmpty()) {
+                ArrayNode upsert = delta.putArray("upsert");
+                for (String id : upserted) {
+                    upsert.add(elements.get(id));
+                }
+            }
+            if (!removed.isEmpty()) {
+                ArrayNode remove = delta.putArray("remove");
+                removed.forEach(remove::add);
+            }
+            if (appStateDirty) {
+                delta.set("appState", appState);
+            }
+            if (pendingClear) {
+                delta.put("clear", true);
+            }
+            if (!pendingStrokes.isEmpty()) {
+                delta.putArray("strokes").addAll(pendingStrokes);
+            }
+            if (canvasDirty) {
+                delta.set("canvasData", canvas);
+            }
+            clearPending();
+            return WebSocketJson.write(delta);
+        }
+
+        private void replayDelta(JsonNode delta) {
+            for (JsonNode id : delta.path("remove")) {
+                removeElement(id.asText());
+            }
+            for (JsonNode element : delta.path("upsert")) {
+                putElement(element.path("id").asText(), element);
+            }
+            if (delta.has("appState")) {
+                setAppState(delta.get("appState"));
+            }
+            if (delta.path("clear").asBoolean()) {
+                clearStrokes();
+            }
+            delta.path("strokes").forEach(this::addStroke);
+            if (delta.has("canvasData")) {
+                setCanvas(delta.get("canvasData"));
+            }
+            seq = Math.max(seq, delta.path("seq").asLong());
+        }
+
+        /**
+         * Take over the state of a board restored from storage
+         */
+        private void adopt(RoomBoard restored) {
+            elements.putAll(restored.elements);
+            elementBytes.putAll(restored.elementBytes);
+            appState = restored.appState;
+            appStateBytes = restored.appStateBytes;
+            strokes.addAll(restored.strokes);
+            strokeBytes = restored.strokeBytes;
+            canvas = restored.canvas;
+            canvasBytes = restored.canvasBytes;
+            approxBytes = restored.approxBytes;
+            seq = restored.seq;
+        }
+
+        private TextMessage snapshotFrame() {
+            if (isEmpty()) {
+                return null;
+            }
+            ObjectNode message = WebSocketJson.createObjectNode();
+            message.put("type", "whiteboard_snapshot");
+            message.put("sessionId", roomId);
+            message.set("data", toSnapshot());
+            snapshotsServed.increment();
+            return new TextMessage(WebSocketJson.write(message));
+        }
+
+        private void restoreSnapshot(JsonNode snapshot) {
+            for (JsonNode element : snapshot.path("elements")) {
+                putElement(element.path("id").asText(), element);
+            }
+            if (snapshot.hasNonNull("appState")) {
+                setAppState(snapshot.get("appState"));
+            }
+            snapshot.path("drawingEvents").forEach(this::addStroke);
+            if (snapshot.hasNonNull("canvasData")) {
+                setCanvas(snapshot.get("canvasData"));
+            }
+            seq = snapshot.path("seq").asLong();
+        }
+
+        /**
+         * The board as sent to clients: live elements only, deleted ones are left out
+         */
+        private ObjectNode toSnapshot() {
+            ObjectNode data = WebSocketJson.createObjectNode();
+            data.put("seq", seq);
+            ArrayNode list = data.putArray("elements");
+            for (JsonNode element : elements.values()) {
+                if (!element.path("isDeleted").asBoolean(false)) {
+                    list.add(element);
+                }
+            }
+            if (appState != null) {
+                data.set("appState", appState);
+            }
+            ArrayNode drawingEvents = data.putArray("drawingEvents");
+            for (Stroke stroke : strokes) {
+                drawingEvents.add(stroke.data());
+            }
+            if (canvas != null) {
+                data.set("canvasData", canvas);
+            }
+            return data;
+        }
+
+        private String toStoredSnapshot() {
+            ObjectNode snapshot = toSnapshot();
+            snapshot.put("version", SNAPSHOT_FORMAT_VERSION);
+            return WebSocketJson.write(snapshot);
+        }
+
+    }
+
+    /**
+     * A relayed frame waiting to be folded, or a snapshot request (frame is null) waiting for
+     * the frames queued before it
+     */
+    private record Queued(String type, TextMessage frame, Consumer<TextMessage> snapshotReceiver) {
+    }
+
+    private record Stroke(JsonNode data, int bytes) {
+    }
+
+    private static int measure(JsonNode node) {
+        return node == null ? 0 : WebSocketJson.write(node).length();
+    }
+
+    private static boolean isNewer(JsonNode candidate, JsonNode existing) {
+        JsonNode candidateVersion = candidate.get("version");
+        JsonNode existingVersion = existing.get("version");
+        if (candidateVersion == null || existingVersion == null
+            || !candidateVersion.isNumber() || !existingVersion.isNumber()) {
+            return !candidate.equals(existing);
+        }
+        return candidateVersion.asLong() > existingVersion.asLong();
+    }
+}
@@ -0,0 +1,146 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * WebSocket subprotocols spoken on /ws/session and /ws/webrtc.
+ *
+ * A client that offers {@value #CBOR} in Sec-WebSocket-Protocol may send any message as a
+ * binary CBOR frame and receives the high-volume types (pen strokes, canvas payloads, ICE
+ * candidates) as CBOR too; everything else stays JSON text. Clients that offer nothing, or
+ * only {@value #JSON}, get the plain JSON protocol. Internally every message is handled as
+ * JSON text: binary frames are transcoded at the edge with a streaming copy, no tree is built.
+ */
+public final class WireProtocol {
+
+    public static final String CBOR = "nerdsoncall.cbor.v1";
+    public static final String JSON = "nerdsoncall.json.v1";
+
+    /** In order of preference */
+    public static final List<String> SUBPROTOCOLS = List.of(CBOR, JSON);
+
+    /** Message types delivered as binary frames to CBOR connections */
+    private static final Set<String> BINARY_TYPES = Set.of("drawing_event", "canvas_update", "ice-candidate",
+            IceCandidateBatcher.BATCH_TYPE);
+
+    private static final CBORFactory CBOR_FACTORY = CBORFactory.builder()
+            .enable(CBORGenerator.Feature.WRITE_MINIMAL_INTS)
+            .enable(CBORGenerator.Feature.WRITE_MINIMAL_DOUBLES)
+            .build();
+
+    private WireProtocol() {
+    }
+
+    public static boolean isBinary(WebSocketSession session) {
+        return CBOR.equals(session.getAcceptedProtocol());
+    }
+
+    public static boolean isBinaryType(String type) {
+        return type != null && BINARY_TYPES.contains(type);
+    }
+
+    /**
+     * The frame to write to a connection: CBOR for binary connections and binary types,
+     * the JSON text frame otherwise
+     */
+    public static org.springframework.web.socket.WebSocketMessage<?> forSession(WebSocketSession session,
+                                                                            TextMessage frame, String type) {
+        return isBinary(session) && isBinaryType(type) ? encode(frame) : frame;
+    }
+
+    /**
+     * JSON text frame -> CBOR binary frame
+     */
+    public static BinaryMessage encode(TextMessage frame) {
+        return new BinaryMessage(encodeBytes(frame));
+    }
+
+    /**
+     * JSON text frame -> CBOR bytes. Broadcasts encode once and wrap the bytes per recipient:
+     * a BinaryMessage's buffer is consumed by the send and can't be shared between sockets.
+     */
+    public static byte[] encodeBytes(TextMessage frame) {
+        try (JsonParser parser = WebSocketJson.createParser(frame.getPayload());
+             ByteArrayBuilder out = new ByteArrayBuilder(frame.getPayloadLength())) {
+            try (JsonGenerator generator = CBOR_FACTORY.createGenerator(out)) {
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Frame is not valid JSON", e);
+        }
+    }
+
+    /**
+     * Copy the current structure, writing single and half precision floats as doubles: encode()
+     * shrinks doubles that fit a float (476.328125), and printing the float as-is would give
+     * its shortest float form (476.32812), which is a different JSON number.
+     */
+    private static void copyWidening(JsonParser parser, JsonGenerator generator) throws IOException {
+        int depth = 0;
+        JsonToken token = parser.currentToken();
+        while (true) {
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                generator.writeNumber(parser.getDoubleValue());
+            } else {
+                generator.copyCurrentEvent(parser);
+            }
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                return;
+            }
+            token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Truncated CBOR frame");
+            }
+        }
+    }
+
+    /**
+     * CBOR binary frame -> JSON text frame
+     */
+    public static TextMessage decode(BinaryMessage frame) throws IOException {
+        ByteBuffer payload = frame.getPayload();
+        byte[] bytes;
+        int offset;
+        if (payload.hasArray()) {
+            bytes = payload.array();
+            offset = payload.arrayOffset() + payload.position();
+        } else {
+            bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            offset = 0;
+        }
+
+        try (JsonParser parser = CBOR_FACTORY.createParser(bytes, offset, payload.remaining())) {
+            // JSON text is typically about 1.5x the CBOR size
+            StringWriter out = new StringWriter(payload.remaining() * 2);
+            try (JsonGenerator generator = WebSocketJson.createGenerator(out)) {
+                if (parser.nextToken() == null) {
+                    throw new IOException("Empty CBOR frame");
+                }
+                copyWidening(parser, generator);
+            }
+            return new TextMessage(out.toString());
+        }
+    }
+}
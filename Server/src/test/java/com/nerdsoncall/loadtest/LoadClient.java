@@ -0,0 +1,204 @@
+package com.nerdsoncall.loadtest;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * One simulated participant: a whiteboard socket on /ws/session subscribed to its room and a
+ * signaling socket on /ws/webrtc joined to it. Every frame it sends carries the sender's
+ * System.nanoTime(), which the receiving clients use to time the fan-out; client and server
+ * share the JVM, so the clocks agree.
+ */
+final class LoadClient {
+
+    static final Set<String> SUPPORTED_TYPES = Set.of("drawing_event", "excalidraw_update", "chat_message",
+            "ice-candidate");
+
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT = 1 << 20;
+
+    private final LoadProfile profile;
+    private final LoadStats stats;
+    private final int index;
+    private final String userId;
+    private final String room;
+    private final List<String> peers;
+
+    private final CompletableFuture<Void> subscribed = new CompletableFuture<>();
+    private final CompletableFuture<Void> joined = new CompletableFuture<>();
+    private volatile WebSocketSession whiteboard;
+    private volatile WebSocketSession signaling;
+    private int sequence;
+
+    LoadClient(LoadProfile profile, LoadStats stats, int index) {
+        this.profile = profile;
+        this.stats = stats;
+        this.index = index;
+        this.userId = profile.userId(index);
+        this.room = profile.room(index);
+        int first = index - index % profile.participantsPerRoom;
+        this.peers = IntStream.range(first, first + profile.participantsPerRoom)
+                .filter(i -> i != index)
+                .mapToObj(profile::userId)
+                .toList();
+    }
+
+    /**
+     * Open both sockets; completes once the room subscription and join are confirmed
+     */
+    CompletableFuture<Void> connect(WebSocketClient client, String baseUri) {
+        CompletableFuture<Void> whiteboardReady = client.execute(new Receiver(subscribed, "subscribed"),
+                        baseUri + "/ws/session?userId=" + userId)
+                .thenCompose(session -> {
+                    whiteboard = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+                    send(whiteboard, "{\"type\":\"subscribe\",\"sessionId\":\"" + room + "\",\"userId\":\""
+                            + userId + "\"}");
+                    return subscribed;
+                });
+        CompletableFuture<Void> signalingReady = client.execute(new Receiver(joined, "connection_confirmed"),
+                        baseUri + "/ws/webrtc?userId=" + userId + "&sessionId=" + room)
+                .thenCompose(session -> {
+                    signaling = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+                    return joined;
+                });
+        return CompletableFuture.allOf(whiteboardReady, signalingReady);
+    }
+
+    /**
+     * Send one frame of a type from the mix; called from a single sender thread at a time
+     */
+    void sendOne(String type) {
+        long now = System.nanoTime();
+        String frame = frame(type, now, ++sequence);
+        stats.sent(type, frame.length(), now);
+        send("drawing_event".equals(type) || "excalidraw_update".equals(type) ? whiteboard : signaling, frame);
+    }
+
+    void close() {
+        closeQuietly(whiteboard);
+        closeQuietly(signaling);
+    }
+
+    private String frame(String type, long now, int n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (type) {
+            case "drawing_event":
+                return "{\"type\":\"drawing_event\",\"sessionId\":\"" + room + "\",\"userId\":\"" + userId
+                        + "\",\"data\":{\"type\":\"draw\",\"x\":" + random.nextInt(1920) + ",\"y\":"
+                        + random.nextInt(1080) + ",\"color\":\"#1e1e1e\",\"width\":2},\"lt\":" + now + "}";
+            case "excalidraw_update":
+                return "{\"type\":\"excalidraw_update\",\"sessionId\":\"" + room + "\",\"userId\":\"" + userId
+                        + "\",\"data\":{\"elements\":[{\"id\":\"" + userId + "-" + (n % 16)
+                        + "\",\"type\":\"freedraw\",\"version\":" + n + ",\"x\":" + random.nextInt(1920)
+                        + ",\"y\":" + random.nextInt(1080) + ",\"points\":[[0,0],[4,3],[9,7],[15,12]]}]},\"lt\":"
+                        + now + "}";
+            case "chat_message":
+                // The server rebuilds chat frames and keeps only known fields, so the stamp rides in the id
+                return "{\"type\":\"chat_message\",\"sessionId\":\"" + room + "\",\"userId\":\"" + userId
+                        + "\",\"userName\":\"" + userId + "\",\"message\":\"message " + n + " from " + userId
+                        + "\",\"id\":\"lt:" + now + "\"}";
+            case "ice-candidate":
+                return "{\"type\":\"ice-candidate\",\"sessionId\":\"" + room + "\",\"from\":\"" + userId
+                        + "\",\"to\":\"" + peers.get(n % peers.size()) + "\",\"data\":{\"candidate\":\"candidate:"
+                        + n + " 1 udp 2122260223 10.0." + (index % 250) + "." + (n % 250)
+                        + " 54321 typ host\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0},\"lt\":" + now + "}";
+            default:
+                throw new IllegalArgumentException("Unsupported message type: " + type);
+        }
+    }
+
+    private void send(WebSocketSession session, String frame) {
+        try {
+            session.sendMessage(new TextMessage(frame));
+        } catch (IOException | RuntimeException e) {
+            stats.sendFailed();
+        }
+    }
+
+    private static void closeQuietly(WebSocketSession session) {
+        if (session != null && session.isOpen()) {
+            try {
+                session.close(CloseStatus.GOING_AWAY);
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    /**
+     * Frames start with their type, both as sent by the clients and as built by the server
+     */
+    static String typeOf(String payload) {
+        if (!payload.startsWith("{\"type\":\"")) {
+            return null;
+        }
+        int end = payload.indexOf('"', 9);
+        return end > 9 ? payload.substring(9, end) : null;
+    }
+
+    /**
+     * The sender's stamp, or -1 if the frame carries none
+     */
+    static long sentAt(String payload) {
+        int at = payload.lastIndexOf("\"lt\":");
+        int start = at >= 0 ? at + 5 : -1;
+        if (start < 0) {
+            at = payload.indexOf("\"id\":\"lt:");
+            start = at >= 0 ? at + 9 : -1;
+        }
+        if (start < 0) {
+            return -1;
+        }
+        int end = start;
+        while (end < payload.length() && Character.isDigit(payload.charAt(end))) {
+            end++;
+        }
+        return end > start ? Long.parseLong(payload, start, end, 10) : -1;
+    }
+
+    private final class Receiver extends TextWebSocketHandler {
+        private final CompletableFuture<Void> ready;
+        private final String readyType;
+
+        private Receiver(CompletableFuture<Void> ready, String readyType) {
+            this.ready = ready;
+            this.readyType = readyType;
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            long receivedAt = System.nanoTime();
+            String payload = message.getPayload();
+            String type = typeOf(payload);
+            if (type == null) {
+                return;
+            }
+            if (SUPPORTED_TYPES.contains(type)) {
+                long sentAt = sentAt(payload);
+                if (sentAt > 0) {
+                    stats.delivered(type, sentAt, receivedAt);
+                }
+            } else if (type.equals(readyType)) {
+                ready.complete(null);
+            } else if ("error".equals(type)) {
+                stats.errorFrame();
+            }
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            ready.completeExceptionally(new IOException("Closed before ready: " + status));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.nerdsoncall.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The traffic a load run simulates, read from system properties so a run can be sized from
+ * the command line:
+ *
+ *   mvn -P load-test test -Dloadtest.rooms=1000 -Dloadtest.participants=4 -Dloadtest.rate=15
+ *
+ * Every participant opens one /ws/session socket (whiteboard) and one /ws/webrtc socket
+ * (signaling and chat), and sends loadtest.rate frames per second drawn from loadtest.mix.
+ */
+final class LoadProfile {
+
+    static final String DEFAULT_MIX = "drawing_event=60,excalidraw_update=15,chat_message=5,ice-candidate=20";
+
+    final int rooms;
+    final int participantsPerRoom;
+    final int messagesPerSecond;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int senderThreads;
+    final int connectConcurrency;
+    final int connectTimeoutSeconds;
+    // Fail the run when the fan-out p99 exceeds this; 0 only reports
+    final long maxP99Millis;
+    final String reportDir;
+    final Map<String, Integer> mix;
+
+    private final String[] types;
+    private final int[] cumulativeWeights;
+
+    private LoadProfile(int rooms, int participantsPerRoom, int messagesPerSecond, int warmupSeconds,
+                        int durationSeconds, int senderThreads, int connectConcurrency, int connectTimeoutSeconds,
+                        long maxP99Millis, String reportDir, Map<String, Integer> mix) {
+        if (rooms < 1 || participantsPerRoom < 2 || messagesPerSecond < 1 || mix.isEmpty()) {
+            throw new IllegalArgumentException("A load run needs at least one room of two participants, "
+                    + "a positive rate and a message mix");
+        }
+        this.rooms = rooms;
+        this.participantsPerRoom = participantsPerRoom;
+        this.messagesPerSecond = messagesPerSecond;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+        this.senderThreads = senderThreads;
+        this.connectConcurrency = connectConcurrency;
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+        this.maxP99Millis = maxP99Millis;
+        this.reportDir = reportDir;
+        this.mix = mix;
+
+        this.types = mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new int[types.length];
+        int total = 0;
+        for (int i = 0; i < types.length; i++) {
+            total += mix.get(types[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("loadtest.rooms", 250),
+                Integer.getInteger("loadtest.participants", 3),
+                Integer.getInteger("loadtest.rate", 10),
+                Integer.getInteger("loadtest.warmupSeconds", 5),
+                Integer.getInteger("loadtest.durationSeconds", 30),
+                Integer.getInteger("loadtest.senderThreads", 4),
+                Integer.getInteger("loadtest.connectConcurrency", 200),
+                Integer.getInteger("loadtest.connectTimeoutSeconds", 60),
+                Long.getLong("loadtest.maxP99Millis", 0),
+                System.getProperty("loadtest.reportDir", "target/load-test"),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)));
+    }
+
+    int participants() {
+        return rooms * participantsPerRoom;
+    }
+
+    String room(int participant) {
+        return "session_" + (participant / participantsPerRoom) + "_load_1735000000000";
+    }
+
+    String userId(int participant) {
+        return "load-" + participant;
+    }
+
+    /**
+     * A message type, weighted by the mix
+     */
+    String pick(Random random) {
+        int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return types[i];
+            }
+        }
+        return types[types.length - 1];
+    }
+
+    /**
+     * How many participants receive one frame of a type: whiteboard frames go to the rest of
+     * the room, chat to the whole room including the sender, a candidate to one peer
+     */
+    int fanOut(String type) {
+        switch (type) {
+            case "chat_message":
+                return participantsPerRoom;
+            case "ice-candidate":
+                return 1;
+            default:
+                return participantsPerRoom - 1;
+        }
+    }
+
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry '" + entry + "', expected type=weight");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(parts[0].trim(), weight);
+            }
+        }
+        for (String type : mix.keySet()) {
+            if (!LoadClient.SUPPORTED_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unsupported message type in mix: " + type);
+            }
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,110 @@
+package com.nerdsoncall.loadtest;
+
+import com.nerdsoncall.websocket.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side counters of a load run. Only frames sent after the warmup are counted, and a
+ * delivery is only timed if its frame was.
+ */
+final class LoadStats {
+
+    // Fan-out under load runs well past the server's own send times: 100us to 10s
+    private static final long[] BOUNDS_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final Map<String, PerType> byType = new ConcurrentHashMap<>();
+    private final LatencyHistogram fanOut = new LatencyHistogram(BOUNDS_MICROS);
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder errorFrames = new LongAdder();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    void startMeasuring() {
+        measureFromNanos = System.nanoTime();
+    }
+
+    boolean measuring(long nanos) {
+        return nanos >= measureFromNanos;
+    }
+
+    void sent(String type, int bytes, long sentAt) {
+        if (measuring(sentAt)) {
+            PerType counters = perType(type);
+            counters.sent.increment();
+            counters.sentBytes.add(bytes);
+        }
+    }
+
+    void delivered(String type, long sentAt, long receivedAt) {
+        if (measuring(sentAt)) {
+            PerType counters = perType(type);
+            counters.delivered.increment();
+            counters.latency.record(receivedAt - sentAt);
+            fanOut.record(receivedAt - sentAt);
+        }
+    }
+
+    void sendFailed() {
+        sendFailures.increment();
+    }
+
+    void errorFrame() {
+        errorFrames.increment();
+    }
+
+    Map<String, Object> fanOutSnapshot() {
+        return fanOut.snapshot();
+    }
+
+    Map<String, Object> snapshot(LoadProfile profile, double seconds) {
+        long sent = 0;
+        long delivered = 0;
+        Map<String, Object> types = new LinkedHashMap<>();
+        for (String type : profile.mix.keySet()) {
+            PerType counters = perType(type);
+            long typeSent = counters.sent.sum();
+            long typeDelivered = counters.delivered.sum();
+            long expected = typeSent * profile.fanOut(type);
+            sent += typeSent;
+            delivered += typeDelivered;
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sent", typeSent);
+            entry.put("sentBytes", counters.sentBytes.sum());
+            entry.put("delivered", typeDelivered);
+            entry.put("expectedDeliveries", expected);
+            // Below 1 for coalesced whiteboard types by design; otherwise frames were lost
+            entry.put("deliveryRatio", expected > 0 ? (double) typeDelivered / expected : 0.0);
+            entry.put("latency", counters.latency.snapshot());
+            types.put(type, entry);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("sent", sent);
+        snapshot.put("delivered", delivered);
+        snapshot.put("sentPerSecond", sent / seconds);
+        snapshot.put("deliveredPerSecond", delivered / seconds);
+        snapshot.put("sendFailures", sendFailures.sum());
+        snapshot.put("errorFrames", errorFrames.sum());
+        snapshot.put("fanOutLatency", fanOut.snapshot());
+        snapshot.put("byType", types);
+        return snapshot;
+    }
+
+    private PerType perType(String type) {
+        return byType.computeIfAbsent(type, k -> new PerType());
+    }
+
+    private static final class PerType {
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder sentBytes = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram(BOUNDS_MICROS);
+    }
+}
@@ -0,0 +1,270 @@
+package com.nerdsoncall.loadtest;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nerdsoncall.websocket.HandshakeAdmission;
+import com.nerdsoncall.websocket.WebSocketTelemetry;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Peak room traffic against the real endpoints: the application is started on H2 with the
+ * loadtest profile and thousands of client sockets join tutoring rooms on /ws/session and
+ * /ws/webrtc, then send the configured mix of whiteboard, chat and ICE frames.
+ *
+ * Reports fan-out latency percentiles per type, throughput, heap and GC over the measured
+ * window, and the server's own telemetry, to stdout and as JSON under loadtest.reportDir.
+ * Tagged "load" and only run by the load-test profile; see LoadProfile for the knobs.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+public class TutoringRoomLoadTest {
+
+    private static final int DRAIN_SECONDS = 3;
+
+    private static Level previousLevel;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebSocketTelemetry webSocketTelemetry;
+
+    @Autowired
+    private HandshakeAdmission handshakeAdmission;
+
+    @BeforeAll
+    static void quietLogs() {
+        // The handlers log every join and chat message at INFO
+        ch.qos.logback.classic.Logger logger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall");
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogs() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall")).setLevel(previousLevel);
+    }
+
+    @Test
+    void tutoringRoomsUnderPeakTraffic() throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        LoadStats stats = new LoadStats();
+
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // Buffers are allocated per client socket; the frames sent here are small
+        container.setDefaultMaxTextMessageBufferSize(64 * 1024);
+        StandardWebSocketClient client = new StandardWebSocketClient(container);
+
+        List<LoadClient> clients = new ArrayList<>(profile.participants());
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(profile.senderThreads);
+        try {
+            long connectStarted = System.nanoTime();
+            int ready = connect(profile, stats, client, clients);
+            double connectSeconds = (System.nanoTime() - connectStarted) / 1e9;
+            System.out.printf("load: %,d participants in %,d rooms ready in %.1f s (%,d sockets)%n",
+                    ready, profile.rooms, connectSeconds, ready * 2);
+            assertEquals(profile.participants(), ready, "every participant should join its room");
+
+            // Each participant sends at the configured rate, spread evenly over the period
+            long periodNanos = TimeUnit.SECONDS.toNanos(1) / profile.messagesPerSecond;
+            Random seed = new Random(42);
+            for (LoadClient loadClient : clients) {
+                Random random = new Random(seed.nextLong());
+                senders.scheduleAtFixedRate(() -> loadClient.sendOne(profile.pick(random)),
+                        random.nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS);
+            }
+
+            TimeUnit.SECONDS.sleep(profile.warmupSeconds);
+            Map<String, Object> heapBefore = heap();
+            Map<String, Long> gcBefore = gc();
+            resetPeaks();
+            stats.startMeasuring();
+            long measureStarted = System.nanoTime();
+
+            TimeUnit.SECONDS.sleep(profile.durationSeconds);
+            senders.shutdownNow();
+            senders.awaitTermination(10, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - measureStarted) / 1e9;
+            // Let the frames still in flight arrive before reading the counters
+            TimeUnit.SECONDS.sleep(DRAIN_SECONDS);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("profile", describe(profile));
+            report.put("connectSeconds", connectSeconds);
+            report.put("measuredSeconds", seconds);
+            report.put("client", stats.snapshot(profile, seconds));
+            report.put("heapBefore", heapBefore);
+            report.put("heapAfter", heap());
+            report.put("gc", gcDelta(gcBefore, gc(), seconds));
+            report.put("server", Map.of(
+                    "telemetry", webSocketTelemetry.getStatsSnapshot(),
+                    "admission", handshakeAdmission.getStatsSnapshot()));
+            print(report);
+            write(profile, report);
+
+            long delivered = (long) ((Map<?, ?>) report.get("client")).get("delivered");
+            assertTrue(delivered > 0, "no frames were delivered");
+            if (profile.maxP99Millis > 0) {
+                double p99 = (double) stats.fanOutSnapshot().get("p99Ms");
+                assertTrue(p99 <= profile.maxP99Millis,
+                        String.format("fan-out p99 %.1f ms is over the %d ms budget", p99, profile.maxP99Millis));
+            }
+        } finally {
+            senders.shutdownNow();
+            clients.forEach(LoadClient::close);
+        }
+    }
+
+    /**
+     * Connect every participant, at most connectConcurrency handshakes at a time
+     */
+    private int connect(LoadProfile profile, LoadStats stats, StandardWebSocketClient client,
+                        List<LoadClient> clients) throws InterruptedException {
+        String baseUri = "ws://localhost:" + port;
+        Semaphore inFlight = new Semaphore(profile.connectConcurrency);
+        AtomicInteger ready = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> connecting = new ArrayList<>(profile.participants());
+        for (int i = 0; i < profile.participants(); i++) {
+            LoadClient loadClient = new LoadClient(profile, stats, i);
+            clients.add(loadClient);
+            inFlight.acquire();
+            connecting.add(loadClient.connect(client, baseUri)
+                    .orTimeout(profile.connectTimeoutSeconds, TimeUnit.SECONDS)
+                    .whenComplete((ignored, error) -> {
+                        inFlight.release();
+                        (error == null ? ready : failed).incrementAndGet();
+                    }));
+        }
+        try {
+            CompletableFuture.allOf(connecting.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException e) {
+            System.out.printf("load: %,d participants failed to connect, first error: %s%n", failed.get(),
+                    e.getCause() != null ? e.getCause() : e);
+        }
+        return ready.get();
+    }
+
+    private static Map<String, Object> describe(LoadProfile profile) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("rooms", profile.rooms);
+        description.put("participantsPerRoom", profile.participantsPerRoom);
+        description.put("messagesPerSecondPerParticipant", profile.messagesPerSecond);
+        description.put("warmupSeconds", profile.warmupSeconds);
+        description.put("durationSeconds", profile.durationSeconds);
+        description.put("mix", profile.mix);
+        return description;
+    }
+
+    private static Map<String, Object> heap() {
+        MemoryUsage usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        Map<String, Object> heap = new LinkedHashMap<>();
+        heap.put("usedMb", usage.getUsed() >> 20);
+        heap.put("committedMb", usage.getCommitted() >> 20);
+        heap.put("maxMb", usage.getMax() >> 20);
+        // Sum of the pools' peaks since the measured window began
+        heap.put("peakUsedMb", peak >> 20);
+        return heap;
+    }
+
+    private static void resetPeaks() {
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static Map<String, Long> gc() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            counters.put(collector.getName() + ".count", collector.getCollectionCount());
+            counters.put(collector.getName() + ".timeMs", collector.getCollectionTime());
+        }
+        return counters;
+    }
+
+    private static Map<String, Object> gcDelta(Map<String, Long> before, Map<String, Long> after, double seconds) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        long pauseMs = 0;
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            long value = entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            delta.put(entry.getKey(), value);
+            if (entry.getKey().endsWith(".timeMs")) {
+                pauseMs += value;
+            }
+        }
+        delta.put("gcTimeFraction", pauseMs / (seconds * 1_000));
+        return delta;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        Map<String, Object> client = (Map<String, Object>) report.get("client");
+        System.out.printf("load: %,.0f frames/s sent, %,.0f deliveries/s, %,d send failures, %,d error frames%n",
+                client.get("sentPerSecond"), client.get("deliveredPerSecond"), client.get("sendFailures"),
+                client.get("errorFrames"));
+        System.out.printf("%-18s %10s %12s %8s %9s %9s %9s %9s%n",
+                "type", "sent", "delivered", "ratio", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        Map<String, Object> byType = (Map<String, Object>) client.get("byType");
+        for (Map.Entry<String, Object> entry : byType.entrySet()) {
+            Map<String, Object> type = (Map<String, Object>) entry.getValue();
+            Map<String, Object> latency = (Map<String, Object>) type.get("latency");
+            System.out.printf("%-18s %,10d %,12d %8.2f %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(),
+                    type.get("sent"), type.get("delivered"), type.get("deliveryRatio"), latency.get("p50Ms"),
+                    latency.get("p90Ms"), latency.get("p99Ms"), latency.get("maxMs"));
+        }
+        Map<String, Object> fanOut = (Map<String, Object>) client.get("fanOutLatency");
+        System.out.printf("%-18s %10s %,12d %8s %9.1f %9.1f %9.1f %9.1f%n", "all", "", fanOut.get("count"), "",
+                fanOut.get("p50Ms"), fanOut.get("p90Ms"), fanOut.get("p99Ms"), fanOut.get("maxMs"));
+        System.out.printf("load: heap after %s, gc %s%n", report.get("heapAfter"), report.get("gc"));
+    }
+
+    private static void write(LoadProfile profile, Map<String, Object> report) throws Exception {
+        Path dir = Path.of(profile.reportDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("load-report-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        System.out.printf("load: report written to %s%n", file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,95 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.ActivityEvent;
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.User;
+import com.nerdsoncall.repository.ActivityEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ActivityFeedServiceTest {
+
+    @Mock
+    private ActivityEventRepository activityEventRepository;
+
+    @InjectMocks
+    private ActivityFeedService activityFeedService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testPageEndsWithCursorOfItsLastLineWhenMoreRemain() {
+        LocalDateTime at = LocalDateTime.of(2026, 10, 1, 9, 30, 0, 125_000_000);
+        when(activityEventRepository.findLatest(eq(12L), any(Pageable.class)))
+                .thenReturn(List.of(line(9L, at), line(8L, at), line(5L, at.minusHours(1))));
+
+        Map<String, Object> page = activityFeedService.getFeed(12L, null, 2);
+
+        assertEquals(2, ((List<?>) page.get("items")).size());
+        assertEquals("2026-10-01T09:30:00.125_8", page.get("nextCursor"));
+        verify(activityEventRepository).findLatest(eq(12L), argThat(p -> p.getPageSize() == 3));
+
+        when(activityEventRepository.findBefore(eq(12L), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(line(5L, at.minusHours(1))));
+
+        Map<String, Object> next = activityFeedService.getFeed(12L, (String) page.get("nextCursor"), 2);
+
+        verify(activityEventRepository).findBefore(eq(12L), eq(at), eq(8L), any(Pageable.class));
+        assertEquals(1, ((List<?>) next.get("items")).size());
+        assertNull(next.get("nextCursor"));
+        assertThrows(IllegalArgumentException.class, () -> activityFeedService.getFeed(12L, "not-a-cursor", 2));
+    }
+
+    @Test
+    void testSessionChangeWritesALineForEachParticipant() {
+        User student = new User();
+        student.setId(12L);
+        student.setFirstName("Asha");
+        student.setLastName("Rao");
+        User tutor = new User();
+        tutor.setId(7L);
+        tutor.setFirstName("Ben");
+        tutor.setLastName("Ode");
+
+        Session session = new Session();
+        session.setId(40L);
+        session.setStudent(student);
+        session.setTutor(tutor);
+        session.setStatus(Session.Status.COMPLETED);
+        session.setDurationMinutes(45L);
+
+        activityFeedService.sessionChanged(session);
+
+        verify(activityEventRepository).save(argThat(e -> e.getUserId() == 12L
+                && e.getSourceId() == 40L
+                && "Session Completed".equals(e.getTitle())
+                && "With Ben Ode (45 min)".equals(e.getSubtitle())));
+        verify(activityEventRepository).save(argThat(e -> e.getUserId() == 7L
+                && "Session with Asha Rao (45 min)".equals(e.getSubtitle())));
+    }
+
+    private static ActivityEvent line(Long id, LocalDateTime at) {
+        ActivityEvent event = new ActivityEvent();
+        event.setId(id);
+        event.setUserId(12L);
+        event.setKind(ActivityEvent.Kind.SESSION);
+        event.setTitle("Session Completed");
+        event.setOccurredAt(at);
+        return event;
+    }
+}
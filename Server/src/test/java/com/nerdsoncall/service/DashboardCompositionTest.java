@@ -0,0 +1,75 @@
+package com.nerdsoncall.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DashboardCompositionTest {
+
+    private ExecutorService executor;
+    private final CountDownLatch never = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        never.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSlowAndFailingStagesFallBackWithoutFailingTheResponse() {
+        DashboardComposition composition = new DashboardComposition(executor, 200);
+        CompletableFuture<String> fast = composition.start("user", () -> "tutor");
+        CompletableFuture<Long> slow = composition.start("stats", () -> {
+            await(never);
+            return 42L;
+        });
+        CompletableFuture<List<String>> failing = composition.start("recentActivity", () -> {
+            throw new IllegalStateException("feed unavailable");
+        });
+
+        assertEquals("tutor", composition.require("user", fast));
+        assertEquals(0L, composition.optional("stats", slow, 0L));
+        assertEquals(List.of(), composition.optional("recentActivity", failing, List.of()));
+
+        Map<String, Object> meta = composition.meta();
+        assertEquals(List.of("stats", "recentActivity"), meta.get("degraded"));
+        assertEquals(true, meta.get("partial"));
+        assertTrue(((Long) meta.get("totalMs")) < 2_000);
+        Map<?, ?> stageMs = (Map<?, ?>) meta.get("stageMs");
+        assertTrue(stageMs.containsKey("user"));
+        assertFalse(stageMs.containsKey("stats"));
+    }
+
+    @Test
+    void testRequiredStageFailureIsRethrown() {
+        DashboardComposition composition = new DashboardComposition(executor, 1_000);
+        CompletableFuture<String> user = composition.start("user", () -> {
+            throw new RuntimeException("Tutor not found");
+        });
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> composition.require("user", user));
+        assertEquals("Tutor not found", error.getMessage());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
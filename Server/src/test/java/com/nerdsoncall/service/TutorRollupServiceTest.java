@@ -0,0 +1,80 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.TutorDailyStats;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.repository.TutorDailyStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TutorRollupServiceTest {
+
+    @Mock
+    private TutorDailyStatsRepository tutorDailyStatsRepository;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @InjectMocks
+    private TutorRollupService tutorRollupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDailyRangeFillsDaysWithoutSessions() {
+        LocalDate from = LocalDate.of(2026, 9, 1);
+        LocalDate to = LocalDate.of(2026, 9, 7);
+        when(tutorDailyStatsRepository.findRange(7L, from, to)).thenReturn(List.of(
+                day(LocalDate.of(2026, 9, 2), 2, 90, "60.00"),
+                day(LocalDate.of(2026, 9, 6), 1, 30, "20.00")));
+
+        Map<String, Object> range = tutorRollupService.getDailyRange(7L, from, to);
+
+        List<Map<String, Object>> days = (List<Map<String, Object>>) range.get("days");
+        assertEquals(7, days.size());
+        assertEquals("2026-09-01", days.get(0).get("day"));
+        assertEquals(0L, days.get(0).get("sessions"));
+        assertEquals(2L, days.get(1).get("sessions"));
+        assertEquals(1L, days.get(5).get("sessions"));
+
+        Map<String, Object> totals = (Map<String, Object>) range.get("totals");
+        assertEquals(3L, totals.get("sessions"));
+        assertEquals(120L, totals.get("minutes"));
+        assertEquals(80.0, totals.get("earnings"));
+    }
+
+    @Test
+    void testDailyRangeRejectsInvertedOrOversizedRanges() {
+        LocalDate today = LocalDate.of(2026, 10, 17);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> tutorRollupService.getDailyRange(7L, today, today.minusDays(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> tutorRollupService.getDailyRange(7L, today.minusDays(TutorRollupService.MAX_RANGE_DAYS), today));
+        verifyNoInteractions(tutorDailyStatsRepository);
+    }
+
+    private static TutorDailyStats day(LocalDate day, long sessions, long minutes, String earnings) {
+        TutorDailyStats stats = new TutorDailyStats();
+        stats.setTutorId(7L);
+        stats.setDay(day);
+        stats.setSessionsCompleted(sessions);
+        stats.setMinutesTotal(minutes);
+        stats.setEarnings(new BigDecimal(earnings));
+        return stats;
+    }
+}
@@ -0,0 +1,221 @@
+package com.nerdsoncall.service;
+
+import com.nerdsoncall.entity.Doubt;
+import com.nerdsoncall.entity.Feedback;
+import com.nerdsoncall.entity.Session;
+import com.nerdsoncall.entity.User;
+import com.nerdsoncall.entity.UserStats;
+import com.nerdsoncall.repository.DoubtRepository;
+import com.nerdsoncall.repository.FeedbackRepository;
+import com.nerdsoncall.repository.SessionRepository;
+import com.nerdsoncall.repository.UserStatsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UserStatsServiceTest {
+
+    @Mock
+    private UserStatsRepository userStatsRepository;
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private DoubtRepository doubtRepository;
+
+    @Mock
+    private FeedbackRepository feedbackRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private UserStatsService userStatsService;
+
+    private User student;
+    private User tutor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        student = new User();
+        student.setId(12L);
+        student.setRole(User.Role.STUDENT);
+
+        tutor = new User();
+        tutor.setId(7L);
+        tutor.setRole(User.Role.TUTOR);
+    }
+
+    @Test
+    void testFirstCompletedSessionBetweenPairAddsCounterpartToBoth() {
+        Session session = completedSession(45L, "37.50", "30.00");
+        when(sessionRepository.countCompletedBetween(12L, 7L)).thenReturn(1L);
+        when(userStatsRepository.applySessionCompleted(anyLong(), anyLong(), any(), any(), anyLong(), anyLong(), any()))
+                .thenReturn(1);
+
+        userStatsService.sessionCompleted(session, Session.Status.ACTIVE);
+
+        verify(userStatsRepository).applySessionCompleted(eq(12L), eq(45L), eq(new BigDecimal("37.50")),
+                eq(BigDecimal.ZERO), eq(1L), eq(1L), any());
+        verify(userStatsRepository).applySessionCompleted(eq(7L), eq(45L), eq(BigDecimal.ZERO),
+                eq(new BigDecimal("30.00")), eq(1L), eq(1L), any());
+        verify(userStatsRepository, never()).save(any());
+    }
+
+    @Test
+    void testRepeatSessionWithSameTutorDoesNotAddCounterpart() {
+        Session session = completedSession(10L, "8.33", "6.67");
+        when(sessionRepository.countCompletedBetween(12L, 7L)).thenReturn(3L);
+        when(userStatsRepository.applySessionCompleted(anyLong(), anyLong(), any(), any(), anyLong(), anyLong(), any()))
+                .thenReturn(1);
+
+        userStatsService.sessionCompleted(session, Session.Status.ACTIVE);
+
+        verify(userStatsRepository, times(2)).applySessionCompleted(anyLong(), anyLong(), any(), any(),
+                eq(1L), eq(0L), any());
+    }
+
+    @Test
+    void testUserWithoutStatsRowIsRebuiltFromSource() {
+        Session session = completedSession(45L, "37.50", "30.00");
+        when(sessionRepository.countCompletedBetween(12L, 7L)).thenReturn(1L);
+        when(userStatsRepository.applySessionCompleted(eq(12L), anyLong(), any(), any(), anyLong(), anyLong(), any()))
+                .thenReturn(0, 1);
+        when(userStatsRepository.applySessionCompleted(eq(7L), anyLong(), any(), any(), anyLong(), anyLong(), any()))
+                .thenReturn(1);
+        when(userStatsRepository.existsById(12L)).thenReturn(false);
+        when(sessionRepository.aggregateCompletedByStudent(12L))
+                .thenReturn(Collections.singletonList(new Object[] {4L, 180L, new BigDecimal("150.00"), 2L}));
+        when(sessionRepository.aggregateCompletedByTutor(12L)).thenReturn(Collections.emptyList());
+        when(feedbackRepository.aggregateRatingsForReviewee(12L))
+                .thenReturn(Collections.singletonList(new Object[] {1L, 4L}));
+        when(sessionRepository.countOpenSessionsForUser(12L)).thenReturn(1L);
+        when(doubtRepository.countOpenByStudentId(12L)).thenReturn(3L);
+
+        userStatsService.sessionCompleted(session, Session.Status.ACTIVE);
+
+        ArgumentCaptor<UserStats> created = ArgumentCaptor.forClass(UserStats.class);
+        verify(entityManager).persist(created.capture());
+        UserStats stats = created.getValue();
+        assertEquals(12L, stats.getUserId());
+        assertEquals(4L, stats.getSessionsCompleted());
+        assertEquals(180L, stats.getMinutesTotal());
+        assertEquals(0, stats.getTotalCost().compareTo(new BigDecimal("150.00")));
+        assertEquals(0, stats.getTotalEarnings().signum());
+        assertEquals(2L, stats.getDistinctCounterparts());
+        assertEquals(1L, stats.getOpenSessions());
+        assertEquals(3L, stats.getOpenDoubts());
+        assertEquals(4.0, stats.getAverageRating());
+        assertNotNull(stats.getReconciledAt());
+        verify(entityManager).flush();
+        // The row holds what was committed; the session being completed is applied on top
+        verify(userStatsRepository, times(2)).applySessionCompleted(eq(12L), eq(45L),
+                eq(new BigDecimal("37.50")), eq(BigDecimal.ZERO), eq(1L), eq(1L), any());
+    }
+
+    @Test
+    void testLosingTheRaceToCreateARowRetriesTheUpdate() {
+        Session session = new Session();
+        session.setStudent(student);
+        session.setTutor(tutor);
+        session.setStatus(Session.Status.PENDING);
+        when(userStatsRepository.addOpenSessions(eq(12L), eq(1L), any())).thenReturn(0, 1);
+        when(userStatsRepository.addOpenSessions(eq(7L), eq(1L), any())).thenReturn(1);
+        when(userStatsRepository.existsById(12L)).thenReturn(false);
+        when(sessionRepository.aggregateCompletedByStudent(12L)).thenReturn(Collections.emptyList());
+        when(sessionRepository.aggregateCompletedByTutor(12L)).thenReturn(Collections.emptyList());
+        when(feedbackRepository.aggregateRatingsForReviewee(12L)).thenReturn(Collections.emptyList());
+        doThrow(new PersistenceException("duplicate key")).when(entityManager).flush();
+
+        userStatsService.sessionOpened(session);
+
+        verify(userStatsRepository, times(2)).addOpenSessions(eq(12L), eq(1L), any());
+        verify(userStatsRepository).addOpenSessions(eq(7L), eq(1L), any());
+        verify(eventPublisher, times(2)).publishEvent(any(UserStatsChangedEvent.class));
+    }
+
+    @Test
+    void testOnlyDoubtTransitionsAcrossResolvedChangeOpenCount() {
+        when(userStatsRepository.addOpenDoubts(anyLong(), anyLong(), any())).thenReturn(1);
+        Doubt doubt = new Doubt();
+        doubt.setStudent(student);
+
+        doubt.setStatus(Doubt.Status.OPEN);
+        userStatsService.doubtStatusChanged(doubt, null);
+        verify(userStatsRepository).addOpenDoubts(eq(12L), eq(1L), any());
+
+        doubt.setStatus(Doubt.Status.ASSIGNED);
+        userStatsService.doubtStatusChanged(doubt, Doubt.Status.OPEN);
+        verifyNoMoreInteractions(userStatsRepository);
+
+        doubt.setStatus(Doubt.Status.RESOLVED);
+        userStatsService.doubtStatusChanged(doubt, Doubt.Status.ASSIGNED);
+        verify(userStatsRepository).addOpenDoubts(eq(12L), eq(-1L), any());
+    }
+
+    @Test
+    void testCancellingAClosedSessionChangesNothing() {
+        Session session = completedSession(0L, "0", "0");
+        session.setStatus(Session.Status.CANCELLED);
+
+        userStatsService.sessionClosed(session, Session.Status.CANCELLED);
+        verifyNoInteractions(userStatsRepository);
+
+        when(userStatsRepository.addOpenSessions(anyLong(), anyLong(), any())).thenReturn(1);
+        userStatsService.sessionClosed(session, Session.Status.PENDING);
+        verify(userStatsRepository).addOpenSessions(eq(12L), eq(-1L), any());
+        verify(userStatsRepository).addOpenSessions(eq(7L), eq(-1L), any());
+    }
+
+    @Test
+    void testOnlyStudentRatingsOfTutorsCountTowardsRating() {
+        when(userStatsRepository.addRating(anyLong(), anyLong(), any())).thenReturn(1);
+        Feedback feedback = new Feedback();
+        feedback.setReviewee(student);
+        feedback.setRating(2);
+        feedback.setType(Feedback.Type.TUTOR_TO_STUDENT);
+
+        userStatsService.feedbackReceived(feedback);
+        verifyNoInteractions(userStatsRepository);
+
+        feedback.setReviewee(tutor);
+        feedback.setRating(5);
+        feedback.setType(Feedback.Type.STUDENT_TO_TUTOR);
+        userStatsService.feedbackReceived(feedback);
+        verify(userStatsRepository).addRating(eq(7L), eq(5L), any());
+    }
+
+    private Session completedSession(long minutes, String cost, String earnings) {
+        Session session = new Session();
+        session.setStudent(student);
+        session.setTutor(tutor);
+        session.setStatus(Session.Status.COMPLETED);
+        session.setDurationMinutes(minutes);
+        session.setCost(new BigDecimal(cost));
+        session.setTutorEarnings(new BigDecimal(earnings));
+        return session;
+    }
+}
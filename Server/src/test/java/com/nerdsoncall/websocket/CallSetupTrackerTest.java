@@ -0,0 +1,69 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Each milestone of a call is stamped once and the intervals between them land in the
+ * call setup histograms.
+ */
+public class CallSetupTrackerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void milestonesAreTimedOnceAndOutcomesCounted() {
+        CallSetupTracker tracker = new CallSetupTracker(100, 600_000);
+
+        tracker.record("call-1", CallSetupTracker.Milestone.CREATED);
+        tracker.record("call-1", CallSetupTracker.Milestone.JOINED);
+        tracker.record("call-1", CallSetupTracker.Milestone.OFFER);
+        tracker.record("call-1", CallSetupTracker.Milestone.FIRST_ICE_CANDIDATE);
+        tracker.record("call-1", CallSetupTracker.Milestone.FIRST_ICE_CANDIDATE);
+        tracker.record("call-1", CallSetupTracker.Milestone.ANSWER);
+        tracker.record("call-1", CallSetupTracker.Milestone.STARTED);
+        tracker.finish("call-1");
+
+        tracker.record("call-2", CallSetupTracker.Milestone.JOINED);
+        tracker.record("call-2", CallSetupTracker.Milestone.DECLINED);
+        tracker.finish("call-2");
+
+        tracker.record("call-3", CallSetupTracker.Milestone.CREATED);
+        tracker.finish("call-3");
+
+        Map<String, Object> stats = tracker.getStatsSnapshot();
+        Map<String, Object> histograms = (Map<String, Object>) stats.get("histograms");
+        assertEquals(1L, count(histograms, "createdToJoined"));
+        assertEquals(1L, count(histograms, "timeToAnswer"));
+        assertEquals(1L, count(histograms, "timeToFirstIceCandidate"), "later candidates are ignored");
+        assertEquals(1L, count(histograms, "timeToConnected"));
+        assertEquals(1L, count(histograms, "timeToDecline"), "a call with no REST origin is timed from its join");
+        assertEquals(1L, stats.get("started"));
+        assertEquals(1L, stats.get("declined"));
+        assertEquals(1L, stats.get("abandoned"));
+        assertEquals(1.0 / 3, (double) stats.get("declineRate"), 1e-9);
+        assertEquals(0, stats.get("inProgress"));
+    }
+
+    @Test
+    void callsPastTheLimitAreCountedButNotTimed() {
+        CallSetupTracker tracker = new CallSetupTracker(2, 600_000);
+
+        tracker.record("call-1", CallSetupTracker.Milestone.CREATED);
+        tracker.record("call-2", CallSetupTracker.Milestone.CREATED);
+        tracker.record("call-3", CallSetupTracker.Milestone.CREATED);
+        tracker.record("call-3", CallSetupTracker.Milestone.STARTED);
+
+        Map<String, Object> stats = tracker.getStatsSnapshot();
+        assertEquals(2L, stats.get("tracked"));
+        assertEquals(2L, stats.get("untracked"));
+        assertEquals(0L, stats.get("started"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object count(Map<String, Object> histograms, String name) {
+        return ((Map<String, Object>) histograms.get(name)).get("count");
+    }
+}
@@ -0,0 +1,115 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chat relayed on /ws/webrtc is written behind in batches, and a stalled database costs
+ * history, never relay latency.
+ */
+public class ChatHistoryWriterTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private HeartbeatMonitor heartbeatMonitor;
+
+    @BeforeEach
+    void setUp() {
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+    }
+
+    @Test
+    void relayedChatIsWrittenInBatches() throws Exception {
+        List<List<ChatHistoryWriter.ChatRecord>> batches = new ArrayList<>();
+        CountDownLatch written = new CountDownLatch(2);
+        ChatHistoryWriter writer = new ChatHistoryWriter(messages -> {
+            synchronized (batches) {
+                batches.add(new ArrayList<>(messages));
+            }
+            written.countDown();
+        }, 100, 5, 60_000);
+        WebRTCSignalingHandler handler = handler(writer);
+
+        StubWebSocketSession student = connect(handler, "ws-1", "12");
+        connect(handler, "ws-2", "7");
+        for (int i = 0; i < 10; i++) {
+            chat(handler, student, i);
+        }
+
+        // Two full batches, written without waiting for the flush interval
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        writer.shutdown();
+        synchronized (batches) {
+            assertEquals(2, batches.size());
+            assertEquals(5, batches.get(0).size());
+            ChatHistoryWriter.ChatRecord first = batches.get(0).get(0);
+            assertEquals(ROOM, first.roomId());
+            assertEquals("12", first.senderId());
+            assertEquals("hello 0", first.message());
+        }
+        assertEquals(10L, writer.getStatsSnapshot().get("written"));
+    }
+
+    @Test
+    void stalledDatabaseDropsHistoryNotChat() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ChatHistoryWriter writer = new ChatHistoryWriter(messages -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 4, 1, 60_000);
+        WebRTCSignalingHandler handler = handler(writer);
+
+        StubWebSocketSession student = connect(handler, "ws-1", "12");
+        StubWebSocketSession tutor = connect(handler, "ws-2", "7");
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            chat(handler, student, i);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long relayed = tutor.getSentMessages().stream()
+                .filter(m -> m instanceof TextMessage t && t.getPayload().contains("\"chat_message\""))
+                .count();
+        assertEquals(50, relayed);
+        assertTrue(elapsedMs < 2_000, "relay waited on the database: " + elapsedMs + "ms");
+        assertTrue((Long) writer.getStatsSnapshot().get("droppedQueueFull") > 0);
+
+        release.countDown();
+        writer.shutdown();
+    }
+
+    private WebRTCSignalingHandler handler(ChatHistoryWriter writer) {
+        return new WebRTCSignalingHandler(new LocalSignalingBus(), "node-1", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()), writer,
+                new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+    }
+
+    private static StubWebSocketSession connect(WebRTCSignalingHandler handler, String id, String userId) {
+        StubWebSocketSession session = new StubWebSocketSession(id, "userId=" + userId + "&sessionId=" + ROOM);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static void chat(WebRTCSignalingHandler handler, StubWebSocketSession session, int n) throws Exception {
+        handler.handleMessage(session, new TextMessage("{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"12\",\"message\":\"hello " + n + "\"}"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Large screen-share payloads sent to /ws/session as chunks: reassembled and relayed whole
+ * to the other subscribers, and dropped without buffering once they break a limit.
+ */
+public class ChunkedTransferTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private SessionOutboxRegistry outboxRegistry;
+    private FrameCoalescer frameCoalescer;
+    private WhiteboardSnapshotStore whiteboardStore;
+    private HeartbeatMonitor heartbeatMonitor;
+    private ChunkAssembler chunkAssembler;
+    private TutoringSessionHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        outboxRegistry = new SessionOutboxRegistry(1, 1 << 20, 5000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of());
+        frameCoalescer = new FrameCoalescer(25, Set.of(), FrameCoalescer.SceneMode.LATEST);
+        whiteboardStore = new WhiteboardSnapshotStore(FrameCoalescer.SceneMode.LATEST, null,
+                2000, 20, 5000, 1 << 26, 600_000);
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        chunkAssembler = new ChunkAssembler(10_000, 2, 1 << 20, 30_000);
+        handler = new TutoringSessionHandler(outboxRegistry, frameCoalescer, whiteboardStore, heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()), chunkAssembler,
+                new RoomLanes(0, 16, 10_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxRegistry.shutdown();
+        frameCoalescer.shutdown();
+        whiteboardStore.shutdown();
+        heartbeatMonitor.shutdown();
+    }
+
+    @Test
+    void chunkedScreenShareIsRelayedWholeToTheOthers() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7");
+        StubWebSocketSession student = subscribe("ws-2", "12");
+
+        String image = "x".repeat(6_000);
+        String frame = "{\"type\":\"screen_share\",\"sessionId\":\"" + ROOM + "\",\"userId\":\"7\",\"data\":{\"image\":\""
+                + image + "\"}}";
+        sendChunked(tutor, "t1", frame, 2_500);
+
+        JsonNode relayed = awaitOfType(student, "screen_share", 1).get(0);
+        assertEquals(image, relayed.path("data").path("image").asText());
+        Thread.sleep(50);
+        assertTrue(ofType(tutor, "screen_share").isEmpty(), "the sender doesn't get its own screen back");
+        assertEquals(0L, chunkAssembler.getStatsSnapshot().get("bufferedBytes"));
+    }
+
+    @Test
+    void oversizedTransferIsRejectedOnItsFirstChunk() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7");
+        StubWebSocketSession student = subscribe("ws-2", "12");
+
+        handler.handleMessage(tutor, chunk("t1", 0, 100, 1_000_000, "{\"type\":\"screen_share\""));
+
+        JsonNode rejected = awaitOfType(tutor, "chunk_rejected", 1).get(0);
+        assertEquals("t1", rejected.path("transferId").asText());
+        assertEquals(0, chunkAssembler.getStatsSnapshot().get("transfersInProgress"));
+        assertTrue(ofType(student, "screen_share").isEmpty());
+    }
+
+    @Test
+    void transferGrowingPastItsDeclaredSizeIsDropped() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7");
+
+        handler.handleMessage(tutor, chunk("t1", 0, 3, 100, "y".repeat(60)));
+        handler.handleMessage(tutor, chunk("t1", 1, 3, 100, "y".repeat(60)));
+
+        awaitOfType(tutor, "chunk_rejected", 1);
+        assertEquals(0L, chunkAssembler.getStatsSnapshot().get("bufferedBytes"));
+        assertEquals(0, chunkAssembler.getStatsSnapshot().get("transfersInProgress"));
+    }
+
+    @Test
+    void onlyRelayedMessageTypesMayBeChunked() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7");
+
+        sendChunked(tutor, "t1", "{\"type\":\"unsubscribe\",\"sessionId\":\"" + ROOM + "\",\"userId\":\"7\"}", 20);
+
+        awaitOfType(tutor, "chunk_rejected", 1);
+        assertTrue(ofType(tutor, "unsubscribed").isEmpty());
+    }
+
+    private StubWebSocketSession subscribe(String id, String userId) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id, "userId=" + userId + "&sessionId=" + ROOM);
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new TextMessage("{\"type\":\"subscribe\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"" + userId + "\"}"));
+        awaitOfType(session, "subscribed", 1);
+        return session;
+    }
+
+    private void sendChunked(StubWebSocketSession session, String transferId, String payload, int chunkSize)
+            throws Exception {
+        int count = (payload.length() + chunkSize - 1) / chunkSize;
+        for (int i = 0; i < count; i++) {
+            String data = payload.substring(i * chunkSize, Math.min(payload.length(), (i + 1) * chunkSize));
+            handler.handleMessage(session, chunk(transferId, i, count, payload.length(), data));
+        }
+    }
+
+    private static TextMessage chunk(String transferId, int index, int count, long total, String data) {
+        return new TextMessage(WebSocketJson.write(WebSocketJson.createObjectNode()
+                .put("type", "chunk")
+                .put("transferId", transferId)
+                .put("index", index)
+                .put("count", count)
+                .put("total", total)
+                .put("data", data)));
+    }
+
+    /**
+     * Outbound frames go through the outbox thread; wait for them
+     */
+    private static List<JsonNode> awaitOfType(StubWebSocketSession session, String type, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 2000;
+        List<JsonNode> received = ofType(session, type);
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            received = ofType(session, type);
+        }
+        assertEquals(count, received.size(), "expected " + count + " " + type + " frames");
+        return received;
+    }
+
+    private static List<JsonNode> ofType(StubWebSocketSession session, String type) throws Exception {
+        List<JsonNode> frames = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                JsonNode node = WebSocketJson.readTree(text.getPayload());
+                if (type.equals(node.path("type").asText())) {
+                    frames.add(node);
+                }
+            }
+        }
+        return frames;
+    }
+}
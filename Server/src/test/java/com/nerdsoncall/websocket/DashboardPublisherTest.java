@@ -0,0 +1,86 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A connection gets every field once, then a burst of changes arrives as one frame holding only
+ * the fields whose values moved.
+ */
+public class DashboardPublisherTest {
+
+    private DashboardPublisher publisher;
+    private final Map<String, Object> fields = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        publisher = new DashboardPublisher(50);
+        publisher.setLoader((userId, role) -> {
+            loads.incrementAndGet();
+            return Map.copyOf(fields);
+        });
+        fields.put("totalSessions", 4L);
+        fields.put("hoursLearned", 3.0);
+        fields.put("openDoubts", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void burstOfChangesIsOneFrameWithOnlyChangedFields() throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "userId=12&token=t");
+        publisher.attach(12L, "STUDENT", session);
+
+        JsonNode first = awaitFrame(session, 1);
+        assertTrue(first.path("full").asBoolean());
+        assertEquals(3, first.path("fields").size());
+
+        fields.put("totalSessions", 5L);
+        fields.put("hoursLearned", 3.75);
+        for (int i = 0; i < 10; i++) {
+            publisher.changed(12L);
+        }
+
+        JsonNode delta = awaitFrame(session, 2);
+        assertEquals(DashboardPublisher.DELTA_TYPE, delta.path("type").asText());
+        assertFalse(delta.path("full").asBoolean());
+        assertEquals(2, delta.path("fields").size());
+        assertEquals(5L, delta.path("fields").path("totalSessions").asLong());
+        assertFalse(delta.path("fields").has("openDoubts"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changesForUsersWithoutAConnectionAreIgnored() throws Exception {
+        publisher.changed(99L);
+        Thread.sleep(150);
+
+        assertEquals(0, loads.get());
+        assertEquals(0L, publisher.getStatsSnapshot().get("changes"));
+    }
+
+    private static JsonNode awaitFrame(StubWebSocketSession session, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (session.getSentMessages().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, session.getSentMessages().size());
+        TextMessage message = (TextMessage) session.getSentMessages().get(count - 1);
+        return WebSocketJson.readTree(message.getPayload());
+    }
+}
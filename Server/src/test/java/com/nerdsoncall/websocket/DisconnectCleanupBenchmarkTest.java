@@ -0,0 +1,157 @@
+package com.nerdsoncall.websocket;
+
+import ch.qos.logback.classic.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Microbenchmark for disconnect cleanup in the WebSocket handlers.
+ *
+ * Each handler is filled with a growing number of connections (two per room) and the
+ * average cost of closing a fixed sample of them is measured. With the reverse indexes
+ * the cost must stay roughly flat; a linear scan would grow with the population. The best
+ * of several trials is reported to filter out GC pauses and scheduling noise.
+ */
+public class DisconnectCleanupBenchmarkTest {
+
+    private static final int[] POPULATIONS = {500, 4_000, 16_000};
+    private static final int DISCONNECTS = 500;
+    private static final int TRIALS = 7;
+    private static final double MAX_GROWTH = 8.0;
+
+    private static SessionOutboxRegistry outboxRegistry;
+    private static FrameCoalescer frameCoalescer;
+    private static WhiteboardSnapshotStore whiteboardStore;
+    private static HeartbeatMonitor heartbeatMonitor;
+    private static ChatHistoryWriter chatHistoryWriter;
+    private static Level previousLevel;
+
+    @BeforeAll
+    static void setUp() {
+        // Handlers log every connect/close; keep the console out of the measurement
+        ch.qos.logback.classic.Logger logger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall");
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+
+        outboxRegistry = new SessionOutboxRegistry(2, 1 << 20, 5000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of("drawing_event", "excalidraw_update"));
+        frameCoalescer = new FrameCoalescer(25, Set.of("drawing_event", "excalidraw_update"),
+                FrameCoalescer.SceneMode.LATEST);
+        whiteboardStore = new WhiteboardSnapshotStore(FrameCoalescer.SceneMode.LATEST, null,
+                2000, 20, 5000, 1 << 26, 600_000);
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        outboxRegistry.shutdown();
+        frameCoalescer.shutdown();
+        whiteboardStore.shutdown();
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall")).setLevel(previousLevel);
+    }
+
+    @Test
+    void tutoringSessionDisconnectCostStaysFlat() throws Exception {
+        assertFlat("TutoringSessionHandler", this::measureTutoringSession);
+    }
+
+    @Test
+    void webRTCSignalingDisconnectCostStaysFlat() throws Exception {
+        assertFlat("WebRTCSignalingHandler", this::measureWebRTCSignaling);
+    }
+
+    @Test
+    void signalingDisconnectCostStaysFlat() throws Exception {
+        assertFlat("SignalingHandler", this::measureSignaling);
+    }
+
+    private double measureTutoringSession(int population) throws Exception {
+        TutoringSessionHandler handler = new TutoringSessionHandler(outboxRegistry, frameCoalescer, whiteboardStore,
+                heartbeatMonitor, new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()),
+                new ChunkAssembler(1 << 20, 4, 1 << 24, 30_000), new RoomLanes(0, 64, 10_000));
+        List<StubWebSocketSession> sessions = connect(handler, population, false);
+        for (int i = 0; i < population; i++) {
+            handler.handleTextMessage(sessions.get(i), new TextMessage(
+                    "{\"type\":\"subscribe\",\"sessionId\":\"room-" + (i / 2) + "\",\"userId\":\"user-" + i + "\"}"));
+        }
+        return timeDisconnects(handler, sessions);
+    }
+
+    private double measureWebRTCSignaling(int population) throws Exception {
+        WebRTCSignalingHandler handler = new WebRTCSignalingHandler(new LocalSignalingBus(), "node-1", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()), chatHistoryWriter,
+                new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+        return timeDisconnects(handler, connect(handler, population, true));
+    }
+
+    private double measureSignaling(int population) throws Exception {
+        SignalingHandler handler = new SignalingHandler(heartbeatMonitor);
+        return timeDisconnects(handler, connect(handler, population, false));
+    }
+
+    private List<StubWebSocketSession> connect(WebSocketHandler handler, int population, boolean withRoom)
+            throws Exception {
+        List<StubWebSocketSession> sessions = new ArrayList<>(population);
+        for (int i = 0; i < population; i++) {
+            String query = "userId=user-" + i + (withRoom ? "&sessionId=room-" + (i / 2) : "");
+            StubWebSocketSession session = new StubWebSocketSession("ws-" + i, query);
+            handler.afterConnectionEstablished(session);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private double timeDisconnects(WebSocketHandler handler, List<StubWebSocketSession> sessions)
+            throws Exception {
+        int stride = sessions.size() / DISCONNECTS;
+        System.gc();
+        long start = System.nanoTime();
+        for (int i = 0; i < DISCONNECTS; i++) {
+            StubWebSocketSession session = sessions.get(i * stride);
+            session.close();
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+        return (System.nanoTime() - start) / (double) DISCONNECTS;
+    }
+
+    private void assertFlat(String name, Measurement measurement) throws Exception {
+        // Warm up the JIT on the smallest and largest population before measuring
+        measurement.nanosPerDisconnect(POPULATIONS[0]);
+        measurement.nanosPerDisconnect(POPULATIONS[POPULATIONS.length - 1]);
+
+        double[] results = new double[POPULATIONS.length];
+        for (int i = 0; i < POPULATIONS.length; i++) {
+            results[i] = Double.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; trial++) {
+                results[i] = Math.min(results[i], measurement.nanosPerDisconnect(POPULATIONS[i]));
+            }
+            System.out.printf("%s: %,d connections -> %,.0f ns per disconnect%n",
+                    name, POPULATIONS[i], results[i]);
+        }
+
+        double growth = results[results.length - 1] / results[0];
+        assertTrue(growth < MAX_GROWTH, String.format(
+                "%s disconnect cost grew %.1fx for a %dx larger population", name, growth,
+                POPULATIONS[POPULATIONS.length - 1] / POPULATIONS[0]));
+    }
+
+    @FunctionalInterface
+    private interface Measurement {
+        double nanosPerDisconnect(int population) throws Exception;
+    }
+}
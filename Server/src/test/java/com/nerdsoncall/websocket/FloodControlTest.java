@@ -0,0 +1,116 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chat flooding on /ws/webrtc: frames over the per-connection or per-room burst are dropped
+ * instead of relayed, and each flooding episode is reported once.
+ */
+public class FloodControlTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private HeartbeatMonitor heartbeatMonitor;
+    private FloodControl floodControl;
+    private ChatHistoryWriter chatHistoryWriter;
+    private WebRTCSignalingHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        // Refills at 1/s, so within a test only the bursts count
+        floodControl = new FloodControl(List.of("chat_message=1/3/1/5"));
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+        handler = new WebRTCSignalingHandler(new LocalSignalingBus(), "node-1", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), floodControl, chatHistoryWriter,
+                new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+    }
+
+    @Test
+    void connectionBurstCapsOneClient() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12");
+        StubWebSocketSession tutor = connect("ws-2", "7");
+
+        for (int i = 0; i < 10; i++) {
+            chat(student, "12", i);
+        }
+
+        assertEquals(3, ofType(tutor, "chat_message").size());
+        assertEquals(1, ofType(student, "error").size(), "one report per flooding episode");
+        assertTrue(ofType(student, "error").get(0).path("message").asText().contains("chat_message"));
+        assertTrue(student.isOpen());
+
+        Map<String, Object> stats = floodControl.getStatsSnapshot();
+        assertEquals(Map.of("chat_message", 7L), stats.get("dropped"));
+        assertEquals(1L, stats.get("violations"));
+    }
+
+    @Test
+    void roomBurstCapsEverySenderTogether() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12");
+        StubWebSocketSession tutor = connect("ws-2", "7");
+        StubWebSocketSession observer = connect("ws-3", "99");
+
+        for (int i = 0; i < 3; i++) {
+            chat(student, "12", i);
+            chat(tutor, "7", i);
+        }
+
+        assertEquals(5, ofType(observer, "chat_message").size(), "6 frames within each sender's burst, 5 in the room's");
+    }
+
+    @Test
+    void unlimitedTypesAreNeverDropped() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12");
+        StubWebSocketSession tutor = connect("ws-2", "7");
+
+        for (int i = 0; i < 10; i++) {
+            handler.handleMessage(student, new TextMessage(
+                    "{\"type\":\"offer\",\"to\":\"7\",\"from\":\"12\",\"data\":{\"n\":" + i + "}}"));
+        }
+
+        assertEquals(10, ofType(tutor, "offer").size());
+    }
+
+    private StubWebSocketSession connect(String id, String userId) {
+        StubWebSocketSession session = new StubWebSocketSession(id, "userId=" + userId + "&sessionId=" + ROOM);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private void chat(StubWebSocketSession session, String userId, int n) throws Exception {
+        handler.handleMessage(session, new TextMessage("{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"" + userId + "\",\"message\":\"hello " + n + "\"}"));
+    }
+
+    private static List<JsonNode> ofType(StubWebSocketSession session, String type) throws Exception {
+        List<JsonNode> nodes = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                JsonNode node = WebSocketJson.readTree(text.getPayload());
+                if (type.equals(node.path("type").asText())) {
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,175 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The coalescing window: the first frame of a burst goes out at once, the rest collapse into
+ * one frame when the window closes, stroke boundaries and uncoalesced types are never held
+ * behind it, and a sender's pending frames go out when that sender leaves.
+ */
+public class FrameCoalescerTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+    private static final Set<String> TYPES = Set.of("excalidraw_update", "drawing_event");
+    // Longer than any test, so a window only closes when the test closes it
+    private static final long LONG_WINDOW = 3_600_000;
+
+    private final List<String> relayed = new CopyOnWriteArrayList<>();
+    private final FrameCoalescer.Relay relay = (roomId, frame, type, sender) ->
+            relayed.add(sender.getId() + " " + frame.getPayload());
+    private final StubWebSocketSession tutor = new StubWebSocketSession("ws-tutor", "userId=12");
+    private final StubWebSocketSession student = new StubWebSocketSession("ws-student", "userId=7");
+    private FrameCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    void burstCollapsesToTheLatestSceneWhenTheWindowCloses() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(2);
+        coalescer = new FrameCoalescer(50, TYPES, FrameCoalescer.SceneMode.LATEST);
+        FrameCoalescer.Relay counting = (roomId, frame, type, sender) -> {
+            relay.relay(roomId, frame, type, sender);
+            flushed.countDown();
+        };
+
+        for (int version = 1; version <= 5; version++) {
+            coalescer.submit(ROOM, tutor, scene(element("a", version)), counting);
+        }
+        assertEquals(1, relayed.size(), "only the first frame of the burst goes out at once");
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, relayed.size());
+        assertEquals(5, elements(1).get(0).path("version").asInt());
+        assertEquals(5L, room().get("framesIn"));
+        assertEquals(2L, room().get("framesOut"));
+    }
+
+    @Test
+    void elementListsAreMergedByIdAndNewestVersionWins() throws Exception {
+        coalescer = new FrameCoalescer(LONG_WINDOW, TYPES, FrameCoalescer.SceneMode.MERGE_ELEMENTS);
+
+        coalescer.submit(ROOM, tutor, scene(element("a", 1)), relay);
+        coalescer.submit(ROOM, tutor, scene(element("a", 3)), relay);
+        coalescer.submit(ROOM, tutor, scene(element("b", 1)), relay);
+        coalescer.submit(ROOM, tutor, scene(element("a", 2)), relay);
+        coalescer.releaseSender(ROOM, tutor);
+
+        assertEquals(2, relayed.size());
+        JsonNode merged = elements(1);
+        assertEquals(2, merged.size());
+        assertEquals("a", merged.get(0).path("id").asText());
+        assertEquals(3, merged.get(0).path("version").asInt(), "an older version never replaces a newer one");
+        assertEquals("b", merged.get(1).path("id").asText());
+    }
+
+    @Test
+    void strokeBoundaryFlushesPendingPointsAheadOfItself() throws Exception {
+        coalescer = new FrameCoalescer(LONG_WINDOW, TYPES, FrameCoalescer.SceneMode.LATEST);
+
+        coalescer.submit(ROOM, tutor, stroke("start", 0), relay);
+        coalescer.submit(ROOM, tutor, stroke("draw", 1), relay);
+        coalescer.submit(ROOM, tutor, stroke("draw", 2), relay);
+        coalescer.submit(ROOM, tutor, stroke("draw", 3), relay);
+        coalescer.submit(ROOM, tutor, stroke("end", 4), relay);
+
+        // The first point opens the window, the two held behind it collapse to the latest
+        assertEquals(List.of("start:0", "draw:1", "draw:3", "end:4"), strokes());
+    }
+
+    @Test
+    void uncoalescedTypesAndOtherSendersAreNeverHeldBack() throws Exception {
+        coalescer = new FrameCoalescer(LONG_WINDOW, TYPES, FrameCoalescer.SceneMode.LATEST);
+
+        coalescer.submit(ROOM, tutor, stroke("draw", 1), relay);
+        coalescer.submit(ROOM, tutor, stroke("draw", 2), relay);
+        coalescer.submit(ROOM, student, stroke("draw", 1), relay);
+        for (int i = 0; i < 3; i++) {
+            coalescer.submit(ROOM, tutor, MessageEnvelope.parse(new TextMessage(
+                    "{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM + "\",\"message\":{\"text\":\"" + i + "\"}}")), relay);
+        }
+
+        assertEquals(5, relayed.size(), "everything but the tutor's second point");
+        assertTrue(relayed.get(0).startsWith("ws-tutor "));
+        assertTrue(relayed.get(1).startsWith("ws-student "), "the student has a window of their own");
+        assertTrue(relayed.get(4).contains("\"text\":\"2\""));
+    }
+
+    @Test
+    void leavingSenderFlushesOnlyItsOwnPendingFrames() throws Exception {
+        coalescer = new FrameCoalescer(LONG_WINDOW, TYPES, FrameCoalescer.SceneMode.LATEST);
+
+        coalescer.submit(ROOM, tutor, stroke("draw", 1), relay);
+        coalescer.submit(ROOM, tutor, stroke("draw", 2), relay);
+        coalescer.submit(ROOM, tutor, scene(element("a", 1)), relay);
+        coalescer.submit(ROOM, tutor, scene(element("a", 2)), relay);
+        coalescer.submit(ROOM, student, stroke("draw", 1), relay);
+        coalescer.submit(ROOM, student, stroke("draw", 2), relay);
+        assertEquals(3, relayed.size());
+
+        coalescer.releaseSender(ROOM, tutor);
+
+        assertEquals(5, relayed.size());
+        assertTrue(relayed.subList(3, 5).stream().allMatch(frame -> frame.startsWith("ws-tutor ")));
+        assertTrue(relayed.stream().anyMatch(frame -> frame.contains("\"x\":2") && frame.startsWith("ws-tutor ")));
+        assertTrue(relayed.stream().noneMatch(frame -> frame.contains("\"x\":2") && frame.startsWith("ws-student ")));
+
+        coalescer.releaseSender(ROOM, tutor);
+        assertEquals(5, relayed.size(), "nothing is flushed twice");
+    }
+
+    private JsonNode elements(int index) throws Exception {
+        String frame = relayed.get(index);
+        return WebSocketJson.readTree(frame.substring(frame.indexOf(' ') + 1)).path("data").path("elements");
+    }
+
+    private List<String> strokes() throws Exception {
+        List<String> strokes = new ArrayList<>();
+        for (String frame : relayed) {
+            JsonNode data = WebSocketJson.readTree(frame.substring(frame.indexOf(' ') + 1)).path("data");
+            strokes.add(data.path("type").asText() + ":" + data.path("x").asInt());
+        }
+        return strokes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> room() {
+        Map<String, Object> rooms = (Map<String, Object>) coalescer.getStatsSnapshot().get("rooms");
+        return (Map<String, Object>) rooms.get(ROOM);
+    }
+
+    private static String element(String id, int version) {
+        return "{\"id\":\"" + id + "\",\"version\":" + version + "}";
+    }
+
+    private static MessageEnvelope scene(String element) throws Exception {
+        return frame("excalidraw_update", "{\"elements\":[" + element + "]}");
+    }
+
+    private static MessageEnvelope stroke(String type, int x) throws Exception {
+        return frame("drawing_event", "{\"type\":\"" + type + "\",\"x\":" + x + "}");
+    }
+
+    private static MessageEnvelope frame(String type, String data) throws Exception {
+        return MessageEnvelope.parse(new TextMessage(
+                "{\"type\":\"" + type + "\",\"sessionId\":\"" + ROOM + "\",\"data\":" + data + "}"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Upgrades are admitted against the node and per-user caps before the handshake, and a
+ * closed or failed connection gives its slot back.
+ */
+public class HandshakeAdmissionTest {
+
+    private final WebSocketHandler endpoint = new TextWebSocketHandler();
+
+    @Test
+    void malformedQueryIsRefusedWithoutTakingASlot() {
+        HandshakeAdmission admission = new HandshakeAdmission(10, 2, 5);
+
+        Handshake missing = handshake(admission, "sessionId=room-1");
+        Handshake malformed = handshake(admission, "userId=%3Cscript%3E");
+
+        assertFalse(missing.admitted);
+        assertEquals(400, missing.response.getStatus());
+        assertFalse(malformed.admitted);
+        assertEquals(0, admission.getStatsSnapshot().get("openConnections"));
+    }
+
+    @Test
+    void userOverTheCapIsToldWhenToRetry() throws Exception {
+        HandshakeAdmission admission = new HandshakeAdmission(10, 2, 5);
+        WebSocketHandler handler = admission.releasing(endpoint);
+
+        Handshake first = upgrade(admission, "userId=12&sessionId=room-1");
+        upgrade(admission, "userId=12");
+        Handshake third = handshake(admission, "userId=12");
+
+        assertFalse(third.admitted);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), third.response.getStatus());
+        int retryAfter = Integer.parseInt(third.response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(retryAfter >= 5 && retryAfter <= 10);
+        assertTrue(handshake(admission, "userId=7").admitted, "other users are not affected");
+
+        // The handler reads the parameters parsed at admission
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "");
+        session.getAttributes().putAll(first.attributes);
+        assertEquals("room-1", HandshakeAdmission.queryParameter(session, "sessionId"));
+
+        session.close();
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        assertTrue(handshake(admission, "userId=12").admitted);
+        assertFalse(handshake(admission, "userId=12").admitted, "a slot is only given back once");
+    }
+
+    @Test
+    void fullNodeRefusesAndFailedUpgradesGiveTheirSlotBack() {
+        HandshakeAdmission admission = new HandshakeAdmission(2, 8, 5);
+
+        upgrade(admission, "userId=1");
+        // Admitted, but the upgrade never happened (e.g. refused by the origin check)
+        Handshake refusedLater = handshake(admission, "userId=2");
+        admission.afterHandshake(refusedLater.request, refusedLater.serverResponse, endpoint, null);
+        upgrade(admission, "userId=3");
+        Handshake overflow = handshake(admission, "userId=4");
+
+        assertFalse(overflow.admitted);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), overflow.response.getStatus());
+        assertNotNull(overflow.response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(2, admission.getStatsSnapshot().get("openConnections"));
+        assertEquals(1L, admission.getStatsSnapshot().get("rejectedNodeFull"));
+    }
+
+    private Handshake upgrade(HandshakeAdmission admission, String query) {
+        Handshake handshake = handshake(admission, query);
+        assertTrue(handshake.admitted);
+        handshake.response.setStatus(HttpStatus.SWITCHING_PROTOCOLS.value());
+        admission.afterHandshake(handshake.request, handshake.serverResponse, endpoint, null);
+        return handshake;
+    }
+
+    private Handshake handshake(HandshakeAdmission admission, String query) {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/ws/session");
+        servletRequest.setQueryString(query);
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        ServletServerHttpRequest request = new ServletServerHttpRequest(servletRequest);
+        ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+        Map<String, Object> attributes = new HashMap<>();
+
+        boolean admitted = admission.beforeHandshake(request, response, endpoint, attributes);
+        // Status and headers reach the servlet response when it is flushed, as the handshake does
+        response.close();
+        return new Handshake(admitted, request, response, servletResponse, attributes);
+    }
+
+    private record Handshake(boolean admitted, ServletServerHttpRequest request, ServletServerHttpResponse serverResponse,
+                             MockHttpServletResponse response, Map<String, Object> attributes) {
+    }
+}
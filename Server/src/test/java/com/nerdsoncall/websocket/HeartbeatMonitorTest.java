@@ -0,0 +1,194 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The heartbeat wheel: who gets pinged, who gets reaped and when, and that a socket whose
+ * ping never goes out holds up nobody else.
+ *
+ * The clock only moves when the test moves it, the wheel only turns when the test ticks it,
+ * and pings, closes and close callbacks wait in a list until the test runs them.
+ */
+public class HeartbeatMonitorTest {
+
+    // Four slots of 1 ms: a connection is visited every fourth tick
+    private static final int SLOTS = 4;
+    private static final long TIMEOUT = 10;
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final List<Runnable> sends = new ArrayList<>();
+    private final AtomicInteger closeCallbacks = new AtomicInteger();
+    private final TextWebSocketHandler handler = new TextWebSocketHandler() {
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            closeCallbacks.incrementAndGet();
+        }
+    };
+    private HeartbeatMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new HeartbeatMonitor(SLOTS, TIMEOUT, 1, clock::get, sends::add, false);
+    }
+
+    @Test
+    void liveConnectionIsPingedOncePerInterval() {
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "userId=12");
+        monitor.register(session, "session", handler);
+
+        tick(SLOTS - 1);
+        assertTrue(sends.isEmpty(), "first visit is one interval after registering");
+        tick(1);
+        runSends();
+        assertEquals(1, session.getSentMessages().size());
+        assertInstanceOf(PingMessage.class, session.getSentMessages().get(0));
+
+        clock.addAndGet(4);
+        monitor.touch(session);
+        tick(SLOTS);
+        runSends();
+        assertEquals(2, session.getSentMessages().size());
+        assertEquals(2L, endpoint("session").get("pings"));
+        assertTrue(session.isOpen());
+    }
+
+    @Test
+    void silentConnectionIsReapedAndItsHandlerCalledOnce() {
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "userId=12");
+        monitor.register(session, "session", handler);
+
+        clock.addAndGet(TIMEOUT + 1);
+        tick(SLOTS);
+        assertTrue(session.isOpen(), "closed on the sender pool, not the wheel's thread");
+        runSends();
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+        assertEquals(1, closeCallbacks.get());
+        assertEquals(0, monitor.getStatsSnapshot().get("watchedConnections"));
+
+        tick(SLOTS * 2);
+        runSends();
+        assertEquals(1, closeCallbacks.get(), "a reaped connection is never visited again");
+        assertEquals(1L, endpoint("session").get("reaped"));
+    }
+
+    @Test
+    void touchKeepsAConnectionAlive() {
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "userId=12");
+        monitor.register(session, "session", handler);
+
+        clock.addAndGet(TIMEOUT - 2);
+        monitor.touch(session);
+        clock.addAndGet(TIMEOUT - 2);
+        tick(SLOTS);
+        runSends();
+
+        assertTrue(session.isOpen());
+        assertEquals(0, closeCallbacks.get());
+        assertEquals(1, session.getSentMessages().size());
+    }
+
+    @Test
+    void unregisteredConnectionIsLeftAlone() {
+        StubWebSocketSession session = new StubWebSocketSession("ws-1", "userId=12");
+        monitor.register(session, "session", handler);
+        monitor.unregister(session);
+
+        clock.addAndGet(TIMEOUT * 10);
+        tick(SLOTS * 2);
+
+        assertTrue(sends.isEmpty());
+        assertTrue(session.isOpen());
+        assertNull(session.getCloseStatus());
+        assertEquals(0, closeCallbacks.get());
+    }
+
+    @Test
+    void stuckPingHoldsUpNoOtherConnectionAndIsReapedAfterTheTimeout() {
+        StubWebSocketSession stuck = new StubWebSocketSession("ws-stuck", "userId=12");
+        StubWebSocketSession healthy = new StubWebSocketSession("ws-healthy", "userId=13");
+        monitor.register(stuck, "webrtc", handler);
+        monitor.register(healthy, "webrtc", handler);
+
+        tick(SLOTS);
+        assertEquals(2, sends.size());
+        // The stuck socket's ping never finishes; the other one's does
+        sends.remove(0);
+        runSends();
+
+        for (int round = 0; round < 2; round++) {
+            // Both peers keep talking, only one of them stopped reading
+            clock.addAndGet(TIMEOUT / 2 + 1);
+            monitor.touch(stuck);
+            monitor.touch(healthy);
+            tick(SLOTS);
+            runSends();
+        }
+
+        assertEquals(3, healthy.getSentMessages().size());
+        assertTrue(healthy.isOpen());
+        assertTrue(stuck.getSentMessages().isEmpty(), "no second ping queued behind the first");
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), stuck.getCloseStatus().getCode());
+        assertEquals(1, closeCallbacks.get());
+        assertEquals(1L, endpoint("webrtc").get("stalledPings"));
+    }
+
+    @Test
+    void containersLateCloseOfAReapedSocketLeavesTheReconnectionAlone() throws Exception {
+        SignalingHandler signalingHandler = new SignalingHandler(monitor);
+        StubWebSocketSession reaped = new StubWebSocketSession("ws-old", "userId=12");
+        signalingHandler.afterConnectionEstablished(reaped);
+
+        clock.addAndGet(TIMEOUT + 1);
+        tick(SLOTS);
+        runSends();
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), reaped.getCloseStatus().getCode());
+
+        StubWebSocketSession reconnected = new StubWebSocketSession("ws-new", "userId=12");
+        signalingHandler.afterConnectionEstablished(reconnected);
+        // What the container reports once it notices the old socket is gone
+        signalingHandler.afterConnectionClosed(reaped, CloseStatus.SESSION_NOT_RELIABLE);
+
+        StubWebSocketSession caller = new StubWebSocketSession("ws-caller", "userId=13");
+        signalingHandler.afterConnectionEstablished(caller);
+        signalingHandler.handleTextMessage(caller, new TextMessage("{\"type\":\"offer\",\"to\":\"12\"}"));
+
+        assertEquals(1, reconnected.getSentMessages().size());
+        assertEquals(2, monitor.getStatsSnapshot().get("watchedConnections"));
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            monitor.tick();
+        }
+    }
+
+    private void runSends() {
+        while (!sends.isEmpty()) {
+            sends.remove(0).run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> endpoint(String name) {
+        Map<String, Object> endpoints = (Map<String, Object>) monitor.getStatsSnapshot().get("endpoints");
+        return (Map<String, Object>) endpoints.get(name);
+    }
+}
@@ -0,0 +1,136 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Trickle ICE bursts reach a recipient that opted in as one ice-candidates frame per window,
+ * after the first candidate went out on its own; everyone else still gets one frame each.
+ */
+public class IceCandidateBatcherTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private HeartbeatMonitor heartbeatMonitor;
+    private ChatHistoryWriter chatHistoryWriter;
+    private IceCandidateBatcher batcherA;
+    private IceCandidateBatcher batcherB;
+    private WebRTCSignalingHandler nodeA;
+    private WebRTCSignalingHandler nodeB;
+
+    @BeforeEach
+    void setUp() {
+        LocalSignalingBus bus = new LocalSignalingBus();
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+        // Wide window, so a slow test run never sees it close between two candidates
+        batcherA = new IceCandidateBatcher(500, 16);
+        batcherB = new IceCandidateBatcher(500, 16);
+        nodeA = new WebRTCSignalingHandler(bus, "node-a", heartbeatMonitor, new RoomReplayBuffer(512, 1 << 20),
+                new FloodControl(List.of()), chatHistoryWriter, new CallSetupTracker(1_000, 600_000), batcherA);
+        nodeB = new WebRTCSignalingHandler(bus, "node-b", heartbeatMonitor, new RoomReplayBuffer(512, 1 << 20),
+                new FloodControl(List.of()), chatHistoryWriter, new CallSetupTracker(1_000, 600_000), batcherB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcherA.shutdown();
+        batcherB.shutdown();
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+    }
+
+    @Test
+    void burstIsBatchedForARecipientThatOptedIn() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "userId=12&sessionId=" + ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "userId=7&sessionId=" + ROOM + "&capabilities=ice-batch");
+
+        for (int i = 1; i <= 5; i++) {
+            nodeA.handleTextMessage(student, new TextMessage(candidate(i)));
+        }
+        // The first candidate is not delayed, the rest wait for the window
+        assertEquals(List.of(candidate(1)), ofType(tutor, "ice-candidate"));
+        assertTrue(ofType(tutor, IceCandidateBatcher.BATCH_TYPE).isEmpty());
+
+        // A renegotiation offer delivers the held candidates first
+        String offer = "{\"type\":\"offer\",\"to\":\"7\",\"from\":\"12\",\"sessionId\":\"" + ROOM
+                + "\",\"data\":{\"type\":\"offer\",\"sdp\":\"v=0\"}}";
+        nodeA.handleTextMessage(student, new TextMessage(offer));
+        List<String> received = payloads(tutor);
+        String batch = ofType(tutor, IceCandidateBatcher.BATCH_TYPE).get(0);
+        assertTrue(received.indexOf(batch) < received.indexOf(offer));
+
+        JsonNode frame = WebSocketJson.readTree(batch);
+        assertEquals("12", frame.path("from").asText());
+        assertEquals(ROOM, frame.path("sessionId").asText());
+        assertEquals(4, frame.path("candidates").size());
+        assertEquals("candidate:2 1 udp 1 10.0.0.2 5000 typ host",
+                frame.path("candidates").get(0).path("candidate").asText());
+
+        // Candidates held after that go out when the window closes
+        nodeA.handleTextMessage(student, new TextMessage(candidate(6)));
+        nodeA.handleTextMessage(student, new TextMessage(candidate(7)));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ofType(tutor, IceCandidateBatcher.BATCH_TYPE).size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, ofType(tutor, IceCandidateBatcher.BATCH_TYPE).size());
+        assertEquals(7L, batcherB.getStatsSnapshot().get("candidatesIn"));
+        assertEquals(3L, batcherB.getStatsSnapshot().get("framesOut"));
+    }
+
+    @Test
+    void recipientsThatDidNotOptInGetEveryCandidate() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "userId=12&sessionId=" + ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "userId=7&sessionId=" + ROOM);
+
+        for (int i = 1; i <= 5; i++) {
+            nodeA.handleTextMessage(student, new TextMessage(candidate(i)));
+        }
+
+        assertEquals(5, ofType(tutor, "ice-candidate").size());
+        assertEquals(0L, batcherB.getStatsSnapshot().get("candidatesIn"));
+    }
+
+    private static String candidate(int n) {
+        return "{\"type\":\"ice-candidate\",\"to\":\"7\",\"from\":\"12\",\"sessionId\":\"" + ROOM
+                + "\",\"data\":{\"candidate\":\"candidate:" + n + " 1 udp 1 10.0.0." + n
+                + " 5000 typ host\",\"sdpMid\":\"0\"}}";
+    }
+
+    private static StubWebSocketSession connect(WebRTCSignalingHandler node, String id, String query) {
+        StubWebSocketSession session = new StubWebSocketSession(id, query);
+        node.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static List<String> ofType(StubWebSocketSession session, String type) {
+        List<String> matching = new ArrayList<>();
+        for (String payload : payloads(session)) {
+            if (payload.startsWith("{\"type\":\"" + type + "\"")) {
+                matching.add(payload);
+            }
+        }
+        return matching;
+    }
+
+    private static List<String> payloads(StubWebSocketSession session) {
+        List<String> payloads = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                payloads.add(text.getPayload());
+            }
+        }
+        return payloads;
+    }
+}
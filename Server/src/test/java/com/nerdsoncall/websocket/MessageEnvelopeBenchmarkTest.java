@@ -0,0 +1,96 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cost of dispatching one large excalidraw_update on a single thread: the tree the handlers
+ * used to build and re-serialize for every frame, against the streamed envelope and the
+ * original frame relayed as is.
+ */
+public class MessageEnvelopeBenchmarkTest {
+
+    private static final int ELEMENTS = 300;
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 2_000;
+
+    @Test
+    void envelopeRelayBeatsTreeAndReserialize() throws Exception {
+        TextMessage frame = new TextMessage(scene());
+
+        Result tree = null;
+        Result envelope = null;
+        for (int round = 0; round < 2; round++) {
+            // The first round is the warm-up
+            tree = measure(round == 0 ? WARMUP : MEASURED, () -> {
+                JsonNode node = WebSocketJson.readTree(frame.getPayload());
+                return new TextMessage(node.toString()).getPayloadLength() + node.path("sessionId").asText().length();
+            });
+            envelope = measure(round == 0 ? WARMUP : MEASURED, () -> {
+                MessageEnvelope parsed = MessageEnvelope.parse(frame);
+                return parsed.getFrame().getPayloadLength() + parsed.getSessionId().length();
+            });
+        }
+
+        System.out.printf("%,d byte excalidraw_update%n", frame.getPayloadLength());
+        report("readTree + toString", tree);
+        report("envelope + relay", envelope);
+
+        assertEquals(tree.checksum, envelope.checksum);
+        assertTrue(envelope.bytesPerMessage < tree.bytesPerMessage);
+    }
+
+    private static Result measure(int messages, Dispatch dispatch) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long checksum = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long begin = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            checksum += dispatch.run();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return new Result(elapsed / messages, allocated / messages, checksum / messages);
+    }
+
+    private static String scene() {
+        StringBuilder elements = new StringBuilder();
+        for (int i = 0; i < ELEMENTS; i++) {
+            if (i > 0) {
+                elements.append(',');
+            }
+            elements.append("{\"id\":\"el-").append(i).append("\",\"type\":\"freedraw\",\"x\":").append(i * 3)
+                    .append(",\"y\":").append(i * 7).append(",\"version\":").append(i + 1)
+                    .append(",\"strokeColor\":\"#1e1e1e\",\"points\":[");
+            for (int p = 0; p < 20; p++) {
+                if (p > 0) {
+                    elements.append(',');
+                }
+                elements.append('[').append(p * 1.5).append(',').append(p * 2.25).append(']');
+            }
+            elements.append("]}");
+        }
+        return "{\"type\":\"excalidraw_update\",\"sessionId\":\"session_12_7_1735000000000\",\"userId\":\"7\","
+                + "\"data\":{\"elements\":[" + elements + "],\"appState\":{\"viewBackgroundColor\":\"#ffffff\"}}}";
+    }
+
+    private static void report(String path, Result result) {
+        System.out.printf("%s: %,.1f us and %,d bytes allocated per message%n", path,
+                result.nanosPerMessage / 1_000.0, result.bytesPerMessage);
+    }
+
+    @FunctionalInterface
+    private interface Dispatch {
+        long run() throws Exception;
+    }
+
+    private record Result(long nanosPerMessage, long bytesPerMessage, long checksum) {
+    }
+}
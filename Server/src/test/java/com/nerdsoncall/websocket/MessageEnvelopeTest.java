@@ -0,0 +1,98 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The routing fields of a frame as the streaming envelope reads them: the same text a tree's
+ * asText() would give, nested values skipped, the full tree only on request.
+ */
+public class MessageEnvelopeTest {
+
+    @Test
+    void routingFieldsAreReadAndNestedValuesSkipped() throws Exception {
+        TextMessage frame = new TextMessage("{\"type\":\"drawing_event\",\"sessionId\":\"session_12_7_1735000000000\","
+                + "\"userId\":\"7\",\"to\":\"12\",\"from\":\"7\",\"userName\":\"Ada\","
+                + "\"data\":{\"points\":[[1,2],[3,4]],\"style\":{\"type\":\"pen\"},\"type\":\"start\"},"
+                + "\"message\":{\"text\":\"hi\"},\"extra\":[{\"type\":\"ignored\"}]}");
+
+        MessageEnvelope envelope = MessageEnvelope.parse(frame);
+
+        assertEquals("drawing_event", envelope.getType());
+        assertEquals("session_12_7_1735000000000", envelope.getSessionId());
+        assertEquals("7", envelope.getUserId());
+        assertEquals("12", envelope.getTo());
+        assertEquals("7", envelope.getFrom());
+        assertEquals("Ada", envelope.getUserName());
+        assertEquals("start", envelope.getDataType(), "the data object's own type, not a nested one");
+        assertTrue(envelope.hasData());
+        assertTrue(envelope.hasMessage());
+        assertSame(frame, envelope.getFrame(), "relayed as the original frame");
+    }
+
+    @Test
+    void absentFieldsAreNull() throws Exception {
+        MessageEnvelope envelope = MessageEnvelope.parse(new TextMessage("{\"type\":\"ping\",\"data\":[1,2]}"));
+
+        assertTrue(envelope.hasType());
+        assertFalse(envelope.hasSessionId());
+        assertFalse(envelope.hasUserId());
+        assertFalse(envelope.hasTo());
+        assertFalse(envelope.hasFrom());
+        assertNull(envelope.getUserName());
+        assertTrue(envelope.hasData());
+        assertNull(envelope.getDataType(), "data is not an object");
+        assertFalse(envelope.hasMessage());
+    }
+
+    @Test
+    void nonStringFieldsReadAsTheTreeWouldReadThem() throws Exception {
+        String payload = "{\"type\":5,\"sessionId\":null,\"userId\":{\"id\":7},\"to\":true,\"from\":[1],"
+                + "\"userName\":2.5,\"data\":{\"type\":false}}";
+
+        MessageEnvelope envelope = MessageEnvelope.parse(new TextMessage(payload));
+        JsonNode tree = WebSocketJson.readTree(payload);
+
+        assertEquals(tree.path("type").asText(), envelope.getType());
+        assertEquals(tree.path("sessionId").asText(), envelope.getSessionId());
+        assertEquals(tree.path("userId").asText(), envelope.getUserId());
+        assertEquals(tree.path("to").asText(), envelope.getTo());
+        assertEquals(tree.path("from").asText(), envelope.getFrom());
+        assertEquals(tree.path("userName").asText(), envelope.getUserName());
+        assertEquals(tree.path("data").path("type").asText(), envelope.getDataType());
+        assertEquals("5", envelope.getType());
+        assertEquals("null", envelope.getSessionId());
+        assertEquals("", envelope.getUserId());
+    }
+
+    @Test
+    void treeIsParsedOnFirstUseAndKept() throws Exception {
+        MessageEnvelope envelope = MessageEnvelope.parse(new TextMessage(
+                "{\"type\":\"chat_message\",\"message\":{\"text\":\"hi\",\"at\":1}}"));
+
+        JsonNode tree = envelope.tree();
+
+        assertEquals("hi", tree.path("message").path("text").asText());
+        assertSame(tree, envelope.tree());
+    }
+
+    @Test
+    void malformedOrTruncatedFramesAreRejected() {
+        for (String payload : new String[] {
+                "", "not json", "[{\"type\":\"offer\"}]", "\"offer\"",
+                "{\"type\":\"offer\"", "{\"type\":", "{\"type\":\"offer\",\"data\":{\"sdp\":\"v=0\"}",
+                "{\"type\" \"offer\"}"}) {
+            assertThrows(IOException.class, () -> MessageEnvelope.parse(new TextMessage(payload)), payload);
+        }
+    }
+}
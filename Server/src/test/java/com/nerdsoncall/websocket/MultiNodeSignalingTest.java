@@ -0,0 +1,225 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-node harness for WebRTC signaling: three handlers, each standing in for a server
+ * instance, share one in-process bus. Peers are deliberately placed on different nodes.
+ */
+public class MultiNodeSignalingTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private LocalSignalingBus bus;
+    private HeartbeatMonitor heartbeatMonitor;
+    private ChatHistoryWriter chatHistoryWriter;
+    private WebRTCSignalingHandler nodeA;
+    private WebRTCSignalingHandler nodeB;
+    private WebRTCSignalingHandler nodeC;
+
+    @BeforeEach
+    void setUp() {
+        bus = new LocalSignalingBus();
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+        nodeA = new WebRTCSignalingHandler(bus, "node-a", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()),
+                chatHistoryWriter, new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+        nodeB = new WebRTCSignalingHandler(bus, "node-b", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()),
+                chatHistoryWriter, new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+        nodeC = new WebRTCSignalingHandler(bus, "node-c", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()),
+                chatHistoryWriter, new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16));
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+    }
+
+    @Test
+    void offerAnswerAndIceCandidatesRouteAcrossNodes() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", ROOM);
+
+        String offer = "{\"type\":\"offer\",\"to\":\"7\",\"from\":\"12\",\"sessionId\":\"" + ROOM
+                + "\",\"data\":{\"type\":\"offer\",\"sdp\":\"v=0\"}}";
+        nodeA.handleTextMessage(student, new TextMessage(offer));
+        assertTrue(payloads(tutor).contains(offer), "offer must reach the tutor on node B unchanged");
+
+        String answer = "{\"type\":\"answer\",\"to\":\"12\",\"from\":\"7\",\"sessionId\":\"" + ROOM
+                + "\",\"data\":{\"type\":\"answer\",\"sdp\":\"v=0\"}}";
+        nodeB.handleTextMessage(tutor, new TextMessage(answer));
+        assertTrue(payloads(student).contains(answer), "answer must reach the student on node A unchanged");
+
+        String candidate = "{\"type\":\"ice-candidate\",\"to\":\"7\",\"from\":\"12\",\"sessionId\":\"" + ROOM
+                + "\",\"data\":{\"candidate\":\"candidate:1 1 udp 1 10.0.0.1 5000 typ host\",\"sdpMid\":\"0\"}}";
+        nodeA.handleTextMessage(student, new TextMessage(candidate));
+        assertTrue(payloads(tutor).contains(candidate));
+    }
+
+    @Test
+    void joinOnAnotherNodeNotifiesRoomAndListsRemoteParticipants() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", null);
+
+        nodeB.handleTextMessage(tutor, new TextMessage(
+                "{\"type\":\"join\",\"sessionId\":\"" + ROOM + "\",\"userId\":\"7\"}"));
+
+        JsonNode joined = lastOfType(student, "user-joined");
+        assertEquals("7", joined.path("userId").asText());
+
+        JsonNode list = lastOfType(tutor, "participants-list");
+        assertEquals(1, list.path("participants").size());
+        assertEquals("12", list.path("participants").get(0).asText());
+        assertEquals(2, bus.roomMembers(ROOM).size());
+    }
+
+    @Test
+    void chatReachesParticipantsOnEveryNode() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", ROOM);
+        StubWebSocketSession observer = connect(nodeC, "ws-3", "99", ROOM);
+
+        nodeA.handleTextMessage(student, new TextMessage("{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"12\",\"userName\":\"Asha\",\"message\":\"hello\",\"id\":\"m1\"}"));
+
+        for (StubWebSocketSession session : List.of(student, tutor, observer)) {
+            assertEquals("hello", lastOfType(session, "chat_message").path("message").asText());
+        }
+
+        nodeA.handleTextMessage(student, new TextMessage(
+                "{\"type\":\"user_typing\",\"sessionId\":\"" + ROOM + "\",\"userId\":\"12\"}"));
+        assertNull(lastOfType(student, "user_typing"), "the typist must not see their own indicator");
+        assertEquals("12", lastOfType(observer, "user_typing").path("userId").asText());
+    }
+
+    @Test
+    void disconnectNotifiesRemoteParticipantsAndClearsPresence() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", ROOM);
+
+        student.close();
+        nodeA.afterConnectionClosed(student, CloseStatus.GOING_AWAY);
+
+        assertEquals("12", lastOfType(tutor, "user-left").path("userId").asText());
+        assertNull(bus.locate("12"));
+        assertFalse(bus.roomMembers(ROOM).containsKey("12"));
+        assertEquals("node-b", bus.locate("7"));
+    }
+
+    @Test
+    void callDeclinedReachesCallerAndTearsRoomDownEverywhere() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", ROOM);
+
+        String declined = "{\"type\":\"call_declined\",\"to\":\"12\",\"from\":\"7\",\"sessionId\":\"" + ROOM
+                + "\",\"declinerName\":\"Ravi\"}";
+        nodeB.handleTextMessage(tutor, new TextMessage(declined));
+
+        assertTrue(payloads(student).contains(declined));
+        assertTrue(bus.roomMembers(ROOM).isEmpty());
+
+        // Node A dropped its local room too: a chat there now reaches nobody
+        int before = student.getSentMessages().size();
+        nodeA.handleTextMessage(student, new TextMessage("{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"12\",\"message\":\"still there?\"}"));
+        assertEquals(before, student.getSentMessages().size());
+    }
+
+    @Test
+    void reconnectOnAnotherNodeClosesTheOldSocket() throws Exception {
+        StubWebSocketSession first = connect(nodeA, "ws-1", "12", null);
+        StubWebSocketSession second = connect(nodeB, "ws-2", "12", null);
+
+        assertFalse(first.isOpen(), "the socket on node A must be closed once the user is on node B");
+        assertTrue(second.isOpen());
+        assertEquals("node-b", bus.locate("12"));
+
+        // The late close callback on node A must not erase the new presence
+        nodeA.afterConnectionClosed(first, CloseStatus.NORMAL);
+        assertEquals("node-b", bus.locate("12"));
+    }
+
+    @Test
+    void reconnectingWithResumeFromReplaysOnlyTheMissedChat() throws Exception {
+        StubWebSocketSession student = connect(nodeA, "ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect(nodeB, "ws-2", "7", ROOM);
+        connect(nodeB, "ws-3", "99", ROOM);
+
+        nodeB.handleTextMessage(tutor, new TextMessage(chat("7", "before")));
+        long lastSeen = lastOfType(student, "chat_message").path("seq").asLong();
+
+        // Student's network blips; two messages are sent while it is away
+        student.close();
+        nodeA.afterConnectionClosed(student, CloseStatus.GOING_AWAY);
+        nodeB.handleTextMessage(tutor, new TextMessage(chat("7", "missed 1")));
+        nodeB.handleTextMessage(tutor, new TextMessage(chat("7", "missed 2")));
+
+        // Back on the node that kept buffering the room
+        StubWebSocketSession resumed = connect(nodeB, "ws-4", "12", ROOM + "&resumeFrom=" + lastSeen);
+        List<String> replayed = new ArrayList<>();
+        for (String payload : payloads(resumed)) {
+            JsonNode node = WebSocketJson.readTree(payload);
+            if ("chat_message".equals(node.path("type").asText())) {
+                replayed.add(node.path("message").asText());
+                assertTrue(node.path("seq").asLong() > lastSeen);
+            }
+        }
+        assertEquals(List.of("missed 1", "missed 2"), replayed);
+
+        // A node that never saw the room can't fill the gap
+        StubWebSocketSession elsewhere = connect(nodeC, "ws-5", "12", ROOM + "&resumeFrom=" + lastSeen);
+        assertEquals(lastSeen, lastOfType(elsewhere, "replay_unavailable").path("resumeFrom").asLong());
+    }
+
+    private static String chat(String userId, String message) {
+        return "{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM + "\",\"userId\":\"" + userId
+                + "\",\"message\":\"" + message + "\"}";
+    }
+
+    private StubWebSocketSession connect(WebRTCSignalingHandler node, String id, String userId, String roomId)
+            throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id,
+                "userId=" + userId + (roomId != null ? "&sessionId=" + roomId : ""));
+        node.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static List<String> payloads(StubWebSocketSession session) {
+        List<String> payloads = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                payloads.add(text.getPayload());
+            }
+        }
+        return payloads;
+    }
+
+    private static JsonNode lastOfType(StubWebSocketSession session, String type) throws Exception {
+        JsonNode last = null;
+        for (String payload : payloads(session)) {
+            JsonNode node = WebSocketJson.readTree(payload);
+            if (type.equals(node.path("type").asText())) {
+                last = node;
+            }
+        }
+        return last;
+    }
+}
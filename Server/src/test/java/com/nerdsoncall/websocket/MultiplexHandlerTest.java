@@ -0,0 +1,209 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The existing signaling handlers driven as channels of the multiplexed endpoint: routing by
+ * channel field and channel byte, outbound tagging, and channel vs. connection close.
+ */
+public class MultiplexHandlerTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private HeartbeatMonitor heartbeatMonitor;
+    private ChatHistoryWriter chatHistoryWriter;
+    private ConnectionRegistry connectionRegistry;
+    private MultiplexHandler multiplexHandler;
+
+    @BeforeEach
+    void setUp() {
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        connectionRegistry = new ConnectionRegistry();
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+        Map<String, WebSocketHandler> channels = new LinkedHashMap<>();
+        channels.put("signaling", new SignalingHandler(heartbeatMonitor));
+        channels.put("webrtc", new WebRTCSignalingHandler(new LocalSignalingBus(), "node-1", heartbeatMonitor,
+                new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()), chatHistoryWriter,
+                new CallSetupTracker(1_000, 600_000), new IceCandidateBatcher(0, 16)));
+        multiplexHandler = new MultiplexHandler(connectionRegistry, heartbeatMonitor, channels);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+    }
+
+    @Test
+    void chatOnTheWebrtcChannelReachesTheOtherClientTagged() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12", null);
+        StubWebSocketSession tutor = connect("ws-2", "7", null);
+        send(student, "{\"channel\":\"webrtc\",\"type\":\"channel_open\",\"params\":{\"sessionId\":\"" + ROOM + "\"}}");
+        send(tutor, "{\"channel\":\"webrtc\",\"type\":\"channel_open\",\"params\":{\"sessionId\":\"" + ROOM + "\"}}");
+
+        send(student, "{\"channel\":\"webrtc\",\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"12\",\"message\":\"hello\"}");
+
+        JsonNode chat = lastOfType(tutor, "chat_message");
+        assertNotNull(chat);
+        assertEquals("webrtc", chat.path("channel").asText());
+        assertEquals("hello", chat.path("message").asText());
+
+        // Server-originated frames are tagged too
+        assertEquals("webrtc", lastOfType(student, "connection_confirmed").path("channel").asText());
+        Map<String, Object> stats = multiplexHandler.getStatsSnapshot();
+        assertEquals(2, stats.get("connections"));
+        assertEquals(Map.of("webrtc", 2), stats.get("openChannels"));
+    }
+
+    @Test
+    void firstFrameOpensAChannelImplicitly() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12", null);
+        StubWebSocketSession tutor = connect("ws-2", "7", null);
+        send(tutor, "{\"channel\":\"signaling\",\"type\":\"channel_open\"}");
+
+        String offer = "{\"channel\":\"signaling\",\"type\":\"offer\",\"to\":\"7\",\"from\":\"12\"}";
+        send(student, offer);
+
+        assertTrue(texts(tutor).contains(offer), "an already tagged frame is relayed unchanged");
+    }
+
+    @Test
+    void binaryFramesCarryTheChannelIdByte() throws Exception {
+        StubWebSocketSession student = connectBinary("ws-1", "12");
+        StubWebSocketSession tutor = connectBinary("ws-2", "7");
+        send(tutor, "{\"channel\":\"webrtc\",\"type\":\"channel_open\"}");
+
+        TextMessage candidate = new TextMessage("{\"type\":\"ice-candidate\",\"to\":\"7\",\"from\":\"12\","
+                + "\"data\":{\"candidate\":\"candidate:1 1 udp 1 10.0.0.1 5000 typ host\",\"sdpMid\":\"0\"}}");
+        byte[] cbor = WireProtocol.encodeBytes(candidate);
+        ByteBuffer frame = ByteBuffer.allocate(cbor.length + 1).put((byte) 1).put(cbor).flip();
+        multiplexHandler.handleMessage(student, new BinaryMessage(frame));
+
+        BinaryMessage received = null;
+        for (WebSocketMessage<?> message : tutor.getSentMessages()) {
+            if (message instanceof BinaryMessage binary) {
+                received = binary;
+            }
+        }
+        assertNotNull(received, "ice-candidate must reach a CBOR client as a binary frame");
+        ByteBuffer payload = received.getPayload();
+        assertEquals(1, payload.get());
+        TextMessage decoded = WireProtocol.decode(new BinaryMessage(payload.slice()));
+        assertEquals(WebSocketJson.readTree(candidate.getPayload()), WebSocketJson.readTree(decoded.getPayload()));
+    }
+
+    @Test
+    void closingAChannelLeavesTheOthersOpen() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect("ws-2", "7", ROOM);
+        send(student, "{\"channel\":\"webrtc\",\"type\":\"channel_open\"}");
+        send(tutor, "{\"channel\":\"webrtc\",\"type\":\"channel_open\"}");
+        send(tutor, "{\"channel\":\"signaling\",\"type\":\"channel_open\"}");
+
+        send(tutor, "{\"channel\":\"webrtc\",\"type\":\"channel_close\"}");
+
+        JsonNode closed = lastOfType(tutor, "channel_closed");
+        assertEquals("webrtc", closed.path("channel").asText());
+        assertEquals(CloseStatus.NORMAL.getCode(), closed.path("code").asInt());
+        assertEquals("7", lastOfType(student, "user-left").path("userId").asText());
+        assertTrue(tutor.isOpen());
+
+        String offer = "{\"channel\":\"signaling\",\"type\":\"offer\",\"to\":\"7\",\"from\":\"12\"}";
+        send(student, offer);
+        assertTrue(texts(tutor).contains(offer));
+    }
+
+    @Test
+    void closingTheConnectionClosesEveryChannel() throws Exception {
+        StubWebSocketSession student = connect("ws-1", "12", ROOM);
+        StubWebSocketSession tutor = connect("ws-2", "7", ROOM);
+        send(student, "{\"channel\":\"webrtc\",\"type\":\"channel_open\"}");
+        send(student, "{\"channel\":\"signaling\",\"type\":\"channel_open\"}");
+        send(tutor, "{\"channel\":\"webrtc\",\"type\":\"channel_open\"}");
+
+        student.close();
+        multiplexHandler.afterConnectionClosed(student, CloseStatus.GOING_AWAY);
+
+        assertEquals("12", lastOfType(tutor, "user-left").path("userId").asText());
+        assertEquals(1, multiplexHandler.getStatsSnapshot().get("connections"));
+
+        // Nothing on the signaling channel points at the closed socket any more
+        send(tutor, "{\"channel\":\"signaling\",\"type\":\"offer\",\"to\":\"12\",\"from\":\"7\"}");
+        assertNull(lastOfType(student, "offer"));
+    }
+
+    @Test
+    void framesWithoutAKnownChannelAreRejected() throws Exception {
+        StubWebSocketSession client = connect("ws-1", "12", null);
+
+        send(client, "{\"type\":\"offer\",\"to\":\"7\"}");
+        assertEquals("Missing channel", lastOfType(client, "error").path("message").asText());
+
+        send(client, "{\"channel\":\"video\",\"type\":\"offer\",\"to\":\"7\"}");
+        assertEquals("Unknown channel: video", lastOfType(client, "error").path("message").asText());
+    }
+
+    private StubWebSocketSession connect(String id, String userId, String roomId) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id,
+                "userId=" + userId + (roomId != null ? "&sessionId=" + roomId : ""));
+        multiplexHandler.afterConnectionEstablished(session);
+        assertEquals("multiplex_established", lastOfType(session, "multiplex_established").path("type").asText());
+        return session;
+    }
+
+    private StubWebSocketSession connectBinary(String id, String userId) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id, "userId=" + userId) {
+            @Override
+            public String getAcceptedProtocol() {
+                return WireProtocol.CBOR;
+            }
+        };
+        multiplexHandler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private void send(StubWebSocketSession session, String payload) throws Exception {
+        multiplexHandler.handleMessage(session, new TextMessage(payload));
+    }
+
+    private static List<String> texts(StubWebSocketSession session) {
+        List<String> payloads = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                payloads.add(text.getPayload());
+            }
+        }
+        return payloads;
+    }
+
+    private static JsonNode lastOfType(StubWebSocketSession session, String type) throws Exception {
+        JsonNode last = null;
+        for (String payload : texts(session)) {
+            JsonNode node = WebSocketJson.readTree(payload);
+            if (type.equals(node.path("type").asText())) {
+                last = node;
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,363 @@
+package com.nerdsoncall.websocket;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput and delivery latency of /ws/session with 500 rooms of 3 participants, every
+ * participant drawing from several sender threads at once.
+ *
+ * The baseline is the handler as it was before outboxes and room lanes: each container thread
+ * parses the frame and writes it to every other subscriber itself, with no ordering between
+ * senders (real sockets would also refuse the concurrent writes it makes). Caller-runs mode
+ * runs the current handler under one lock per lane; the lane mode hands the frame to the
+ * room's thread and returns.
+ */
+public class RoomLanesBenchmarkTest {
+
+    private static final int ROOMS = 500;
+    private static final int PARTICIPANTS = 3;
+    private static final int SENDER_THREADS = 8;
+    private static final int FRAMES_PER_PARTICIPANT = 40;
+    private static final int TRIALS = 3;
+    // Deep enough that nothing is refused: this measures delivery, not shedding
+    private static final int LANE_CAPACITY = Integer.MAX_VALUE;
+
+    private static Level previousLevel;
+
+    @BeforeAll
+    static void quietLogs() {
+        ch.qos.logback.classic.Logger logger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall");
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogs() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.nerdsoncall")).setLevel(previousLevel);
+    }
+
+    @Test
+    void laneModesDeliverEveryFrame() throws Exception {
+        // Warm up every path before measuring
+        run(BaselineRelay::new);
+        run(() -> handlerRelay(new RoomLanes(0, 64, LANE_CAPACITY)));
+        run(() -> handlerRelay(new RoomLanes(4, 0, LANE_CAPACITY)));
+
+        Result baseline = best(BaselineRelay::new);
+        Result callerRuns = best(() -> handlerRelay(new RoomLanes(0, 64, LANE_CAPACITY)));
+        Result lanes = best(() -> handlerRelay(new RoomLanes(4, 0, LANE_CAPACITY)));
+        report("baseline handler", baseline);
+        report("caller-runs", callerRuns);
+        report("4 lanes", lanes);
+
+        assertTrue(baseline.framesPerSecond > 0 && callerRuns.framesPerSecond > 0 && lanes.framesPerSecond > 0);
+    }
+
+    @Test
+    void fullLaneRefusesOfferedTasksButNotExecutedOnes() throws Exception {
+        RoomLanes roomLanes = new RoomLanes(1, 0, 2);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        try {
+            roomLanes.execute("room", () -> {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            assertTrue(roomLanes.offer("room", ran::incrementAndGet));
+            assertTrue(roomLanes.offer("room", ran::incrementAndGet));
+            assertFalse(roomLanes.offer("room", ran::incrementAndGet), "two already queued");
+            roomLanes.execute("room", ran::incrementAndGet);
+            assertEquals(1L, roomLanes.getStatsSnapshot().get("rejected"));
+
+            release.countDown();
+            CountDownLatch drained = new CountDownLatch(1);
+            roomLanes.execute("room", drained::countDown);
+            assertTrue(drained.await(5, TimeUnit.SECONDS));
+            assertEquals(3, ran.get());
+        } finally {
+            release.countDown();
+            roomLanes.shutdown();
+        }
+    }
+
+    @Test
+    void laneFollowsTheRoomAcrossLaneCounts() {
+        // Growing from 4 to 5 lanes moves about a fifth of the rooms, never to another old lane
+        RoomLanes four = new RoomLanes(0, 4, 1);
+        RoomLanes five = new RoomLanes(0, 5, 1);
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String room = "session_" + i + "_7_1735000000000";
+            int before = four.laneOf(room);
+            int after = five.laneOf(room);
+            if (before != after) {
+                assertEquals(4, after);
+                moved++;
+            }
+        }
+        assertTrue(moved > 1_500 && moved < 2_500, "moved " + moved);
+    }
+
+    private Result best(RelayFactory factory) throws Exception {
+        Result best = null;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Result result = run(factory);
+            if (best == null || result.framesPerSecond > best.framesPerSecond) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private Result run(RelayFactory factory) throws Exception {
+        int frames = ROOMS * PARTICIPANTS * FRAMES_PER_PARTICIPANT;
+        int deliveries = frames * (PARTICIPANTS - 1);
+        long[] latencies = new long[deliveries];
+        AtomicInteger slots = new AtomicInteger();
+        AtomicInteger delivered = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        Relay handler = factory.create();
+        try {
+            List<TimedSession> sessions = new ArrayList<>(ROOMS * PARTICIPANTS);
+            for (int i = 0; i < ROOMS * PARTICIPANTS; i++) {
+                TimedSession session = new TimedSession("ws-" + i, "userId=user-" + i, latencies, slots,
+                        delivered, deliveries, done);
+                handler.afterConnectionEstablished(session);
+                handler.handleTextMessage(session, new TextMessage("{\"type\":\"subscribe\",\"sessionId\":\""
+                        + room(i) + "\",\"userId\":\"user-" + i + "\"}"));
+                sessions.add(session);
+            }
+            awaitSubscribed(sessions);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> senders = new ArrayList<>(SENDER_THREADS);
+            for (int t = 0; t < SENDER_THREADS; t++) {
+                int first = t;
+                Thread sender = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int n = 0; n < FRAMES_PER_PARTICIPANT; n++) {
+                            // Stripe the threads across rooms so several send into the same room at once
+                            for (int i = first; i < sessions.size(); i += SENDER_THREADS) {
+                                handler.handleTextMessage(sessions.get(i), new TextMessage(
+                                        "{\"type\":\"drawing_event\",\"sessionId\":\"" + room(i)
+                                                + "\",\"userId\":\"user-" + i + "\",\"data\":{\"type\":\"draw\",\"t\":"
+                                                + System.nanoTime() + "}}"));
+                            }
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, "bench-sender-" + t);
+                sender.start();
+                senders.add(sender);
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS), "only " + delivered.get() + " of " + deliveries
+                    + " frames delivered");
+            long elapsed = System.nanoTime() - begin;
+
+            Arrays.sort(latencies);
+            return new Result(frames * 1e9 / elapsed, latencies[deliveries / 2],
+                    latencies[(int) (deliveries * 0.99)]);
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    private static Relay handlerRelay(RoomLanes roomLanes) {
+        SessionOutboxRegistry outboxRegistry = new SessionOutboxRegistry(4, 1 << 22, 5000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of());
+        // Nothing coalesced, so every stroke is relayed
+        FrameCoalescer frameCoalescer = new FrameCoalescer(25, Set.of(), FrameCoalescer.SceneMode.LATEST);
+        WhiteboardSnapshotStore whiteboardStore = new WhiteboardSnapshotStore(FrameCoalescer.SceneMode.LATEST,
+                null, 2000, 20, 5000, 1 << 26, 600_000);
+        HeartbeatMonitor heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        TutoringSessionHandler handler = new TutoringSessionHandler(outboxRegistry, frameCoalescer, whiteboardStore,
+                heartbeatMonitor, new RoomReplayBuffer(512, 1 << 20), new FloodControl(List.of()),
+                new ChunkAssembler(1 << 20, 4, 1 << 24, 30_000), roomLanes);
+        return new Relay() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                handler.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                handler.handleTextMessage(session, message);
+            }
+
+            @Override
+            public void shutdown() {
+                roomLanes.shutdown();
+                outboxRegistry.shutdown();
+                frameCoalescer.shutdown();
+                whiteboardStore.shutdown();
+                heartbeatMonitor.shutdown();
+            }
+        };
+    }
+
+    private static void awaitSubscribed(List<TimedSession> sessions) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (TimedSession session : sessions) {
+            while (!session.subscribed && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(session.subscribed, session.getId() + " never got its subscription confirmed");
+        }
+    }
+
+    private static String room(int participant) {
+        return "session_" + (participant / PARTICIPANTS) + "_7_1735000000000";
+    }
+
+    private static void report(String mode, Result result) {
+        System.out.printf("%s: %,.0f frames/s, p50 %,.1f us, p99 %,.1f us%n", mode, result.framesPerSecond,
+                result.p50Nanos / 1_000.0, result.p99Nanos / 1_000.0);
+    }
+
+    private record Result(double framesPerSecond, long p50Nanos, long p99Nanos) {
+    }
+
+    @FunctionalInterface
+    private interface RelayFactory {
+        Relay create();
+    }
+
+    private interface Relay {
+        void afterConnectionEstablished(WebSocketSession session) throws Exception;
+
+        void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception;
+
+        void shutdown();
+    }
+
+    /**
+     * The subscribe and drawing_event paths of the handler before outboxes and room lanes,
+     * without its logging: a tree parse per frame, then one write per subscriber on the
+     * receiving thread
+     */
+    private static final class BaselineRelay implements Relay {
+        private final Map<String, Set<WebSocketSession>> sessionSubscriptions = new ConcurrentHashMap<>();
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) {
+        }
+
+        @Override
+        public void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            JsonNode jsonNode = WebSocketJson.readTree(message.getPayload());
+            String sessionId = jsonNode.get("sessionId").asText();
+            switch (jsonNode.get("type").asText()) {
+                case "subscribe":
+                    sessionSubscriptions.computeIfAbsent(sessionId, k -> new CopyOnWriteArraySet<>()).add(session);
+                    ObjectNode confirmMsg = WebSocketJson.createObjectNode();
+                    confirmMsg.put("type", "subscribed");
+                    confirmMsg.put("sessionId", sessionId);
+                    session.sendMessage(new TextMessage(confirmMsg.toString()));
+                    break;
+                case "drawing_event":
+                    TextMessage textMessage = new TextMessage(jsonNode.toString());
+                    for (WebSocketSession subscriber : sessionSubscriptions.getOrDefault(sessionId, Set.of())) {
+                        if (subscriber.isOpen() && !subscriber.getId().equals(session.getId())) {
+                            subscriber.sendMessage(textMessage);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Records how long each relayed stroke took from its sender to this client, without
+     * keeping the frames
+     */
+    private static final class TimedSession extends StubWebSocketSession {
+        private final long[] latencies;
+        private final AtomicInteger slots;
+        private final AtomicInteger delivered;
+        private final int expected;
+        private final CountDownLatch done;
+        private volatile boolean subscribed;
+
+        private TimedSession(String id, String query, long[] latencies, AtomicInteger slots,
+                             AtomicInteger delivered, int expected, CountDownLatch done) {
+            super(id, query);
+            this.latencies = latencies;
+            this.slots = slots;
+            this.delivered = delivered;
+            this.expected = expected;
+            this.done = done;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            long now = System.nanoTime();
+            String payload = message.getPayload().toString();
+            int at = payload.indexOf("\"t\":");
+            if (at < 0) {
+                if (payload.contains("\"subscribed\"")) {
+                    subscribed = true;
+                }
+                return;
+            }
+            int end = at + 4;
+            while (end < payload.length() && Character.isDigit(payload.charAt(end))) {
+                end++;
+            }
+            int slot = slots.getAndIncrement();
+            if (slot < latencies.length) {
+                latencies[slot] = now - Long.parseLong(payload.substring(at + 4, end));
+            }
+            // Counted after the write, so the latch opens only once every slot is filled
+            if (delivered.incrementAndGet() == expected) {
+                done.countDown();
+            }
+        }
+    }
+}
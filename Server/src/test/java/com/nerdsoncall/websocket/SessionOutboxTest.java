@@ -0,0 +1,243 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbound queues: what each overflow policy gives up when a connection falls behind, that
+ * control frames are never among it, and how a drain shares the outbound workers.
+ *
+ * Drains run on a queue of tasks the test steps through, so every send happens exactly
+ * when the test says.
+ */
+public class SessionOutboxTest {
+
+    // Every frame below is 10 bytes, so a limit of 30 holds three
+    private static final int LIMIT = 30;
+
+    private final List<Runnable> drains = new ArrayList<>();
+    private StubWebSocketSession session;
+    private RoomSendStats stats;
+    private ExecutorService sender;
+
+    @BeforeEach
+    void setUp() {
+        session = new StubWebSocketSession("ws-1", "userId=12");
+        stats = new RoomSendStats();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+    }
+
+    @Test
+    void dropOldestEvictsOnlyDroppableFrames() {
+        SessionOutbox outbox = outbox(SessionOutbox.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(outbox.offer(frame("control-01"), false, stats));
+        assertTrue(outbox.offer(frame("drawing-01"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-02"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-03"), true, stats), "evicts drawing-01");
+        assertTrue(outbox.offer(frame("control-02"), false, stats), "evicts drawing-02");
+        assertTrue(outbox.offer(frame("control-03"), false, stats), "evicts drawing-03");
+        assertTrue(outbox.offer(frame("control-04"), false, stats), "nothing left to evict, sent anyway");
+        assertEquals(40, outbox.getBufferedBytes());
+
+        runDrains();
+
+        assertEquals(List.of("control-01", "control-02", "control-03", "control-04"), sent());
+        assertEquals(3, stats.getDropped());
+        assertTrue(session.isOpen());
+    }
+
+    @Test
+    void dropNewestRefusesIncomingDroppableFrames() {
+        SessionOutbox outbox = outbox(SessionOutbox.OverflowPolicy.DROP_NEWEST);
+
+        assertTrue(outbox.offer(frame("drawing-01"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-02"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-03"), true, stats));
+        assertFalse(outbox.offer(frame("drawing-04"), true, stats));
+        assertTrue(outbox.offer(frame("control-01"), false, stats), "control frames go past the limit");
+
+        runDrains();
+
+        assertEquals(List.of("drawing-01", "drawing-02", "drawing-03", "control-01"), sent());
+        assertEquals(1, stats.getDropped());
+        assertTrue(session.isOpen());
+    }
+
+    @Test
+    void terminateClosesTheConnectionOnDroppableOverflow() {
+        SessionOutbox outbox = outbox(SessionOutbox.OverflowPolicy.TERMINATE);
+
+        assertTrue(outbox.offer(frame("drawing-01"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-02"), true, stats));
+        assertTrue(outbox.offer(frame("drawing-03"), true, stats));
+        assertTrue(outbox.offer(frame("control-01"), false, stats), "control frames never trigger it");
+        assertTrue(session.isOpen());
+
+        assertFalse(outbox.offer(frame("drawing-04"), true, stats));
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+        assertEquals(0, outbox.getQueuedFrames(), "held frames are discarded");
+        assertFalse(outbox.offer(frame("control-02"), false, stats));
+        runDrains();
+        assertEquals(List.of(), sent());
+    }
+
+    @Test
+    void sendBlockedPastTheTimeLimitClosesTheConnection() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        session = new StubWebSocketSession("ws-1", "userId=12") {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                sending.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.sendMessage(message);
+            }
+        };
+        sender = Executors.newSingleThreadExecutor();
+        SessionOutbox outbox = new SessionOutbox(session, sender, LIMIT, 50, SessionOutbox.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(outbox.offer(frame("control-01"), false, stats));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        Thread.sleep(150);
+
+        assertFalse(outbox.offer(frame("control-02"), false, stats));
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+        assertTrue(session.getCloseStatus().getReason().contains("Send time limit"));
+        unblock.countDown();
+    }
+
+    @Test
+    void watchdogClosesASendBlockedPastTheTimeLimitWithNothingNewOffered() throws Exception {
+        CountDownLatch unblock = new CountDownLatch(1);
+        session = new StubWebSocketSession("ws-1", "userId=12") {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.sendMessage(message);
+            }
+        };
+        SessionOutboxRegistry registry = new SessionOutboxRegistry(1, LIMIT, 50,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of());
+        try {
+            registry.register(session);
+            assertTrue(registry.offer(session, frame("control-01"), false, stats));
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (session.isOpen() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+            assertTrue(session.getCloseStatus().getReason().contains("Send time limit"));
+        } finally {
+            unblock.countDown();
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void drainYieldsAfterSixtyFourFramesAndReschedulesItself() {
+        SessionOutbox outbox = new SessionOutbox(session, drains::add, 1 << 20, 10_000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 100; i++) {
+            outbox.offer(frame(String.format("frame-%04d", i)), false, stats);
+        }
+        assertEquals(1, drains.size(), "one drain per connection at a time");
+
+        drains.remove(0).run();
+        assertEquals(64, session.getSentMessages().size());
+        assertEquals(36, outbox.getQueuedFrames());
+        assertEquals(1, drains.size(), "the rest waits behind other connections' drains");
+
+        drains.remove(0).run();
+        assertEquals(100, session.getSentMessages().size());
+        assertEquals(0, outbox.getBufferedBytes());
+        assertTrue(drains.isEmpty());
+        assertEquals("frame-0099", sent().get(99));
+    }
+
+    @Test
+    void registryDropsFramesForConnectionsItDoesNotHold() throws Exception {
+        SessionOutboxRegistry registry = new SessionOutboxRegistry(1, LIMIT, 10_000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of("drawing_event", "excalidraw_update"));
+        try {
+            assertTrue(registry.isDroppable("drawing_event"));
+            assertFalse(registry.isDroppable("chat_message"));
+            assertFalse(registry.isDroppable(null));
+
+            assertFalse(registry.offer(session, frame("control-01"), false, stats), "never registered");
+            assertEquals(1, stats.getDropped());
+
+            registry.register(session);
+            assertTrue(registry.offer(session, frame("control-02"), false, stats));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (session.getSentMessages().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("control-02"), sent());
+
+            registry.release(session);
+            assertFalse(registry.offer(session, frame("control-03"), false, stats), "already released");
+            assertEquals(2, stats.getDropped());
+            assertNull(session.getCloseStatus());
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    private SessionOutbox outbox(SessionOutbox.OverflowPolicy policy) {
+        return new SessionOutbox(session, drains::add, LIMIT, 10_000, policy);
+    }
+
+    private void runDrains() {
+        while (!drains.isEmpty()) {
+            drains.remove(0).run();
+        }
+    }
+
+    private List<String> sent() {
+        List<String> payloads = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            payloads.add(((TextMessage) message).getPayload());
+        }
+        return payloads;
+    }
+
+    private static TextMessage frame(String payload) {
+        return new TextMessage(payload);
+    }
+}
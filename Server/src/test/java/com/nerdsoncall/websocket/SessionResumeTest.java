@@ -0,0 +1,141 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A whiteboard client reconnecting to /ws/session with "resumeFrom": it gets the frames it
+ * missed, without its own, or a snapshot once the gap has been evicted.
+ */
+public class SessionResumeTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private SessionOutboxRegistry outboxRegistry;
+    private FrameCoalescer frameCoalescer;
+    private WhiteboardSnapshotStore whiteboardStore;
+    private HeartbeatMonitor heartbeatMonitor;
+    private TutoringSessionHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        outboxRegistry = new SessionOutboxRegistry(1, 1 << 20, 5000,
+                SessionOutbox.OverflowPolicy.DROP_OLDEST, Set.of());
+        // Nothing coalesced, so every stroke is its own frame
+        frameCoalescer = new FrameCoalescer(25, Set.of(), FrameCoalescer.SceneMode.LATEST);
+        whiteboardStore = new WhiteboardSnapshotStore(FrameCoalescer.SceneMode.LATEST, null,
+                2000, 20, 5000, 1 << 26, 600_000);
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        handler = new TutoringSessionHandler(outboxRegistry, frameCoalescer, whiteboardStore, heartbeatMonitor,
+                new RoomReplayBuffer(4, 1 << 20), new FloodControl(List.of()),
+                new ChunkAssembler(1 << 20, 4, 1 << 24, 30_000), new RoomLanes(0, 16, 10_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxRegistry.shutdown();
+        frameCoalescer.shutdown();
+        whiteboardStore.shutdown();
+        heartbeatMonitor.shutdown();
+    }
+
+    @Test
+    void resumeReplaysOnlyTheGap() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7", null);
+        StubWebSocketSession student = subscribe("ws-2", "12", null);
+
+        draw(tutor, "7", 1);
+        draw(student, "12", 2);
+        long lastSeen = awaitLastSeq(student, 1);
+
+        student.close();
+        handler.afterConnectionClosed(student, CloseStatus.GOING_AWAY);
+        draw(tutor, "7", 3);
+        draw(tutor, "7", 4);
+
+        StubWebSocketSession resumed = subscribe("ws-3", "12", lastSeen);
+        List<JsonNode> strokes = awaitOfType(resumed, "drawing_event", 2);
+        assertEquals(List.of(3, 4), List.of(strokes.get(0).path("data").path("x").asInt(),
+                strokes.get(1).path("data").path("x").asInt()), "own stroke 2 must not come back");
+        assertTrue(ofType(resumed, "whiteboard_snapshot").isEmpty(), "a buffered gap needs no snapshot");
+    }
+
+    @Test
+    void evictedGapFallsBackToSnapshot() throws Exception {
+        StubWebSocketSession tutor = subscribe("ws-1", "7", null);
+        StubWebSocketSession student = subscribe("ws-2", "12", null);
+
+        draw(tutor, "7", 1);
+        long lastSeen = awaitLastSeq(student, 1);
+
+        student.close();
+        handler.afterConnectionClosed(student, CloseStatus.GOING_AWAY);
+        // More than the ring holds
+        for (int x = 2; x <= 8; x++) {
+            draw(tutor, "7", x);
+        }
+
+        StubWebSocketSession resumed = subscribe("ws-3", "12", lastSeen);
+        JsonNode snapshot = awaitOfType(resumed, "whiteboard_snapshot", 1).get(0);
+        assertEquals(8, snapshot.path("data").path("drawingEvents").size());
+        assertTrue(ofType(resumed, "drawing_event").isEmpty());
+    }
+
+    private StubWebSocketSession subscribe(String id, String userId, Long resumeFrom) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id, "userId=" + userId + "&sessionId=" + ROOM);
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new TextMessage("{\"type\":\"subscribe\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"" + userId + "\"" + (resumeFrom != null ? ",\"resumeFrom\":" + resumeFrom : "") + "}"));
+        awaitOfType(session, "subscribed", 1);
+        return session;
+    }
+
+    private void draw(StubWebSocketSession session, String userId, int x) throws Exception {
+        handler.handleMessage(session, new TextMessage("{\"type\":\"drawing_event\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"" + userId + "\",\"data\":{\"type\":\"draw\",\"x\":" + x + ",\"y\":1}}"));
+    }
+
+    private static long awaitLastSeq(StubWebSocketSession session, int strokes) throws Exception {
+        List<JsonNode> received = awaitOfType(session, "drawing_event", strokes);
+        return received.get(received.size() - 1).path("seq").asLong();
+    }
+
+    /**
+     * Outbound frames go through the outbox thread; wait for them
+     */
+    private static List<JsonNode> awaitOfType(StubWebSocketSession session, String type, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 2000;
+        List<JsonNode> received = ofType(session, type);
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            received = ofType(session, type);
+        }
+        assertEquals(count, received.size(), "expected " + count + " " + type + " frames");
+        return received;
+    }
+
+    private static List<JsonNode> ofType(StubWebSocketSession session, String type) throws Exception {
+        List<JsonNode> frames = new ArrayList<>();
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof TextMessage text) {
+                JsonNode node = WebSocketJson.readTree(text.getPayload());
+                if (type.equals(node.path("type").asText())) {
+                    frames.add(node);
+                }
+            }
+        }
+        return frames;
+    }
+}
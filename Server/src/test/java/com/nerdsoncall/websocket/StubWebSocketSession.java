@@ -0,0 +1,142 @@
+package com.nerdsoncall.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory WebSocketSession for driving handlers without a servlet container.
+ * Sent messages are recorded so tests can assert on what a client would receive.
+ */
+public class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final URI uri;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> sentMessages = new CopyOnWriteArrayList<>();
+    private volatile boolean open = true;
+    private volatile CloseStatus closeStatus;
+    private final AtomicInteger failingSends = new AtomicInteger();
+
+    public StubWebSocketSession(String id, String query) {
+        this.id = id;
+        this.uri = URI.create("ws://localhost/ws?" + query);
+    }
+
+    public List<WebSocketMessage<?>> getSentMessages() {
+        return sentMessages;
+    }
+
+    public CloseStatus getCloseStatus() {
+        return closeStatus;
+    }
+
+    /**
+     * Make the next sends fail with an IOException, as a broken transport would
+     */
+    public void failNextSends(int count) {
+        failingSends.set(count);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (failingSends.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new IOException("Simulated send failure");
+        }
+        if (open) {
+            sentMessages.add(message);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        open = false;
+        closeStatus = status;
+    }
+}
@@ -0,0 +1,63 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retrying sends: a transient IO failure is retried on the shared scheduler, a persistent one
+ * closes the connection, and the returned future tells the caller which happened.
+ */
+public class WebSocketErrorHandlerTest {
+
+    @Test
+    void failedSendIsRetriedUntilItGoesThrough() throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession("retry-ok", "userId=12");
+        session.failNextSends(1);
+
+        CompletableFuture<Boolean> result = WebSocketErrorHandler.sendMessageSafely(session, "{\"type\":\"ping\"}", 3);
+        assertFalse(result.isDone(), "the retry is scheduled, not waited for on the caller's thread");
+
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, session.getSentMessages().size());
+        assertEquals("{\"type\":\"ping\"}", ((TextMessage) session.getSentMessages().get(0)).getPayload());
+        assertTrue(session.isOpen());
+        WebSocketErrorHandler.resetErrorCount(session.getId());
+    }
+
+    @Test
+    void sendThatKeepsFailingClosesTheConnection() throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession("retry-exhausted", "userId=12");
+        session.failNextSends(2);
+
+        CompletableFuture<Boolean> result = WebSocketErrorHandler.sendMessageSafely(session, "{\"type\":\"ping\"}", 2);
+
+        assertFalse(result.get(5, TimeUnit.SECONDS));
+        assertTrue(session.getSentMessages().isEmpty());
+        assertFalse(session.isOpen());
+        assertEquals(CloseStatus.SERVER_ERROR.getCode(), session.getCloseStatus().getCode());
+        WebSocketErrorHandler.resetErrorCount(session.getId());
+    }
+
+    @Test
+    void closedConnectionCompletesWithFalse() throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession("retry-closed", "userId=12");
+        session.close(CloseStatus.NORMAL);
+
+        CompletableFuture<Boolean> result = WebSocketErrorHandler.sendMessageSafely(session, "{\"type\":\"ping\"}");
+
+        assertTrue(result.isDone());
+        assertFalse(result.get());
+        assertTrue(session.getSentMessages().isEmpty());
+        assertEquals(CloseStatus.NORMAL, session.getCloseStatus());
+        assertFalse(WebSocketErrorHandler.sendMessageSafely(null, "{}").get());
+        assertFalse(WebSocketErrorHandler.sendMessageSafely(session, "").get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An endpoint wrapped in MeteredWebSocketHandler counts its connections and the frames it
+ * receives and sends, by message type.
+ */
+public class WebSocketTelemetryTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private HeartbeatMonitor heartbeatMonitor;
+    private ChatHistoryWriter chatHistoryWriter;
+
+    @BeforeEach
+    void setUp() {
+        heartbeatMonitor = new HeartbeatMonitor(25_000, 60_000, 1_000);
+        chatHistoryWriter = new ChatHistoryWriter(null, 16, 16, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeatMonitor.shutdown();
+        chatHistoryWriter.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsConnectionsAndFramesByType() throws Exception {
+        WebSocketTelemetry telemetry = new WebSocketTelemetry();
+        MeteredWebSocketHandler handler = new MeteredWebSocketHandler(new WebRTCSignalingHandler(
+                new LocalSignalingBus(), "node-1", heartbeatMonitor, new RoomReplayBuffer(512, 1 << 20),
+                new FloodControl(List.of()), chatHistoryWriter, new CallSetupTracker(1_000, 600_000),
+                new IceCandidateBatcher(0, 16)),
+                telemetry.endpoint("webrtc"));
+
+        StubWebSocketSession student = new StubWebSocketSession("ws-1", "userId=12&sessionId=" + ROOM);
+        StubWebSocketSession tutor = new StubWebSocketSession("ws-2", "userId=7&sessionId=" + ROOM);
+        handler.afterConnectionEstablished(student);
+        handler.afterConnectionEstablished(tutor);
+        String chat = "{\"type\":\"chat_message\",\"sessionId\":\"" + ROOM
+                + "\",\"userId\":\"12\",\"message\":\"hello\"}";
+        handler.handleMessage(student, new TextMessage(chat));
+
+        Map<String, Object> webrtc = (Map<String, Object>) telemetry.getStatsSnapshot().get("webrtc");
+        assertEquals(2L, webrtc.get("openConnections"));
+        Map<String, Object> inbound = (Map<String, Object>) webrtc.get("inbound");
+        Map<String, Object> inboundChat = (Map<String, Object>) ((Map<String, Object>) inbound.get("byType"))
+                .get("chat_message");
+        assertEquals(1L, inboundChat.get("messages"));
+        assertEquals((long) chat.length(), inboundChat.get("bytes"));
+
+        // Everything the handler sent went through the metered session, and was timed
+        Map<String, Object> outbound = (Map<String, Object>) webrtc.get("outbound");
+        long sent = student.getSentMessages().size() + tutor.getSentMessages().size();
+        assertEquals(sent, outbound.get("messages"));
+        assertTrue(((Map<String, Object>) outbound.get("byType")).containsKey("chat_message"));
+        assertEquals(sent, ((Map<String, Object>) webrtc.get("sendLatency")).get("count"));
+
+        tutor.close();
+        handler.afterConnectionClosed(tutor, CloseStatus.NORMAL);
+        webrtc = (Map<String, Object>) telemetry.getStatsSnapshot().get("webrtc");
+        assertEquals(1L, webrtc.get("openConnections"));
+    }
+
+    @Test
+    void typeIsReadFromTheTopLevelOnly() {
+        assertEquals("drawing_event", WebSocketTelemetry.topLevelType(
+                "{\"data\":{\"type\":\"draw\",\"s\":\"\\\"type\\\"\"},\"type\":\"drawing_event\"}"));
+        assertEquals("offer", WebSocketTelemetry.topLevelType("{ \"type\" : \"offer\", \"sdp\": \"v=0\" }"));
+        assertNull(WebSocketTelemetry.topLevelType("{\"data\":{\"type\":\"draw\"}}"));
+        assertNull(WebSocketTelemetry.topLevelType("not json"));
+    }
+}
@@ -0,0 +1,235 @@
+package com.nerdsoncall.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The resident whiteboard of a room: relayed frames folded into a late joiner's snapshot,
+ * written behind as deltas and compactions, evicted when idle and loaded back from storage,
+ * with storage only ever touched from the store's own thread.
+ */
+public class WhiteboardSnapshotStoreTest {
+
+    private static final String ROOM = "session_12_7_1735000000000";
+
+    private final MemoryPersistence persistence = new MemoryPersistence(Set.of(ROOM));
+    private final List<TextMessage> snapshots = new CopyOnWriteArrayList<>();
+    private WhiteboardSnapshotStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void lateJoinerGetsTheFoldedBoard() throws Exception {
+        store = store(null, 20, 5000, 600_000);
+
+        store.apply(ROOM, scene("a", 1), "excalidraw_update");
+        store.apply(ROOM, scene("a", 2), "excalidraw_update");
+        store.apply(ROOM, stroke(1), "drawing_event");
+        store.apply(ROOM, frame("chat_message", "{}"), "chat_message");
+
+        store.snapshot(ROOM, snapshots::add);
+
+        JsonNode data = onlySnapshot().path("data");
+        assertEquals(1, data.path("elements").size());
+        assertEquals(2, data.path("elements").get(0).path("version").asInt());
+        assertEquals(1, data.path("drawingEvents").size());
+    }
+
+    @Test
+    void flushWritesDeltasAndCompactsEveryFewOfThem() throws Exception {
+        store = store(persistence, 2, 5000, 600_000);
+
+        store.apply(ROOM, scene("a", 1), "excalidraw_update");
+        store.flushNow();
+        assertEquals(List.of(1L), persistence.seqs(ROOM));
+        assertNull(persistence.snapshots.get(ROOM));
+
+        store.flushNow();
+        assertEquals(List.of(1L), persistence.seqs(ROOM), "nothing new, nothing written");
+
+        store.apply(ROOM, stroke(1), "drawing_event");
+        store.flushNow();
+        assertTrue(persistence.seqs(ROOM).isEmpty(), "the second delta compacts the board");
+        JsonNode stored = WebSocketJson.readTree(persistence.snapshots.get(ROOM));
+        assertEquals(2, stored.path("seq").asLong());
+        assertEquals(1, stored.path("elements").size());
+        assertEquals(1, stored.path("drawingEvents").size());
+        assertEquals(Set.of("ws-whiteboard"), persistence.threads);
+    }
+
+    @Test
+    void idleBoardIsEvictedAndLoadedBackOnNextUse() throws Exception {
+        store = store(persistence, 20, 5000, 0);
+
+        store.apply(ROOM, scene("a", 1), "excalidraw_update");
+        store.apply(ROOM, stroke(1), "drawing_event");
+        store.snapshot(ROOM, snapshots::add);
+        store.flushNow();
+        assertEquals(0L, store.getStatsSnapshot().get("evictions"), "subscribed boards stay");
+
+        store.markIdle(ROOM);
+        store.flushNow();
+        assertEquals(1L, store.getStatsSnapshot().get("evictions"));
+        assertEquals(0, store.getStatsSnapshot().get("residentRooms"));
+        assertTrue(persistence.seqs(ROOM).isEmpty(), "compacted before it was dropped");
+
+        snapshots.clear();
+        store.snapshot(ROOM, snapshots::add);
+        store.flushNow();
+
+        JsonNode data = onlySnapshot().path("data");
+        assertEquals("a", data.path("elements").get(0).path("id").asText());
+        assertEquals(1, data.path("drawingEvents").size());
+        assertEquals(2, persistence.loads.get());
+        assertEquals(Set.of("ws-whiteboard"), persistence.threads);
+    }
+
+    @Test
+    void framesRelayedDuringTheLoadAreFoldedAfterTheStoredBoard() throws Exception {
+        persistence.snapshots.put(ROOM, "{\"version\":1,\"seq\":4,\"elements\":[{\"id\":\"a\",\"version\":1}],"
+                + "\"drawingEvents\":[{\"x\":0}]}");
+        persistence.blockLoads();
+        store = store(persistence, 20, 5000, 600_000);
+
+        store.apply(ROOM, scene("a", 3), "excalidraw_update");
+        store.snapshot(ROOM, snapshots::add);
+        store.apply(ROOM, stroke(2), "drawing_event");
+        assertTrue(snapshots.isEmpty(), "the relaying thread never waits for the load");
+
+        persistence.releaseLoads();
+        store.flushNow();
+
+        JsonNode data = onlySnapshot().path("data");
+        assertEquals(3, data.path("elements").get(0).path("version").asInt());
+        assertEquals(1, data.path("drawingEvents").size(), "as of the subscribe, not the later stroke");
+        assertEquals(List.of(5L), persistence.seqs(ROOM));
+    }
+
+    @Test
+    void oldestStrokesFallOffPastTheCap() throws Exception {
+        store = store(null, 20, 3, 600_000);
+
+        for (int i = 0; i < 5; i++) {
+            store.apply(ROOM, stroke(i), "drawing_event");
+        }
+        store.snapshot(ROOM, snapshots::add);
+
+        JsonNode strokes = onlySnapshot().path("data").path("drawingEvents");
+        assertEquals(3, strokes.size());
+        assertEquals(2, strokes.get(0).path("x").asInt());
+        assertEquals(2L, store.getStatsSnapshot().get("strokesTrimmed"));
+
+        store.apply(ROOM, frame("drawing_event", "{\"type\":\"clear\"}"), "drawing_event");
+        snapshots.clear();
+        store.snapshot(ROOM, snapshots::add);
+        assertTrue(snapshots.isEmpty(), "a cleared board has nothing to send");
+    }
+
+    private WhiteboardSnapshotStore store(WhiteboardSnapshotStore.Persistence persistence, int compactEvery,
+                                          int maxStrokes, long idleTimeoutMillis) {
+        // A flush interval longer than any test, so flushes happen only when the test asks
+        return new WhiteboardSnapshotStore(FrameCoalescer.SceneMode.LATEST, persistence,
+                3_600_000, compactEvery, maxStrokes, 1 << 26, idleTimeoutMillis);
+    }
+
+    private JsonNode onlySnapshot() throws Exception {
+        assertEquals(1, snapshots.size());
+        JsonNode snapshot = WebSocketJson.readTree(snapshots.get(0).getPayload());
+        assertEquals("whiteboard_snapshot", snapshot.path("type").asText());
+        return snapshot;
+    }
+
+    private static TextMessage scene(String id, int version) {
+        return frame("excalidraw_update", "{\"elements\":[{\"id\":\"" + id + "\",\"version\":" + version + "}]}");
+    }
+
+    private static TextMessage stroke(int x) {
+        return frame("drawing_event", "{\"x\":" + x + "}");
+    }
+
+    private static TextMessage frame(String type, String data) {
+        return new TextMessage("{\"type\":\"" + type + "\",\"sessionId\":\"" + ROOM + "\",\"data\":" + data + "}");
+    }
+
+    /**
+     * Boards kept in maps, with the thread of every call recorded
+     */
+    private static class MemoryPersistence implements WhiteboardSnapshotStore.Persistence {
+        private final Set<String> rooms;
+        private final Map<String, String> snapshots = new ConcurrentHashMap<>();
+        private final Map<String, Map<Long, String>> deltas = new ConcurrentHashMap<>();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile CountDownLatch loadGate = new CountDownLatch(0);
+
+        private MemoryPersistence(Set<String> rooms) {
+            this.rooms = rooms;
+        }
+
+        void blockLoads() {
+            loadGate = new CountDownLatch(1);
+        }
+
+        void releaseLoads() {
+            loadGate.countDown();
+        }
+
+        List<Long> seqs(String roomId) {
+            return new ArrayList<>(deltas.getOrDefault(roomId, Map.of()).keySet());
+        }
+
+        @Override
+        public WhiteboardSnapshotStore.StoredBoard load(String roomId) {
+            threads.add(Thread.currentThread().getName());
+            loads.incrementAndGet();
+            try {
+                assertTrue(loadGate.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!rooms.contains(roomId)) {
+                return null;
+            }
+            return new WhiteboardSnapshotStore.StoredBoard(snapshots.get(roomId),
+                    new ArrayList<>(deltas.getOrDefault(roomId, Map.of()).values()));
+        }
+
+        @Override
+        public void appendDelta(String roomId, long seq, String delta) {
+            threads.add(Thread.currentThread().getName());
+            deltas.computeIfAbsent(roomId, k -> new ConcurrentSkipListMap<>()).put(seq, delta);
+        }
+
+        @Override
+        public void compact(String roomId, long seq, String snapshot) {
+            threads.add(Thread.currentThread().getName());
+            snapshots.put(roomId, snapshot);
+            Map<Long, String> stored = deltas.get(roomId);
+            if (stored != null) {
+                stored.keySet().removeIf(s -> s <= seq);
+            }
+        }
+    }
+}
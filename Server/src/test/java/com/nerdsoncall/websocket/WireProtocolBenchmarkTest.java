@@ -0,0 +1,179 @@
+package com.nerdsoncall.websocket;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bandwidth and CPU comparison of the JSON text protocol and the CBOR subprotocol.
+ *
+ * The trace is a seeded whiteboard session shaped like what the web client sends: pen strokes
+ * from Canvas.tsx (start, pointer moves, end) with canvas-relative mouse coordinates, some
+ * stylus strokes with arbitrary fractional coordinates, canvas_update point batches and the
+ * ICE candidates of a call setup. For every message type the total wire bytes are reported
+ * along with the cost of transcoding a frame in each direction, next to the cost of the
+ * envelope parse every frame already pays.
+ */
+public class WireProtocolBenchmarkTest {
+
+    private static final int STROKES = 400;
+    private static final int ITERATIONS = 20;
+
+    private static final Map<String, List<TextMessage>> trace = new LinkedHashMap<>();
+
+    @BeforeAll
+    static void recordTrace() {
+        Random random = new Random(42);
+        List<TextMessage> strokes = new ArrayList<>();
+        List<TextMessage> canvasUpdates = new ArrayList<>();
+        List<TextMessage> iceCandidates = new ArrayList<>();
+
+        long timestamp = 1_735_000_000_000L;
+        for (int stroke = 0; stroke < STROKES; stroke++) {
+            // getBoundingClientRect() offsets are usually fractional; stylus input is arbitrary
+            boolean stylus = stroke % 5 == 0;
+            double x = 40 + random.nextInt(900);
+            double y = 30 + random.nextInt(500);
+            String color = stroke % 3 == 0 ? "#ef4444" : "#000000";
+            int points = 20 + random.nextInt(60);
+
+            strokes.add(drawingEvent("start", x, y, color, timestamp));
+            for (int point = 0; point < points; point++) {
+                x += random.nextInt(9) - 4;
+                y += random.nextInt(9) - 4;
+                double px = stylus ? x + random.nextDouble() : x + 0.328125;
+                double py = stylus ? y + random.nextDouble() : y + 0.5;
+                timestamp += 16;
+                strokes.add(drawingEvent("draw", px, py, color, timestamp));
+            }
+            strokes.add(drawingEvent("end", x, y, color, timestamp));
+
+            if (stroke % 10 == 0) {
+                StringBuilder batch = new StringBuilder();
+                for (int point = 0; point < 50; point++) {
+                    if (point > 0) {
+                        batch.append(',');
+                    }
+                    batch.append('[').append(random.nextInt(1200)).append(',').append(random.nextInt(700)).append(']');
+                }
+                canvasUpdates.add(new TextMessage("{\"type\":\"canvas_update\",\"sessionId\":\"session_12_7_1735000000000\","
+                        + "\"userId\":\"12\",\"data\":{\"tool\":\"pen\",\"color\":\"" + color + "\",\"lineWidth\":2,"
+                        + "\"points\":[" + batch + "]}}"));
+            }
+        }
+
+        for (int i = 0; i < 40; i++) {
+            String candidate = String.format("candidate:%d 1 udp %d 203.0.113.%d %d typ srflx raddr 10.0.0.%d rport %d generation 0 ufrag kT3p network-cost 999",
+                    random.nextInt(Integer.MAX_VALUE), 1_677_729_535 - i, random.nextInt(255), 50_000 + random.nextInt(10_000),
+                    random.nextInt(255), 50_000 + random.nextInt(10_000));
+            iceCandidates.add(new TextMessage("{\"type\":\"ice-candidate\",\"to\":\"7\",\"from\":\"12\","
+                    + "\"sessionId\":\"session_12_7_1735000000000\",\"data\":{\"candidate\":\"" + candidate + "\","
+                    + "\"sdpMid\":\"" + (i % 2) + "\",\"sdpMLineIndex\":" + (i % 2) + ",\"usernameFragment\":\"kT3p\"}}"));
+        }
+
+        trace.put("drawing_event", strokes);
+        trace.put("canvas_update", canvasUpdates);
+        trace.put("ice-candidate", iceCandidates);
+    }
+
+    private static TextMessage drawingEvent(String type, double x, double y, String color, long timestamp) {
+        return new TextMessage("{\"type\":\"drawing_event\",\"sessionId\":\"session_12_7_1735000000000\",\"userId\":12,"
+                + "\"data\":{\"type\":\"" + type + "\",\"x\":" + x + ",\"y\":" + y + ",\"color\":\"" + color + "\","
+                + "\"lineWidth\":2,\"tool\":\"pen\"},\"timestamp\":" + timestamp + "}");
+    }
+
+    @Test
+    void cborRoundTripsEveryFrame() throws Exception {
+        for (List<TextMessage> frames : trace.values()) {
+            for (TextMessage frame : frames) {
+                TextMessage decoded = WireProtocol.decode(WireProtocol.encode(frame));
+                assertEquals(WebSocketJson.readTree(frame.getPayload()), WebSocketJson.readTree(decoded.getPayload()),
+                        "CBOR round trip changed " + frame.getPayload());
+            }
+        }
+    }
+
+    @Test
+    void compareBandwidthAndCpu() throws Exception {
+        // Warm up the JIT on the whole trace first
+        for (int i = 0; i < 5; i++) {
+            for (List<TextMessage> frames : trace.values()) {
+                measure(frames);
+            }
+        }
+
+        System.out.printf("%-14s %7s %12s %12s %7s %12s %12s %12s%n",
+                "type", "frames", "json bytes", "cbor bytes", "ratio", "parse ns", "encode ns", "decode ns");
+
+        long totalText = 0;
+        long totalBinary = 0;
+        for (Map.Entry<String, List<TextMessage>> entry : trace.entrySet()) {
+            List<TextMessage> frames = entry.getValue();
+            long textBytes = 0;
+            long binaryBytes = 0;
+            for (TextMessage frame : frames) {
+                textBytes += frame.asBytes().length;
+                binaryBytes += WireProtocol.encode(frame).getPayloadLength();
+            }
+
+            double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            for (int i = 0; i < ITERATIONS; i++) {
+                double[] run = measure(frames);
+                for (int j = 0; j < best.length; j++) {
+                    best[j] = Math.min(best[j], run[j]);
+                }
+            }
+
+            System.out.printf("%-14s %7d %12d %12d %6.0f%% %12.0f %12.0f %12.0f%n",
+                    entry.getKey(), frames.size(), textBytes, binaryBytes, 100.0 * binaryBytes / textBytes,
+                    best[0], best[1], best[2]);
+            totalText += textBytes;
+            totalBinary += binaryBytes;
+
+            assertTrue(binaryBytes < textBytes, entry.getKey() + " frames must be smaller as CBOR");
+        }
+
+        System.out.printf("%-14s %7s %12d %12d %6.0f%%%n", "total", "", totalText, totalBinary,
+                100.0 * totalBinary / totalText);
+    }
+
+    /**
+     * Nanoseconds per frame: envelope parse of the text frame, JSON -> CBOR, CBOR -> JSON
+     */
+    private double[] measure(List<TextMessage> frames) throws Exception {
+        List<BinaryMessage> encoded = new ArrayList<>(frames.size());
+        long sink = 0;
+
+        long start = System.nanoTime();
+        for (TextMessage frame : frames) {
+            sink += MessageEnvelope.parse(frame).getType().length();
+        }
+        long parse = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (TextMessage frame : frames) {
+            encoded.add(WireProtocol.encode(frame));
+        }
+        long encode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (BinaryMessage frame : encoded) {
+            sink += WireProtocol.decode(frame).getPayloadLength();
+        }
+        long decode = System.nanoTime() - start;
+
+        assertTrue(sink > 0);
+        int n = frames.size();
+        return new double[] {(double) parse / n, (double) encode / n, (double) decode / n};
+    }
+}